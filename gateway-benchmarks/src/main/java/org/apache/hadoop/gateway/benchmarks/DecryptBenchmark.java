@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.benchmarks;
+
+import org.apache.hadoop.gateway.services.security.EncryptionResult;
+import org.apache.hadoop.gateway.services.security.impl.ConfigurableEncryptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the decrypt throughput of a shared ConfigurableEncryptor, as used by the
+ * encrypt-uri and secure-query rewrite steps and the pac4j session store, on 1, 8 and 32 threads.
+ * The deriveKey benchmark shows the per call cost that decrypt paid before derived keys were cached.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class DecryptBenchmark {
+
+  private static final String PASSWORD = "encrypt-url-password";
+  private static final String VALUE = "url=http://localhost:50070/webhdfs/v1/user/guest/example/file.txt?op=OPEN&user.name=guest";
+
+  private ConfigurableEncryptor encryptor;
+  private EncryptionResult encrypted;
+
+  @Setup
+  public void setup() throws Exception {
+    encryptor = new ConfigurableEncryptor( PASSWORD );
+    // Encrypted by another instance as if by another gateway in the cluster or before a restart.
+    encrypted = new ConfigurableEncryptor( PASSWORD ).encrypt( VALUE.getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  @Benchmark
+  @Threads( 1 )
+  public byte[] decrypt1() throws Exception {
+    return encryptor.decrypt( encrypted.salt, encrypted.iv, encrypted.cipher );
+  }
+
+  @Benchmark
+  @Threads( 8 )
+  public byte[] decrypt8() throws Exception {
+    return encryptor.decrypt( encrypted.salt, encrypted.iv, encrypted.cipher );
+  }
+
+  @Benchmark
+  @Threads( 32 )
+  public byte[] decrypt32() throws Exception {
+    return encryptor.decrypt( encrypted.salt, encrypted.iv, encrypted.cipher );
+  }
+
+  @Benchmark
+  @Threads( 1 )
+  public Object deriveKey() {
+    return encryptor.getKeyFromPassword( PASSWORD, encrypted.salt );
+  }
+
+}
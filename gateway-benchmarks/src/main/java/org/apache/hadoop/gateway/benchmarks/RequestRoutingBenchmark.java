@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.benchmarks;
+
+import org.apache.hadoop.gateway.util.urltemplate.CompiledMatcher;
+import org.apache.hadoop.gateway.util.urltemplate.Matcher;
+import org.apache.hadoop.gateway.util.urltemplate.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per request routing done by GatewayFilter before and after the routes were precompiled.
+ * Run with "-prof gc" to see the allocations per request of each approach.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class RequestRoutingBenchmark {
+
+  // A representative sample of the resource paths deployed for the stock service definitions.
+  private static final String[] ROUTES = {
+      "/webhdfs/v1/?**",
+      "/webhdfs/v1/**?**",
+      "/webhdfs/data/v1/**?**",
+      "/webhbase/?**",
+      "/webhbase/**?**",
+      "/oozie/?**",
+      "/oozie/**?**",
+      "/oozie/v1/**?**",
+      "/oozie/v2/**?**",
+      "/templeton/v1/?**",
+      "/templeton/v1/**?**",
+      "/resourcemanager/v1/cluster/?**",
+      "/resourcemanager/v1/cluster/**?**",
+      "/hive",
+      "/yarn/?**",
+      "/yarn/**?**",
+      "/ambari/?**",
+      "/ambari/**?**",
+      "/hdfs/?**",
+      "/hdfs/**?**",
+      "/ranger/?**",
+      "/ranger/**?**" };
+
+  @Param( { "/webhdfs/v1/user/guest/example/file.txt", "/resourcemanager/v1/cluster/apps/application_1_0001", "/hive" } )
+  public String path;
+
+  @Param( { "op=OPEN&user.name=guest" } )
+  public String query;
+
+  private Matcher<String> matcher;
+  private CompiledMatcher<String> compiled;
+
+  @Setup
+  public void setup() throws URISyntaxException {
+    matcher = new Matcher<String>();
+    for( String route : ROUTES ) {
+      matcher.add( Parser.parseTemplate( route ), route );
+    }
+    compiled = matcher.compile();
+  }
+
+  @Benchmark
+  public String parseAndMatch() throws URISyntaxException {
+    String pathWithQuery = path + ( query == null ? "" : "?" + query );
+    Matcher<String>.Match match = matcher.match( Parser.parseLiteral( pathWithQuery ) );
+    return match == null ? null : match.getValue();
+  }
+
+  @Benchmark
+  public String compiledMatch() {
+    return compiled.match( path );
+  }
+
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.benchmarks;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteProcessor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptorFactory;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteStreamFilterFactory;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
+import org.apache.hadoop.gateway.util.urltemplate.Resolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.activation.MimeType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the content filters by rewriting captured responses of the services with the filters that the
+ * stock service definitions apply to them:
+ * <ul>
+ *   <li>json - a ResourceManager application listing with the RESOURCEMANAGER apps filter</li>
+ *   <li>xml - an Oozie job configuration with the OOZIE configuration filter</li>
+ *   <li>html - the YARN UI application page, whose table is an embedded script, with the YARNUI cluster filter</li>
+ *   <li>javascript - NameNode UI script with the HDFSUI relative URL filter</li>
+ * </ul>
+ * Rewrite functions and steps of providers that aren't on the benchmark's classpath (e.g. $username or
+ * encrypt-query) leave their values as they are, so those values only cost their matching.
+ * Run with "-prof gc" to see the allocations per response.
+ */
+@BenchmarkMode( { Mode.Throughput, Mode.AverageTime } )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class RewriteFilterBenchmark {
+
+  private static final String[] RULES = {
+      "services/yarn-rm/2.5.0/rewrite.xml",
+      "services/oozie/4.0.0/rewrite.xml",
+      "services/yarnui/2.7.0/rewrite.xml",
+      "services/hdfsui/2.7.0/rewrite.xml" };
+
+  private static final Map<String,String[]> PAYLOADS = new HashMap<>();
+  static {
+    // Payload resource, content type and filter name.
+    PAYLOADS.put( "json", new String[]{
+        "payloads/yarn-rm-apps.json", "application/json", "RESOURCEMANAGER/resourcemanager/apps/outbound" } );
+    PAYLOADS.put( "xml", new String[]{
+        "payloads/oozie-configuration.xml", "application/xml", "OOZIE/oozie/configuration" } );
+    PAYLOADS.put( "html", new String[]{
+        "payloads/yarnui-apps.html", "text/html; charset=UTF-8", "YARNUI/yarn/outbound/filter/cluster" } );
+    PAYLOADS.put( "javascript", new String[]{
+        "payloads/hdfsui-dfshealth.js", "application/x-javascript", "HDFSUI/hdfs/outbound/namenode/relative" } );
+  }
+
+  @Param( { "json", "xml", "html", "javascript" } )
+  public String payload;
+
+  private UrlRewriteProcessor processor;
+  private Resolver resolver;
+  private byte[] content;
+  private MimeType type;
+  private UrlRewriteFilterContentDescriptor config;
+  private byte[] buffer = new byte[ 8 * 1024 ];
+
+  @Setup
+  public void setup() throws Exception {
+    UrlRewriteRulesDescriptor rules = UrlRewriteRulesDescriptorFactory.create();
+    for( String name : RULES ) {
+      URL resource = getClass().getClassLoader().getResource( name );
+      try( Reader reader = new InputStreamReader( resource.openStream(), StandardCharsets.UTF_8 ) ) {
+        rules.addRules( UrlRewriteRulesDescriptorFactory.load( "xml", reader ) );
+      }
+    }
+    final Map<String,List<String>> values = new HashMap<>();
+    values.put( "gateway.url", Collections.singletonList( "https://localhost:8443/gateway/sandbox" ) );
+    values.put( "gateway.scheme", Collections.singletonList( "https" ) );
+    values.put( "gateway.host", Collections.singletonList( "localhost" ) );
+    values.put( "gateway.port", Collections.singletonList( "8443" ) );
+    values.put( "gateway.path", Collections.singletonList( "/gateway/sandbox" ) );
+    resolver = new Resolver() {
+      @Override
+      public List<String> resolve( String name ) {
+        return values.get( name );
+      }
+    };
+    processor = new UrlRewriteProcessor();
+    processor.initialize( new UrlRewriteEnvironment() {
+      @Override
+      public URL getResource( String name ) {
+        return null;
+      }
+      @Override
+      public <T> T getAttribute( String name ) {
+        return null;
+      }
+      @Override
+      public List<String> resolve( String name ) {
+        return null;
+      }
+    }, rules );
+
+    String[] spec = PAYLOADS.get( payload );
+    try( InputStream input = getClass().getClassLoader().getResourceAsStream( spec[ 0 ] ) ) {
+      content = IOUtils.toByteArray( input );
+    }
+    type = new MimeType( spec[ 1 ] );
+    config = rules.getFilter( spec[ 2 ] ).getContent( type );
+  }
+
+  @TearDown
+  public void tearDown() {
+    processor.destroy();
+  }
+
+  @Benchmark
+  public long filter() throws IOException {
+    long count = 0;
+    try( InputStream input = UrlRewriteStreamFilterFactory.create(
+        type, null, new ByteArrayInputStream( content ), processor, resolver, UrlRewriter.Direction.OUT, config ) ) {
+      int n;
+      while( ( n = input.read( buffer ) ) >= 0 ) {
+        count += n;
+      }
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.benchmarks;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteProcessor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptorFactory;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
+import org.apache.hadoop.gateway.util.urltemplate.CompiledTemplate;
+import org.apache.hadoop.gateway.util.urltemplate.Expander;
+import org.apache.hadoop.gateway.util.urltemplate.Matcher;
+import org.apache.hadoop.gateway.util.urltemplate.Params;
+import org.apache.hadoop.gateway.util.urltemplate.Parser;
+import org.apache.hadoop.gateway.util.urltemplate.Resolver;
+import org.apache.hadoop.gateway.util.urltemplate.Template;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures URL rewriting with the rules of the stock service definitions, as deployed for a topology
+ * with those services but without the rewrite result cache.
+ * The rewrite benchmark runs the whole rule for a URL, from picking the rule to the rewritten template.
+ * The expand benchmarks compare expanding the rewrite template that most of these rules end with,
+ * once interpreted by the Expander and once precompiled as the rewrite steps now do.
+ * Run with "-prof gc" to see the allocations per rewrite.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class RewriteRuleBenchmark {
+
+  private static final String[] RULES = {
+      "services/webhdfs/2.4.0/rewrite.xml",
+      "services/yarn-rm/2.5.0/rewrite.xml",
+      "services/oozie/4.0.0/rewrite.xml",
+      "services/webhcat/0.13.0/rewrite.xml",
+      "services/hbase/0.98.0/rewrite.xml",
+      "services/hive/0.13.0/rewrite.xml" };
+
+  private static final String TEMPLATE = "{scheme}://{host}:{port}/{path=**}?{**}";
+
+  @Param( {
+      "https://localhost:8443/gateway/sandbox/webhdfs/v1/user/guest/example/file.txt?op=OPEN&user.name=guest",
+      "https://localhost:8443/gateway/sandbox/resourcemanager/v1/cluster/apps/application_1_0001?user.name=guest",
+      "https://localhost:8443/gateway/sandbox/oozie/v1/jobs?jobtype=wf" } )
+  public String url;
+
+  private UrlRewriteProcessor processor;
+  private Resolver resolver;
+  private Template input;
+  private Template template;
+  private CompiledTemplate compiled;
+  private Params params;
+
+  @Setup
+  public void setup() throws Exception {
+    UrlRewriteRulesDescriptor rules = UrlRewriteRulesDescriptorFactory.create();
+    for( String name : RULES ) {
+      URL resource = getClass().getClassLoader().getResource( name );
+      try( Reader reader = new InputStreamReader( resource.openStream(), StandardCharsets.UTF_8 ) ) {
+        rules.addRules( UrlRewriteRulesDescriptorFactory.load( "xml", reader ) );
+      }
+    }
+    final Map<String,List<String>> values = new HashMap<>();
+    values.put( "gateway.url", Collections.singletonList( "https://localhost:8443/gateway/sandbox" ) );
+    values.put( "gateway.scheme", Collections.singletonList( "https" ) );
+    values.put( "gateway.host", Collections.singletonList( "localhost" ) );
+    values.put( "gateway.port", Collections.singletonList( "8443" ) );
+    values.put( "gateway.path", Collections.singletonList( "/gateway/sandbox" ) );
+    resolver = new Resolver() {
+      @Override
+      public List<String> resolve( String name ) {
+        return values.get( name );
+      }
+    };
+    processor = new UrlRewriteProcessor();
+    processor.initialize( new UrlRewriteEnvironment() {
+      @Override
+      public URL getResource( String name ) {
+        return null;
+      }
+      @Override
+      public <T> T getAttribute( String name ) {
+        return null;
+      }
+      @Override
+      public List<String> resolve( String name ) {
+        return null;
+      }
+    }, rules );
+    input = Parser.parseLiteral( url );
+
+    template = Parser.parseTemplate( TEMPLATE );
+    compiled = Expander.compile( template );
+    Matcher<Void>.Match match = new Matcher<Void>( Parser.parseTemplate( "*://*:*/**/{path=**}?{**}" ), null ).match( input );
+    params = match.getParams();
+  }
+
+  @TearDown
+  public void tearDown() {
+    processor.destroy();
+  }
+
+  @Benchmark
+  public Template rewrite() {
+    return processor.rewrite( resolver, input, UrlRewriter.Direction.IN, null );
+  }
+
+  @Benchmark
+  public Template expandInterpreted() throws URISyntaxException {
+    return Expander.expandToTemplate( template, params, null );
+  }
+
+  @Benchmark
+  public Template expandCompiled() throws URISyntaxException {
+    return compiled.expandToTemplate( params, null );
+  }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.benchmarks;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRuleDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptorFactory;
+import org.apache.hadoop.gateway.util.urltemplate.Expander;
+import org.apache.hadoop.gateway.util.urltemplate.Matcher;
+import org.apache.hadoop.gateway.util.urltemplate.Params;
+import org.apache.hadoop.gateway.util.urltemplate.Parser;
+import org.apache.hadoop.gateway.util.urltemplate.Template;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the URL template library on its own: parsing a request URL, parsing a rule pattern,
+ * matching a URL against the patterns of all the rules of the stock service definitions and
+ * expanding a rewrite template with the parameters of the match.
+ * Run with "-prof gc" to see the allocations per operation.
+ */
+@BenchmarkMode( { Mode.Throughput, Mode.AverageTime } )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class UrlTemplateBenchmark {
+
+  private static final String[] RULES = {
+      "services/webhdfs/2.4.0/rewrite.xml",
+      "services/yarn-rm/2.5.0/rewrite.xml",
+      "services/yarnui/2.7.0/rewrite.xml",
+      "services/oozie/4.0.0/rewrite.xml",
+      "services/webhcat/0.13.0/rewrite.xml",
+      "services/hbase/0.98.0/rewrite.xml",
+      "services/hive/0.13.0/rewrite.xml" };
+
+  private static final String PATTERN = "*://*:*/**/webhdfs/v1/{path=**}?{**}";
+
+  private static final String TEMPLATE = "{scheme}://{host}:{port}/{path=**}?{**}";
+
+  @Param( {
+      "https://localhost:8443/gateway/sandbox/webhdfs/v1/user/guest/example/file.txt?op=OPEN&user.name=guest",
+      "https://localhost:8443/gateway/sandbox/resourcemanager/v1/cluster/apps/application_1_0001?user.name=guest",
+      "https://localhost:8443/gateway/sandbox/yarn/cluster/app/application_1_0001" } )
+  public String url;
+
+  private Matcher<String> matcher;
+  private Template input;
+  private Template template;
+  private Params params;
+
+  @Setup
+  public void setup() throws Exception {
+    UrlRewriteRulesDescriptor rules = UrlRewriteRulesDescriptorFactory.create();
+    for( String name : RULES ) {
+      URL resource = getClass().getClassLoader().getResource( name );
+      try( Reader reader = new InputStreamReader( resource.openStream(), StandardCharsets.UTF_8 ) ) {
+        rules.addRules( UrlRewriteRulesDescriptorFactory.load( "xml", reader ) );
+      }
+    }
+    matcher = new Matcher<>();
+    for( UrlRewriteRuleDescriptor rule : rules.getRules() ) {
+      if( rule.template() != null ) {
+        matcher.add( rule.template(), rule.name() );
+      }
+    }
+    input = Parser.parseLiteral( url );
+    template = Parser.parseTemplate( TEMPLATE );
+    params = new Matcher<Void>( Parser.parseTemplate( "*://*:*/**/{path=**}?{**}" ), null ).match( input ).getParams();
+  }
+
+  @Benchmark
+  public Template parseLiteral() throws URISyntaxException {
+    return Parser.parseLiteral( url );
+  }
+
+  @Benchmark
+  public Template parseTemplate() throws URISyntaxException {
+    return Parser.parseTemplate( PATTERN );
+  }
+
+  @Benchmark
+  public Matcher<String>.Match match() {
+    return matcher.match( input );
+  }
+
+  @Benchmark
+  public URI expand() throws URISyntaxException {
+    return Expander.expand( template, params, null );
+  }
+
+}
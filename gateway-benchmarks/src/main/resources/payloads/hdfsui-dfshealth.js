@@ -0,0 +1,639 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+(function () {
+  "use strict";
+
+  var data = {};
+
+  // Workarounds for the fact that JMXJsonServlet returns non-standard JSON strings
+  function workaround(nn) {
+    nn.DeadNodes = JSON.parse(nn.DeadNodes);
+    nn.LiveNodes = JSON.parse(nn.LiveNodes);
+    nn.DecomNodes = JSON.parse(nn.DecomNodes);
+    return nn;
+  }
+
+  function load_overview() {
+    var BEANS = [
+      {"name": "nn",      "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeInfo"},
+      {"name": "nnstat",  "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeStatus"},
+      {"name": "fs",      "url": "/jmx?qry=Hadoop:service=NameNode,name=FSNamesystemState"},
+      {"name": "mem",     "url": "/jmx?qry=java.lang:type=Memory"}
+    ];
+
+    var HELPERS = {
+      'helper_fs_max_objects': function (chunk, ctx, bodies, params) {
+        var o = ctx.current();
+        if (o.MaxObjects > 0) {
+          chunk.write('(' + Math.round((o.FilesTotal + o.BlockTotal) / o.MaxObjects * 100) * 100 + ')%');
+        }
+      },
+      'helper_dir_status': function (chunk, ctx, bodies, params) {
+        var j = ctx.current();
+        for (var i in j) {
+          chunk.write('<tr><td>' + i + '</td><td>' + j[i] + '</td><td>' + params.type + '</td></tr>');
+        }
+      }
+    };
+
+    var data = {};
+    $.ajax({'url': '/conf', 'dataType': 'xml', 'async': false}).done(
+      function(d) {
+        var $xml = $(d);
+        var namespace, nnId;
+        $xml.find('property').each(function(idx,v) {
+          if ($(v).find('name').text() === 'dfs.nameservice.id') {
+            namespace = $(v).find('value').text();
+          }
+        });
+      });
+
+    function load_startup_progress() {
+      $.get('/startupProgress', function (resp) {
+        var data = workaround(resp);
+        render_startup_progress(data);
+      }).error(ajax_error_handler);
+    }
+
+    function browse_directory(dir) {
+      var url = '/webhdfs/v1' + encode_path(dir) + '?op=LISTSTATUS';
+      $.get(url, function(data) {
+        var d = get_response(data, "FileStatuses");
+        render_directory(d);
+      }).error(network_error_handler(url));
+    }
+  }
+  "use strict";
+
+  var data = {};
+
+  // Workarounds for the fact that JMXJsonServlet returns non-standard JSON strings
+  function workaround(nn) {
+    nn.DeadNodes = JSON.parse(nn.DeadNodes);
+    nn.LiveNodes = JSON.parse(nn.LiveNodes);
+    nn.DecomNodes = JSON.parse(nn.DecomNodes);
+    return nn;
+  }
+
+  function load_overview() {
+    var BEANS = [
+      {"name": "nn",      "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeInfo"},
+      {"name": "nnstat",  "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeStatus"},
+      {"name": "fs",      "url": "/jmx?qry=Hadoop:service=NameNode,name=FSNamesystemState"},
+      {"name": "mem",     "url": "/jmx?qry=java.lang:type=Memory"}
+    ];
+
+    var HELPERS = {
+      'helper_fs_max_objects': function (chunk, ctx, bodies, params) {
+        var o = ctx.current();
+        if (o.MaxObjects > 0) {
+          chunk.write('(' + Math.round((o.FilesTotal + o.BlockTotal) / o.MaxObjects * 100) * 100 + ')%');
+        }
+      },
+      'helper_dir_status': function (chunk, ctx, bodies, params) {
+        var j = ctx.current();
+        for (var i in j) {
+          chunk.write('<tr><td>' + i + '</td><td>' + j[i] + '</td><td>' + params.type + '</td></tr>');
+        }
+      }
+    };
+
+    var data = {};
+    $.ajax({'url': '/conf', 'dataType': 'xml', 'async': false}).done(
+      function(d) {
+        var $xml = $(d);
+        var namespace, nnId;
+        $xml.find('property').each(function(idx,v) {
+          if ($(v).find('name').text() === 'dfs.nameservice.id') {
+            namespace = $(v).find('value').text();
+          }
+        });
+      });
+
+    function load_startup_progress() {
+      $.get('/startupProgress', function (resp) {
+        var data = workaround(resp);
+        render_startup_progress(data);
+      }).error(ajax_error_handler);
+    }
+
+    function browse_directory(dir) {
+      var url = '/webhdfs/v1' + encode_path(dir) + '?op=LISTSTATUS';
+      $.get(url, function(data) {
+        var d = get_response(data, "FileStatuses");
+        render_directory(d);
+      }).error(network_error_handler(url));
+    }
+  }
+  "use strict";
+
+  var data = {};
+
+  // Workarounds for the fact that JMXJsonServlet returns non-standard JSON strings
+  function workaround(nn) {
+    nn.DeadNodes = JSON.parse(nn.DeadNodes);
+    nn.LiveNodes = JSON.parse(nn.LiveNodes);
+    nn.DecomNodes = JSON.parse(nn.DecomNodes);
+    return nn;
+  }
+
+  function load_overview() {
+    var BEANS = [
+      {"name": "nn",      "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeInfo"},
+      {"name": "nnstat",  "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeStatus"},
+      {"name": "fs",      "url": "/jmx?qry=Hadoop:service=NameNode,name=FSNamesystemState"},
+      {"name": "mem",     "url": "/jmx?qry=java.lang:type=Memory"}
+    ];
+
+    var HELPERS = {
+      'helper_fs_max_objects': function (chunk, ctx, bodies, params) {
+        var o = ctx.current();
+        if (o.MaxObjects > 0) {
+          chunk.write('(' + Math.round((o.FilesTotal + o.BlockTotal) / o.MaxObjects * 100) * 100 + ')%');
+        }
+      },
+      'helper_dir_status': function (chunk, ctx, bodies, params) {
+        var j = ctx.current();
+        for (var i in j) {
+          chunk.write('<tr><td>' + i + '</td><td>' + j[i] + '</td><td>' + params.type + '</td></tr>');
+        }
+      }
+    };
+
+    var data = {};
+    $.ajax({'url': '/conf', 'dataType': 'xml', 'async': false}).done(
+      function(d) {
+        var $xml = $(d);
+        var namespace, nnId;
+        $xml.find('property').each(function(idx,v) {
+          if ($(v).find('name').text() === 'dfs.nameservice.id') {
+            namespace = $(v).find('value').text();
+          }
+        });
+      });
+
+    function load_startup_progress() {
+      $.get('/startupProgress', function (resp) {
+        var data = workaround(resp);
+        render_startup_progress(data);
+      }).error(ajax_error_handler);
+    }
+
+    function browse_directory(dir) {
+      var url = '/webhdfs/v1' + encode_path(dir) + '?op=LISTSTATUS';
+      $.get(url, function(data) {
+        var d = get_response(data, "FileStatuses");
+        render_directory(d);
+      }).error(network_error_handler(url));
+    }
+  }
+  "use strict";
+
+  var data = {};
+
+  // Workarounds for the fact that JMXJsonServlet returns non-standard JSON strings
+  function workaround(nn) {
+    nn.DeadNodes = JSON.parse(nn.DeadNodes);
+    nn.LiveNodes = JSON.parse(nn.LiveNodes);
+    nn.DecomNodes = JSON.parse(nn.DecomNodes);
+    return nn;
+  }
+
+  function load_overview() {
+    var BEANS = [
+      {"name": "nn",      "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeInfo"},
+      {"name": "nnstat",  "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeStatus"},
+      {"name": "fs",      "url": "/jmx?qry=Hadoop:service=NameNode,name=FSNamesystemState"},
+      {"name": "mem",     "url": "/jmx?qry=java.lang:type=Memory"}
+    ];
+
+    var HELPERS = {
+      'helper_fs_max_objects': function (chunk, ctx, bodies, params) {
+        var o = ctx.current();
+        if (o.MaxObjects > 0) {
+          chunk.write('(' + Math.round((o.FilesTotal + o.BlockTotal) / o.MaxObjects * 100) * 100 + ')%');
+        }
+      },
+      'helper_dir_status': function (chunk, ctx, bodies, params) {
+        var j = ctx.current();
+        for (var i in j) {
+          chunk.write('<tr><td>' + i + '</td><td>' + j[i] + '</td><td>' + params.type + '</td></tr>');
+        }
+      }
+    };
+
+    var data = {};
+    $.ajax({'url': '/conf', 'dataType': 'xml', 'async': false}).done(
+      function(d) {
+        var $xml = $(d);
+        var namespace, nnId;
+        $xml.find('property').each(function(idx,v) {
+          if ($(v).find('name').text() === 'dfs.nameservice.id') {
+            namespace = $(v).find('value').text();
+          }
+        });
+      });
+
+    function load_startup_progress() {
+      $.get('/startupProgress', function (resp) {
+        var data = workaround(resp);
+        render_startup_progress(data);
+      }).error(ajax_error_handler);
+    }
+
+    function browse_directory(dir) {
+      var url = '/webhdfs/v1' + encode_path(dir) + '?op=LISTSTATUS';
+      $.get(url, function(data) {
+        var d = get_response(data, "FileStatuses");
+        render_directory(d);
+      }).error(network_error_handler(url));
+    }
+  }
+  "use strict";
+
+  var data = {};
+
+  // Workarounds for the fact that JMXJsonServlet returns non-standard JSON strings
+  function workaround(nn) {
+    nn.DeadNodes = JSON.parse(nn.DeadNodes);
+    nn.LiveNodes = JSON.parse(nn.LiveNodes);
+    nn.DecomNodes = JSON.parse(nn.DecomNodes);
+    return nn;
+  }
+
+  function load_overview() {
+    var BEANS = [
+      {"name": "nn",      "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeInfo"},
+      {"name": "nnstat",  "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeStatus"},
+      {"name": "fs",      "url": "/jmx?qry=Hadoop:service=NameNode,name=FSNamesystemState"},
+      {"name": "mem",     "url": "/jmx?qry=java.lang:type=Memory"}
+    ];
+
+    var HELPERS = {
+      'helper_fs_max_objects': function (chunk, ctx, bodies, params) {
+        var o = ctx.current();
+        if (o.MaxObjects > 0) {
+          chunk.write('(' + Math.round((o.FilesTotal + o.BlockTotal) / o.MaxObjects * 100) * 100 + ')%');
+        }
+      },
+      'helper_dir_status': function (chunk, ctx, bodies, params) {
+        var j = ctx.current();
+        for (var i in j) {
+          chunk.write('<tr><td>' + i + '</td><td>' + j[i] + '</td><td>' + params.type + '</td></tr>');
+        }
+      }
+    };
+
+    var data = {};
+    $.ajax({'url': '/conf', 'dataType': 'xml', 'async': false}).done(
+      function(d) {
+        var $xml = $(d);
+        var namespace, nnId;
+        $xml.find('property').each(function(idx,v) {
+          if ($(v).find('name').text() === 'dfs.nameservice.id') {
+            namespace = $(v).find('value').text();
+          }
+        });
+      });
+
+    function load_startup_progress() {
+      $.get('/startupProgress', function (resp) {
+        var data = workaround(resp);
+        render_startup_progress(data);
+      }).error(ajax_error_handler);
+    }
+
+    function browse_directory(dir) {
+      var url = '/webhdfs/v1' + encode_path(dir) + '?op=LISTSTATUS';
+      $.get(url, function(data) {
+        var d = get_response(data, "FileStatuses");
+        render_directory(d);
+      }).error(network_error_handler(url));
+    }
+  }
+  "use strict";
+
+  var data = {};
+
+  // Workarounds for the fact that JMXJsonServlet returns non-standard JSON strings
+  function workaround(nn) {
+    nn.DeadNodes = JSON.parse(nn.DeadNodes);
+    nn.LiveNodes = JSON.parse(nn.LiveNodes);
+    nn.DecomNodes = JSON.parse(nn.DecomNodes);
+    return nn;
+  }
+
+  function load_overview() {
+    var BEANS = [
+      {"name": "nn",      "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeInfo"},
+      {"name": "nnstat",  "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeStatus"},
+      {"name": "fs",      "url": "/jmx?qry=Hadoop:service=NameNode,name=FSNamesystemState"},
+      {"name": "mem",     "url": "/jmx?qry=java.lang:type=Memory"}
+    ];
+
+    var HELPERS = {
+      'helper_fs_max_objects': function (chunk, ctx, bodies, params) {
+        var o = ctx.current();
+        if (o.MaxObjects > 0) {
+          chunk.write('(' + Math.round((o.FilesTotal + o.BlockTotal) / o.MaxObjects * 100) * 100 + ')%');
+        }
+      },
+      'helper_dir_status': function (chunk, ctx, bodies, params) {
+        var j = ctx.current();
+        for (var i in j) {
+          chunk.write('<tr><td>' + i + '</td><td>' + j[i] + '</td><td>' + params.type + '</td></tr>');
+        }
+      }
+    };
+
+    var data = {};
+    $.ajax({'url': '/conf', 'dataType': 'xml', 'async': false}).done(
+      function(d) {
+        var $xml = $(d);
+        var namespace, nnId;
+        $xml.find('property').each(function(idx,v) {
+          if ($(v).find('name').text() === 'dfs.nameservice.id') {
+            namespace = $(v).find('value').text();
+          }
+        });
+      });
+
+    function load_startup_progress() {
+      $.get('/startupProgress', function (resp) {
+        var data = workaround(resp);
+        render_startup_progress(data);
+      }).error(ajax_error_handler);
+    }
+
+    function browse_directory(dir) {
+      var url = '/webhdfs/v1' + encode_path(dir) + '?op=LISTSTATUS';
+      $.get(url, function(data) {
+        var d = get_response(data, "FileStatuses");
+        render_directory(d);
+      }).error(network_error_handler(url));
+    }
+  }
+  "use strict";
+
+  var data = {};
+
+  // Workarounds for the fact that JMXJsonServlet returns non-standard JSON strings
+  function workaround(nn) {
+    nn.DeadNodes = JSON.parse(nn.DeadNodes);
+    nn.LiveNodes = JSON.parse(nn.LiveNodes);
+    nn.DecomNodes = JSON.parse(nn.DecomNodes);
+    return nn;
+  }
+
+  function load_overview() {
+    var BEANS = [
+      {"name": "nn",      "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeInfo"},
+      {"name": "nnstat",  "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeStatus"},
+      {"name": "fs",      "url": "/jmx?qry=Hadoop:service=NameNode,name=FSNamesystemState"},
+      {"name": "mem",     "url": "/jmx?qry=java.lang:type=Memory"}
+    ];
+
+    var HELPERS = {
+      'helper_fs_max_objects': function (chunk, ctx, bodies, params) {
+        var o = ctx.current();
+        if (o.MaxObjects > 0) {
+          chunk.write('(' + Math.round((o.FilesTotal + o.BlockTotal) / o.MaxObjects * 100) * 100 + ')%');
+        }
+      },
+      'helper_dir_status': function (chunk, ctx, bodies, params) {
+        var j = ctx.current();
+        for (var i in j) {
+          chunk.write('<tr><td>' + i + '</td><td>' + j[i] + '</td><td>' + params.type + '</td></tr>');
+        }
+      }
+    };
+
+    var data = {};
+    $.ajax({'url': '/conf', 'dataType': 'xml', 'async': false}).done(
+      function(d) {
+        var $xml = $(d);
+        var namespace, nnId;
+        $xml.find('property').each(function(idx,v) {
+          if ($(v).find('name').text() === 'dfs.nameservice.id') {
+            namespace = $(v).find('value').text();
+          }
+        });
+      });
+
+    function load_startup_progress() {
+      $.get('/startupProgress', function (resp) {
+        var data = workaround(resp);
+        render_startup_progress(data);
+      }).error(ajax_error_handler);
+    }
+
+    function browse_directory(dir) {
+      var url = '/webhdfs/v1' + encode_path(dir) + '?op=LISTSTATUS';
+      $.get(url, function(data) {
+        var d = get_response(data, "FileStatuses");
+        render_directory(d);
+      }).error(network_error_handler(url));
+    }
+  }
+  "use strict";
+
+  var data = {};
+
+  // Workarounds for the fact that JMXJsonServlet returns non-standard JSON strings
+  function workaround(nn) {
+    nn.DeadNodes = JSON.parse(nn.DeadNodes);
+    nn.LiveNodes = JSON.parse(nn.LiveNodes);
+    nn.DecomNodes = JSON.parse(nn.DecomNodes);
+    return nn;
+  }
+
+  function load_overview() {
+    var BEANS = [
+      {"name": "nn",      "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeInfo"},
+      {"name": "nnstat",  "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeStatus"},
+      {"name": "fs",      "url": "/jmx?qry=Hadoop:service=NameNode,name=FSNamesystemState"},
+      {"name": "mem",     "url": "/jmx?qry=java.lang:type=Memory"}
+    ];
+
+    var HELPERS = {
+      'helper_fs_max_objects': function (chunk, ctx, bodies, params) {
+        var o = ctx.current();
+        if (o.MaxObjects > 0) {
+          chunk.write('(' + Math.round((o.FilesTotal + o.BlockTotal) / o.MaxObjects * 100) * 100 + ')%');
+        }
+      },
+      'helper_dir_status': function (chunk, ctx, bodies, params) {
+        var j = ctx.current();
+        for (var i in j) {
+          chunk.write('<tr><td>' + i + '</td><td>' + j[i] + '</td><td>' + params.type + '</td></tr>');
+        }
+      }
+    };
+
+    var data = {};
+    $.ajax({'url': '/conf', 'dataType': 'xml', 'async': false}).done(
+      function(d) {
+        var $xml = $(d);
+        var namespace, nnId;
+        $xml.find('property').each(function(idx,v) {
+          if ($(v).find('name').text() === 'dfs.nameservice.id') {
+            namespace = $(v).find('value').text();
+          }
+        });
+      });
+
+    function load_startup_progress() {
+      $.get('/startupProgress', function (resp) {
+        var data = workaround(resp);
+        render_startup_progress(data);
+      }).error(ajax_error_handler);
+    }
+
+    function browse_directory(dir) {
+      var url = '/webhdfs/v1' + encode_path(dir) + '?op=LISTSTATUS';
+      $.get(url, function(data) {
+        var d = get_response(data, "FileStatuses");
+        render_directory(d);
+      }).error(network_error_handler(url));
+    }
+  }
+  "use strict";
+
+  var data = {};
+
+  // Workarounds for the fact that JMXJsonServlet returns non-standard JSON strings
+  function workaround(nn) {
+    nn.DeadNodes = JSON.parse(nn.DeadNodes);
+    nn.LiveNodes = JSON.parse(nn.LiveNodes);
+    nn.DecomNodes = JSON.parse(nn.DecomNodes);
+    return nn;
+  }
+
+  function load_overview() {
+    var BEANS = [
+      {"name": "nn",      "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeInfo"},
+      {"name": "nnstat",  "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeStatus"},
+      {"name": "fs",      "url": "/jmx?qry=Hadoop:service=NameNode,name=FSNamesystemState"},
+      {"name": "mem",     "url": "/jmx?qry=java.lang:type=Memory"}
+    ];
+
+    var HELPERS = {
+      'helper_fs_max_objects': function (chunk, ctx, bodies, params) {
+        var o = ctx.current();
+        if (o.MaxObjects > 0) {
+          chunk.write('(' + Math.round((o.FilesTotal + o.BlockTotal) / o.MaxObjects * 100) * 100 + ')%');
+        }
+      },
+      'helper_dir_status': function (chunk, ctx, bodies, params) {
+        var j = ctx.current();
+        for (var i in j) {
+          chunk.write('<tr><td>' + i + '</td><td>' + j[i] + '</td><td>' + params.type + '</td></tr>');
+        }
+      }
+    };
+
+    var data = {};
+    $.ajax({'url': '/conf', 'dataType': 'xml', 'async': false}).done(
+      function(d) {
+        var $xml = $(d);
+        var namespace, nnId;
+        $xml.find('property').each(function(idx,v) {
+          if ($(v).find('name').text() === 'dfs.nameservice.id') {
+            namespace = $(v).find('value').text();
+          }
+        });
+      });
+
+    function load_startup_progress() {
+      $.get('/startupProgress', function (resp) {
+        var data = workaround(resp);
+        render_startup_progress(data);
+      }).error(ajax_error_handler);
+    }
+
+    function browse_directory(dir) {
+      var url = '/webhdfs/v1' + encode_path(dir) + '?op=LISTSTATUS';
+      $.get(url, function(data) {
+        var d = get_response(data, "FileStatuses");
+        render_directory(d);
+      }).error(network_error_handler(url));
+    }
+  }
+  "use strict";
+
+  var data = {};
+
+  // Workarounds for the fact that JMXJsonServlet returns non-standard JSON strings
+  function workaround(nn) {
+    nn.DeadNodes = JSON.parse(nn.DeadNodes);
+    nn.LiveNodes = JSON.parse(nn.LiveNodes);
+    nn.DecomNodes = JSON.parse(nn.DecomNodes);
+    return nn;
+  }
+
+  function load_overview() {
+    var BEANS = [
+      {"name": "nn",      "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeInfo"},
+      {"name": "nnstat",  "url": "/jmx?qry=Hadoop:service=NameNode,name=NameNodeStatus"},
+      {"name": "fs",      "url": "/jmx?qry=Hadoop:service=NameNode,name=FSNamesystemState"},
+      {"name": "mem",     "url": "/jmx?qry=java.lang:type=Memory"}
+    ];
+
+    var HELPERS = {
+      'helper_fs_max_objects': function (chunk, ctx, bodies, params) {
+        var o = ctx.current();
+        if (o.MaxObjects > 0) {
+          chunk.write('(' + Math.round((o.FilesTotal + o.BlockTotal) / o.MaxObjects * 100) * 100 + ')%');
+        }
+      },
+      'helper_dir_status': function (chunk, ctx, bodies, params) {
+        var j = ctx.current();
+        for (var i in j) {
+          chunk.write('<tr><td>' + i + '</td><td>' + j[i] + '</td><td>' + params.type + '</td></tr>');
+        }
+      }
+    };
+
+    var data = {};
+    $.ajax({'url': '/conf', 'dataType': 'xml', 'async': false}).done(
+      function(d) {
+        var $xml = $(d);
+        var namespace, nnId;
+        $xml.find('property').each(function(idx,v) {
+          if ($(v).find('name').text() === 'dfs.nameservice.id') {
+            namespace = $(v).find('value').text();
+          }
+        });
+      });
+
+    function load_startup_progress() {
+      $.get('/startupProgress', function (resp) {
+        var data = workaround(resp);
+        render_startup_progress(data);
+      }).error(ajax_error_handler);
+    }
+
+    function browse_directory(dir) {
+      var url = '/webhdfs/v1' + encode_path(dir) + '?op=LISTSTATUS';
+      $.get(url, function(data) {
+        var d = get_response(data, "FileStatuses");
+        render_directory(d);
+      }).error(network_error_handler(url));
+    }
+  }
+})();
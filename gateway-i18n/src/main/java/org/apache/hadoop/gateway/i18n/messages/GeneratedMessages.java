@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.i18n.messages;
+
+import org.apache.hadoop.gateway.i18n.resources.CompiledPattern;
+
+/**
+ * The base class of the {@link Messages} implementations generated at build time.
+ * Generated classes check the level, compile their patterns and look up their codes once,
+ * so only enabled messages are formatted and no reflection is involved in logging them.
+ */
+public abstract class GeneratedMessages {
+
+  private final MessagesInvoker invoker;
+  private final MessageLogger logger;
+
+  protected GeneratedMessages( Class<?> clazz, MessageLoggerFactory loggers ) {
+    invoker = new MessagesInvoker( clazz, loggers );
+    logger = invoker.getLogger();
+  }
+
+  protected final boolean isLoggable( MessageLevel level ) {
+    return logger.isLoggable( level );
+  }
+
+  protected final String getCode( int num ) {
+    return invoker.getCode( num );
+  }
+
+  /**
+   * Picks the first argument annotated with {@link StackTrace} that is a throwable and whose level is enabled.
+   */
+  protected final Throwable getStackTrace( Throwable found, MessageLevel level, Object arg ) {
+    if( found == null && arg instanceof Throwable && logger.isLoggable( level ) ) {
+      found = (Throwable)arg;
+    }
+    return found;
+  }
+
+  /**
+   * Must be called directly from the generated method so that the caller can be found at a fixed depth.
+   */
+  protected final String log( MessageLevel level, String code, String key, CompiledPattern pattern, Object[] args, Throwable throwable ) {
+    String message = invoker.getText( key, pattern, args );
+    StackTraceElement caller = null;
+    if( logger.isLoggable( MessageLevel.DEBUG ) ) {
+      caller = new Throwable().getStackTrace()[2];
+    }
+    logger.log( caller, level, code, message, throwable );
+    return message;
+  }
+
+}
@@ -20,6 +20,7 @@ package org.apache.hadoop.gateway.i18n.messages;
 import org.apache.hadoop.gateway.i18n.messages.loggers.jdk.JdkMessageLoggerFactory;
 import org.apache.hadoop.gateway.i18n.messages.loggers.sout.SoutMessageLoggerFactory;
 import org.apache.hadoop.gateway.i18n.messages.loggers.sout.SoutMessageLoggerFactory;
+import org.apache.hadoop.gateway.i18n.resources.GeneratedResources;
 
 import java.lang.reflect.Proxy;
 import java.util.Iterator;
@@ -43,13 +44,28 @@ public class MessagesFactory {
       if( anno == null ) {
         throw new IllegalArgumentException( clazz.getName() + " missing @" + Messages.class.getCanonicalName() );
       }
-      MessagesInvoker invoker = new MessagesInvoker( clazz, loggers );
-      proxy = Proxy.newProxyInstance( clazz.getClassLoader(), new Class[]{ clazz }, invoker );
+      proxy = createGenerated( clazz );
+      if( proxy == null ) {
+        MessagesInvoker invoker = new MessagesInvoker( clazz, loggers );
+        proxy = Proxy.newProxyInstance( clazz.getClassLoader(), new Class[]{ clazz }, invoker );
+      }
       proxies.put( clazz, proxy );
     }
     return (T)proxy;
   }
 
+  private static Object createGenerated( Class<?> clazz ) {
+    Class<?> impl = GeneratedResources.findImplementation( clazz );
+    if( impl != null ) {
+      try {
+        return impl.getConstructor( MessageLoggerFactory.class ).newInstance( loggers );
+      } catch( ReflectiveOperationException e ) {
+        // Fall back to the proxy.
+      }
+    }
+    return null;
+  }
+
   private static MessageLoggerFactory getMessageLoggerFactory() {
     MessageLoggerFactory factory;
     ServiceLoader<MessageLoggerFactory> loader = ServiceLoader.load( MessageLoggerFactory.class );
@@ -53,9 +53,11 @@ public class MessagesInvoker extends ResourcesInvoker implements InvocationHandl
       // From looking at the JRE code it looks this is probably the case.
       // The second version ends up calling the first version after getting the current thread
       // and then checking that it is being called from the current thread.
-      //TODO: Should probably only do this if the logger is at debug or finer to make sure there isn't a performance impact during production usage.
-      StackTraceElement caller = new Throwable().getStackTrace()[2];
-      // StackTraceElement caller = Thread.currentThread().getStackTrace()[3];
+      // The caller is only worth the cost of the stack trace when debugging.
+      StackTraceElement caller = null;
+      if( logger.isLoggable( MessageLevel.DEBUG ) ) {
+        caller = new Throwable().getStackTrace()[2];
+      }
       logger.log( caller, level, code, message, throwable );
     }
     return message;
@@ -65,14 +67,23 @@ public class MessagesInvoker extends ResourcesInvoker implements InvocationHandl
     String code = null;
     Message anno = method.getAnnotation( Message.class );
     if( anno != null ) {
-      int num = anno.code();
-      if( Message.DEFAULT_CODE != num ) {
-        code = MessageFormat.format( codes, num );
-      }
+      code = getCode( anno.code() );
+    }
+    return code;
+  }
+
+  final String getCode( final int num ) {
+    String code = null;
+    if( Message.DEFAULT_CODE != num ) {
+      code = MessageFormat.format( codes, num );
     }
     return code;
   }
 
+  final MessageLogger getLogger() {
+    return logger;
+  }
+
   private static final StackTrace getStackTraceAnno( final Method method, final int param ) {
     final Annotation[] annos = method.getParameterAnnotations()[ param ];
     for( Annotation anno: annos ) {
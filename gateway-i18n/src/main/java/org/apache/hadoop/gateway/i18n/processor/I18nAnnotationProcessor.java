@@ -0,0 +1,333 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.i18n.processor;
+
+import org.apache.hadoop.gateway.i18n.messages.GeneratedMessages;
+import org.apache.hadoop.gateway.i18n.messages.Message;
+import org.apache.hadoop.gateway.i18n.messages.MessageLevel;
+import org.apache.hadoop.gateway.i18n.messages.MessageLoggerFactory;
+import org.apache.hadoop.gateway.i18n.messages.Messages;
+import org.apache.hadoop.gateway.i18n.messages.StackTrace;
+import org.apache.hadoop.gateway.i18n.resources.CompiledPattern;
+import org.apache.hadoop.gateway.i18n.resources.GeneratedResources;
+import org.apache.hadoop.gateway.i18n.resources.Resource;
+import org.apache.hadoop.gateway.i18n.resources.Resources;
+import org.apache.hadoop.gateway.i18n.resources.ResourcesInvoker;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates an implementation class for every {@link Messages} and {@link Resources} interface at build time.
+ * MessagesFactory and ResourcesFactory use the generated class when it exists and only fall back to a
+ * reflective proxy when it does not, for example for interfaces with methods this processor does not support.
+ * <p/>
+ * The processor is registered as a service of the gateway-i18n jar so it runs in every module that uses the
+ * annotations without further configuration.
+ */
+@SupportedAnnotationTypes( {
+    "org.apache.hadoop.gateway.i18n.messages.Messages",
+    "org.apache.hadoop.gateway.i18n.resources.Resources" } )
+public class I18nAnnotationProcessor extends AbstractProcessor {
+
+  private static final String STRING = String.class.getName();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment round ) {
+    for( Element element : round.getElementsAnnotatedWith( Messages.class ) ) {
+      generate( element, true );
+    }
+    for( Element element : round.getElementsAnnotatedWith( Resources.class ) ) {
+      if( element.getAnnotation( Messages.class ) == null ) {
+        generate( element, false );
+      }
+    }
+    return false;
+  }
+
+  private void generate( Element element, boolean messages ) {
+    if( element.getKind() != ElementKind.INTERFACE ) {
+      return;
+    }
+    TypeElement type = (TypeElement)element;
+    List<ExecutableElement> methods = getMethods( type, messages );
+    if( methods == null ) {
+      processingEnv.getMessager().printMessage( Diagnostic.Kind.NOTE,
+          "Not generating an implementation, the proxy will be used instead.", type );
+      return;
+    }
+    String implName = GeneratedResources.getImplementationName(
+        processingEnv.getElementUtils().getBinaryName( type ).toString() );
+    try {
+      JavaFileObject file = processingEnv.getFiler().createSourceFile( implName, type );
+      Writer writer = file.openWriter();
+      try {
+        PrintWriter out = new PrintWriter( writer );
+        if( messages ) {
+          writeMessages( out, type, implName, methods );
+        } else {
+          writeResources( out, type, implName, methods );
+        }
+        out.flush();
+      } finally {
+        writer.close();
+      }
+    } catch( IOException e ) {
+      processingEnv.getMessager().printMessage( Diagnostic.Kind.WARNING,
+          "Failed to generate " + implName + ": " + e, type );
+    }
+  }
+
+  /**
+   * @return The methods to implement, or null if the interface can't be implemented by a generated class.
+   */
+  private List<ExecutableElement> getMethods( TypeElement type, boolean messages ) {
+    if( !type.getTypeParameters().isEmpty() ) {
+      return null;
+    }
+    for( Element e = type; e != null && e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement() ) {
+      if( e.getModifiers().contains( Modifier.PRIVATE ) ) {
+        return null;
+      }
+    }
+    List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+    for( ExecutableElement method : ElementFilter.methodsIn( processingEnv.getElementUtils().getAllMembers( type ) ) ) {
+      Set<Modifier> modifiers = method.getModifiers();
+      if( modifiers.contains( Modifier.DEFAULT ) ) {
+        return null;
+      }
+      if( !modifiers.contains( Modifier.ABSTRACT ) ) {
+        continue;
+      }
+      if( !method.getTypeParameters().isEmpty() ) {
+        return null;
+      }
+      TypeMirror returnType = method.getReturnType();
+      boolean string = STRING.equals( returnType.toString() );
+      boolean supported = messages ? ( string || returnType.getKind() == TypeKind.VOID ) : string;
+      if( !supported ) {
+        return null;
+      }
+      methods.add( method );
+    }
+    return methods;
+  }
+
+  private void writeMessages( PrintWriter out, TypeElement type, String implName, List<ExecutableElement> methods ) {
+    String simpleName = writeHeader( out, type, implName, GeneratedMessages.class );
+    writePatterns( out, methods, true );
+    for( int i = 0; i < methods.size(); i++ ) {
+      if( getCode( methods.get( i ) ) != Message.DEFAULT_CODE ) {
+        out.println( "  private final java.lang.String code" + i + ";" );
+      }
+    }
+    out.println();
+    out.println( "  public " + simpleName + "( " + MessageLoggerFactory.class.getName() + " loggers ) {" );
+    out.println( "    super( " + type.getQualifiedName() + ".class, loggers );" );
+    for( int i = 0; i < methods.size(); i++ ) {
+      int code = getCode( methods.get( i ) );
+      if( code != Message.DEFAULT_CODE ) {
+        out.println( "    code" + i + " = getCode( " + code + " );" );
+      }
+    }
+    out.println( "  }" );
+    for( int i = 0; i < methods.size(); i++ ) {
+      ExecutableElement method = methods.get( i );
+      Message anno = method.getAnnotation( Message.class );
+      String level = level( anno == null ? MessageLevel.INFO : anno.level() );
+      String code = ( getCode( method ) == Message.DEFAULT_CODE ) ? "null" : "code" + i;
+      boolean returns = method.getReturnType().getKind() != TypeKind.VOID;
+      writeSignature( out, method );
+      if( returns ) {
+        out.println( "    java.lang.String message = null;" );
+      }
+      out.println( "    if( isLoggable( " + level + " ) ) {" );
+      String throwable = "null";
+      List<? extends VariableElement> params = method.getParameters();
+      for( int p = 0; p < params.size(); p++ ) {
+        StackTrace stackTrace = params.get( p ).getAnnotation( StackTrace.class );
+        if( stackTrace != null ) {
+          if( "null".equals( throwable ) ) {
+            throwable = "throwable";
+            out.println( "      java.lang.Throwable throwable = null;" );
+          }
+          out.println( "      throwable = getStackTrace( throwable, " + level( stackTrace.level() ) + ", p" + p + " );" );
+        }
+      }
+      out.println( "      " + ( returns ? "message = " : "" ) + "log( " + level + ", " + code + ", " + literal( method.getSimpleName().toString() ) +
+          ", PATTERN" + i + ", " + arguments( method ) + ", " + throwable + " );" );
+      out.println( "    }" );
+      if( returns ) {
+        out.println( "    return message;" );
+      }
+      out.println( "  }" );
+    }
+    out.println();
+    out.println( "}" );
+  }
+
+  private void writeResources( PrintWriter out, TypeElement type, String implName, List<ExecutableElement> methods ) {
+    String simpleName = writeHeader( out, type, implName, GeneratedResources.class );
+    writePatterns( out, methods, false );
+    out.println();
+    out.println( "  public " + simpleName + "() {" );
+    out.println( "    super( " + type.getQualifiedName() + ".class );" );
+    out.println( "  }" );
+    for( int i = 0; i < methods.size(); i++ ) {
+      ExecutableElement method = methods.get( i );
+      writeSignature( out, method );
+      out.println( "    return format( " + literal( method.getSimpleName().toString() ) + ", PATTERN" + i + ", " + arguments( method ) + " );" );
+      out.println( "  }" );
+    }
+    out.println();
+    out.println( "}" );
+  }
+
+  private String writeHeader( PrintWriter out, TypeElement type, String implName, Class<?> base ) {
+    PackageElement pkg = processingEnv.getElementUtils().getPackageOf( type );
+    String simpleName = implName.substring( implName.lastIndexOf( '.' ) + 1 );
+    if( !pkg.isUnnamed() ) {
+      out.println( "package " + pkg.getQualifiedName() + ";" );
+      out.println();
+    }
+    out.println( "/**" );
+    out.println( " * Generated by " + getClass().getName() + " from " + type.getQualifiedName() + ", do not edit." );
+    out.println( " */" );
+    out.println( "public final class " + simpleName + " extends " + base.getName() + " implements " + type.getQualifiedName() + " {" );
+    out.println();
+    return simpleName;
+  }
+
+  private void writePatterns( PrintWriter out, List<ExecutableElement> methods, boolean messages ) {
+    for( int i = 0; i < methods.size(); i++ ) {
+      out.println( "  private static final " + CompiledPattern.class.getName() + " PATTERN" + i + " = " +
+          CompiledPattern.class.getName() + ".compile( " + literal( getPattern( methods.get( i ), messages ) ) + " );" );
+    }
+  }
+
+  private void writeSignature( PrintWriter out, ExecutableElement method ) {
+    out.println();
+    out.println( "  @Override" );
+    StringBuilder signature = new StringBuilder();
+    signature.append( "  public " ).append( method.getReturnType().getKind() == TypeKind.VOID ? "void" : STRING );
+    signature.append( ' ' ).append( method.getSimpleName() ).append( "(" );
+    List<? extends VariableElement> params = method.getParameters();
+    for( int p = 0; p < params.size(); p++ ) {
+      signature.append( p == 0 ? " " : ", " ).append( "final " );
+      TypeMirror paramType = params.get( p ).asType();
+      if( method.isVarArgs() && p == params.size() - 1 && paramType.getKind() == TypeKind.ARRAY ) {
+        signature.append( ( (ArrayType)paramType ).getComponentType() ).append( "..." );
+      } else {
+        signature.append( paramType );
+      }
+      signature.append( " p" ).append( p );
+    }
+    signature.append( params.isEmpty() ? ") {" : " ) {" );
+    out.println( signature );
+  }
+
+  // Methods without parameters are formatted without arguments, as they are through the proxy.
+  private static String arguments( ExecutableElement method ) {
+    int count = method.getParameters().size();
+    if( count == 0 ) {
+      return "null";
+    }
+    StringBuilder arguments = new StringBuilder( "new java.lang.Object[]{ " );
+    for( int p = 0; p < count; p++ ) {
+      arguments.append( p == 0 ? "p" : ", p" ).append( p );
+    }
+    return arguments.append( " }" ).toString();
+  }
+
+  private static String getPattern( ExecutableElement method, boolean messages ) {
+    String pattern = null;
+    if( messages ) {
+      Message anno = method.getAnnotation( Message.class );
+      if( anno != null ) {
+        pattern = anno.text();
+      }
+    } else {
+      Resource anno = method.getAnnotation( Resource.class );
+      if( anno != null ) {
+        pattern = anno.text();
+      }
+    }
+    if( pattern == null || Resource.DEFAULT_TEXT.equals( pattern ) ) {
+      pattern = ResourcesInvoker.getDefaultPattern( method.getSimpleName().toString(), method.getParameters().size() );
+    }
+    return pattern;
+  }
+
+  private static int getCode( ExecutableElement method ) {
+    Message anno = method.getAnnotation( Message.class );
+    return anno == null ? Message.DEFAULT_CODE : anno.code();
+  }
+
+  private static String level( MessageLevel level ) {
+    return MessageLevel.class.getName() + "." + level.name();
+  }
+
+  private static String literal( String value ) {
+    StringBuilder literal = new StringBuilder( value.length() + 2 );
+    literal.append( '"' );
+    for( int i = 0; i < value.length(); i++ ) {
+      char c = value.charAt( i );
+      switch( c ) {
+        case '"': literal.append( "\\\"" ); break;
+        case '\\': literal.append( "\\\\" ); break;
+        case '\n': literal.append( "\\n" ); break;
+        case '\r': literal.append( "\\r" ); break;
+        case '\t': literal.append( "\\t" ); break;
+        default:
+          if( c < 0x20 || c > 0x7e ) {
+            literal.append( String.format( "\\u%04x", (int)c ) );
+          } else {
+            literal.append( c );
+          }
+      }
+    }
+    return literal.append( '"' ).toString();
+  }
+
+}
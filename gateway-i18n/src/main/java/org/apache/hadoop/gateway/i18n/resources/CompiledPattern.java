@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.i18n.resources;
+
+import java.text.DateFormat;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A {@link MessageFormat} pattern parsed once so that it can be formatted many times, from any thread.
+ * Patterns made of plain text and {n} placeholders are formatted directly, producing exactly what
+ * {@link MessageFormat#format(String, Object...)} would.  Any other pattern, for example one with quotes
+ * or format types, is handed to {@link MessageFormat} each time.
+ */
+public final class CompiledPattern {
+
+  private final String pattern;
+  // Either literal Strings or Integer argument indexes, null if the pattern is not a simple one.
+  private final Object[] segments;
+  private final int length;
+
+  private CompiledPattern( String pattern, Object[] segments ) {
+    this.pattern = pattern;
+    this.segments = segments;
+    int length = 0;
+    if( segments != null ) {
+      for( Object segment : segments ) {
+        length += ( segment instanceof String ) ? ( (String)segment ).length() : 16;
+      }
+    }
+    this.length = length;
+  }
+
+  public static CompiledPattern compile( String pattern ) {
+    return new CompiledPattern( pattern, parse( pattern ) );
+  }
+
+  public String getPattern() {
+    return pattern;
+  }
+
+  public String format( Object[] args ) {
+    if( segments == null ) {
+      return MessageFormat.format( pattern, args );
+    }
+    StringBuilder builder = new StringBuilder( length );
+    Locale locale = null;
+    for( Object segment : segments ) {
+      if( segment instanceof String ) {
+        builder.append( (String)segment );
+        continue;
+      }
+      int index = (Integer)segment;
+      if( args == null || index >= args.length ) {
+        builder.append( '{' ).append( index ).append( '}' );
+        continue;
+      }
+      Object arg = args[ index ];
+      if( arg == null ) {
+        builder.append( "null" );
+      } else if( arg instanceof String ) {
+        builder.append( (String)arg );
+      } else if( arg instanceof Number ) {
+        if( locale == null ) {
+          locale = Locale.getDefault( Locale.Category.FORMAT );
+        }
+        builder.append( NumberFormat.getInstance( locale ).format( arg ) );
+      } else if( arg instanceof Date ) {
+        if( locale == null ) {
+          locale = Locale.getDefault( Locale.Category.FORMAT );
+        }
+        builder.append( DateFormat.getDateTimeInstance( DateFormat.SHORT, DateFormat.SHORT, locale ).format( arg ) );
+      } else {
+        String text = arg.toString();
+        builder.append( text == null ? "null" : text );
+      }
+    }
+    return builder.toString();
+  }
+
+  @Override
+  public String toString() {
+    return pattern;
+  }
+
+  private static Object[] parse( String pattern ) {
+    if( pattern.indexOf( '\'' ) >= 0 ) {
+      return null;
+    }
+    List<Object> segments = new ArrayList<Object>();
+    int start = 0;
+    while( start < pattern.length() ) {
+      int open = pattern.indexOf( '{', start );
+      if( open < 0 ) {
+        segments.add( pattern.substring( start ) );
+        break;
+      }
+      int close = pattern.indexOf( '}', open );
+      if( close < 0 ) {
+        return null;
+      }
+      Integer index = parseIndex( pattern.substring( open + 1, close ) );
+      if( index == null ) {
+        return null;
+      }
+      if( open > start ) {
+        segments.add( pattern.substring( start, open ) );
+      }
+      segments.add( index );
+      start = close + 1;
+    }
+    return segments.toArray();
+  }
+
+  private static Integer parseIndex( String text ) {
+    if( text.isEmpty() || text.length() > 9 ) {
+      return null;
+    }
+    for( int i = 0; i < text.length(); i++ ) {
+      char c = text.charAt( i );
+      if( c < '0' || c > '9' ) {
+        return null;
+      }
+    }
+    return Integer.valueOf( text );
+  }
+
+}
@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.i18n.resources;
+
+/**
+ * The base class of the {@link Resources} implementations generated at build time.
+ * Generated classes compile their annotation patterns once, this class only looks for localized
+ * patterns in the resource bundle the same way the proxy based implementation does.
+ */
+public abstract class GeneratedResources {
+
+  private static final String IMPLEMENTATION_SUFFIX = "_Impl";
+
+  private final ResourcesInvoker invoker;
+
+  protected GeneratedResources( Class<?> clazz ) {
+    invoker = new ResourcesInvoker( clazz );
+  }
+
+  protected final String format( String key, CompiledPattern pattern, Object[] args ) {
+    return invoker.getText( key, pattern, args );
+  }
+
+  /**
+   * @param binaryName The binary name of an annotated interface, for example org.apache.Outer$Inner.
+   * @return The name of the class generated for the interface, for example org.apache.Outer_Inner_Impl.
+   */
+  public static String getImplementationName( String binaryName ) {
+    return binaryName.replace( '$', '_' ) + IMPLEMENTATION_SUFFIX;
+  }
+
+  /**
+   * @return The class generated for the interface, or null if there is none.
+   */
+  public static <T> Class<? extends T> findImplementation( Class<T> clazz ) {
+    try {
+      Class<?> impl = Class.forName( getImplementationName( clazz.getName() ), true, clazz.getClassLoader() );
+      if( clazz.isAssignableFrom( impl ) ) {
+        return impl.asSubclass( clazz );
+      }
+    } catch( ClassNotFoundException e ) {
+      // Not generated, for example when annotation processing was disabled.
+    } catch( LinkageError e ) {
+      // Generated against a different version of the interface.
+    }
+    return null;
+  }
+
+}
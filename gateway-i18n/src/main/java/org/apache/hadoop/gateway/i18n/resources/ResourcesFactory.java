@@ -36,11 +36,26 @@ public class ResourcesFactory {
       if( anno == null ) {
         throw new IllegalArgumentException( clazz.getName() + " missing @" + Resources.class.getCanonicalName() );
       }
-      ResourcesInvoker invoker = new ResourcesInvoker( clazz );
-      proxy = Proxy.newProxyInstance( clazz.getClassLoader(), new Class[]{ clazz }, invoker );
+      proxy = createGenerated( clazz );
+      if( proxy == null ) {
+        ResourcesInvoker invoker = new ResourcesInvoker( clazz );
+        proxy = Proxy.newProxyInstance( clazz.getClassLoader(), new Class[]{ clazz }, invoker );
+      }
       proxies.put( clazz, proxy );
     }
     return (T)proxy;
   }
 
+  private static Object createGenerated( Class<?> clazz ) {
+    Class<?> impl = GeneratedResources.findImplementation( clazz );
+    if( impl != null ) {
+      try {
+        return impl.getConstructor().newInstance();
+      } catch( ReflectiveOperationException e ) {
+        // Fall back to the proxy.
+      }
+    }
+    return null;
+  }
+
 }
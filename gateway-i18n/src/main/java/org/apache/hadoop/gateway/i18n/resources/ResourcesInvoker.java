@@ -19,7 +19,6 @@ package org.apache.hadoop.gateway.i18n.resources;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.text.MessageFormat;
 import java.util.ListResourceBundle;
 import java.util.Locale;
 import java.util.MissingResourceException;
@@ -41,11 +40,13 @@ public class ResourcesInvoker implements InvocationHandler {
   private Class bundleClass;
   private String bundleName;
   private ConcurrentHashMap<Locale, ResourceBundle> bundles;
+  private ConcurrentHashMap<String, CompiledPattern> patterns;
 
   public ResourcesInvoker( Class<?> bundleClass ) {
     this.bundleClass = bundleClass;
     this.bundleName = calcBundleName( bundleClass );
     this.bundles = new ConcurrentHashMap<Locale, ResourceBundle>();
+    this.patterns = new ConcurrentHashMap<String, CompiledPattern>();
   }
 
   @Override
@@ -55,10 +56,32 @@ public class ResourcesInvoker implements InvocationHandler {
 
   protected final String getText( final Method method, final Object[] args ) {
     String pattern = getPattern( method );
-    String text = MessageFormat.format( pattern, args );
+    String text = compile( pattern ).format( args );
     return text;
   }
 
+  /**
+   * Formats the pattern found in the bundle for the key, or the provided pattern if the bundle has none.
+   * Used by implementations generated at build time, which compile their annotation patterns up front.
+   */
+  public final String getText( final String key, final CompiledPattern pattern, final Object[] args ) {
+    String bundlePattern = getBundlePattern( key );
+    if( bundlePattern == null ) {
+      return pattern.format( args );
+    } else {
+      return compile( bundlePattern ).format( args );
+    }
+  }
+
+  private CompiledPattern compile( final String pattern ) {
+    CompiledPattern compiled = patterns.get( pattern );
+    if( compiled == null ) {
+      compiled = CompiledPattern.compile( pattern );
+      patterns.put( pattern, compiled );
+    }
+    return compiled;
+  }
+
   protected final String getPattern( final Method method ) {
     String pattern = getBundlePattern( method );
     if( pattern == null ) {
@@ -80,18 +103,24 @@ public class ResourcesInvoker implements InvocationHandler {
   }
 
   protected final String getBundlePattern( final Method method ) {
+    return getBundlePattern( method.getName() );
+  }
+
+  protected final String getBundlePattern( final String key ) {
     String pattern = null;
     final ResourceBundle bundle = findBundle();
-    if( bundle != null && bundle.containsKey( method.getName() ) ) {
-      pattern = bundle.getString( method.getName() );
+    if( bundle != null && bundle.containsKey( key ) ) {
+      pattern = bundle.getString( key );
     }
     return pattern;
   }
 
   protected static final String getDefaultPattern( final Method method ) {
-    final String prefix = method.getName();
+    return getDefaultPattern( method.getName(), method.getParameterTypes().length );
+  }
+
+  public static final String getDefaultPattern( final String prefix, final int params ) {
     String suffix;
-    final int params = method.getParameterTypes().length;
     switch( params ) {
       case( 0 )  : suffix = ""; break;
       case( 1 )  : suffix = "(\"{0}\")"; break;
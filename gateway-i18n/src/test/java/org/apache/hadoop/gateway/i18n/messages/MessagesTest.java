@@ -26,6 +26,7 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -51,4 +52,10 @@ public class MessagesTest {
 
   }
 
+  @Test
+  public void testGeneratedImplementationUsed() {
+    MessagesTestSubject log = MessagesFactory.get( MessagesTestSubject.class );
+    assertThat( log, instanceOf( GeneratedMessages.class ) );
+  }
+
 }
@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.i18n.resources;
+
+import org.apache.hadoop.test.category.FastTests;
+import org.apache.hadoop.test.category.UnitTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.text.MessageFormat;
+import java.util.Date;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@Category( { UnitTests.class, FastTests.class } )
+public class CompiledPatternTest {
+
+  private static void assertSameAsMessageFormat( String pattern, Object... args ) {
+    assertThat( CompiledPattern.compile( pattern ).format( args ), is( MessageFormat.format( pattern, args ) ) );
+  }
+
+  @Test
+  public void testSimplePatterns() {
+    assertSameAsMessageFormat( "no parameters" );
+    assertSameAsMessageFormat( "{0}", "value" );
+    assertSameAsMessageFormat( "a {0} b {1} c {0}", "x", "y" );
+    assertSameAsMessageFormat( "{1}{0}", "x", "y" );
+    assertSameAsMessageFormat( "null {0}", (Object)null );
+    assertSameAsMessageFormat( "missing {0} {1}", "x" );
+    assertSameAsMessageFormat( "number {0} {1} {2}", 12345, 1.5d, 7L );
+    assertSameAsMessageFormat( "date {0}", new Date( 0 ) );
+    assertSameAsMessageFormat( "{10} {0}", 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 );
+  }
+
+  @Test
+  public void testComplexPatterns() {
+    assertSameAsMessageFormat( "quoted '{0}' {0}", "x" );
+    assertSameAsMessageFormat( "it''s {0}", "x" );
+    assertSameAsMessageFormat( "{0,number,#.##}", 1.2345d );
+    assertSameAsMessageFormat( "{0,choice,0#none|1#one|1<many}", 2 );
+  }
+
+  @Test
+  public void testNullArguments() {
+    assertThat( CompiledPattern.compile( "{0}" ).format( null ), is( MessageFormat.format( "{0}", (Object[])null ) ) );
+    assertThat( CompiledPattern.compile( "text" ).format( null ), is( "text" ) );
+  }
+
+}
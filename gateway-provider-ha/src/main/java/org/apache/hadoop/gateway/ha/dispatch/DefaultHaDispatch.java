@@ -18,13 +18,16 @@
 package org.apache.hadoop.gateway.ha.dispatch;
 
 import org.apache.hadoop.gateway.config.Configure;
+import org.apache.hadoop.gateway.config.GatewayConfig;
 import org.apache.hadoop.gateway.config.Optional;
 import org.apache.hadoop.gateway.dispatch.DefaultDispatch;
 import org.apache.hadoop.gateway.filter.AbstractGatewayFilter;
 import org.apache.hadoop.gateway.ha.dispatch.i18n.HaDispatchMessages;
 import org.apache.hadoop.gateway.ha.provider.HaProvider;
 import org.apache.hadoop.gateway.ha.provider.HaServiceConfig;
+import org.apache.hadoop.gateway.ha.provider.URLManager;
 import org.apache.hadoop.gateway.ha.provider.impl.HaServiceConfigConstants;
+import org.apache.hadoop.gateway.ha.provider.impl.LoadBalancingURLManager;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
@@ -51,6 +54,8 @@ public class DefaultHaDispatch extends DefaultDispatch {
 
   private HaProvider haProvider;
 
+  private LoadBalancingURLManager loadBalancer;
+
   @Optional
   @Configure
   private String serviceRole;
@@ -63,6 +68,12 @@ public class DefaultHaDispatch extends DefaultDispatch {
       HaServiceConfig serviceConfig = haProvider.getHaDescriptor().getServiceConfig(getServiceRole());
       maxFailoverAttempts = serviceConfig.getMaxFailoverAttempts();
       failoverSleep = serviceConfig.getFailoverSleep();
+      URLManager urlManager = haProvider.getURLManager(getServiceRole());
+      if ( urlManager instanceof LoadBalancingURLManager ) {
+        // Failed URLs are taken out of rotation right away so failing over never has to wait.
+        loadBalancer = (LoadBalancingURLManager) urlManager;
+        failoverSleep = 0;
+      }
     }
   }
 
@@ -95,6 +106,29 @@ public class DefaultHaDispatch extends DefaultDispatch {
     }
   }
 
+  @Override
+  protected boolean isReplayBufferRequired(HttpServletRequest request, GatewayConfig config) {
+    // A failed over request sends the same entity again to the next URL.
+    return maxFailoverAttempts > 0 || super.isReplayBufferRequired(request, config);
+  }
+
+  @Override
+  protected HttpResponse executeOutboundRequest(HttpUriRequest outboundRequest) throws IOException {
+    if ( loadBalancer == null ) {
+      return super.executeOutboundRequest(outboundRequest);
+    }
+    URI uri = outboundRequest.getURI();
+    long latency = -1;
+    loadBalancer.requestStarted(uri);
+    try {
+      long start = System.nanoTime();
+      HttpResponse inboundResponse = super.executeOutboundRequest(outboundRequest);
+      latency = System.nanoTime() - start;
+      return inboundResponse;
+    } finally {
+      loadBalancer.requestCompleted(uri, latency);
+    }
+  }
 
   private void failoverRequest(HttpUriRequest outboundRequest, HttpServletRequest inboundRequest, HttpServletResponse outboundResponse, HttpResponse inboundResponse, Exception exception) throws IOException {
     LOG.failingOverRequest(outboundRequest.getURI().toString());
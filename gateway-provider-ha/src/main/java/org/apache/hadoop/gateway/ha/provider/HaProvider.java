@@ -64,4 +64,12 @@ public interface HaProvider {
     */
    public void markFailedURL(String serviceName, String url);
 
+   /**
+    * Returns the URL manager that keeps track of the URLs of the service.
+    *
+    * @param serviceName the name of the service
+    * @return the URL manager or null if the service name is not found
+    */
+   public URLManager getURLManager(String serviceName);
+
 }
@@ -50,4 +50,20 @@ public interface HaServiceConfig {
    public String getZookeeperNamespace();
 
    public void setZookeeperNamespace(String zookeeperNamespace);
+
+   public String getLoadBalancingPolicy();
+
+   public void setLoadBalancingPolicy(String loadBalancingPolicy);
+
+   public int getHealthCheckInterval();
+
+   public void setHealthCheckInterval(int healthCheckInterval);
+
+   public int getHealthCheckTimeout();
+
+   public void setHealthCheckTimeout(int healthCheckTimeout);
+
+   public String getHealthCheckPath();
+
+   public void setHealthCheckPath(String healthCheckPath);
 }
@@ -85,6 +85,22 @@ public class DefaultHaProvider implements HaProvider {
 
   }
 
+  @Override
+  public URLManager getURLManager(String serviceName) {
+    return haServices.get(serviceName);
+  }
+
+  /**
+   * Stops any background work done by the URL managers of the services.
+   */
+  public void stop() {
+    for (URLManager manager : haServices.values()) {
+      if (manager instanceof LoadBalancingURLManager) {
+        ((LoadBalancingURLManager) manager).stop();
+      }
+    }
+  }
+
   @Override
   public void markFailedURL(String serviceName, String url) {
     if ( haServices.containsKey(serviceName) ) {
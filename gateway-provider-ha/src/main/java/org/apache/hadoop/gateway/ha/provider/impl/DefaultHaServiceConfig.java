@@ -37,6 +37,14 @@ public class DefaultHaServiceConfig implements HaServiceConfig, HaServiceConfigC
 
   private String zookeeperNamespace;
 
+  private String loadBalancingPolicy;
+
+  private int healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL;
+
+  private int healthCheckTimeout = DEFAULT_HEALTH_CHECK_TIMEOUT;
+
+  private String healthCheckPath;
+
   public DefaultHaServiceConfig(String name) {
     this.name = name;
   }
@@ -121,4 +129,44 @@ public class DefaultHaServiceConfig implements HaServiceConfig, HaServiceConfigC
   public void setZookeeperNamespace(String zookeeperNamespace) {
     this.zookeeperNamespace = zookeeperNamespace;
   }
+
+  @Override
+  public String getLoadBalancingPolicy() {
+    return loadBalancingPolicy;
+  }
+
+  @Override
+  public void setLoadBalancingPolicy(String loadBalancingPolicy) {
+    this.loadBalancingPolicy = loadBalancingPolicy;
+  }
+
+  @Override
+  public int getHealthCheckInterval() {
+    return healthCheckInterval;
+  }
+
+  @Override
+  public void setHealthCheckInterval(int healthCheckInterval) {
+    this.healthCheckInterval = healthCheckInterval;
+  }
+
+  @Override
+  public int getHealthCheckTimeout() {
+    return healthCheckTimeout;
+  }
+
+  @Override
+  public void setHealthCheckTimeout(int healthCheckTimeout) {
+    this.healthCheckTimeout = healthCheckTimeout;
+  }
+
+  @Override
+  public String getHealthCheckPath() {
+    return healthCheckPath;
+  }
+
+  @Override
+  public void setHealthCheckPath(String healthCheckPath) {
+    this.healthCheckPath = healthCheckPath;
+  }
 }
@@ -46,4 +46,12 @@ public interface HaDescriptorConstants {
 
    public static final String ZOOKEEPER_NAMESPACE = "zookeeperNamespace";
 
+   public static final String LOAD_BALANCING = "loadBalancing";
+
+   public static final String HEALTH_CHECK_INTERVAL = "healthCheckInterval";
+
+   public static final String HEALTH_CHECK_TIMEOUT = "healthCheckTimeout";
+
+   public static final String HEALTH_CHECK_PATH = "healthCheckPath";
+
 }
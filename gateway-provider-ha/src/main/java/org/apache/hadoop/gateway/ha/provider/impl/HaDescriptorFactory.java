@@ -38,9 +38,13 @@ public abstract class HaDescriptorFactory implements HaServiceConfigConstants {
       String retrySleep = configMap.get(CONFIG_PARAM_RETRY_SLEEP);
       String zookeeperEnsemble = configMap.get(CONFIG_PARAM_ZOOKEEPER_ENSEMBLE);
       String zookeeperNamespace = configMap.get(CONFIG_PARAM_ZOOKEEPER_NAMESPACE);
-      return createServiceConfig(serviceName, enabledValue, maxFailoverAttempts,
+      HaServiceConfig serviceConfig = createServiceConfig(serviceName, enabledValue, maxFailoverAttempts,
           failoverSleep, maxRetryAttempts, retrySleep,
           zookeeperEnsemble, zookeeperNamespace);
+      configureLoadBalancing(serviceConfig, configMap.get(CONFIG_PARAM_LOAD_BALANCING),
+          configMap.get(CONFIG_PARAM_HEALTH_CHECK_INTERVAL), configMap.get(CONFIG_PARAM_HEALTH_CHECK_TIMEOUT),
+          configMap.get(CONFIG_PARAM_HEALTH_CHECK_PATH));
+      return serviceConfig;
    }
 
    public static HaServiceConfig createServiceConfig(String serviceName, String enabledValue,
@@ -78,6 +82,27 @@ public abstract class HaDescriptorFactory implements HaServiceConfigConstants {
       return serviceConfig;
    }
 
+   /**
+    * Sets the optional load balancing and health check parameters of a service config.
+    * Blank values leave the defaults in place.
+    */
+   public static void configureLoadBalancing(HaServiceConfig serviceConfig, String loadBalancingPolicy,
+                                             String healthCheckIntervalValue, String healthCheckTimeoutValue,
+                                             String healthCheckPath) {
+      if (loadBalancingPolicy != null && loadBalancingPolicy.trim().length() > 0) {
+         serviceConfig.setLoadBalancingPolicy(loadBalancingPolicy.trim());
+      }
+      if (healthCheckIntervalValue != null && healthCheckIntervalValue.trim().length() > 0) {
+         serviceConfig.setHealthCheckInterval(Integer.parseInt(healthCheckIntervalValue));
+      }
+      if (healthCheckTimeoutValue != null && healthCheckTimeoutValue.trim().length() > 0) {
+         serviceConfig.setHealthCheckTimeout(Integer.parseInt(healthCheckTimeoutValue));
+      }
+      if (healthCheckPath != null && healthCheckPath.trim().length() > 0) {
+         serviceConfig.setHealthCheckPath(healthCheckPath.trim());
+      }
+   }
+
    private static Map<String, String> parseHaConfiguration(String configuration) {
       Map<String, String> parameters = new HashMap<>();
       if (configuration != null) {
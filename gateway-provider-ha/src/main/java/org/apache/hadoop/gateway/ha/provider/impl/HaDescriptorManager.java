@@ -62,6 +62,14 @@ public class HaDescriptorManager implements HaDescriptorConstants {
                if (config.getZookeeperNamespace() != null) {
                  serviceElement.setAttribute(ZOOKEEPER_NAMESPACE, config.getZookeeperNamespace());
                }
+               if (config.getLoadBalancingPolicy() != null) {
+                 serviceElement.setAttribute(LOAD_BALANCING, config.getLoadBalancingPolicy());
+                 serviceElement.setAttribute(HEALTH_CHECK_INTERVAL, Integer.toString(config.getHealthCheckInterval()));
+                 serviceElement.setAttribute(HEALTH_CHECK_TIMEOUT, Integer.toString(config.getHealthCheckTimeout()));
+                 if (config.getHealthCheckPath() != null) {
+                   serviceElement.setAttribute(HEALTH_CHECK_PATH, config.getHealthCheckPath());
+                 }
+               }
                root.appendChild(serviceElement);
             }
          }
@@ -93,6 +101,11 @@ public class HaDescriptorManager implements HaDescriptorConstants {
                      element.getAttribute(RETRY_SLEEP),
                      element.getAttribute(ZOOKEEPER_ENSEMBLE),
                      element.getAttribute(ZOOKEEPER_NAMESPACE));
+               HaDescriptorFactory.configureLoadBalancing(config,
+                     element.getAttribute(LOAD_BALANCING),
+                     element.getAttribute(HEALTH_CHECK_INTERVAL),
+                     element.getAttribute(HEALTH_CHECK_TIMEOUT),
+                     element.getAttribute(HEALTH_CHECK_PATH));
                descriptor.addServiceConfig(config);
             }
          }
@@ -37,6 +37,18 @@ public interface HaServiceConfigConstants {
 
    public static final String CONFIG_PARAM_ZOOKEEPER_NAMESPACE = "zookeeperNamespace";
 
+   public static final String CONFIG_PARAM_LOAD_BALANCING = "loadBalancing";
+
+   public static final String CONFIG_PARAM_HEALTH_CHECK_INTERVAL = "healthCheckInterval";
+
+   public static final String CONFIG_PARAM_HEALTH_CHECK_TIMEOUT = "healthCheckTimeout";
+
+   public static final String CONFIG_PARAM_HEALTH_CHECK_PATH = "healthCheckPath";
+
+   public static final String LOAD_BALANCING_ROUND_ROBIN = "round-robin";
+
+   public static final String LOAD_BALANCING_LEAST_OUTSTANDING = "least-outstanding";
+
    public static final int DEFAULT_MAX_FAILOVER_ATTEMPTS = 3;
 
    public static final int DEFAULT_FAILOVER_SLEEP = 1000;
@@ -47,4 +59,8 @@ public interface HaServiceConfigConstants {
 
    public static final boolean DEFAULT_ENABLED = true;
 
+   public static final int DEFAULT_HEALTH_CHECK_INTERVAL = 5000;
+
+   public static final int DEFAULT_HEALTH_CHECK_TIMEOUT = 2000;
+
 }
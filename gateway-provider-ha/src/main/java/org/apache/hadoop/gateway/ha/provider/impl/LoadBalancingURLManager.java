@@ -0,0 +1,359 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.ha.provider.impl;
+
+import org.apache.hadoop.gateway.ha.provider.HaServiceConfig;
+import org.apache.hadoop.gateway.ha.provider.URLManager;
+import org.apache.hadoop.gateway.ha.provider.impl.i18n.HaMessages;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A URL manager that spreads requests over all of the healthy URLs of a service instead of
+ * sending them all to a single active URL. It is used when the HA config of a service sets
+ * a loadBalancing policy of either round-robin or least-outstanding.
+ * <p/>
+ * Each URL is probed in the background every healthCheckInterval milliseconds, either with a TCP
+ * connect or, if a healthCheckPath is configured, with an HTTP GET that must not return a 5xx status.
+ * A URL that fails a probe or a request is taken out of rotation until a probe succeeds again.
+ * The selection reads an immutable snapshot of the healthy URLs and never blocks.
+ */
+public class LoadBalancingURLManager implements URLManager, HaServiceConfigConstants {
+
+  private static final HaMessages LOG = MessagesFactory.get(HaMessages.class);
+
+  // The weight of the newest sample in the exponentially weighted moving average of the latency.
+  private static final double LATENCY_EWMA_WEIGHT = 0.2;
+
+  private static final ScheduledExecutorService HEALTH_CHECKS = Executors.newScheduledThreadPool(2, new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "ha-health-check-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private static final Endpoint[] NO_ENDPOINTS = new Endpoint[0];
+
+  private final AtomicInteger next = new AtomicInteger();
+  private volatile Endpoint[] endpoints = NO_ENDPOINTS;
+  private volatile Endpoint[] healthy = NO_ENDPOINTS;
+  private boolean leastOutstanding = false;
+  private int healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL;
+  private int healthCheckTimeout = DEFAULT_HEALTH_CHECK_TIMEOUT;
+  private String healthCheckPath;
+  private ScheduledFuture<?> healthCheck;
+
+  @Override
+  public boolean supportsConfig(HaServiceConfig config) {
+    String policy = config.getLoadBalancingPolicy();
+    return LOAD_BALANCING_ROUND_ROBIN.equalsIgnoreCase(policy) || LOAD_BALANCING_LEAST_OUTSTANDING.equalsIgnoreCase(policy);
+  }
+
+  @Override
+  public void setConfig(HaServiceConfig config) {
+    leastOutstanding = LOAD_BALANCING_LEAST_OUTSTANDING.equalsIgnoreCase(config.getLoadBalancingPolicy());
+    healthCheckInterval = config.getHealthCheckInterval();
+    healthCheckTimeout = config.getHealthCheckTimeout();
+    healthCheckPath = config.getHealthCheckPath();
+  }
+
+  @Override
+  public String getActiveURL() {
+    Endpoint[] candidates = healthy;
+    if (candidates.length == 0) {
+      // Nothing is known to be healthy so keep trying all of them rather than failing outright.
+      candidates = endpoints;
+      if (candidates.length == 0) {
+        return null;
+      }
+    }
+    int start = (next.getAndIncrement() & Integer.MAX_VALUE) % candidates.length;
+    Endpoint selected = candidates[start];
+    if (leastOutstanding) {
+      for (int i = 1; i < candidates.length; i++) {
+        Endpoint candidate = candidates[(start + i) % candidates.length];
+        int outstanding = candidate.outstanding.get();
+        int selectedOutstanding = selected.outstanding.get();
+        if (outstanding < selectedOutstanding ||
+            (outstanding == selectedOutstanding && candidate.getLatency() < selected.getLatency())) {
+          selected = candidate;
+        }
+      }
+    }
+    return selected.url;
+  }
+
+  /**
+   * Puts a URL that is known to be working back into rotation.
+   */
+  @Override
+  public void setActiveURL(String url) {
+    for (Endpoint endpoint : endpoints) {
+      if (endpoint.url.equals(url)) {
+        setHealthy(endpoint, true);
+      }
+    }
+  }
+
+  @Override
+  public List<String> getURLs() {
+    Endpoint[] current = endpoints;
+    List<String> urls = new ArrayList<>(current.length);
+    for (Endpoint endpoint : current) {
+      urls.add(endpoint.url);
+    }
+    return urls;
+  }
+
+  @Override
+  public synchronized void setURLs(List<String> urls) {
+    if (urls != null && !urls.isEmpty()) {
+      Map<String, Endpoint> existing = new HashMap<>();
+      for (Endpoint endpoint : endpoints) {
+        existing.put(endpoint.url, endpoint);
+      }
+      Endpoint[] updated = new Endpoint[urls.size()];
+      for (int i = 0; i < updated.length; i++) {
+        Endpoint endpoint = existing.get(urls.get(i));
+        updated[i] = (endpoint != null) ? endpoint : new Endpoint(urls.get(i));
+      }
+      endpoints = updated;
+      refreshHealthy();
+      if (healthCheck == null && healthCheckInterval > 0) {
+        HealthCheckTask task = new HealthCheckTask(this);
+        healthCheck = HEALTH_CHECKS.scheduleWithFixedDelay(task, healthCheckInterval, healthCheckInterval, TimeUnit.MILLISECONDS);
+        task.future = healthCheck;
+      }
+    }
+  }
+
+  /**
+   * Takes every URL on the same host and port as the failed URL out of rotation until a health check succeeds.
+   */
+  @Override
+  public void markFailed(String url) {
+    String hostPort = hostPort(url);
+    for (Endpoint endpoint : endpoints) {
+      if (endpoint.hostPort.equals(hostPort)) {
+        setHealthy(endpoint, false);
+      }
+    }
+  }
+
+  /**
+   * Called by the dispatch before a request is sent to one of the URLs.
+   * Requests are matched to URLs by host and port.
+   */
+  public void requestStarted(URI uri) {
+    Endpoint endpoint = find(hostPort(uri));
+    if (endpoint != null) {
+      endpoint.outstanding.incrementAndGet();
+    }
+  }
+
+  /**
+   * Called by the dispatch once a request that was started has either received a response or failed.
+   * @param latency The time until the response was received in nanoseconds, or a negative value if the request failed.
+   */
+  public void requestCompleted(URI uri, long latency) {
+    Endpoint endpoint = find(hostPort(uri));
+    if (endpoint != null) {
+      endpoint.outstanding.decrementAndGet();
+      if (latency >= 0) {
+        endpoint.recordLatency(latency);
+      }
+    }
+  }
+
+  /**
+   * Stops the background health checks.
+   */
+  public synchronized void stop() {
+    if (healthCheck != null) {
+      healthCheck.cancel(false);
+      healthCheck = null;
+    }
+  }
+
+  /**
+   * Probes every URL once and updates which ones are in rotation.
+   */
+  void checkHealth() {
+    for (Endpoint endpoint : endpoints) {
+      long start = System.nanoTime();
+      boolean available = probe(endpoint);
+      if (available) {
+        endpoint.recordLatency(System.nanoTime() - start);
+      }
+      setHealthy(endpoint, available);
+    }
+  }
+
+  private boolean probe(Endpoint endpoint) {
+    try {
+      URI uri = URI.create(endpoint.url);
+      String scheme = uri.getScheme() == null ? "http" : uri.getScheme();
+      int port = uri.getPort();
+      if (port < 0) {
+        port = "https".equalsIgnoreCase(scheme) ? 443 : 80;
+      }
+      if (healthCheckPath == null) {
+        try (Socket socket = new Socket()) {
+          socket.connect(new InetSocketAddress(uri.getHost(), port), healthCheckTimeout);
+        }
+        return true;
+      }
+      HttpURLConnection connection = (HttpURLConnection) new URL(scheme, uri.getHost(), port, healthCheckPath).openConnection();
+      try {
+        connection.setConnectTimeout(healthCheckTimeout);
+        connection.setReadTimeout(healthCheckTimeout);
+        connection.setInstanceFollowRedirects(false);
+        return connection.getResponseCode() < 500;
+      } finally {
+        connection.disconnect();
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      LOG.healthCheckFailed(endpoint.url, e);
+      return false;
+    }
+  }
+
+  private void setHealthy(Endpoint endpoint, boolean available) {
+    if (endpoint.healthy == available) {
+      return;
+    }
+    int count;
+    synchronized (this) {
+      if (endpoint.healthy == available) {
+        return;
+      }
+      endpoint.healthy = available;
+      count = refreshHealthy();
+    }
+    if (available) {
+      LOG.markedHealthyUrl(endpoint.url, count);
+    } else {
+      LOG.markedUnhealthyUrl(endpoint.url, count);
+    }
+  }
+
+  // Must be called while holding the lock on this manager.
+  private int refreshHealthy() {
+    List<Endpoint> available = new ArrayList<>();
+    for (Endpoint endpoint : endpoints) {
+      if (endpoint.healthy) {
+        available.add(endpoint);
+      }
+    }
+    healthy = available.toArray(new Endpoint[available.size()]);
+    return healthy.length;
+  }
+
+  private Endpoint find(String hostPort) {
+    for (Endpoint endpoint : endpoints) {
+      if (endpoint.hostPort.equals(hostPort)) {
+        return endpoint;
+      }
+    }
+    return null;
+  }
+
+  private static String hostPort(String url) {
+    return hostPort(URI.create(url));
+  }
+
+  private static String hostPort(URI uri) {
+    return uri.getHost() + ":" + uri.getPort();
+  }
+
+  private static class Endpoint {
+
+    private final String url;
+    private final String hostPort;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong latency = new AtomicLong(Double.doubleToLongBits(0));
+    private volatile boolean healthy = true;
+
+    private Endpoint(String url) {
+      this.url = url;
+      this.hostPort = hostPort(url);
+    }
+
+    private double getLatency() {
+      return Double.longBitsToDouble(latency.get());
+    }
+
+    private void recordLatency(long sample) {
+      while (true) {
+        long current = latency.get();
+        double average = Double.longBitsToDouble(current);
+        double updated = (average == 0) ? sample : average + LATENCY_EWMA_WEIGHT * (sample - average);
+        if (latency.compareAndSet(current, Double.doubleToLongBits(updated))) {
+          return;
+        }
+      }
+    }
+
+  }
+
+  // Only weakly references the manager so that managers of undeployed topologies stop being probed.
+  private static class HealthCheckTask implements Runnable {
+
+    private final WeakReference<LoadBalancingURLManager> manager;
+    private volatile ScheduledFuture<?> future;
+
+    private HealthCheckTask(LoadBalancingURLManager manager) {
+      this.manager = new WeakReference<>(manager);
+    }
+
+    @Override
+    public void run() {
+      LoadBalancingURLManager current = manager.get();
+      if (current == null) {
+        if (future != null) {
+          future.cancel(false);
+        }
+        return;
+      }
+      current.checkHealth();
+    }
+
+  }
+
+}
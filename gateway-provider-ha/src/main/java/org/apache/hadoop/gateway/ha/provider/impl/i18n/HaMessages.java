@@ -42,4 +42,13 @@ public interface HaMessages {
   @Message(level = MessageLevel.ERROR, text = "Failed to get Zookeeper URLs : {0}")
   void failedToGetZookeeperUrls(Exception e);
 
+  @Message(level = MessageLevel.WARN, text = "Marked URL {0} as unavailable, {1} healthy URLs remain")
+  void markedUnhealthyUrl(String url, int healthy);
+
+  @Message(level = MessageLevel.INFO, text = "Marked URL {0} as available, {1} healthy URLs")
+  void markedHealthyUrl(String url, int healthy);
+
+  @Message(level = MessageLevel.DEBUG, text = "Health check of URL {0} failed: {1}")
+  void healthCheckFailed(String url, Exception e);
+
 }
@@ -48,6 +48,18 @@ public class HaDescriptorFactoryTest {
       assertEquals(1000, serviceConfig.getFailoverSleep());
       assertEquals(5, serviceConfig.getMaxRetryAttempts());
       assertEquals(3000, serviceConfig.getRetrySleep());
+      assertNull(serviceConfig.getLoadBalancingPolicy());
+      assertEquals(HaServiceConfigConstants.DEFAULT_HEALTH_CHECK_INTERVAL, serviceConfig.getHealthCheckInterval());
 
    }
+
+   @Test
+   public void testCreateServiceConfigWithLoadBalancing() {
+      HaServiceConfig serviceConfig = HaDescriptorFactory.createServiceConfig("foo",
+            "enabled=true;loadBalancing=least-outstanding;healthCheckInterval=100;healthCheckTimeout=50;healthCheckPath=/status");
+      assertEquals("least-outstanding", serviceConfig.getLoadBalancingPolicy());
+      assertEquals(100, serviceConfig.getHealthCheckInterval());
+      assertEquals(50, serviceConfig.getHealthCheckTimeout());
+      assertEquals("/status", serviceConfig.getHealthCheckPath());
+   }
 }
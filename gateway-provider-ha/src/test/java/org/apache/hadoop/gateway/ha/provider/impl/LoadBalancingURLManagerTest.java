@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.ha.provider.impl;
+
+import org.apache.hadoop.gateway.ha.provider.URLManager;
+import org.apache.hadoop.gateway.ha.provider.URLManagerLoader;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadBalancingURLManagerTest {
+
+  private static final List<String> URLS = Arrays.asList("http://host1:1000", "http://host2:2000", "http://host3:3000");
+
+  private LoadBalancingURLManager createManager(String policy) {
+    DefaultHaServiceConfig config = new DefaultHaServiceConfig("SOLR");
+    config.setLoadBalancingPolicy(policy);
+    // No background health checks, the tests call checkHealth directly.
+    config.setHealthCheckInterval(0);
+    config.setHealthCheckTimeout(1000);
+    URLManager manager = URLManagerLoader.loadURLManager(config);
+    assertTrue(manager instanceof LoadBalancingURLManager);
+    manager.setURLs(URLS);
+    return (LoadBalancingURLManager) manager;
+  }
+
+  private Set<String> activeURLs(URLManager manager, int count) {
+    Set<String> urls = new HashSet<>();
+    for (int i = 0; i < count; i++) {
+      urls.add(manager.getActiveURL());
+    }
+    return urls;
+  }
+
+  @Test
+  public void testRoundRobin() {
+    LoadBalancingURLManager manager = createManager("round-robin");
+    assertEquals(URLS, manager.getURLs());
+    assertEquals(new HashSet<>(URLS), activeURLs(manager, 3));
+
+    manager.markFailed("http://host2:2000/solr/select?q=*");
+    assertEquals(new HashSet<>(Arrays.asList("http://host1:1000", "http://host3:3000")), activeURLs(manager, 4));
+
+    manager.setActiveURL("http://host2:2000");
+    assertEquals(new HashSet<>(URLS), activeURLs(manager, 3));
+  }
+
+  @Test
+  public void testAllFailed() {
+    LoadBalancingURLManager manager = createManager("round-robin");
+    for (String url : URLS) {
+      manager.markFailed(url);
+    }
+    // Keep trying every URL rather than having nowhere to send requests.
+    assertEquals(new HashSet<>(URLS), activeURLs(manager, 3));
+  }
+
+  @Test
+  public void testLeastOutstanding() {
+    LoadBalancingURLManager manager = createManager("least-outstanding");
+    manager.requestStarted(URI.create("http://host1:1000/solr/select"));
+    manager.requestStarted(URI.create("http://host1:1000/solr/select"));
+    manager.requestStarted(URI.create("http://host3:3000/solr/select"));
+    assertEquals(new HashSet<>(Arrays.asList("http://host2:2000")), activeURLs(manager, 3));
+
+    manager.requestStarted(URI.create("http://host2:2000/solr/select"));
+    manager.requestStarted(URI.create("http://host2:2000/solr/select"));
+    manager.requestCompleted(URI.create("http://host1:1000/solr/select"), 1000);
+    manager.requestCompleted(URI.create("http://host1:1000/solr/select"), 1000);
+    assertEquals(new HashSet<>(Arrays.asList("http://host1:1000")), activeURLs(manager, 3));
+  }
+
+  @Test
+  public void testLeastOutstandingPrefersLowerLatency() {
+    LoadBalancingURLManager manager = createManager("least-outstanding");
+    manager.requestStarted(URI.create("http://host1:1000/"));
+    manager.requestCompleted(URI.create("http://host1:1000/"), 5000000);
+    manager.requestStarted(URI.create("http://host2:2000/"));
+    manager.requestCompleted(URI.create("http://host2:2000/"), 1000000);
+    manager.requestStarted(URI.create("http://host3:3000/"));
+    manager.requestCompleted(URI.create("http://host3:3000/"), 9000000);
+    assertEquals(new HashSet<>(Arrays.asList("http://host2:2000")), activeURLs(manager, 3));
+  }
+
+  @Test
+  public void testHealthCheck() throws Exception {
+    try (ServerSocket up = new ServerSocket(0); ServerSocket down = new ServerSocket(0)) {
+      String upURL = "http://localhost:" + up.getLocalPort();
+      String downURL = "http://localhost:" + down.getLocalPort();
+      down.close();
+      LoadBalancingURLManager manager = createManager("round-robin");
+      manager.setURLs(Arrays.asList(upURL, downURL));
+
+      manager.checkHealth();
+      assertEquals(new HashSet<>(Arrays.asList(upURL)), activeURLs(manager, 2));
+
+      manager.markFailed(upURL);
+      manager.checkHealth();
+      assertEquals(new HashSet<>(Arrays.asList(upURL)), activeURLs(manager, 2));
+    }
+  }
+
+}
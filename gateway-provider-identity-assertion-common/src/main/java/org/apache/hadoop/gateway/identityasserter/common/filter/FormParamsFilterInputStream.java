@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.identityasserter.common.filter;
+
+import org.apache.hadoop.gateway.SpiGatewayMessages;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Removes the parameters with the given names from a form encoded body as it is read.
+ * Every other parameter is passed through byte for byte and in its original order.
+ * Only the encoded name of the current parameter is held in memory and only until it is either
+ * known to be one of the removed names or too long to be one, so memory use does not depend on the
+ * size of the body or of any value in it.
+ * Names are compared after decoding and ignoring case, as the impersonation parameters in the
+ * query string are.
+ */
+class FormParamsFilterInputStream extends InputStream {
+
+  private static final SpiGatewayMessages LOG = MessagesFactory.get( SpiGatewayMessages.class );
+
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  private enum State { NAME, PASS, SKIP }
+
+  private final InputStream input;
+  private final Set<String> removedNames;
+  private final byte[] buffer = new byte[ BUFFER_SIZE ];
+  private int position = 0;
+  private int limit = 0;
+  private boolean eof = false;
+  private final byte[] name;
+  private int nameLength = 0;
+  // The separator, name and = of a kept parameter waiting to be returned ahead of its value.
+  private final byte[] pending;
+  private int pendingPosition = 0;
+  private int pendingLength = 0;
+  private State state = State.NAME;
+  private boolean first = true;
+  private final byte[] single = new byte[ 1 ];
+
+  FormParamsFilterInputStream( InputStream input, Collection<String> removedNames ) {
+    this.input = input;
+    this.removedNames = new HashSet<>();
+    int longest = 0;
+    for( String removedName : removedNames ) {
+      this.removedNames.add( removedName.toLowerCase( Locale.ROOT ) );
+      longest = Math.max( longest, removedName.length() );
+    }
+    // Any longer encoded name would decode to more characters than the longest removed name has.
+    this.name = new byte[ longest * 3 ];
+    this.pending = new byte[ name.length + 2 ];
+  }
+
+  @Override
+  public int read() throws IOException {
+    int count = read( single, 0, 1 );
+    return count < 0 ? -1 : single[ 0 ] & 0xff;
+  }
+
+  @Override
+  public int read( byte[] bytes, int offset, int length ) throws IOException {
+    if( length == 0 ) {
+      return 0;
+    }
+    int count = 0;
+    while( count < length ) {
+      if( pendingPosition < pendingLength ) {
+        int n = Math.min( length - count, pendingLength - pendingPosition );
+        System.arraycopy( pending, pendingPosition, bytes, offset + count, n );
+        pendingPosition += n;
+        count += n;
+        continue;
+      }
+      if( position == limit && !fill() ) {
+        if( state == State.NAME && nameLength > 0 ) {
+          endName( false );
+          continue;
+        }
+        break;
+      }
+      byte b = buffer[ position++ ];
+      switch( state ) {
+        case NAME:
+          if( b == '&' ) {
+            if( nameLength > 0 ) {
+              endName( false );
+            }
+          } else if( b == '=' ) {
+            endName( true );
+          } else if( nameLength < name.length ) {
+            name[ nameLength++ ] = b;
+          } else {
+            // Too long to be a removed name so pass the rest of the parameter through as is.
+            startPair( false );
+            pending[ pendingLength++ ] = b;
+            state = State.PASS;
+          }
+          break;
+        case PASS:
+          if( b == '&' ) {
+            state = State.NAME;
+          } else {
+            bytes[ offset + count++ ] = b;
+          }
+          break;
+        case SKIP:
+          if( b == '&' ) {
+            state = State.NAME;
+          }
+          break;
+      }
+    }
+    return count == 0 && eof ? -1 : count;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return ( pendingLength - pendingPosition ) + ( limit - position );
+  }
+
+  @Override
+  public void close() throws IOException {
+    input.close();
+  }
+
+  private boolean fill() throws IOException {
+    if( eof ) {
+      return false;
+    }
+    int n = input.read( buffer, 0, buffer.length );
+    while( n == 0 ) {
+      n = input.read( buffer, 0, buffer.length );
+    }
+    if( n < 0 ) {
+      eof = true;
+      return false;
+    }
+    position = 0;
+    limit = n;
+    return true;
+  }
+
+  private void endName( boolean hasValue ) {
+    if( isRemoved() ) {
+      nameLength = 0;
+      state = hasValue ? State.SKIP : State.NAME;
+    } else {
+      startPair( hasValue );
+      state = hasValue ? State.PASS : State.NAME;
+    }
+  }
+
+  // Queues the separator if needed and the buffered name of a parameter that is kept.
+  private void startPair( boolean hasValue ) {
+    pendingPosition = 0;
+    pendingLength = 0;
+    if( !first ) {
+      pending[ pendingLength++ ] = '&';
+    }
+    first = false;
+    System.arraycopy( name, 0, pending, pendingLength, nameLength );
+    pendingLength += nameLength;
+    nameLength = 0;
+    if( hasValue ) {
+      pending[ pendingLength++ ] = '=';
+    }
+  }
+
+  private boolean isRemoved() {
+    String decoded;
+    try {
+      decoded = URLDecoder.decode( new String( name, 0, nameLength, StandardCharsets.ISO_8859_1 ), "UTF-8" );
+    } catch( IllegalArgumentException | UnsupportedEncodingException e ) {
+      // Not a valid encoding of any name so the backend can't take it for one either.
+      return false;
+    }
+    if( removedNames.contains( decoded.toLowerCase( Locale.ROOT ) ) ) {
+      LOG.possibleIdentitySpoofingAttempt( decoded );
+      return true;
+    }
+    return false;
+  }
+
+}
@@ -17,7 +17,6 @@
  */
 package org.apache.hadoop.gateway.identityasserter.common.filter;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.gateway.SpiGatewayMessages;
 import org.apache.hadoop.gateway.config.GatewayConfig;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
@@ -28,7 +27,6 @@ import org.apache.hadoop.gateway.util.HttpUtils;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -230,18 +228,9 @@ private static SpiGatewayMessages log = MessagesFactory.get( SpiGatewayMessages.
   public ServletInputStream getInputStream() throws java.io.IOException {
     String contentType = getContentType();
     if( contentType != null && contentType.startsWith( "application/x-www-form-urlencoded" ) ) {
-      String encoding = getCharacterEncoding();
-      if( encoding == null ) {
-        encoding = Charset.defaultCharset().name();
-      }
-      String body = IOUtils.toString( super.getInputStream(), encoding );
-      Map<String, List<String>> params = getParams( body );
-      if (params == null) {
-        params = new HashMap<>();
-      }
-      body = urlEncode( params, encoding );
-      // ASCII is OK here because the urlEncode about should have already escaped
-      return new ServletInputStreamWrapper( new ByteArrayInputStream( body.getBytes( "US-ASCII" ) ) );
+      // Strip any impersonation params from the body as it streams through instead of buffering it.
+      return new ServletInputStreamWrapper(
+          new FormParamsFilterInputStream( super.getInputStream(), getImpersonationParamNames() ) );
     } else {
       return super.getInputStream();
     }
@@ -298,6 +287,21 @@ private static SpiGatewayMessages log = MessagesFactory.get( SpiGatewayMessages.
       return stream.read();
     }
 
+    @Override
+    public int read( byte[] bytes, int offset, int length ) throws IOException {
+      return stream.read( bytes, offset, length );
+    }
+
+    @Override
+    public int available() throws IOException {
+      return stream.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+      stream.close();
+    }
+
   }
 
 }
@@ -120,6 +120,48 @@ public class IdentityAssertionHttpServletRequestWrapperTest {
     assertThat( output, not( containsString( "input-user" ) ) );
   }
 
+  @Test
+  public void testRemoveImpersonationParamsFromPostBody() throws IOException {
+    String inputBody = "user.name=input-user&define=a%3Db&DOAS=other-user&define=c%3Dd&user%2Ename&empty=&doAsNot=x";
+
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setInputStream( new MockServletInputStream( new ByteArrayInputStream( inputBody.getBytes( "UTF-8" ) ) ) );
+    request.setCharacterEncoding( "UTF-8" );
+    request.setContentType( "application/x-www-form-urlencoded" );
+    request.setMethod("POST");
+
+    IdentityAsserterHttpServletRequestWrapper wrapper
+        = new IdentityAsserterHttpServletRequestWrapper( request, "output-user" );
+
+    String outputBody = IOUtils.toString( wrapper.getInputStream(), wrapper.getCharacterEncoding() );
+    assertThat( outputBody, is( "define=a%3Db&define=c%3Dd&empty=&doAsNot=x" ) );
+  }
+
+  @Test
+  public void testStreamLargePostBody() throws IOException {
+    StringBuilder inputBody = new StringBuilder();
+    StringBuilder expectedBody = new StringBuilder();
+    for( int i = 0; i < 10000; i++ ) {
+      inputBody.append( "define=key" ).append( i ).append( "%3Dvalue&" );
+      expectedBody.append( expectedBody.length() > 0 ? "&" : "" ).append( "define=key" ).append( i ).append( "%3Dvalue" );
+      if( i % 1000 == 0 ) {
+        inputBody.append( "doAs=input-user&" );
+      }
+    }
+
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setInputStream( new MockServletInputStream( new ByteArrayInputStream( inputBody.toString().getBytes( "UTF-8" ) ) ) );
+    request.setCharacterEncoding( "UTF-8" );
+    request.setContentType( "application/x-www-form-urlencoded" );
+    request.setMethod("POST");
+
+    IdentityAsserterHttpServletRequestWrapper wrapper
+        = new IdentityAsserterHttpServletRequestWrapper( request, "output-user" );
+
+    String outputBody = IOUtils.toString( wrapper.getInputStream(), wrapper.getCharacterEncoding() );
+    assertThat( outputBody, is( expectedBody.toString() ) );
+  }
+
   @Test
   public void testIngoreNonFormBody() throws IOException {
     String inputBody = "user.name=input-user&jar=%2Ftmp%2FGatewayWebHdfsFuncTest%2FtestJavaMapReduceViaWebHCat%2Fhadoop-examples.jar&class=org.apache.org.apache.hadoop.examples.WordCount&arg=%2Ftmp%2FGatewayWebHdfsFuncTest%2FtestJavaMapReduceViaTempleton%2Finput&arg=%2Ftmp%2FGatewayWebHdfsFuncTest%2FtestJavaMapReduceViaTempleton%2Foutput";
@@ -18,22 +18,35 @@
 package org.apache.hadoop.gateway.identityasserter.hadoop.groups.filter;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.security.auth.Subject;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.identityasserter.common.filter.CommonIdentityAssertionFilter;
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.security.GroupMappingService;
 import org.apache.hadoop.security.GroupMappingServiceProvider;
 import org.apache.hadoop.security.Groups;
+import org.apache.hadoop.security.ShellBasedUnixGroupsMapping;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.StringUtils;
 
 /**
  * A filter that integrates the Hadoop {@link GroupMappingServiceProvider} for
  * looking up group membership of the authenticated (asserted) identity.
+ * When the gateway provides a {@link GroupMappingService} the groups are cached
+ * there and filters with the same Hadoop configuration share the lookup.
  * 
  * @since 0.11.0
  */
@@ -55,6 +68,13 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
    */
   private Groups hadoopGroups;
 
+  /**
+   * Gateway wide cache of the groups, if available.
+   */
+  private GroupMappingService groupMappingService;
+
+  private GroupMappingService.GroupMapping groupMapping;
+
   /* create an instance */
   public HadoopGroupProviderFilter() {
     super();
@@ -78,7 +98,13 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
         }
 
       }
-      hadoopGroups = new Groups(hadoopConfig);
+      groupMappingService = getGroupMappingService(filterConfig);
+      if (groupMappingService != null) {
+        groupMapping = groupMappingService.getGroupMapping(getMappingId(hadoopConfig),
+            getMappingName(hadoopConfig), new HadoopGroupLookup(hadoopConfig));
+      } else {
+        hadoopGroups = new Groups(hadoopConfig);
+      }
 
     } catch (final Exception e) {
       throw new ServletException(e);
@@ -86,6 +112,15 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
 
   }
 
+  @Override
+  public void destroy() {
+    /* drop the cached groups once no filter with the same configuration is deployed */
+    if (groupMapping != null) {
+      groupMappingService.releaseGroupMapping(groupMapping);
+    }
+    super.destroy();
+  }
+
   /**
    * Query the Hadoop implementation of {@link Groups} to retrieve groups for
    * provided user.
@@ -94,6 +129,15 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
       final Subject subject) {
     /* return the groups as seen by Hadoop */
     String[] groups = null;
+    if (groupMapping != null) {
+      final List<String> groupList = groupMapping.getGroups(mappedPrincipalName);
+      if (groupList.isEmpty()) {
+        LOG.noGroupsFound(mappedPrincipalName);
+      } else {
+        LOG.groupsFound(mappedPrincipalName, groupList.toString());
+      }
+      return groupList.toArray(new String[0]);
+    }
     try {
       final List<String> groupList = hadoopGroups
           .getGroups(mappedPrincipalName);
@@ -118,4 +162,98 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
     return principalName;
   }
 
+  private static GroupMappingService getGroupMappingService(final FilterConfig filterConfig) {
+    if (filterConfig.getServletContext() == null) {
+      return null;
+    }
+    final GatewayServices services = (GatewayServices) filterConfig.getServletContext()
+        .getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
+    if (services == null) {
+      return null;
+    }
+    return services.getService(GatewayServices.GROUP_MAPPING_SERVICE);
+  }
+
+  /* filters configured with the same hadoop properties share the lookup and its cache */
+  private static String getMappingId(final Configuration hadoopConfig) {
+    final Map<String, String> properties = new TreeMap<String, String>();
+    for (final Map.Entry<String, String> property : hadoopConfig) {
+      if (property.getKey().startsWith("hadoop.")) {
+        properties.put(property.getKey(), property.getValue());
+      }
+    }
+    return "hadoop:" + properties;
+  }
+
+  /* metrics are kept per group mapping provider class */
+  private static String getMappingName(final Configuration hadoopConfig) {
+    final String mapping = hadoopConfig.get(
+        CommonConfigurationKeys.HADOOP_SECURITY_GROUP_MAPPING,
+        ShellBasedUnixGroupsMapping.class.getName());
+    return mapping.substring(mapping.lastIndexOf('.') + 1);
+  }
+
+  /**
+   * Looks up groups directly through the configured Hadoop
+   * {@link GroupMappingServiceProvider}. Hadoop {@link Groups} is not used as
+   * the groups are already cached by the gateway and its own cache would add
+   * to their staleness. The provider is created on first use so a lookup that
+   * is not registered because an equivalent one already was does not acquire
+   * any resources.
+   */
+  static class HadoopGroupLookup implements GroupMappingService.GroupLookup {
+
+    private final Configuration hadoopConfig;
+
+    private final Map<String, List<String>> staticMapping;
+
+    private GroupMappingServiceProvider provider;
+
+    HadoopGroupLookup(final Configuration hadoopConfig) {
+      this.hadoopConfig = hadoopConfig;
+      this.staticMapping = getStaticMapping(hadoopConfig);
+    }
+
+    private synchronized GroupMappingServiceProvider getProvider() {
+      if (provider == null) {
+        provider = ReflectionUtils.newInstance(hadoopConfig.getClass(
+            CommonConfigurationKeys.HADOOP_SECURITY_GROUP_MAPPING,
+            ShellBasedUnixGroupsMapping.class, GroupMappingServiceProvider.class),
+            hadoopConfig);
+      }
+      return provider;
+    }
+
+    @Override
+    public List<String> getGroups(final String user) throws IOException {
+      List<String> groups = staticMapping.get(user);
+      if (groups == null) {
+        groups = getProvider().getGroups(user);
+      }
+      /* unknown users are cached as having no groups */
+      return groups == null ? Collections.<String>emptyList() : groups;
+    }
+
+    /* the static overrides that Hadoop Groups applies before asking the provider */
+    private static Map<String, List<String>> getStaticMapping(final Configuration hadoopConfig) {
+      final Map<String, List<String>> mapping = new HashMap<String, List<String>>();
+      final String overrides = hadoopConfig.get(
+          CommonConfigurationKeys.HADOOP_USER_GROUP_STATIC_OVERRIDES,
+          CommonConfigurationKeys.HADOOP_USER_GROUP_STATIC_OVERRIDES_DEFAULT);
+      for (final String override : StringUtils.getStringCollection(overrides, ";")) {
+        final String[] userToGroups = override.split("=");
+        if (userToGroups.length == 0 || userToGroups.length > 2 || userToGroups[0].trim().isEmpty()) {
+          continue;
+        }
+        final List<String> groups = new ArrayList<String>();
+        if (userToGroups.length == 2) {
+          groups.addAll(StringUtils.getStringCollection(userToGroups[1]));
+        }
+        mapping.put(userToGroups[0].trim(), Collections.unmodifiableList(groups));
+      }
+      return mapping;
+    }
+
+  }
+
 }
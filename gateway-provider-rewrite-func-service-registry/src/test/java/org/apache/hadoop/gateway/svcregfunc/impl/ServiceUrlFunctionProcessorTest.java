@@ -17,23 +17,34 @@
  */
 package org.apache.hadoop.gateway.svcregfunc.impl;
 
+import org.apache.hadoop.gateway.config.GatewayConfig;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteProcessor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptorFactory;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
+import org.apache.hadoop.gateway.ha.provider.HaDescriptor;
 import org.apache.hadoop.gateway.ha.provider.HaProvider;
 import org.apache.hadoop.gateway.ha.provider.HaServletContextListener;
+import org.apache.hadoop.gateway.ha.provider.impl.DefaultHaProvider;
+import org.apache.hadoop.gateway.ha.provider.impl.HaDescriptorFactory;
 import org.apache.hadoop.gateway.services.GatewayServices;
 import org.apache.hadoop.gateway.services.hostmap.HostMapper;
 import org.apache.hadoop.gateway.services.hostmap.HostMapperService;
 import org.apache.hadoop.gateway.services.registry.ServiceRegistry;
 import org.apache.hadoop.gateway.svcregfunc.api.ServiceUrlFunctionDescriptor;
+import org.apache.hadoop.gateway.util.urltemplate.Parser;
+import org.apache.hadoop.gateway.util.urltemplate.Resolver;
 import org.easymock.EasyMock;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.ServiceLoader;
 
 import static org.hamcrest.CoreMatchers.*;
@@ -150,4 +161,48 @@ public class ServiceUrlFunctionProcessorTest {
     func.destroy();
   }
 
+  @Test
+  public void testLoadBalancedServiceUrlWithRewriteCache() throws Exception {
+    HaDescriptor haDescriptor = HaDescriptorFactory.createDescriptor();
+    haDescriptor.addServiceConfig( HaDescriptorFactory.createServiceConfig(
+        "WEBHDFS", "enabled=true;loadBalancing=round-robin;healthCheckInterval=0" ) );
+    DefaultHaProvider haProvider = new DefaultHaProvider( haDescriptor );
+    haProvider.addHaService( "WEBHDFS", Arrays.asList( "http://host1:50070/webhdfs", "http://host2:50070/webhdfs" ) );
+
+    GatewayConfig config = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( config.getUrlRewriteCacheMaxEntries() ).andReturn( 100 ).anyTimes();
+    UrlRewriteEnvironment environment = EasyMock.createNiceMock( UrlRewriteEnvironment.class );
+    EasyMock.expect( environment.getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE ) ).andReturn( config ).anyTimes();
+    EasyMock.expect( environment.getAttribute( GatewayServices.GATEWAY_SERVICES_ATTRIBUTE ) ).andReturn( svc ).anyTimes();
+    EasyMock.expect( environment.getAttribute( GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE ) ).andReturn( "test-cluster" ).anyTimes();
+    EasyMock.expect( environment.getAttribute( HaServletContextListener.PROVIDER_ATTRIBUTE_NAME ) ).andReturn( haProvider ).anyTimes();
+    EasyMock.replay( config, environment );
+
+    UrlRewriteProcessor processor = new UrlRewriteProcessor();
+    processor.initialize( environment, UrlRewriteRulesDescriptorFactory.load( "xml", new StringReader(
+        "<rules>" +
+        "<rule dir='IN' name='webhdfs' pattern='*://*:*/**/webhdfs/{path=**}'>" +
+        "<rewrite template='{$serviceUrl[WEBHDFS]}/{path=**}'/>" +
+        "</rule>" +
+        "</rules>" ) ) );
+    Resolver resolver = new Resolver() {
+      @Override
+      public List<String> resolve( String name ) {
+        return null;
+      }
+    };
+
+    // Each request must go to the next backend, a cached result would always send them to the same one.
+    List<String> outputs = new ArrayList<>();
+    for( int i = 0; i < 4; i++ ) {
+      outputs.add( processor.rewrite( resolver, Parser.parseLiteral(
+          "https://gateway-host:8443/gateway/sandbox/webhdfs/v1/tmp" ), UrlRewriter.Direction.IN, null ).toString() );
+    }
+    assertThat( outputs, contains(
+        "http://host1:50070/webhdfs/v1/tmp", "http://host2:50070/webhdfs/v1/tmp",
+        "http://host1:50070/webhdfs/v1/tmp", "http://host2:50070/webhdfs/v1/tmp" ) );
+    processor.destroy();
+    haProvider.stop();
+  }
+
 }
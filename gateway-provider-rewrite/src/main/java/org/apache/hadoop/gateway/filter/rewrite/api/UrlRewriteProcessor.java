@@ -17,9 +17,15 @@
  */
 package org.apache.hadoop.gateway.filter.rewrite.api;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import org.apache.hadoop.gateway.config.GatewayConfig;
 import org.apache.hadoop.gateway.filter.rewrite.ext.ScopedMatcher;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteCache;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteContextImpl;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFilterMetrics;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFunctionProcessorFactory;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteRuleProcessorHolder;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteStepProcessorHolder;
@@ -27,6 +33,10 @@ import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteStepStatus;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.metrics.MetricsContext;
+import org.apache.hadoop.gateway.services.metrics.MetricsService;
+import org.apache.hadoop.gateway.services.metrics.TopologyMetrics;
 import org.apache.hadoop.gateway.util.urltemplate.Matcher;
 import org.apache.hadoop.gateway.util.urltemplate.Resolver;
 import org.apache.hadoop.gateway.util.urltemplate.Template;
@@ -43,12 +53,19 @@ public class UrlRewriteProcessor implements UrlRewriter {
 
   private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
 
+  public static final String METRICS_PREFIX = "rewrite.cache";
+
   UrlRewriteEnvironment environment;
   UrlRewriteRulesDescriptor descriptor;
   Map<String,UrlRewriteRuleProcessorHolder> rules = new HashMap<>();
   ScopedMatcher inbound = new ScopedMatcher();
   ScopedMatcher outbound = new ScopedMatcher();
   Map<String,UrlRewriteFunctionProcessor> functions = new HashMap<>();
+  UrlRewriteCache cache = new UrlRewriteCache( 0 );
+  MetricRegistry metricRegistry;
+  String metricsPrefix;
+  UrlRewriteFilterMetrics filterMetrics;
+  TopologyMetrics metrics;
 
   public UrlRewriteProcessor() {
   }
@@ -59,6 +76,7 @@ public class UrlRewriteProcessor implements UrlRewriter {
     this.descriptor = descriptor;
     initializeFunctions( descriptor );
     initializeRules( descriptor );
+    initializeCacheAndMetrics();
   }
 
   public UrlRewriteRulesDescriptor getConfig() {
@@ -106,7 +124,67 @@ public class UrlRewriteProcessor implements UrlRewriter {
     }
   }
 
+  private void initializeCacheAndMetrics() {
+    GatewayConfig config = ( environment == null ) ? null : environment.<GatewayConfig>getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE );
+    if( config == null ) {
+      return;
+    }
+    GatewayServices services = environment.getAttribute( GatewayServices.GATEWAY_SERVICES_ATTRIBUTE );
+    String cluster = environment.getAttribute( GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE );
+    if( config.isMetricsEnabled() && services != null && cluster != null ) {
+      MetricsService metricsService = services.getService( GatewayServices.METRICS_SERVICE );
+      if( metricsService != null && metricsService.getContext() != null ) {
+        metricRegistry = (MetricRegistry)metricsService.getContext().getProperty( MetricsContext.METRICS_REGISTRY );
+      }
+    }
+    if( metricRegistry != null ) {
+      filterMetrics = new UrlRewriteFilterMetrics( metricRegistry, cluster );
+    }
+    if( config.getUrlRewriteCacheMaxEntries() <= 0 ) {
+      return;
+    }
+    cache = new UrlRewriteCache( config.getUrlRewriteCacheMaxEntries() );
+    if( metricRegistry != null ) {
+      metricsPrefix = MetricRegistry.name( METRICS_PREFIX, cluster );
+      metrics = new TopologyMetrics( metricRegistry );
+      for( String ruleName : rules.keySet() ) {
+        registerMetrics( ruleName );
+      }
+    }
+  }
+
+  /**
+   * Returns the metrics that content filtered by this processor is measured with
+   * or null if metrics are disabled.
+   */
+  public UrlRewriteFilterMetrics getFilterMetrics() {
+    return filterMetrics;
+  }
+
+  private void registerMetrics( String ruleName ) {
+    if( ruleName == null ) {
+      return;
+    }
+    final Counter hits = cache.getHits( ruleName );
+    final Counter misses = cache.getMisses( ruleName );
+    metrics.register( MetricRegistry.name( metricsPrefix, ruleName, "hits" ), hits );
+    metrics.register( MetricRegistry.name( metricsPrefix, ruleName, "misses" ), misses );
+    metrics.register( MetricRegistry.name( metricsPrefix, ruleName, "hit-ratio" ), new RatioGauge() {
+      @Override
+      protected Ratio getRatio() {
+        return Ratio.of( hits.getCount(), hits.getCount() + misses.getCount() );
+      }
+    } );
+  }
+
   public void destroy() {
+    cache.clear();
+    if( filterMetrics != null ) {
+      filterMetrics.destroy();
+    }
+    if( metrics != null ) {
+      metrics.unregister();
+    }
     for( UrlRewriteStepProcessorHolder rule : rules.values() ) {
       try {
         rule.destroy();
@@ -133,10 +211,21 @@ public class UrlRewriteProcessor implements UrlRewriter {
         serviceRole = serviceRoles.get(0);
       }
     }
-    UrlRewriteStepProcessorHolder stepHolder = null;
-    String effectiveRuleName = null;
     if( ruleName == null || "*".equals( ruleName ) ) {
       ruleName = null; // Used for logging later.
+    }
+    UrlRewriteCache.Key key = null;
+    if( cache.isEnabled() ) {
+      key = new UrlRewriteCache.Key( inputUri.getPattern(), direction, ruleName, serviceRole );
+      UrlRewriteCache.Entry entry = cache.get( key );
+      if( entry != null && entry.isCurrent( resolver ) ) {
+        cache.count( entry.getRuleName(), true );
+        return cached( entry, inputUri, direction, ruleName );
+      }
+    }
+    UrlRewriteRuleProcessorHolder stepHolder = null;
+    String effectiveRuleName = null;
+    if( ruleName == null ) {
       Matcher<UrlRewriteRuleProcessorHolder>.Match match = null;
       switch( direction ) {
         case IN:
@@ -155,11 +244,19 @@ public class UrlRewriteProcessor implements UrlRewriter {
       effectiveRuleName = ruleName;
     }
     if( stepHolder != null ) {
-      UrlRewriteContext context = new UrlRewriteContextImpl( environment, resolver, functions, direction, inputUri );
+      UrlRewriteCache.Recorder recorder = null;
+      if( key != null && stepHolder.isCacheable() ) {
+        recorder = new UrlRewriteCache.Recorder();
+        cache.count( effectiveRuleName, false );
+      }
+      UrlRewriteContext context = new UrlRewriteContextImpl( environment, resolver, functions, direction, inputUri, recorder );
       try {
         UrlRewriteStepStatus stepStatus = stepHolder.process( context );
         if( UrlRewriteStepStatus.SUCCESS == stepStatus ) {
           outputUri = context.getCurrentUrl();
+          if( recorder != null && recorder.isComplete() ) {
+            cache.put( key, new UrlRewriteCache.Entry( effectiveRuleName, outputUri, recorder ) );
+          }
           if( ruleName == null ) {
             LOG.rewroteUrlViaImplicitRule( inputUri, direction, effectiveRuleName, outputUri );
           } else {
@@ -174,9 +271,25 @@ public class UrlRewriteProcessor implements UrlRewriter {
         outputUri = null;
       }
     } else {
+      if( key != null ) {
+        cache.put( key, new UrlRewriteCache.Entry( null, inputUri, null ) );
+      }
       LOG.noRuleMatchingUrl( inputUri, direction );
     }
     return outputUri;
   }
 
+  private Template cached( UrlRewriteCache.Entry entry, Template inputUri, Direction direction, String ruleName ) {
+    if( entry.getRuleName() == null ) {
+      LOG.noRuleMatchingUrl( inputUri, direction );
+      return inputUri;
+    }
+    if( ruleName == null ) {
+      LOG.rewroteUrlViaImplicitRule( inputUri, direction, entry.getRuleName(), entry.getOutput() );
+    } else {
+      LOG.rewroteUrlViaExplicitRule( inputUri, direction, entry.getRuleName(), entry.getOutput() );
+    }
+    return entry.getOutput();
+  }
+
 }
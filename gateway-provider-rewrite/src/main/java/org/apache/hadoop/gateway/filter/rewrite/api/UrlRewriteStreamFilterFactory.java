@@ -17,6 +17,9 @@
  */
 package org.apache.hadoop.gateway.filter.rewrite.api;
 
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFilterMetrics;
+import org.apache.hadoop.gateway.filter.rewrite.impl.javascript.JavaScriptUrlRewriteStreamFilter;
+import org.apache.hadoop.gateway.filter.rewrite.impl.noop.NoOpUrlRewriteStreamFilter;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteStreamFilter;
 import org.apache.hadoop.gateway.util.MimeTypes;
 import org.apache.hadoop.gateway.util.urltemplate.Resolver;
@@ -27,6 +30,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.ServiceLoader;
 
@@ -34,6 +39,8 @@ public abstract class UrlRewriteStreamFilterFactory {
 
   private static final String DEFAULT_CHARACTER_ENCODING = "ISO-8859-1";
 
+  private static final String FILTER_CLASS_SUFFIX = "UrlRewriteStreamFilter";
+
   private static final Map<String,Map<String,UrlRewriteStreamFilter>> MAP = loadFactories();
 
   private UrlRewriteStreamFilterFactory() {
@@ -53,11 +60,80 @@ public abstract class UrlRewriteStreamFilterFactory {
     UrlRewriteStreamFilter filter = getFilter( nameMap, name );
     String charset = MimeTypes.getCharset( type, DEFAULT_CHARACTER_ENCODING );
     if( filter != null ) {
+      UrlRewriteFilterMetrics.Measurement measurement = measure( filter, rewriter, resolver );
+      if( measurement != null ) {
+        stream = measurement.input( stream );
+      }
       filteredStream = filter.filter( stream, charset, rewriter, resolver, direction, config );
+      if( measurement != null && filteredStream != null ) {
+        filteredStream = measurement.output( filteredStream );
+      }
     }
     return filteredStream;
   }
 
+  private static UrlRewriteFilterMetrics.Measurement measure( UrlRewriteStreamFilter filter, UrlRewriter rewriter, Resolver resolver ) {
+    if( !( rewriter instanceof UrlRewriteProcessor ) ) {
+      return null;
+    }
+    UrlRewriteFilterMetrics metrics = ( (UrlRewriteProcessor)rewriter ).getFilterMetrics();
+    if( metrics == null ) {
+      return null;
+    }
+    String serviceRole = null;
+    if( resolver != null ) {
+      List<String> serviceRoles = resolver.resolve( "service.role" );
+      if( serviceRoles != null && !serviceRoles.isEmpty() ) {
+        serviceRole = serviceRoles.get( 0 );
+      }
+    }
+    return metrics.measure( getFilterType( filter ), serviceRole );
+  }
+
+  // Names a filter by its class, e.g. JsonUrlRewriteStreamFilter is json.
+  private static String getFilterType( UrlRewriteStreamFilter filter ) {
+    String name = filter.getClass().getSimpleName();
+    if( name.endsWith( FILTER_CLASS_SUFFIX ) && name.length() > FILTER_CLASS_SUFFIX.length() ) {
+      name = name.substring( 0, name.length() - FILTER_CLASS_SUFFIX.length() );
+    }
+    return name.toLowerCase( Locale.ROOT );
+  }
+
+  /**
+   * Determines if content of the given type would be returned unmodified by {@link #create},
+   * which allows callers to stream such content without decoding it.
+   */
+  public static boolean isPassThrough( MimeType type, String name ) {
+    return isPassThrough( type, name, null, false );
+  }
+
+  /**
+   * Determines if content of the given type would be returned unmodified by {@link #create} when
+   * filtered with the given content config.  This is the case for the types above and for JavaScript
+   * content that the config does not select anything in.
+   */
+  public static boolean isPassThrough( MimeType type, String name, UrlRewriteFilterContentDescriptor config ) {
+    return isPassThrough( type, name, config, true );
+  }
+
+  private static boolean isPassThrough( MimeType type, String name, UrlRewriteFilterContentDescriptor config, boolean checkConfig ) {
+    MimeType lookupType = null;
+    if( type != null ) {
+      try {
+        // The lookup modifies the type so use a copy to leave the caller's intact.
+        lookupType = new MimeType( type.getPrimaryType(), type.getSubType() );
+      } catch( MimeTypeParseException e ) {
+        throw new IllegalArgumentException( type.toString(), e );
+      }
+    }
+    UrlRewriteStreamFilter filter = getFilter( getNameMap( lookupType ), name );
+    if( filter == null || filter instanceof NoOpUrlRewriteStreamFilter ) {
+      return true;
+    }
+    return checkConfig && filter instanceof JavaScriptUrlRewriteStreamFilter
+        && ( config == null || config.getSelectors().isEmpty() );
+  }
+
   private static Map<String,Map<String,UrlRewriteStreamFilter>> loadFactories() {
     Map<String,Map<String,UrlRewriteStreamFilter>> typeMap = new HashMap<>();
     ServiceLoader<UrlRewriteStreamFilter> filters = ServiceLoader.load( UrlRewriteStreamFilter.class );
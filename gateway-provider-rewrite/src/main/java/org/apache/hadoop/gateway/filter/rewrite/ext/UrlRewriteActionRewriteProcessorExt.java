@@ -21,6 +21,7 @@ import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteStepProcessor;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteStepStatus;
+import org.apache.hadoop.gateway.util.urltemplate.CompiledTemplate;
 import org.apache.hadoop.gateway.util.urltemplate.Expander;
 import org.apache.hadoop.gateway.util.urltemplate.Parser;
 import org.apache.hadoop.gateway.util.urltemplate.Template;
@@ -28,8 +29,7 @@ import org.apache.hadoop.gateway.util.urltemplate.Template;
 public class UrlRewriteActionRewriteProcessorExt
     implements UrlRewriteStepProcessor<UrlRewriteActionRewriteDescriptorExt> {
 
-  private Template template;
-  private Expander expander;
+  private CompiledTemplate template;
 
   @Override
   public String getType() {
@@ -38,17 +38,19 @@ public class UrlRewriteActionRewriteProcessorExt
 
   @Override
   public void initialize( UrlRewriteEnvironment environment, UrlRewriteActionRewriteDescriptorExt descriptor ) throws Exception {
-    this.expander = new Expander();
+    Template template;
     if ( descriptor.parameter() != null ) {
-      this.template = Parser.parseTemplate( descriptor.parameter() );
+      template = Parser.parseTemplate( descriptor.parameter() );
     } else {
-      this.template = Parser.parseTemplate( "" );
+      template = Parser.parseTemplate( "" );
     }
+    // Compiled once here so that each rewrite only evaluates the parameters and functions.
+    this.template = Expander.compile( template );
   }
 
   @Override
   public UrlRewriteStepStatus process( UrlRewriteContext context ) throws Exception {
-    Template rewritten = expander.expandToTemplate( template, context.getParameters(), context.getEvaluator() );
+    Template rewritten = template.expandToTemplate( context.getParameters(), context.getEvaluator() );
     context.setCurrentUrl( rewritten );
     return UrlRewriteStepStatus.SUCCESS;
   }
@@ -0,0 +1,376 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Gzip streams that borrow their Deflater and Inflater from a shared pool.
+ * The JDK's GZIPInputStream and GZIPOutputStream allocate new native zlib state for every stream,
+ * several hundred KB for a Deflater, which adds up when every rewritten gzip response needs both.
+ * They can't be subclassed to use pooled ones instead as their constructors allocate the state and
+ * closing them ends whatever Deflater or Inflater they hold, so the gzip framing is done here.
+ * The format written and accepted is the same as the JDK streams, including concatenated members,
+ * except that input that is empty, rather than truncated, is read as an empty stream.
+ */
+final class GzipStreams {
+
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int DEFLATED = 8;
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+  private static final byte[] HEADER = { (byte)GZIP_MAGIC, (byte)(GZIP_MAGIC >> 8), DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+  private static final int TRAILER_SIZE = 8;
+
+  // Enough to keep one of each per busy request thread without holding on to a burst's worth forever.
+  private static final int MAX_POOLED = 64;
+
+  private static final Queue<Deflater> DEFLATERS = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger DEFLATER_COUNT = new AtomicInteger();
+  private static final Queue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger INFLATER_COUNT = new AtomicInteger();
+
+  private GzipStreams() {
+  }
+
+  /**
+   * @return A stream that decompresses the gzip encoded input, an empty stream if the input is empty.
+   * @throws ZipException If the input does not start with a gzip header.
+   */
+  static InputStream newInputStream( InputStream input, int size ) throws IOException {
+    Inflater inflater = borrowInflater();
+    try {
+      return new PooledGzipInputStream( input, inflater, size );
+    } catch( IOException e ) {
+      releaseInflater( inflater );
+      throw e;
+    }
+  }
+
+  /**
+   * @param level The compression level, 0-9 or Deflater.DEFAULT_COMPRESSION.
+   * @return A stream that gzip encodes everything written to it into the output.
+   */
+  static OutputStream newOutputStream( OutputStream output, int level, int size ) throws IOException {
+    Deflater deflater = borrowDeflater( level );
+    try {
+      return new PooledGzipOutputStream( output, deflater, size );
+    } catch( IOException e ) {
+      releaseDeflater( deflater );
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the deflater of a stream that could not be closed, e.g. because writing to it failed, to the pool.
+   * Nothing more is written and the underlying stream is not closed.  Does nothing if the stream was closed.
+   */
+  static void release( OutputStream stream ) {
+    if( stream instanceof PooledGzipOutputStream ) {
+      ( (PooledGzipOutputStream)stream ).release();
+    }
+  }
+
+  /**
+   * @return True if the stream decompresses input that was empty, so there was nothing to decompress.
+   */
+  static boolean isEmpty( InputStream stream ) {
+    return stream instanceof PooledGzipInputStream && ( (PooledGzipInputStream)stream ).empty;
+  }
+
+  static int getPooledDeflaterCount() {
+    return DEFLATER_COUNT.get();
+  }
+
+  static int getPooledInflaterCount() {
+    return INFLATER_COUNT.get();
+  }
+
+  private static Deflater borrowDeflater( int level ) {
+    if( level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION ) {
+      level = Deflater.DEFAULT_COMPRESSION;
+    }
+    Deflater deflater = DEFLATERS.poll();
+    if( deflater == null ) {
+      deflater = new Deflater( level, true );
+    } else {
+      DEFLATER_COUNT.decrementAndGet();
+      deflater.setLevel( level );
+    }
+    return deflater;
+  }
+
+  private static void releaseDeflater( Deflater deflater ) {
+    if( DEFLATER_COUNT.incrementAndGet() <= MAX_POOLED ) {
+      deflater.reset();
+      DEFLATERS.offer( deflater );
+    } else {
+      DEFLATER_COUNT.decrementAndGet();
+      deflater.end();
+    }
+  }
+
+  private static Inflater borrowInflater() {
+    Inflater inflater = INFLATERS.poll();
+    if( inflater == null ) {
+      inflater = new Inflater( true );
+    } else {
+      INFLATER_COUNT.decrementAndGet();
+    }
+    return inflater;
+  }
+
+  private static void releaseInflater( Inflater inflater ) {
+    if( INFLATER_COUNT.incrementAndGet() <= MAX_POOLED ) {
+      inflater.reset();
+      INFLATERS.offer( inflater );
+    } else {
+      INFLATER_COUNT.decrementAndGet();
+      inflater.end();
+    }
+  }
+
+  private static class PooledGzipOutputStream extends DeflaterOutputStream {
+
+    private final CRC32 crc = new CRC32();
+    private boolean finished = false;
+    private boolean closed = false;
+
+    private PooledGzipOutputStream( OutputStream output, Deflater deflater, int size ) throws IOException {
+      super( output, deflater, size );
+      out.write( HEADER );
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len ) throws IOException {
+      super.write( b, off, len );
+      crc.update( b, off, len );
+    }
+
+    @Override
+    public void finish() throws IOException {
+      if( !finished ) {
+        super.finish();
+        writeInt( (int)crc.getValue() );
+        writeInt( (int)def.getBytesRead() );
+        finished = true;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if( !closed ) {
+        closed = true;
+        try {
+          super.close();
+        } finally {
+          releaseDeflater( def );
+        }
+      }
+    }
+
+    private void release() {
+      if( !closed ) {
+        closed = true;
+        releaseDeflater( def );
+      }
+    }
+
+    private void writeInt( int value ) throws IOException {
+      out.write( value & 0xff );
+      out.write( ( value >> 8 ) & 0xff );
+      out.write( ( value >> 16 ) & 0xff );
+      out.write( ( value >> 24 ) & 0xff );
+    }
+
+  }
+
+  private static class PooledGzipInputStream extends InflaterInputStream {
+
+    private final CRC32 crc = new CRC32();
+    private final byte[] skipBuffer = new byte[ 128 ];
+    private final boolean empty;
+    private boolean eos = false;
+    private boolean closed = false;
+
+    private PooledGzipInputStream( InputStream input, Inflater inflater, int size ) throws IOException {
+      super( input, inflater, size );
+      empty = readHeader( input ) < 0;
+      eos = empty;
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len ) throws IOException {
+      if( closed ) {
+        throw new IOException( "Stream closed" );
+      }
+      while( !eos ) {
+        int n = super.read( b, off, len );
+        if( n != -1 ) {
+          crc.update( b, off, n );
+          return n;
+        }
+        eos = readTrailer();
+      }
+      return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if( !closed ) {
+        closed = true;
+        eos = true;
+        try {
+          super.close();
+        } finally {
+          releaseInflater( inf );
+        }
+      }
+    }
+
+    // Returns the number of header bytes read or -1 if the input ends before the header.
+    private int readHeader( InputStream input ) throws IOException {
+      CheckedInputStream in = new CheckedInputStream( input, crc );
+      crc.reset();
+      int first = in.read();
+      if( first == -1 ) {
+        return -1;
+      }
+      if( ( ( readUByte( in ) << 8 ) | first ) != GZIP_MAGIC ) {
+        throw new ZipException( "Not in GZIP format" );
+      }
+      if( readUByte( in ) != DEFLATED ) {
+        throw new ZipException( "Unsupported compression method" );
+      }
+      int flags = readUByte( in );
+      // Skip the modification time, extra flags and operating system.
+      skipBytes( in, 6 );
+      int n = HEADER.length;
+      if( ( flags & FEXTRA ) == FEXTRA ) {
+        int length = readUShort( in );
+        skipBytes( in, length );
+        n += length + 2;
+      }
+      if( ( flags & FNAME ) == FNAME ) {
+        do {
+          n++;
+        } while( readUByte( in ) != 0 );
+      }
+      if( ( flags & FCOMMENT ) == FCOMMENT ) {
+        do {
+          n++;
+        } while( readUByte( in ) != 0 );
+      }
+      if( ( flags & FHCRC ) == FHCRC ) {
+        int value = (int)crc.getValue() & 0xffff;
+        if( readUShort( in ) != value ) {
+          throw new ZipException( "Corrupt GZIP header" );
+        }
+        n += 2;
+      }
+      crc.reset();
+      return n;
+    }
+
+    // Returns true at the end of the input and false if another member follows.
+    private boolean readTrailer() throws IOException {
+      InputStream input = in;
+      int remaining = inf.getRemaining();
+      if( remaining > 0 ) {
+        input = new SequenceInputStream(
+            new ByteArrayInputStream( buf, len - remaining, remaining ),
+            new FilterInputStream( in ) {
+              @Override
+              public void close() throws IOException {
+              }
+            } );
+      }
+      if( readUInt( input ) != crc.getValue() || readUInt( input ) != ( inf.getBytesWritten() & 0xffffffffL ) ) {
+        throw new ZipException( "Corrupt GZIP trailer" );
+      }
+      // Another member needs at least a header and a trailer of its own.
+      if( in.available() > 0 || remaining > TRAILER_SIZE + HEADER.length + TRAILER_SIZE ) {
+        int consumed = TRAILER_SIZE;
+        try {
+          int header = readHeader( input );
+          if( header < 0 ) {
+            return true;
+          }
+          consumed += header;
+        } catch( IOException e ) {
+          // Anything after the last member that isn't another member is ignored, as the JDK does.
+          return true;
+        }
+        inf.reset();
+        if( remaining > consumed ) {
+          inf.setInput( buf, len - remaining + consumed, remaining - consumed );
+        }
+        return false;
+      }
+      return true;
+    }
+
+    private long readUInt( InputStream input ) throws IOException {
+      long low = readUShort( input );
+      return ( (long)readUShort( input ) << 16 ) | low;
+    }
+
+    private int readUShort( InputStream input ) throws IOException {
+      int low = readUByte( input );
+      return ( readUByte( input ) << 8 ) | low;
+    }
+
+    private int readUByte( InputStream input ) throws IOException {
+      int b = input.read();
+      if( b == -1 ) {
+        throw new EOFException();
+      }
+      return b;
+    }
+
+    private void skipBytes( InputStream input, int n ) throws IOException {
+      while( n > 0 ) {
+        int read = input.read( skipBuffer, 0, Math.min( n, skipBuffer.length ) );
+        if( read == -1 ) {
+          throw new EOFException();
+        }
+        n -= read;
+      }
+    }
+
+  }
+
+}
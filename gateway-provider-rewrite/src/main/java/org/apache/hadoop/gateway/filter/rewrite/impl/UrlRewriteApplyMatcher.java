@@ -0,0 +1,503 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterApplyDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the regular expressions of all of the apply selectors of a filter content descriptor with a single
+ * scan of the text.
+ * <p/>
+ * A literal that every match must contain is extracted from each expression and all of these literals are
+ * compiled into one Aho-Corasick automaton. The text is scanned once with the automaton and only the expressions
+ * whose literal was found, plus those that have no such literal, are then run. Text that contains none of the
+ * literals, which is most of it, is copied without running any expression. The expressions that do run are
+ * applied one after the other in the order they are configured, each to the output of the previous one.
+ */
+public class UrlRewriteApplyMatcher {
+
+  private static final Map<UrlRewriteFilterContentDescriptor, UrlRewriteApplyMatcher> CACHE =
+      Collections.synchronizedMap( new WeakHashMap<UrlRewriteFilterContentDescriptor, UrlRewriteApplyMatcher>() );
+
+  private static final String SIMPLE_ESCAPES = "dDsSwWbBAGZzhHvVRXtnrfae";
+
+  private final UrlRewriteFilterApplyDescriptor[] applies;
+  private final String[] paths;
+  private final Pattern[] patterns;
+  private final String[] literals;
+  private final boolean unconditional;
+  private final Automaton automaton;
+
+  private UrlRewriteApplyMatcher( List<UrlRewriteFilterApplyDescriptor> applies,
+                                  UrlRewriteFilterPathDescriptor.Compiler<Pattern> compiler ) {
+    int count = applies.size();
+    this.applies = applies.toArray( new UrlRewriteFilterApplyDescriptor[ count ] );
+    paths = new String[ count ];
+    patterns = new Pattern[ count ];
+    literals = new String[ count ];
+    boolean unconditional = false;
+    boolean conditional = false;
+    for( int i = 0; i < count; i++ ) {
+      paths[ i ] = this.applies[ i ].path();
+      patterns[ i ] = this.applies[ i ].compiledPath( compiler );
+      literals[ i ] = requiredLiteral( patterns[ i ] );
+      if( literals[ i ] == null ) {
+        unconditional = true;
+      } else {
+        conditional = true;
+      }
+    }
+    this.unconditional = unconditional;
+    automaton = conditional ? new Automaton( literals ) : null;
+  }
+
+  /**
+   * Returns the matcher for the apply selectors of a content descriptor.
+   * Matchers are cached for as long as the descriptor is in use and are rebuilt if its apply selectors change.
+   */
+  public static UrlRewriteApplyMatcher get( UrlRewriteFilterContentDescriptor config,
+                                            UrlRewriteFilterPathDescriptor.Compiler<Pattern> compiler ) {
+    List<UrlRewriteFilterApplyDescriptor> applies = new ArrayList<>();
+    if( config == null ) {
+      return new UrlRewriteApplyMatcher( applies, compiler );
+    }
+    for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
+      if( selector instanceof UrlRewriteFilterApplyDescriptor ) {
+        applies.add( (UrlRewriteFilterApplyDescriptor)selector );
+      }
+    }
+    UrlRewriteApplyMatcher matcher = CACHE.get( config );
+    if( matcher == null || !matcher.isCompiledFrom( applies ) ) {
+      matcher = new UrlRewriteApplyMatcher( applies, compiler );
+      CACHE.put( config, matcher );
+    }
+    return matcher;
+  }
+
+  public boolean isEmpty() {
+    return patterns.length == 0;
+  }
+
+  /**
+   * Rewrites every match of every expression in the text.
+   * @return The rewritten text, or the text itself if nothing matched.
+   */
+  public String filter( String text, UrlRewriteFilterReader reader ) {
+    if( patterns.length == 0 ) {
+      return text;
+    }
+    int[] marks = new int[ patterns.length ];
+    if( !mark( text, marks, 1 ) && !unconditional ) {
+      return text;
+    }
+    return apply( text, marks, 1, reader );
+  }
+
+  /**
+   * Rewrites every match of every expression within each of the lines in a range of characters and appends the
+   * result to the output. Matches never span lines. The line terminators are copied unchanged.
+   * @param end The end of the range. It must be the end of a line or the end of the input.
+   */
+  public void filterLines( char[] chars, int start, int end, UrlRewriteFilterReader reader, StringBuilder output ) {
+    if( patterns.length == 0 ) {
+      output.append( chars, start, end - start );
+      return;
+    }
+    int[] marks = new int[ patterns.length ];
+    int line = 1;
+    int lineStart = start;
+    int copied = start;
+    int state = 0;
+    boolean matched = unconditional;
+    for( int i = start; i <= end; i++ ) {
+      if( i == end && lineStart == end ) {
+        break;
+      }
+      char c = ( i < end ) ? chars[ i ] : '\n';
+      if( c == '\n' || c == '\r' ) {
+        if( matched ) {
+          output.append( chars, copied, lineStart - copied );
+          output.append( apply( CharBuffer.wrap( chars, lineStart, i - lineStart ), marks, line, reader ) );
+          copied = i;
+        }
+        if( c == '\r' && i + 1 < end && chars[ i + 1 ] == '\n' ) {
+          i++;
+        }
+        lineStart = i + 1;
+        line++;
+        state = 0;
+        matched = unconditional;
+      } else if( automaton != null ) {
+        state = automaton.next( state, c );
+        int[] found = automaton.outputs[ state ];
+        for( int pattern : found ) {
+          marks[ pattern ] = line;
+          matched = true;
+        }
+      }
+    }
+    output.append( chars, copied, end - copied );
+  }
+
+  /**
+   * @return The rule of the first expression that matches the whole value, or null if none do.
+   */
+  public String ruleFor( String value ) {
+    if( patterns.length == 0 ) {
+      return null;
+    }
+    int[] marks = new int[ patterns.length ];
+    if( !mark( value, marks, 1 ) && !unconditional ) {
+      return null;
+    }
+    for( int i = 0; i < patterns.length; i++ ) {
+      if( ( literals[ i ] == null || marks[ i ] == 1 ) && patterns[ i ].matcher( value ).matches() ) {
+        return applies[ i ].rule();
+      }
+    }
+    return null;
+  }
+
+  // Applies the expressions that are either marked or have no literal in order.
+  // Once an expression has rewritten the text, the text is scanned again as the rewritten values may now
+  // contain the literals of expressions that come later.
+  private String apply( CharSequence text, int[] marks, int mark, UrlRewriteFilterReader reader ) {
+    for( int i = 0; i < patterns.length; i++ ) {
+      if( literals[ i ] == null || marks[ i ] == mark ) {
+        Matcher matcher = patterns[ i ].matcher( text );
+        if( matcher.find() ) {
+          StringBuilder builder = new StringBuilder( text.length() + 32 );
+          int index = 0;
+          do {
+            builder.append( text, index, matcher.start() );
+            builder.append( reader.filterValueString( null, matcher.group(), applies[ i ].rule() ) );
+            index = matcher.end();
+          } while( matcher.find() );
+          builder.append( text, index, text.length() );
+          text = builder.toString();
+          mark( text, marks, mark );
+        }
+      }
+    }
+    return text.toString();
+  }
+
+  private boolean mark( CharSequence text, int[] marks, int mark ) {
+    boolean found = false;
+    if( automaton != null ) {
+      int state = 0;
+      for( int i = 0, n = text.length(); i < n; i++ ) {
+        state = automaton.next( state, text.charAt( i ) );
+        for( int pattern : automaton.outputs[ state ] ) {
+          marks[ pattern ] = mark;
+          found = true;
+        }
+      }
+    }
+    return found;
+  }
+
+  private boolean isCompiledFrom( List<UrlRewriteFilterApplyDescriptor> applies ) {
+    if( applies.size() != this.applies.length ) {
+      return false;
+    }
+    for( int i = 0; i < this.applies.length; i++ ) {
+      if( applies.get( i ) != this.applies[ i ] || !paths[ i ].equals( this.applies[ i ].path() ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the longest run of literal characters that every match of the expression must contain.
+   * Expressions that are compiled with flags, use inline flags, alternate at the top level or use escapes that
+   * are not understood here have no such literal.
+   * @return The literal, or null if none could be found.
+   */
+  static String requiredLiteral( Pattern pattern ) {
+    if( pattern.flags() != 0 ) {
+      return null;
+    }
+    String regex = pattern.pattern();
+    int length = regex.length();
+    String longest = "";
+    StringBuilder run = new StringBuilder();
+    int depth = 0;
+    int i = 0;
+    while( i < length ) {
+      char c = regex.charAt( i );
+      int literal = -1;
+      if( c == '\\' ) {
+        if( i + 1 >= length ) {
+          return null;
+        }
+        char escaped = regex.charAt( i + 1 );
+        if( Character.isLetterOrDigit( escaped ) ) {
+          if( SIMPLE_ESCAPES.indexOf( escaped ) < 0 ) {
+            return null;
+          }
+        } else {
+          literal = escaped;
+        }
+        i += 2;
+      } else if( c == '[' ) {
+        i = skipClass( regex, i );
+        if( i < 0 ) {
+          return null;
+        }
+      } else if( c == '(' ) {
+        i = skipGroupStart( regex, i );
+        if( i < 0 ) {
+          return null;
+        }
+        longest = endRun( run, longest );
+        depth++;
+        continue;
+      } else if( c == ')' ) {
+        depth--;
+        i++;
+      } else if( c == '|' ) {
+        if( depth == 0 ) {
+          return null;
+        }
+        i++;
+        continue;
+      } else if( c == '^' || c == '$' || c == '.' ) {
+        i++;
+      } else if( c == '?' || c == '*' || c == '+' || c == '{' ) {
+        // A quantifier without a preceding atom is either a modifier of the previous quantifier or invalid.
+        return null;
+      } else {
+        literal = c;
+        i++;
+      }
+      // Consume the quantifier, if any, of the atom just read.
+      char quantifier = ( i < length ) ? regex.charAt( i ) : 0;
+      if( quantifier == '{' ) {
+        i = regex.indexOf( '}', i );
+        if( i < 0 ) {
+          return null;
+        }
+        i++;
+      } else if( quantifier == '?' || quantifier == '*' || quantifier == '+' ) {
+        i++;
+      } else {
+        quantifier = 0;
+      }
+      if( quantifier != 0 && i < length && ( regex.charAt( i ) == '?' || regex.charAt( i ) == '+' ) ) {
+        i++;
+      }
+      if( depth == 0 && literal >= 0 && ( quantifier == 0 || quantifier == '+' ) ) {
+        run.append( (char)literal );
+      }
+      if( depth != 0 || literal < 0 || quantifier != 0 ) {
+        longest = endRun( run, longest );
+      }
+    }
+    longest = endRun( run, longest );
+    return ( depth != 0 || longest.isEmpty() ) ? null : longest;
+  }
+
+  private static String endRun( StringBuilder run, String longest ) {
+    if( run.length() > longest.length() ) {
+      longest = run.toString();
+    }
+    run.setLength( 0 );
+    return longest;
+  }
+
+  // Returns the index after the opening of the group that starts at the given index.
+  // Returns -1 for groups that set inline flags as these can change how the literals match.
+  private static int skipGroupStart( String regex, int start ) {
+    int i = start + 1;
+    if( i >= regex.length() || regex.charAt( i ) != '?' ) {
+      return i;
+    }
+    i++;
+    char c = ( i < regex.length() ) ? regex.charAt( i ) : 0;
+    if( c == ':' || c == '=' || c == '!' || c == '>' ) {
+      return i + 1;
+    } else if( c == '<' ) {
+      char next = ( i + 1 < regex.length() ) ? regex.charAt( i + 1 ) : 0;
+      if( next == '=' || next == '!' ) {
+        return i + 2;
+      }
+      int end = regex.indexOf( '>', i );
+      return end < 0 ? -1 : end + 1;
+    }
+    return -1;
+  }
+
+  // Returns the index after the character class that starts at the given index, or -1 if it can't be parsed.
+  private static int skipClass( String regex, int start ) {
+    int depth = 0;
+    int i = start;
+    while( i < regex.length() ) {
+      char c = regex.charAt( i );
+      if( c == '\\' ) {
+        if( i + 1 < regex.length() && regex.charAt( i + 1 ) == 'Q' ) {
+          return -1;
+        }
+        i += 2;
+        continue;
+      }
+      if( c == '[' ) {
+        depth++;
+        int next = ( i + 1 < regex.length() && regex.charAt( i + 1 ) == '^' ) ? i + 2 : i + 1;
+        if( next < regex.length() && regex.charAt( next ) == ']' ) {
+          return -1;
+        }
+      } else if( c == ']' ) {
+        depth--;
+        if( depth == 0 ) {
+          return i + 1;
+        }
+      }
+      i++;
+    }
+    return -1;
+  }
+
+  /**
+   * An Aho-Corasick automaton over the literals of the expressions flattened into a transition table.
+   * The characters that occur in the literals are mapped to symbols 1 to n and all others to symbol 0.
+   */
+  private static final class Automaton {
+
+    private final char[] characters;
+    private final int[] ascii = new int[ 128 ];
+    private final int width;
+    private final int[] transitions;
+    private final int[][] outputs;
+
+    private Automaton( String[] literals ) {
+      TreeSet<Character> set = new TreeSet<>();
+      for( String literal : literals ) {
+        if( literal != null ) {
+          for( int i = 0; i < literal.length(); i++ ) {
+            set.add( literal.charAt( i ) );
+          }
+        }
+      }
+      characters = new char[ set.size() ];
+      int symbol = 0;
+      for( Character c : set ) {
+        characters[ symbol++ ] = c;
+        if( c < ascii.length ) {
+          ascii[ c ] = symbol;
+        }
+      }
+      width = characters.length + 1;
+
+      List<int[]> states = new ArrayList<>();
+      List<List<Integer>> found = new ArrayList<>();
+      states.add( newState() );
+      found.add( new ArrayList<Integer>() );
+      for( int pattern = 0; pattern < literals.length; pattern++ ) {
+        String literal = literals[ pattern ];
+        if( literal != null ) {
+          int state = 0;
+          for( int i = 0; i < literal.length(); i++ ) {
+            int[] row = states.get( state );
+            int s = symbol( literal.charAt( i ) );
+            if( row[ s ] < 0 ) {
+              row[ s ] = states.size();
+              states.add( newState() );
+              found.add( new ArrayList<Integer>() );
+            }
+            state = row[ s ];
+          }
+          found.get( state ).add( pattern );
+        }
+      }
+
+      // Resolve the failure links breadth first so that every state has a transition for every symbol.
+      int[] failures = new int[ states.size() ];
+      LinkedList<Integer> queue = new LinkedList<>();
+      int[] root = states.get( 0 );
+      for( int s = 0; s < width; s++ ) {
+        if( root[ s ] < 0 ) {
+          root[ s ] = 0;
+        } else {
+          queue.add( root[ s ] );
+        }
+      }
+      while( !queue.isEmpty() ) {
+        int state = queue.removeFirst();
+        int[] row = states.get( state );
+        int[] failureRow = states.get( failures[ state ] );
+        for( int s = 0; s < width; s++ ) {
+          if( row[ s ] < 0 ) {
+            row[ s ] = failureRow[ s ];
+          } else {
+            int child = row[ s ];
+            failures[ child ] = failureRow[ s ];
+            found.get( child ).addAll( found.get( failures[ child ] ) );
+            queue.add( child );
+          }
+        }
+      }
+
+      transitions = new int[ states.size() * width ];
+      outputs = new int[ states.size() ][];
+      for( int state = 0; state < states.size(); state++ ) {
+        System.arraycopy( states.get( state ), 0, transitions, state * width, width );
+        List<Integer> patterns = found.get( state );
+        outputs[ state ] = new int[ patterns.size() ];
+        for( int i = 0; i < patterns.size(); i++ ) {
+          outputs[ state ][ i ] = patterns.get( i );
+        }
+      }
+    }
+
+    private int[] newState() {
+      int[] row = new int[ width ];
+      Arrays.fill( row, -1 );
+      return row;
+    }
+
+    private int symbol( char c ) {
+      if( c < ascii.length ) {
+        return ascii[ c ];
+      }
+      int index = Arrays.binarySearch( characters, c );
+      return index < 0 ? 0 : index + 1;
+    }
+
+    private int next( int state, char c ) {
+      return transitions[ state * width + symbol( c ) ];
+    }
+
+  }
+
+}
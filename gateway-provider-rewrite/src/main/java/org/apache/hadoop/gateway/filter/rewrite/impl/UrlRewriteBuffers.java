@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Per-thread pool of the output buffers that the filter readers stage rewritten content in.
+ * A reader acquires a buffer when it is created and releases it when it is closed so that the next
+ * response on the same thread reuses the already grown buffer instead of allocating a new one.
+ * A few buffers are kept per thread because readers nest (e.g. script within HTML).
+ * Buffers that grew beyond {@link #MAX_RETAINED_CAPACITY} are left to the garbage collector so
+ * that one very large element doesn't pin its memory to the thread.
+ */
+public final class UrlRewriteBuffers {
+
+  static final int INITIAL_CAPACITY = 4 * 1024;
+  static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+  static final int MAX_RETAINED_BUFFERS = 4;
+
+  private static final ThreadLocal<Deque<StringBuilder>> POOL = new ThreadLocal<Deque<StringBuilder>>() {
+    @Override
+    protected Deque<StringBuilder> initialValue() {
+      return new ArrayDeque<>( MAX_RETAINED_BUFFERS );
+    }
+  };
+
+  private UrlRewriteBuffers() {
+  }
+
+  public static StringBuilder acquire() {
+    StringBuilder buffer = POOL.get().pollFirst();
+    if( buffer == null ) {
+      buffer = new StringBuilder( INITIAL_CAPACITY );
+    }
+    return buffer;
+  }
+
+  public static void release( StringBuilder buffer ) {
+    if( buffer == null || buffer.capacity() > MAX_RETAINED_CAPACITY ) {
+      return;
+    }
+    Deque<StringBuilder> pool = POOL.get();
+    if( pool.size() < MAX_RETAINED_BUFFERS ) {
+      buffer.setLength( 0 );
+      pool.offerFirst( buffer );
+    }
+  }
+
+}
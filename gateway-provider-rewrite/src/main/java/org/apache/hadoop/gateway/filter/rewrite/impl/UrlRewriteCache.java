@@ -0,0 +1,261 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import com.codahale.metrics.Counter;
+import org.apache.hadoop.gateway.filter.rewrite.api.FrontendFunctionDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
+import org.apache.hadoop.gateway.util.urltemplate.Resolver;
+import org.apache.hadoop.gateway.util.urltemplate.Template;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A bounded LRU cache of the results of rewriting URLs with the rules of a topology.
+ * <p/>
+ * Results are keyed by the URL, direction, requested rule and service role. While a URL is rewritten every value
+ * the rule reads from the resolver is recorded with the result and a cached result is only used while these still
+ * resolve to the same values, so values that differ between requests such as the frontend URL never make it stale.
+ * Functions are never called to check a cached result. Only results that call nothing but functions whose result
+ * depends solely on their parameters are cached. Others, such as the service registry functions that may return a
+ * different HA or load balanced URL on every call, or the current user, are rewritten each time. The cache belongs
+ * to the rewrite processor of a deployed topology so it goes away when the topology is redeployed.
+ */
+public class UrlRewriteCache {
+
+  // Functions whose results only depend on their parameters and the deployed topology.
+  private static final Set<String> DETERMINISTIC_FUNCTIONS = Collections.unmodifiableSet( new HashSet<>( Arrays.asList(
+      FrontendFunctionDescriptor.FUNCTION_NAME, "hostmap" ) ) );
+
+  private final int maxEntries;
+  private final Map<Key,Entry> entries;
+  private final ConcurrentMap<String,Counter[]> counters = new ConcurrentHashMap<>();
+
+  public UrlRewriteCache( final int maxEntries ) {
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<Key,Entry>( 16, 0.75f, true ) {
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<Key,Entry> eldest ) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  public boolean isEnabled() {
+    return maxEntries > 0;
+  }
+
+  public Entry get( Key key ) {
+    synchronized( entries ) {
+      return entries.get( key );
+    }
+  }
+
+  public void put( Key key, Entry entry ) {
+    synchronized( entries ) {
+      entries.put( key, entry );
+    }
+  }
+
+  public void clear() {
+    synchronized( entries ) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized( entries ) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Counts a lookup for a rule.
+   * @param ruleName The rule that was, or would have been, used for the URL.
+   * @param hit Whether a current result was found in the cache.
+   */
+  public void count( String ruleName, boolean hit ) {
+    if( ruleName != null ) {
+      getCounters( ruleName )[ hit ? 0 : 1 ].inc();
+    }
+  }
+
+  public Counter getHits( String ruleName ) {
+    return getCounters( ruleName )[ 0 ];
+  }
+
+  public Counter getMisses( String ruleName ) {
+    return getCounters( ruleName )[ 1 ];
+  }
+
+  private Counter[] getCounters( String ruleName ) {
+    Counter[] ruleCounters = counters.get( ruleName );
+    if( ruleCounters == null ) {
+      ruleCounters = new Counter[]{ new Counter(), new Counter() };
+      Counter[] existing = counters.putIfAbsent( ruleName, ruleCounters );
+      if( existing != null ) {
+        ruleCounters = existing;
+      }
+    }
+    return ruleCounters;
+  }
+
+  public static class Key {
+
+    private final String url;
+    private final UrlRewriter.Direction direction;
+    private final String ruleName;
+    private final String serviceRole;
+    private final int hash;
+
+    public Key( String url, UrlRewriter.Direction direction, String ruleName, String serviceRole ) {
+      this.url = url;
+      this.direction = direction;
+      this.ruleName = ruleName;
+      this.serviceRole = serviceRole;
+      int h = url.hashCode();
+      h = 31 * h + direction.hashCode();
+      h = 31 * h + ( ruleName == null ? 0 : ruleName.hashCode() );
+      h = 31 * h + ( serviceRole == null ? 0 : serviceRole.hashCode() );
+      this.hash = h;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals( Object object ) {
+      if( this == object ) {
+        return true;
+      }
+      if( !( object instanceof Key ) ) {
+        return false;
+      }
+      Key that = (Key)object;
+      return hash == that.hash && direction == that.direction && url.equals( that.url ) &&
+          equal( ruleName, that.ruleName ) && equal( serviceRole, that.serviceRole );
+    }
+
+  }
+
+  /**
+   * The result of rewriting a URL and the values it depended on.
+   */
+  public static class Entry {
+
+    private final String ruleName;
+    private final Template output;
+    private final Recorder dependencies;
+
+    /**
+     * @param ruleName The rule that rewrote the URL, null if no rule matched it.
+     * @param output The rewritten URL.
+     * @param dependencies The values read while rewriting the URL, null if none were read.
+     */
+    public Entry( String ruleName, Template output, Recorder dependencies ) {
+      this.ruleName = ruleName;
+      this.output = output;
+      this.dependencies = dependencies;
+    }
+
+    public String getRuleName() {
+      return ruleName;
+    }
+
+    public Template getOutput() {
+      return output;
+    }
+
+    /**
+     * @param resolver The resolver of the current request.
+     * @return true if every recorded value still resolves to the same result.
+     */
+    public boolean isCurrent( Resolver resolver ) {
+      if( dependencies == null ) {
+        return true;
+      }
+      for( int i = 0; i < dependencies.names.size(); i++ ) {
+        List<String> values;
+        try {
+          values = resolver == null ? null : resolver.resolve( dependencies.names.get( i ) );
+        } catch( Exception e ) {
+          values = null;
+        }
+        if( !equal( values, dependencies.values.get( i ) ) ) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+  }
+
+  /**
+   * Records the values read from the resolver while a URL is rewritten and whether the result can be cached.
+   */
+  public static class Recorder {
+
+    private final List<String> names = new ArrayList<>( 4 );
+    private final List<List<String>> values = new ArrayList<>( 4 );
+    private boolean failed = false;
+
+    /**
+     * @return false if a value could not be resolved or a function was called whose result may change between
+     *     calls, in which case the result must not be cached.
+     */
+    public boolean isComplete() {
+      return !failed;
+    }
+
+    void failed() {
+      failed = true;
+    }
+
+    void resolved( String name, List<String> resolved ) {
+      names.add( name );
+      values.add( copy( resolved ) );
+    }
+
+    void evaluated( String function ) {
+      if( !DETERMINISTIC_FUNCTIONS.contains( function ) ) {
+        failed = true;
+      }
+    }
+
+    private static List<String> copy( List<String> list ) {
+      return list == null ? null : new ArrayList<>( list );
+    }
+
+  }
+
+  private static boolean equal( Object a, Object b ) {
+    return a == null ? b == null : a.equals( b );
+  }
+
+}
@@ -45,6 +45,7 @@ public class UrlRewriteContextImpl implements UrlRewriteContext {
   private UrlRewriter.Direction direction;
   private Template originalUrl;
   private Template currentUrl;
+  private UrlRewriteCache.Recorder recorder;
 
   public UrlRewriteContextImpl(
       UrlRewriteEnvironment environment,
@@ -52,6 +53,20 @@ public class UrlRewriteContextImpl implements UrlRewriteContext {
       Map<String,UrlRewriteFunctionProcessor> functions,
       UrlRewriter.Direction direction,
       Template url ) {
+    this( environment, resolver, functions, direction, url, null );
+  }
+
+  /**
+   * @param recorder Records the values read from the resolver and the functions called, may be null.
+   */
+  public UrlRewriteContextImpl(
+      UrlRewriteEnvironment environment,
+      Resolver resolver,
+      Map<String,UrlRewriteFunctionProcessor> functions,
+      UrlRewriter.Direction direction,
+      Template url,
+      UrlRewriteCache.Recorder recorder ) {
+    this.recorder = recorder;
     this.environment = environment;
     this.resolver = resolver;
     this.functions = functions;
@@ -112,11 +127,17 @@ public class UrlRewriteContextImpl implements UrlRewriteContext {
       if( values == null ) {
         try {
           values = resolver.resolve( name );
+          if( recorder != null ) {
+            recorder.resolved( name, values );
+          }
           if( values == null ) {
             values = environment.resolve( name ); // Try to find the name in the environment.
           }
         } catch( Exception e ) {
           LOG.failedToFindValuesByParameter( name, e );
+          if( recorder != null ) {
+            recorder.failed();
+          }
           // Ignore it and return null.
         }
       }
@@ -145,6 +166,9 @@ public class UrlRewriteContextImpl implements UrlRewriteContext {
           results = null;
         }
       }
+      if( recorder != null ) {
+        recorder.evaluated( function );
+      }
       return results;
     }
   }
@@ -58,8 +58,9 @@ public class UrlRewriteFilterDetectDescriptorImpl
 
   @Override
   public <C> C compiledValue( Compiler<C> compiler ) {
-    compiledValue = compiler.compile( value, (C)compiledValue );
-    return (C)compiledValue;
+    C compiled = compiler.compile( value, (C)compiledValue );
+    compiledValue = compiled;
+    return compiled;
   }
 
 }
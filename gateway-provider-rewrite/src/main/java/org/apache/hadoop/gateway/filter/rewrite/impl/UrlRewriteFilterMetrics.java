@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.hadoop.gateway.services.metrics.TopologyMetrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what content rewriting costs for a topology.
+ * For each filter type (e.g. json, xml, html) and service role the bytes read from the original
+ * content, the bytes of filtered content produced and the time spent reading the filtered content
+ * are registered as bytes-in, bytes-out and time under rewrite.filter.&lt;topology&gt;.&lt;role&gt;.&lt;type&gt;.
+ * The time includes waiting for the original content as that can't be separated from filtering it.
+ */
+public class UrlRewriteFilterMetrics {
+
+  public static final String METRICS_PREFIX = "rewrite.filter";
+
+  private final TopologyMetrics metrics;
+  private final String prefix;
+  private final ConcurrentMap<String,Meters> meters = new ConcurrentHashMap<>();
+
+  public UrlRewriteFilterMetrics( MetricRegistry registry, String topology ) {
+    this.metrics = new TopologyMetrics( registry );
+    this.prefix = MetricRegistry.name( METRICS_PREFIX, topology );
+  }
+
+  public Measurement measure( String filterType, String serviceRole ) {
+    return getMeters( MetricRegistry.name( prefix, serviceRole, filterType ) ).measure();
+  }
+
+  private Meters getMeters( String name ) {
+    Meters result = meters.get( name );
+    if( result == null ) {
+      result = new Meters();
+      Meters existing = meters.putIfAbsent( name, result );
+      if( existing != null ) {
+        result = existing;
+      } else {
+        metrics.register( MetricRegistry.name( name, "bytes-in" ), result.bytesIn );
+        metrics.register( MetricRegistry.name( name, "bytes-out" ), result.bytesOut );
+        metrics.register( MetricRegistry.name( name, "time" ), result.time );
+      }
+    }
+    return result;
+  }
+
+  public void destroy() {
+    metrics.unregister();
+    meters.clear();
+  }
+
+  private static class Meters {
+
+    private final Counter bytesIn = new Counter();
+    private final Counter bytesOut = new Counter();
+    private final Timer time = new Timer();
+
+    private Measurement measure() {
+      return new Measurement( this );
+    }
+
+  }
+
+  /**
+   * Measures a single filtered stream.
+   * The original content is wrapped with {@link #input} before the filter is created and the filtered
+   * content with {@link #output} after.  The totals are recorded once, when the filtered content is
+   * either exhausted or closed.
+   */
+  public static class Measurement {
+
+    private final Meters meters;
+    private long in = 0;
+    private long out = 0;
+    private long nanos = 0;
+    private boolean recorded = false;
+
+    private Measurement( Meters meters ) {
+      this.meters = meters;
+    }
+
+    public InputStream input( InputStream stream ) {
+      return new FilterInputStream( stream ) {
+        @Override
+        public int read() throws IOException {
+          int b = super.read();
+          if( b >= 0 ) {
+            in++;
+          }
+          return b;
+        }
+        @Override
+        public int read( byte[] bytes, int offset, int length ) throws IOException {
+          int count = super.read( bytes, offset, length );
+          if( count > 0 ) {
+            in += count;
+          }
+          return count;
+        }
+        @Override
+        public long skip( long count ) throws IOException {
+          long skipped = super.skip( count );
+          in += skipped;
+          return skipped;
+        }
+      };
+    }
+
+    public InputStream output( InputStream stream ) {
+      return new FilterInputStream( stream ) {
+        @Override
+        public int read() throws IOException {
+          long start = System.nanoTime();
+          int b = super.read();
+          nanos += System.nanoTime() - start;
+          if( b >= 0 ) {
+            out++;
+          } else {
+            record();
+          }
+          return b;
+        }
+        @Override
+        public int read( byte[] bytes, int offset, int length ) throws IOException {
+          long start = System.nanoTime();
+          int count = super.read( bytes, offset, length );
+          nanos += System.nanoTime() - start;
+          if( count > 0 ) {
+            out += count;
+          } else if( count < 0 ) {
+            record();
+          }
+          return count;
+        }
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            record();
+          }
+        }
+      };
+    }
+
+    private void record() {
+      if( !recorded ) {
+        recorded = true;
+        meters.bytesIn.inc( in );
+        meters.bytesOut.inc( out );
+        meters.time.update( nanos, TimeUnit.NANOSECONDS );
+      }
+    }
+
+  }
+
+}
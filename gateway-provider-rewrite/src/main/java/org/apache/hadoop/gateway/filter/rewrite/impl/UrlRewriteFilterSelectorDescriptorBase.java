@@ -57,8 +57,10 @@ public class UrlRewriteFilterSelectorDescriptorBase<T> implements UrlRewriteFilt
 
   @Override
   public <C> C compiledPath( Compiler<C> compiler ) {
-    compiledPath = compiler.compile( path, (C)compiledPath );
-    return (C)compiledPath;
+    // Return this call's result as another thread may replace the shared one in between.
+    C compiled = compiler.compile( path, (C)compiledPath );
+    compiledPath = compiled;
+    return compiled;
   }
 
 }
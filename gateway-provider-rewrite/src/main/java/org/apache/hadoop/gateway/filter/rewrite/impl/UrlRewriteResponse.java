@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.gateway.filter.rewrite.impl;
 
+import org.apache.hadoop.gateway.config.GatewayConfig;
 import org.apache.hadoop.gateway.filter.GatewayResponseWrapper;
 import org.apache.hadoop.gateway.filter.ResponseStreamer;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
@@ -32,9 +33,11 @@ import org.apache.hadoop.gateway.util.urltemplate.Params;
 import org.apache.hadoop.gateway.util.urltemplate.Parser;
 import org.apache.hadoop.gateway.util.urltemplate.Template;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
 
 import javax.activation.MimeType;
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -51,8 +54,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.ZipException;
 
 import static org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteUtil.getRewriteFilterConfig;
@@ -69,6 +71,14 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
   // Testing with 16K made no appreciable difference.
   private static final int STREAM_BUFFER_SIZE = 8 * 1024;
 
+  // Content that is not rewritten is copied in larger chunks to reduce the
+  // number of read/write round trips, see gateway.httpserver.responseStreamBuffer.
+  private static final int PASS_THROUGH_BUFFER_SIZE = 64 * 1024;
+
+  private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+  private static final String GZIP_ENCODING = "gzip";
+  private static final String IDENTITY_ENCODING = "identity";
+
   private static final Set<String> IGNORE_HEADER_NAMES = new HashSet<>();
   static {
     IGNORE_HEADER_NAMES.add( "Content-Length" );
@@ -91,6 +101,8 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
   private String xForwardedHostname;
   private String xForwardedPort;
   private String xForwardedScheme;
+  private int passThroughBufferSize;
+  private int compressionLevel;
 
   public UrlRewriteResponse( FilterConfig config, HttpServletRequest request, HttpServletResponse response )
       throws IOException {
@@ -105,6 +117,17 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
     this.headersFilterName = config.getInitParameter( UrlRewriteServletFilter.RESPONSE_HEADERS_FILTER_PARAM );
     this.headersFilterConfig = getRewriteFilterConfig( rewriter.getConfig(), headersFilterName, UrlRewriteServletFilter.HEADERS_MIME_TYPE );
     this.cookiesFilterName = config.getInitParameter( UrlRewriteServletFilter.RESPONSE_COOKIES_FILTER_PARAM );
+    GatewayConfig gatewayConfig = getGatewayConfig( config.getServletContext() );
+    int size = ( gatewayConfig == null ) ? 0 : gatewayConfig.getHttpServerResponseStreamBuffer();
+    this.passThroughBufferSize = size > 0 ? size : PASS_THROUGH_BUFFER_SIZE;
+    this.compressionLevel = ( gatewayConfig == null ) ? Deflater.DEFAULT_COMPRESSION : gatewayConfig.getUrlRewriteGzipCompressionLevel();
+  }
+
+  private static GatewayConfig getGatewayConfig( ServletContext context ) {
+    if( context == null ) {
+      return null;
+    }
+    return (GatewayConfig)context.getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE );
   }
 
   protected boolean ignoreHeader( String name ) {
@@ -150,24 +173,6 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
 
   @Override
   public void streamResponse( InputStream input, OutputStream output ) throws IOException {
-    InputStream inStream;
-    OutputStream outStream;
-    boolean isGzip = false;
-    BufferedInputStream inBuffer = new BufferedInputStream(input);
-    try {
-      // Use this way to check whether the input stream is gzip compressed, in case
-      // the content encoding header is unknown, as it could be unset in inbound response
-      inBuffer.mark(STREAM_BUFFER_SIZE);
-      inStream = new GZIPInputStream(inBuffer);
-      isGzip = true;
-    } catch (ZipException e) {
-      inBuffer.reset();
-      inStream = inBuffer;
-    } catch (IOException e) {
-      inBuffer.reset();
-      inStream = inBuffer;
-    }
-
     MimeType mimeType = getMimeType();
     UrlRewriteFilterContentDescriptor filterContentConfig =
         getRewriteFilterConfig( rewriter.getConfig(), bodyFilterName, mimeType );
@@ -177,12 +182,68 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
         mimeType = MimeTypes.create(asType, getCharacterEncoding());
       }
     }
+
+    // Content that no filter would change is copied as is, without the gzip
+    // decode/encode round trip, since the inbound encoding is already correct.
+    // The same goes for content in an encoding that can't be decoded for rewriting.
+    String contentEncoding = getContentEncoding();
+    if( UrlRewriteStreamFilterFactory.isPassThrough( mimeType, null, filterContentConfig )
+        || !isDecodable( contentEncoding ) ) {
+      IOUtils.copyLarge( input, output, new byte[ passThroughBufferSize ] );
+      output.close();
+      return;
+    }
+
+    InputStream inStream;
+    OutputStream outStream;
+    boolean isGzip = false;
+    if( GZIP_ENCODING.equalsIgnoreCase( contentEncoding ) ) {
+      inStream = GzipStreams.newInputStream( new CloseShieldInputStream( input ), STREAM_BUFFER_SIZE );
+      isGzip = true;
+    } else {
+      BufferedInputStream inBuffer = new BufferedInputStream(input);
+      try {
+        // Use this way to check whether the input stream is gzip compressed, in case
+        // the content encoding header is unknown, as it could be unset in inbound response
+        inBuffer.mark(STREAM_BUFFER_SIZE);
+        inStream = GzipStreams.newInputStream( new CloseShieldInputStream( inBuffer ), STREAM_BUFFER_SIZE );
+        isGzip = true;
+      } catch (ZipException e) {
+        inBuffer.reset();
+        inStream = inBuffer;
+      } catch (IOException e) {
+        inBuffer.reset();
+        inStream = inBuffer;
+      }
+    }
+
     InputStream filteredInput = UrlRewriteStreamFilterFactory.create(
         mimeType, null, inStream, rewriter, this, UrlRewriter.Direction.OUT, filterContentConfig );
-    outStream = (isGzip) ? new GZIPOutputStream(output) : output;
-    IOUtils.copyLarge( filteredInput, outStream, new byte[STREAM_BUFFER_SIZE] );
-    //KNOX-685: outStream.flush();
-    outStream.close();
+    // An empty body stays empty rather than becoming an empty gzip member, whatever its encoding claims.
+    outStream = ( isGzip && !GzipStreams.isEmpty( inStream ) )
+        ? GzipStreams.newOutputStream( output, compressionLevel, STREAM_BUFFER_SIZE ) : output;
+    try {
+      IOUtils.copyLarge( filteredInput, outStream, new byte[STREAM_BUFFER_SIZE] );
+      //KNOX-685: outStream.flush();
+      outStream.close();
+    } finally {
+      // Returns the pooled codecs even if copying failed, the underlying streams are left for the dispatch to close.
+      if( isGzip ) {
+        GzipStreams.release( outStream );
+        inStream.close();
+      }
+    }
+  }
+
+  private String getContentEncoding() {
+    String encoding = getHeader( CONTENT_ENCODING_HEADER );
+    return ( encoding == null ) ? null : encoding.trim();
+  }
+
+  // Only gzip can be decoded for rewriting, unencoded content may still be gzip'd as detected below.
+  private static boolean isDecodable( String encoding ) {
+    return encoding == null || encoding.isEmpty()
+        || GZIP_ENCODING.equalsIgnoreCase( encoding ) || IDENTITY_ENCODING.equalsIgnoreCase( encoding );
   }
 
   //TODO: Need to buffer the output here and when it is closed, rewrite it and then write the result to the stream.
@@ -21,6 +21,10 @@ import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFlowDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteStepDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteStepFlow;
+import org.apache.hadoop.gateway.filter.rewrite.ext.UrlRewriteActionRewriteProcessorExt;
+import org.apache.hadoop.gateway.filter.rewrite.ext.UrlRewriteCheckProcessorExt;
+import org.apache.hadoop.gateway.filter.rewrite.ext.UrlRewriteControlProcessorExt;
+import org.apache.hadoop.gateway.filter.rewrite.ext.UrlRewriteMatchProcessorExt;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteStepProcessor;
@@ -39,6 +43,11 @@ public class UrlRewriteStepProcessorHolder implements UrlRewriteStepProcessor {
   private UrlRewriteStepDescriptor descriptor;
   private UrlRewriteStepProcessor processor;
   private List<UrlRewriteStepProcessorHolder> childProcessors;
+  private boolean cacheable;
+  // The flow and its children grouped into blocks of conditions and the actions they guard.
+  // Resolved once at initialization so that processing walks plain arrays.
+  private UrlRewriteStepFlow flow;
+  private Block[] blocks;
 
   @Override
   public String getType() {
@@ -81,6 +90,52 @@ public class UrlRewriteStepProcessorHolder implements UrlRewriteStepProcessor {
         }
       }
     }
+    if( isCondition && !childProcessors.isEmpty() ) {
+      flow = ( (UrlRewriteFlowDescriptor)descriptor ).flow();
+      if( flow == null ) {
+        flow = UrlRewriteStepFlow.AND;
+      }
+      blocks = createBlocks( childProcessors );
+    }
+    cacheable = isBuiltIn( processor );
+    for( UrlRewriteStepProcessorHolder childProcessor : childProcessors ) {
+      cacheable &= childProcessor.isCacheable();
+    }
+  }
+
+  // Splits the steps into runs of conditions each followed by the run of actions after them.
+  private static Block[] createBlocks( List<UrlRewriteStepProcessorHolder> steps ) {
+    List<Block> blocks = new ArrayList<>();
+    int i = 0;
+    int n = steps.size();
+    while( i < n ) {
+      int start = i;
+      while( i < n && steps.get( i ).isCondition() ) {
+        i++;
+      }
+      int middle = i;
+      while( i < n && steps.get( i ).isAction() ) {
+        i++;
+      }
+      blocks.add( new Block( steps.subList( start, middle ), steps.subList( middle, i ) ) );
+    }
+    return blocks.toArray( new Block[ blocks.size() ] );
+  }
+
+  /**
+   * Whether the results of this step can be cached. This is only the case if it and all of its child steps are
+   * built in steps, as these depend on nothing but the URL, the values they resolve and the functions they call.
+   */
+  public boolean isCacheable() {
+    return cacheable;
+  }
+
+  private static boolean isBuiltIn( UrlRewriteStepProcessor processor ) {
+    return processor instanceof UrlRewriteRuleProcessorImpl ||
+        processor instanceof UrlRewriteMatchProcessorExt ||
+        processor instanceof UrlRewriteCheckProcessorExt ||
+        processor instanceof UrlRewriteControlProcessorExt ||
+        processor instanceof UrlRewriteActionRewriteProcessorExt;
   }
 
   // For unit testing.
@@ -99,14 +154,7 @@ public class UrlRewriteStepProcessorHolder implements UrlRewriteStepProcessor {
     // If initialization failed then fail processing
     if( processor != null ) {
       status = processor.process( context );
-      if( UrlRewriteStepStatus.SUCCESS == status &&
-          descriptor instanceof UrlRewriteFlowDescriptor &&
-          !childProcessors.isEmpty() ) {
-        UrlRewriteFlowDescriptor flowDescriptor = (UrlRewriteFlowDescriptor)descriptor;
-        UrlRewriteStepFlow flow = flowDescriptor.flow();
-        if( flow == null ) {
-          flow = UrlRewriteStepFlow.AND;
-        }
+      if( UrlRewriteStepStatus.SUCCESS == status && blocks != null ) {
         switch( flow ) {
           case ALL:
             return processAllFlow( context );
@@ -121,18 +169,15 @@ public class UrlRewriteStepProcessorHolder implements UrlRewriteStepProcessor {
   }
 
   private UrlRewriteStepStatus processAllFlow( UrlRewriteContext context ) throws Exception {
-    UrlRewriteStepProcessorState state = new UrlRewriteStepProcessorState( childProcessors.iterator() );
-    UrlRewriteStepStatus stepStatus = UrlRewriteStepStatus.SUCCESS;
-    UrlRewriteStepProcessorHolder step;
-    while( state.hasNext() ) {
-      while( state.hasNextCondition() ) {
-        step = state.nextCondition( stepStatus );
+    UrlRewriteStepStatus stepStatus;
+    for( Block block : blocks ) {
+      for( UrlRewriteStepProcessorHolder step : block.conditions ) {
         stepStatus = step.process( context );
         if( stepStatus == UrlRewriteStepStatus.FINISHED ) {
           return stepStatus;
         }
       }
-      stepStatus = processActions( context, state );
+      stepStatus = processActions( context, block );
       if( stepStatus == UrlRewriteStepStatus.FINISHED ) {
         return stepStatus;
       }
@@ -142,18 +187,15 @@ public class UrlRewriteStepProcessorHolder implements UrlRewriteStepProcessor {
 
   // All conditions proceeding a set of one or more actions must succeed for the actions to be executed.
   private UrlRewriteStepStatus processAndFlow( UrlRewriteContext context ) throws Exception {
-    UrlRewriteStepProcessorState state = new UrlRewriteStepProcessorState( childProcessors.iterator() );
-    UrlRewriteStepStatus stepStatus = UrlRewriteStepStatus.SUCCESS;
-    UrlRewriteStepProcessorHolder step;
-    while( state.hasNext() ) {
-      while( state.hasNextCondition() ) {
-        step = state.nextCondition( stepStatus );
+    UrlRewriteStepStatus stepStatus;
+    for( Block block : blocks ) {
+      for( UrlRewriteStepProcessorHolder step : block.conditions ) {
         stepStatus = step.process( context );
         if( !( stepStatus == UrlRewriteStepStatus.SUCCESS ) ) {
           return stepStatus;
         }
       }
-      stepStatus = processActions( context, state );
+      stepStatus = processActions( context, block );
       if( !( stepStatus == UrlRewriteStepStatus.SUCCESS ) ) {
         return stepStatus;
       }
@@ -163,13 +205,10 @@ public class UrlRewriteStepProcessorHolder implements UrlRewriteStepProcessor {
 
   // At least one condition proceeding a set of one or more actions must succedd for the actions to be executed.
   private UrlRewriteStepStatus processOrFlow( UrlRewriteContext context ) throws Exception {
-    UrlRewriteStepProcessorState state = new UrlRewriteStepProcessorState( childProcessors.iterator() );
-    UrlRewriteStepStatus status = UrlRewriteStepStatus.SUCCESS;
-    UrlRewriteStepProcessorHolder step;
-    while( state.hasNext() ) {
+    UrlRewriteStepStatus status;
+    for( Block block : blocks ) {
       UrlRewriteStepStatus flowStatus = UrlRewriteStepStatus.FAILURE;
-      while( state.hasNextCondition() ) {
-        step = state.nextCondition( status );
+      for( UrlRewriteStepProcessorHolder step : block.conditions ) {
         if( flowStatus == UrlRewriteStepStatus.FAILURE ) {
           status = step.process( context );
           switch( status ) {
@@ -181,7 +220,7 @@ public class UrlRewriteStepProcessorHolder implements UrlRewriteStepProcessor {
           }
         }
       }
-      status = processActions( context, state );
+      status = processActions( context, block );
       if( status != UrlRewriteStepStatus.SUCCESS ) {
         return status;
       }
@@ -189,24 +228,17 @@ public class UrlRewriteStepProcessorHolder implements UrlRewriteStepProcessor {
     return UrlRewriteStepStatus.SUCCESS;
   }
 
-  private UrlRewriteStepStatus processActions( UrlRewriteContext context, UrlRewriteStepProcessorState state )
-      throws Exception {
-    UrlRewriteStepStatus flowStatus = UrlRewriteStepStatus.SUCCESS;
-    while( state.hasNextAction() ) {
-      if( flowStatus == UrlRewriteStepStatus.SUCCESS ) {
-        UrlRewriteStepStatus stepStatus = UrlRewriteStepStatus.SUCCESS;
-        UrlRewriteStepProcessorHolder step = state.nextAction( stepStatus );
-        stepStatus = step.process( context );
-        switch( stepStatus ) {
-          case FAILURE:
-            flowStatus = UrlRewriteStepStatus.FAILURE;
-            continue;
-          case FINISHED:
-            return stepStatus;
-        }
+  // The remaining actions of a block are skipped once one of them fails.
+  private UrlRewriteStepStatus processActions( UrlRewriteContext context, Block block ) throws Exception {
+    for( UrlRewriteStepProcessorHolder step : block.actions ) {
+      UrlRewriteStepStatus stepStatus = step.process( context );
+      switch( stepStatus ) {
+        case FAILURE:
+        case FINISHED:
+          return stepStatus;
       }
     }
-    return flowStatus;
+    return UrlRewriteStepStatus.SUCCESS;
   }
 
   @Override
@@ -230,4 +262,16 @@ public class UrlRewriteStepProcessorHolder implements UrlRewriteStepProcessor {
     }
   }
 
+  private static class Block {
+
+    private final UrlRewriteStepProcessorHolder[] conditions;
+    private final UrlRewriteStepProcessorHolder[] actions;
+
+    private Block( List<UrlRewriteStepProcessorHolder> conditions, List<UrlRewriteStepProcessorHolder> actions ) {
+      this.conditions = conditions.toArray( new UrlRewriteStepProcessorHolder[ conditions.size() ] );
+      this.actions = actions.toArray( new UrlRewriteStepProcessorHolder[ actions.size() ] );
+    }
+
+  }
+
 }
@@ -17,22 +17,23 @@
  */
 package org.apache.hadoop.gateway.filter.rewrite.impl.form;
 
+import org.apache.commons.io.output.StringBuilderWriter;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteBuffers;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteUtil;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
 
 public class FormFilterReader extends Reader {
 
   private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
 
   private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
+  private StringBuilderWriter writer;
+  private StringBuilder buffer;
   private Reader reader;
   private FormReader parser;
   private FormWriter generator;
@@ -42,8 +43,8 @@ public class FormFilterReader extends Reader {
     this.reader = reader;
     this.config = config;
     parser = new FormReader( reader );
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
+    buffer = UrlRewriteBuffers.acquire();
+    writer = new StringBuilderWriter( buffer );
     offset = 0;
     generator = new FormWriter( writer );
   }
@@ -99,6 +100,8 @@ public class FormFilterReader extends Reader {
   public void close() throws IOException {
     writer.close();
     reader.close();
+    UrlRewriteBuffers.release( buffer );
+    buffer = null;
   }
 
 }
@@ -28,7 +28,13 @@ public class FormReader {
 
   private static final int DEFAULT_BUFFER_SIZE = 1024;
 
+  private static final int READ_BUFFER_SIZE = 8 * 1024;
+
   private Reader reader;
+  // Characters read from the reader in blocks so that each one isn't a separate call.
+  private char[] input;
+  private int inputPosition;
+  private int inputLimit;
   private FormPair current;
   private StringBuilder buffer;
   private int sepIndex;
@@ -38,14 +44,22 @@ public class FormReader {
     this.current = null;
     this.buffer = new StringBuilder( DEFAULT_BUFFER_SIZE );
     this.sepIndex = -1;
+    this.input = new char[ READ_BUFFER_SIZE ];
+    this.inputPosition = 0;
+    this.inputLimit = 0;
   }
 
   public FormPair getNextPair() throws IOException {
     while( true ) {
-      int c = reader.read();
+      int c = read();
       switch( c ) {
         case '=':
-          sepIndex = buffer.length();
+          // Only the first = separates the name from the value.
+          if( sepIndex < 0 ) {
+            sepIndex = buffer.length();
+          } else {
+            buffer.append( (char)c );
+          }
           break;
         case '&':
           // Ignore adjacent &s.
@@ -70,6 +84,21 @@ public class FormReader {
     }
   }
 
+  private int read() throws IOException {
+    if( inputPosition == inputLimit ) {
+      int count = reader.read( input, 0, input.length );
+      while( count == 0 ) {
+        count = reader.read( input, 0, input.length );
+      }
+      if( count < 0 ) {
+        return -1;
+      }
+      inputPosition = 0;
+      inputLimit = count;
+    }
+    return input[ inputPosition++ ];
+  }
+
   private FormPair createCurrentPair() throws UnsupportedEncodingException {
     String name;
     String value;
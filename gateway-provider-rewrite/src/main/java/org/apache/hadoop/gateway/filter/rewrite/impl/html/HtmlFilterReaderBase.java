@@ -24,27 +24,23 @@ import net.htmlparser.jericho.Segment;
 import net.htmlparser.jericho.StartTag;
 import net.htmlparser.jericho.StreamedSource;
 import net.htmlparser.jericho.Tag;
-import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterApplyDescriptor;
+import org.apache.commons.io.output.StringBuilderWriter;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteApplyMatcher;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteBuffers;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFilterReader;
-import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteUtil;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
-import org.apache.hadoop.gateway.util.XmlUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 import javax.xml.namespace.QName;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Stack;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteFilterReader {
@@ -54,31 +50,32 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
 
   private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
 
-  private Document document;
   private Stack<Level> stack;
   private Reader reader;
   private StreamedSource parser;
   private Iterator<Segment> iterator;
   private int lastSegEnd;
   private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
+  private StringBuilderWriter writer;
+  private StringBuilder buffer;
   private UrlRewriteFilterContentDescriptor config = null;
+  private UrlRewriteApplyMatcher applies;
 
   protected HtmlFilterReaderBase( Reader reader ) throws IOException, ParserConfigurationException {
     this.reader = reader;
-    document = XmlUtils.createDocument( false );
     stack = new Stack<Level>();
     parser = new StreamedSource( reader );
     iterator = parser.iterator();
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
+    buffer = UrlRewriteBuffers.acquire();
+    writer = new StringBuilderWriter( buffer );
     offset = 0;
+    applies = UrlRewriteApplyMatcher.get( null, REGEX_COMPILER );
   }
 
   protected HtmlFilterReaderBase( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException, ParserConfigurationException {
     this(reader);
     this.config = config;
+    applies = UrlRewriteApplyMatcher.get( config, REGEX_COMPILER );
   }
 
   protected abstract String filterAttribute( QName elementName, QName attributeName, String attributeValue, String ruleName );
@@ -146,7 +143,6 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
 
   private void processStartTag( StartTag tag ) {
     if( "<".equals( tag.getTagType().getStartDelimiter() ) ) {
-      Element e = document.createElement( tag.getNameSegment().toString() );
       stack.push( new Level( tag ) );
       writer.write( "<" );
       writer.write( tag.getNameSegment().toString() );
@@ -188,26 +184,15 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
         LOG.failedToFilterAttribute( attribute.getName(), e );
       }
       writer.write( "=" );
-      writer.write( attribute.getQuoteChar() );
+      writer.append( attribute.getQuoteChar() );
       writer.write( outputValue );
-      writer.write( attribute.getQuoteChar() );
+      writer.append( attribute.getQuoteChar() );
     }
   }
 
   private String getRuleName(String inputValue) {
-    if( config != null && !config.getSelectors().isEmpty() ) {
-      for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
-        if ( selector instanceof UrlRewriteFilterApplyDescriptor ) {
-          UrlRewriteFilterApplyDescriptor apply = (UrlRewriteFilterApplyDescriptor)selector;
-          Matcher matcher = apply.compiledPath( REGEX_COMPILER ).matcher( inputValue );
-            if (matcher.matches()) {
-              return apply.rule();
-            }
-          }
-        }
-      }
-      return null;
-    }
+    return applies.ruleFor( inputValue );
+  }
 
   private void processText( Segment segment ) {
     String inputValue = segment.toString();
@@ -220,7 +205,7 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
         String tagName = stack.peek().getTag().getName();
         if (SCRIPTTAG.equals(tagName) && config != null && !config.getSelectors().isEmpty() ) {
           // embedded javascript content
-          outputValue = UrlRewriteUtil.filterJavaScript( inputValue, config, this, REGEX_COMPILER );
+          outputValue = applies.filter( inputValue, this );
         } else {
           outputValue = filterText( stack.peek().getQName(), inputValue, getRuleName(inputValue) );
         }
@@ -240,6 +225,8 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
     reader.close();
     writer.close();
     stack.clear();
+    UrlRewriteBuffers.release( buffer );
+    buffer = null;
   }
 
   private String getNamespace( String prefix ) {
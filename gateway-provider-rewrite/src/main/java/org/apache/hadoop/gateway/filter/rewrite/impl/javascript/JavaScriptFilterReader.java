@@ -19,34 +19,42 @@ package org.apache.hadoop.gateway.filter.rewrite.impl.javascript;
 
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
-import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteApplyMatcher;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFilterReader;
-import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteUtil;
-import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.regex.Pattern;
 
+/**
+ * Rewrites the matches of the apply selectors of a filter within JavaScript.
+ * <p/>
+ * The input is read in chunks and every complete line in a chunk is rewritten with a single scan by a
+ * {@link UrlRewriteApplyMatcher}. A line that is not complete at the end of a chunk is carried over to the next
+ * one so that matches, which never span lines, are never split between chunks.
+ */
 public abstract class JavaScriptFilterReader extends Reader implements UrlRewriteFilterReader {
 
   private static final UrlRewriteFilterPathDescriptor.Compiler<Pattern> REGEX_COMPILER = new RegexCompiler();
 
-  private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
+  private static final int BUFFER_SIZE = 8192;
 
-  private BufferedReader reader;
+  private Reader reader;
+  private UrlRewriteApplyMatcher matcher;
+  private char[] input;
+  private int inputLength;
+  private boolean eof;
+  private StringBuilder output;
   private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
-  private UrlRewriteFilterContentDescriptor config;
 
   protected JavaScriptFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException {
-    this.reader = new BufferedReader( reader );
-    this.config = config;
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
+    this.reader = reader;
+    matcher = UrlRewriteApplyMatcher.get( config, REGEX_COMPILER );
+    input = new char[ BUFFER_SIZE ];
+    inputLength = 0;
+    eof = false;
+    output = new StringBuilder( BUFFER_SIZE );
     offset = 0;
   }
 
@@ -55,37 +63,60 @@ public abstract class JavaScriptFilterReader extends Reader implements UrlRewrit
 
   @Override
   public int read( char[] destBuffer, int destOffset, int destCount ) throws IOException {
-    int count = 0;
-    int available = buffer.length() - offset;
-    String cbuff;
-    if( available == 0 ) {
-      cbuff = reader.readLine();
-      if( cbuff != null ) {
-        count = cbuff.length();
-        writer.write( UrlRewriteUtil.filterJavaScript( cbuff, config, this, REGEX_COMPILER ) );
-        writer.write( '\n' );
-        available = buffer.length() - offset;
-      } else {
-        count = -1;
+    while( offset == output.length() ) {
+      output.setLength( 0 );
+      offset = 0;
+      if( !fill() ) {
+        return -1;
       }
     }
+    int count = Math.min( destCount, output.length() - offset );
+    output.getChars( offset, offset + count, destBuffer, destOffset );
+    offset += count;
+    return count;
+  }
 
-    if( available > 0 ) {
-      count = Math.min( destCount, available );
-      buffer.getChars( offset, offset + count, destBuffer, destOffset );
-      offset += count;
-      if( offset == buffer.length() ) {
-        offset = 0;
-        buffer.setLength( 0 );
+  // Reads until at least one complete line is available and then rewrites all of the complete lines read.
+  // Returns false once the input has been consumed.
+  private boolean fill() throws IOException {
+    while( !eof ) {
+      if( inputLength == input.length ) {
+        input = Arrays.copyOf( input, input.length * 2 );
+      }
+      int count = reader.read( input, inputLength, input.length - inputLength );
+      if( count < 0 ) {
+        eof = true;
+        matcher.filterLines( input, 0, inputLength, this, output );
+        inputLength = 0;
+        return true;
+      }
+      int from = inputLength;
+      inputLength += count;
+      int end = endOfLines( from );
+      if( end > 0 ) {
+        matcher.filterLines( input, 0, end, this, output );
+        inputLength -= end;
+        System.arraycopy( input, end, input, 0, inputLength );
+        return true;
       }
     }
+    return false;
+  }
 
-    return count;
+  // Returns the index after the last line terminator in the input, or 0 if there isn't one.
+  // A trailing carriage return isn't a terminator yet as it may be followed by a line feed.
+  private int endOfLines( int from ) {
+    for( int i = inputLength - 1; i >= Math.max( 0, from - 1 ); i-- ) {
+      char c = input[ i ];
+      if( c == '\n' || ( c == '\r' && i < inputLength - 1 ) ) {
+        return i + 1;
+      }
+    }
+    return 0;
   }
 
   @Override
   public void close() throws IOException {
     reader.close();
-    writer.close();
   }
 }
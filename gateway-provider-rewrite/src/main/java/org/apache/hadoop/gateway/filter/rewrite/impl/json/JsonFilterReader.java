@@ -24,8 +24,8 @@ import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterApplyDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterBufferDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
@@ -36,507 +36,265 @@ import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.util.JsonPath;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Stack;
 import java.util.regex.Pattern;
 
+/**
+ * Rewrites a JSON document one token at a time.
+ * <p/>
+ * Only the names and positions of the elements from the root down to the current token are kept,
+ * and the apply and buffer paths of the filter config are matched against them as each token is read.
+ * A JSON tree is only built for the elements selected by a buffer descriptor, so unless those are large
+ * the memory used does not depend on the size of the document.
+ */
 class JsonFilterReader extends Reader {
 
   private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
 
-  private static final UrlRewriteFilterPathDescriptor.Compiler<JsonPath.Expression> JPATH_COMPILER = new JsonPathCompiler();
+  private static final UrlRewriteFilterPathDescriptor.Compiler<CompiledPath> JPATH_COMPILER = new JsonPathCompiler();
   private static final UrlRewriteFilterPathDescriptor.Compiler<Pattern> REGEX_COMPILER = new RegexCompiler();
 
-  private JsonFactory factory;
+  // Both are thread safe once configured so they are shared by every reader.
+  private static final JsonFactory FACTORY = new JsonFactory();
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  // The number of tokens that are processed before the generator is flushed into the output buffer.
+  private static final int TOKENS_PER_FLUSH = 64;
+
   private JsonParser parser;
   private JsonGenerator generator;
-  private ObjectMapper mapper;
 
   private Reader reader;
-  private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
-  private Stack<Level> stack;
-  private Level bufferingLevel;
-  private UrlRewriteFilterBufferDescriptor bufferingConfig;
+  private OutputBuffer buffer;
+  private Level[] levels;
+  private int depth;
+  private String field;
+  private boolean done;
   private UrlRewriteFilterGroupDescriptor config;
 
 
   public JsonFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException {
     this.reader = reader;
-    factory = new JsonFactory();
-    mapper = new ObjectMapper();
-    parser = factory.createParser( reader );
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
-    offset = 0;
-    generator = factory.createGenerator( writer );
-    stack = new Stack<Level>();
-    bufferingLevel = null;
-    bufferingConfig = null;
+    parser = FACTORY.createParser( reader );
+    buffer = new OutputBuffer();
+    generator = FACTORY.createGenerator( buffer );
+    levels = new Level[ 16 ];
+    depth = 0;
+    field = null;
+    done = false;
     this.config = config;
   }
 
   @Override
   public int read( char[] destBuffer, int destOffset, int destCount ) throws IOException {
-    int count = 0;
-    int available = buffer.length() - offset;
-
-    if( available == 0 ) {
-      JsonToken token = parser.nextToken();
-      if( token == null ) {
-        count = -1;
-      } else {
-        processCurrentToken();
-        available = buffer.length() - offset;
+    while( buffer.available() == 0 ) {
+      if( done ) {
+        return -1;
       }
-    }
-
-    if( available > 0 ) {
-      count = Math.min( destCount, available );
-      buffer.getChars( offset, offset+count, destBuffer, destOffset );
-      offset += count;
-      if( offset == buffer.length() ) {
-        offset = 0;
-        buffer.setLength( 0 );
+      for( int i = 0; i < TOKENS_PER_FLUSH && !done; i++ ) {
+        JsonToken token = parser.nextToken();
+        if( token == null ) {
+          done = true;
+        } else {
+          processCurrentToken( token );
+        }
       }
+      generator.flush();
     }
-
-    return count;
+    return buffer.read( destBuffer, destOffset, destCount );
   }
 
-  private void processCurrentToken() throws IOException {
-    switch( parser.getCurrentToken() ) {
+  private void processCurrentToken( JsonToken token ) throws IOException {
+    switch( token ) {
       case START_OBJECT:
-        processStartObject();
+      case START_ARRAY:
+        processStartContainer( token );
         break;
       case END_OBJECT:
-        processEndObject();
-        break;
-      case START_ARRAY:
-        processStartArray();
+        generator.writeEndObject();
+        depth--;
         break;
       case END_ARRAY:
-        processEndArray();
+        generator.writeEndArray();
+        depth--;
         break;
       case FIELD_NAME:
-        processFieldName(); // Could be the name of an object, array or value.
+        processFieldName();
         break;
       case VALUE_STRING:
         processValueString();
         break;
       case VALUE_NUMBER_INT:
       case VALUE_NUMBER_FLOAT:
-        processValueNumber();
-        break;
       case VALUE_TRUE:
       case VALUE_FALSE:
-        processValueBoolean();
-        break;
       case VALUE_NULL:
-        processValueNull();
+        // Nothing to match these against, only the position in the parent needs to be kept.
+        pushLevel( false );
+        depth--;
+        generator.copyCurrentEvent( parser );
         break;
       case NOT_AVAILABLE:
         // Ignore it.
         break;
     }
-    generator.flush();
   }
 
-  private Level pushLevel( String field, JsonNode node, JsonNode scopeNode, UrlRewriteFilterGroupDescriptor scopeConfig ) {
-    if( !stack.isEmpty() ) {
-      Level top = stack.peek();
-      if( scopeNode == null ) {
-        scopeNode = top.scopeNode;
-        scopeConfig = top.scopeConfig;
-      }
-    }
-    Level level = new Level( field, node, scopeNode, scopeConfig );
-    stack.push( level );
+  private Level pushLevel( boolean array ) {
+    Level parent = ( depth > 0 ) ? levels[ depth - 1 ] : null;
+    if( depth == levels.length ) {
+      levels = Arrays.copyOf( levels, depth * 2 );
+    }
+    Level level = levels[ depth ];
+    if( level == null ) {
+      level = new Level();
+      levels[ depth ] = level;
+    }
+    level.field = field;
+    level.index = ( parent != null && parent.array ) ? parent.children++ : -1;
+    level.array = array;
+    level.children = 0;
+    field = null;
+    depth++;
     return level;
   }
 
-  private void processStartObject() throws IOException {
-    JsonNode node;
-    Level child;
-    Level parent;
-    if( stack.isEmpty() ) {
-      node = mapper.createObjectNode();
-      child = pushLevel( null, node, node, config );
+  private void processStartContainer( JsonToken token ) throws IOException {
+    pushLevel( token == JsonToken.START_ARRAY );
+    UrlRewriteFilterBufferDescriptor bufferConfig = findBuffer();
+    if( bufferConfig != null ) {
+      JsonNode node = readBufferedNode( token );
+      filterBufferedNode( node, bufferConfig );
+      MAPPER.writeTree( generator, node );
+      depth--;
+    } else if( token == JsonToken.START_ARRAY ) {
+      generator.writeStartArray();
     } else {
-      child = stack.peek();
-      if( child.node == null ) {
-        child.node = mapper.createObjectNode();
-        parent = stack.get( stack.size()-2 );
-        switch( parent.node.asToken() ) {
-          case START_ARRAY:
-            ((ArrayNode)parent.node ).add( child.node );
-            break;
-          case START_OBJECT:
-            ((ObjectNode)parent.node ).put( child.field, child.node );
-            break;
-          default:
-            throw new IllegalStateException();
-        }
-      } else if( child.isArray() ) {
-        parent = child;
-        node = mapper.createObjectNode();
-        child = pushLevel( null, node, null, null );
-        ((ArrayNode)parent.node ).add( child.node );
-      } else {
-        throw new IllegalStateException();
-      }
-    }
-    if( bufferingLevel == null ) {
-      if( !startBuffering( child ) ) {
-        generator.writeStartObject();
-      }
-    }
-  }
-
-  private void processEndObject() throws IOException {
-    Level child;
-    Level parent;
-    child = stack.pop();
-    if( bufferingLevel == child ) {
-      filterBufferedNode( child );
-      mapper.writeTree( generator, child.node );
-      bufferingLevel = null;
-      bufferingConfig = null;
-    } else if( bufferingLevel == null ) {
-      generator.writeEndObject();
-      if( !stack.isEmpty() ) {
-        parent = stack.peek();
-        switch( parent.node.asToken() ) {
-          case START_ARRAY:
-            ((ArrayNode)parent.node ).removeAll();
-            break;
-          case START_OBJECT:
-            ((ObjectNode)parent.node ).removeAll();
-            break;
-          default:
-            throw new IllegalStateException();
-        }
-      }
-    }
-  }
-
-  private void processStartArray() throws IOException {
-    JsonNode node;
-    Level child;
-    Level parent;
-    if( stack.isEmpty() ) {
-      node = mapper.createArrayNode();
-      child = pushLevel( null, node, node, config );
-    } else {
-      child = stack.peek();
-      if( child.node == null ) {
-        child.node = mapper.createArrayNode();
-        parent = stack.get( stack.size() - 2 );
-        switch( parent.node.asToken() ) {
-          case START_ARRAY:
-            ((ArrayNode)parent.node ).add( child.node );
-            break;
-          case START_OBJECT:
-            ((ObjectNode)parent.node ).put( child.field, child.node );
-            break;
-          default:
-            throw new IllegalStateException();
-        }
-      } else if( child.isArray() ) {
-        parent = child;
-        child = pushLevel( null, mapper.createArrayNode(), null, null );
-        ((ArrayNode)parent.node ).add( child.node );
-      } else {
-        throw new IllegalStateException();
-      }
-    }
-    if( bufferingLevel == null ) {
-      if( !startBuffering( child ) ) {
-        generator.writeStartArray();
-      }
-    }
-  }
-
-  private void processEndArray() throws IOException {
-    Level child;
-    Level parent;
-    child = stack.pop();
-    if( bufferingLevel == child ) {
-      filterBufferedNode( child );
-      mapper.writeTree( generator, child.node );
-      bufferingLevel = null;
-      bufferingConfig = null;
-    } else if( bufferingLevel == null ) {
-      generator.writeEndArray();
-      if( !stack.isEmpty() ) {
-        parent = stack.peek();
-        switch( parent.node.asToken() ) {
-          case START_ARRAY:
-            ((ArrayNode)parent.node ).removeAll();
-            break;
-          case START_OBJECT:
-            ((ObjectNode)parent.node ).removeAll();
-            break;
-          default:
-            throw new IllegalStateException();
-        }
-      }
+      generator.writeStartObject();
     }
   }
 
   private void processFieldName() throws IOException {
-    Level child = pushLevel( parser.getCurrentName(), null, null, null );
+    field = parser.getCurrentName();
     try {
-      child.field = filterFieldName( child.field );
+      field = filterFieldName( field );
     } catch( Exception e ) {
-      LOG.failedToFilterFieldName( child.field, e );
+      LOG.failedToFilterFieldName( field, e );
       // Write original name.
     }
-    if( bufferingLevel == null ) {
-      generator.writeFieldName( child.field );
-    }
+    generator.writeFieldName( field );
   }
 
   private void processValueString() throws IOException {
-    Level child;
-    Level parent;
-    String value = null;
-    parent = stack.peek();
-    if( parent.isArray() ) {
-      ArrayNode array = (ArrayNode)parent.node;
-      array.add( parser.getText() );
-      if( bufferingLevel == null ) {
-        value = filterStreamValue( parent );
-        array.set( array.size()-1, new TextNode( value ) );
-      } else {
-        array.removeAll();
-      }
-    } else {
-      child = stack.pop();
-      parent = stack.peek();
-      ((ObjectNode)parent.node ).put( child.field, parser.getText() );
-      if( bufferingLevel == null ) {
-        child.node = parent.node; // Populate the JsonNode of the child for filtering.
-        value = filterStreamValue( child );
-      }
-    }
-    if( bufferingLevel == null ) {
-      if( parent.node.isArray() ) {
-        ((ArrayNode)parent.node).removeAll();
-      } else {
-        ((ObjectNode)parent.node).removeAll();
-      }
-      generator.writeString( value );
-    }
-  }
-
-  private void processValueNumber() throws IOException {
-    Level child;
-    Level parent;
-    parent = stack.peek();
-    if( parent.isArray() ) {
-      if( bufferingLevel != null ) {
-        ArrayNode array = (ArrayNode)parent.node;
-        processBufferedArrayValueNumber( array );
-      }
-    } else {
-      child = stack.pop();
-      if( bufferingLevel != null ) {
-        parent = stack.peek();
-        ObjectNode object = (ObjectNode)parent.node;
-        processBufferedFieldValueNumber( child, object );
-      }
-    }
-    if( bufferingLevel == null ) {
-      processedUnbufferedValueNumber();
-    }
-  }
-
-  private void processedUnbufferedValueNumber() throws IOException {
-    switch( parser.getNumberType() ) {
-      case INT:
-        generator.writeNumber( parser.getIntValue() );
-        break;
-      case LONG:
-        generator.writeNumber( parser.getLongValue() );
-        break;
-      case BIG_INTEGER:
-        generator.writeNumber( parser.getBigIntegerValue() );
-        break;
-      case FLOAT:
-        generator.writeNumber( parser.getFloatValue() );
-        break;
-      case DOUBLE:
-        generator.writeNumber( parser.getDoubleValue() );
-        break;
-      case BIG_DECIMAL:
-        generator.writeNumber( parser.getDecimalValue() );
-        break;
-    }
-  }
-
-  private void processBufferedFieldValueNumber( Level child, ObjectNode object ) throws IOException {
-    //object.put( child.field, parser.getDecimalValue() );
-    switch( parser.getNumberType() ) {
-      case INT:
-        object.put( child.field, parser.getIntValue() );
-        break;
-      case LONG:
-        object.put( child.field, parser.getLongValue() );
-        break;
-      case BIG_INTEGER:
-        object.put( child.field, parser.getDecimalValue() );
-        break;
-      case FLOAT:
-        object.put( child.field, parser.getFloatValue() );
-        break;
-      case DOUBLE:
-        object.put( child.field, parser.getDoubleValue() );
-        break;
-      case BIG_DECIMAL:
-        object.put( child.field, parser.getDecimalValue() );
-        break;
-    }
-  }
-
-  private void processBufferedArrayValueNumber( ArrayNode array ) throws IOException {
-    //array.add( parser.getDecimalValue() );
-    switch( parser.getNumberType() ) {
-      case INT:
-        array.add( parser.getIntValue() );
-        break;
-      case LONG:
-        array.add( parser.getLongValue() );
-        break;
-      case BIG_INTEGER:
-        array.add( parser.getDecimalValue() );
-        break;
-      case FLOAT:
-        array.add( parser.getFloatValue() );
-        break;
-      case DOUBLE:
-        array.add( parser.getDoubleValue() );
-        break;
-      case BIG_DECIMAL:
-        array.add( parser.getDecimalValue() );
-        break;
-    }
-  }
-
-  private void processValueBoolean() throws IOException {
-    Level child;
-    Level parent;
-    parent = stack.peek();
-    if( parent.isArray() ) {
-      ((ArrayNode)parent.node ).add( parser.getBooleanValue() );
-      //dump();
-      if( bufferingLevel == null ) {
-        ((ArrayNode)parent.node ).removeAll();
-      }
-    } else {
-      child = stack.pop();
-      parent = stack.peek();
-      ((ObjectNode)parent.node ).put( child.field, parser.getBooleanValue() );
-      //dump();
-      if( bufferingLevel == null ) {
-        ((ObjectNode)parent.node ).remove( child.field );
-      }
-    }
-    if( bufferingLevel == null ) {
-      generator.writeBoolean( parser.getBooleanValue() );
+    Level level = pushLevel( false );
+    Level parent = ( depth > 1 ) ? levels[ depth - 2 ] : null;
+    // Values in an array are filtered using the name of the array.
+    String name = ( parent != null && parent.array ) ? parent.field : level.field;
+    String value = parser.getText();
+    String rule = findRule();
+    depth--;
+    try {
+      value = filterValueString( name, value, rule );
+    } catch( Exception e ) {
+      LOG.failedToFilterValue( value, rule, e );
     }
+    generator.writeString( value );
   }
 
-  private void processValueNull() throws IOException {
-    Level child;
-    Level parent = stack.peek();
-    if( parent.isArray() ) {
-      ((ArrayNode)parent.node ).addNull();
-      //dump();
-      if( bufferingLevel == null ) {
-        ((ArrayNode)parent.node ).removeAll();
-      }
-    } else {
-      child = stack.pop();
-      parent = stack.peek();
-      ((ObjectNode)parent.node ).putNull( child.field );
-      //dump();
-      if( bufferingLevel == null ) {
-        ((ObjectNode)parent.node ).remove( child.field );
+  // Returns the buffer selector if it is the first selector of the scope that matches
+  // either the current element or one of its parents.
+  private UrlRewriteFilterBufferDescriptor findBuffer() {
+    if( config != null ) {
+      for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
+        CompiledPath path = compiledPath( selector );
+        if( path.matchDepth( levels, depth ) >= 0 ) {
+          if( selector instanceof UrlRewriteFilterBufferDescriptor ) {
+            return (UrlRewriteFilterBufferDescriptor)selector;
+          }
+          break;
+        }
       }
     }
-    if( bufferingLevel == null ) {
-      generator.writeNull();
-    }
+    return null;
   }
 
-  protected boolean startBuffering( Level node ) {
-    boolean buffered = false;
-    UrlRewriteFilterGroupDescriptor scope = node.scopeConfig;
-    if( scope != null ) {
-      for( UrlRewriteFilterPathDescriptor selector : scope.getSelectors() ) {
-        JsonPath.Expression path = (JsonPath.Expression)selector.compiledPath( JPATH_COMPILER );
-        List<JsonPath.Match> matches = path.evaluate( node.scopeNode );
-        if( matches != null && !matches.isEmpty() ) {
-          if( selector instanceof UrlRewriteFilterBufferDescriptor ) {
-            bufferingLevel = node;
-            bufferingConfig = (UrlRewriteFilterBufferDescriptor)selector;
-            buffered = true;
-          }
-          break;
+  // Returns the rule of the first apply selector that matches the current value,
+  // but not one of its parents first.
+  private String findRule() {
+    if( config != null ) {
+      for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
+        CompiledPath path = compiledPath( selector );
+        if( path.matchDepth( levels, depth ) == depth - 1 && selector instanceof UrlRewriteFilterApplyDescriptor ) {
+          return ((UrlRewriteFilterApplyDescriptor)selector).rule();
         }
       }
     }
-    return buffered;
+    return null;
   }
 
-  protected String filterStreamValue( Level node ) {
-    String value;
-    if( node.isArray() ) {
-      value = node.node.get( 0 ).asText();
-    } else {
-      value = node.node.get( node.field ).asText();
+  // Reads the value that starts with the current token into a tree, consuming all of its tokens.
+  private JsonNode readBufferedNode( JsonToken token ) throws IOException {
+    JsonNodeFactory factory = MAPPER.getNodeFactory();
+    if( token == null ) {
+      throw new EOFException();
     }
-    String rule = null;
-    UrlRewriteFilterGroupDescriptor scope = node.scopeConfig;
-    //TODO: Scan the top level apply rules for the first match.
-    if( scope != null ) {
-      for( UrlRewriteFilterPathDescriptor selector : scope.getSelectors() ) {
-        JsonPath.Expression path = (JsonPath.Expression)selector.compiledPath( JPATH_COMPILER );
-        List<JsonPath.Match> matches = path.evaluate( node.scopeNode );
-        if( matches != null && !matches.isEmpty() ) {
-          JsonPath.Match match = matches.get( 0 );
-          if( match.getNode().isTextual() ) {
-            if( selector instanceof UrlRewriteFilterApplyDescriptor ) {
-              UrlRewriteFilterApplyDescriptor apply = (UrlRewriteFilterApplyDescriptor)selector;
-              rule = apply.rule();
-              break;
-            }
+    switch( token ) {
+      case START_OBJECT:
+        ObjectNode object = factory.objectNode();
+        for( token = parser.nextToken(); token != JsonToken.END_OBJECT; token = parser.nextToken() ) {
+          if( token == null ) {
+            throw new EOFException();
           }
+          String name = parser.getCurrentName();
+          try {
+            name = filterFieldName( name );
+          } catch( Exception e ) {
+            LOG.failedToFilterFieldName( name, e );
+          }
+          object.set( name, readBufferedNode( parser.nextToken() ) );
         }
-      }
-    }
-    try {
-      value = filterValueString( node.field, value, rule );
-      if( node.isArray() ) {
-        ((ArrayNode)node.node).set( 0, new TextNode( value ) );
-      } else {
-        ((ObjectNode)node.node).put( node.field, value );
-      }
-    } catch( Exception e ) {
-      LOG.failedToFilterValue( value, rule, e );
+        return object;
+      case START_ARRAY:
+        ArrayNode array = factory.arrayNode();
+        for( token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken() ) {
+          array.add( readBufferedNode( token ) );
+        }
+        return array;
+      case VALUE_STRING:
+        return factory.textNode( parser.getText() );
+      case VALUE_NUMBER_INT:
+      case VALUE_NUMBER_FLOAT:
+        switch( parser.getNumberType() ) {
+          case INT:
+            return factory.numberNode( parser.getIntValue() );
+          case LONG:
+            return factory.numberNode( parser.getLongValue() );
+          case BIG_INTEGER:
+            return factory.numberNode( parser.getBigIntegerValue() );
+          case FLOAT:
+            return factory.numberNode( parser.getFloatValue() );
+          case DOUBLE:
+            return factory.numberNode( parser.getDoubleValue() );
+          default:
+            return factory.numberNode( parser.getDecimalValue() );
+        }
+      case VALUE_TRUE:
+      case VALUE_FALSE:
+        return factory.booleanNode( parser.getBooleanValue() );
+      default:
+        return factory.nullNode();
     }
-    return value;
   }
 
-  private void filterBufferedNode( Level node ) {
-    for( UrlRewriteFilterPathDescriptor selector : bufferingConfig.getSelectors() ) {
-      JsonPath.Expression path = (JsonPath.Expression)selector.compiledPath( JPATH_COMPILER );
-      List<JsonPath.Match> matches = path.evaluate( node.node );
+  private void filterBufferedNode( JsonNode node, UrlRewriteFilterBufferDescriptor bufferConfig ) {
+    for( UrlRewriteFilterPathDescriptor selector : bufferConfig.getSelectors() ) {
+      JsonPath.Expression path = compiledPath( selector ).expression;
+      List<JsonPath.Match> matches = path.evaluate( node );
       for( JsonPath.Match match : matches ) {
         if( selector instanceof UrlRewriteFilterApplyDescriptor ) {
           if( match.getNode().isTextual() ) {
@@ -544,8 +302,8 @@ class JsonFilterReader extends Reader {
           }
         } else if( selector instanceof UrlRewriteFilterDetectDescriptor ) {
           UrlRewriteFilterDetectDescriptor detectConfig = (UrlRewriteFilterDetectDescriptor)selector;
-          JsonPath.Expression detectPath = (JsonPath.Expression)detectConfig.compiledPath( JPATH_COMPILER );
-          List<JsonPath.Match> detectMatches = detectPath.evaluate( node.node );
+          JsonPath.Expression detectPath = compiledPath( detectConfig ).expression;
+          List<JsonPath.Match> detectMatches = detectPath.evaluate( node );
           for( JsonPath.Match detectMatch : detectMatches ) {
             if( detectMatch.getNode().isTextual() ) {
               String detectValue = detectMatch.getNode().asText();
@@ -560,10 +318,10 @@ class JsonFilterReader extends Reader {
     }
   }
 
-  private void filterBufferedValues( Level node, List<UrlRewriteFilterPathDescriptor> selectors ) {
+  private void filterBufferedValues( JsonNode node, List<UrlRewriteFilterPathDescriptor> selectors ) {
     for( UrlRewriteFilterPathDescriptor selector : selectors ) {
-      JsonPath.Expression path = (JsonPath.Expression)selector.compiledPath( JPATH_COMPILER );
-      List<JsonPath.Match> matches = path.evaluate( node.node );
+      JsonPath.Expression path = compiledPath( selector ).expression;
+      List<JsonPath.Match> matches = path.evaluate( node );
       for( JsonPath.Match match : matches ) {
         if( match.getNode().isTextual() ) {
           if( selector instanceof UrlRewriteFilterApplyDescriptor ) {
@@ -585,6 +343,10 @@ class JsonFilterReader extends Reader {
     }
   }
 
+  private static CompiledPath compiledPath( UrlRewriteFilterPathDescriptor selector ) {
+    return (CompiledPath)selector.compiledPath( JPATH_COMPILER );
+  }
+
   protected String filterFieldName( String field ) {
     return field;
   }
@@ -596,31 +358,126 @@ class JsonFilterReader extends Reader {
   @Override
   public void close() throws IOException {
     generator.close();
-    writer.close();
     parser.close();
     reader.close();
   }
 
+  // One element on the path from the root to the current token.
   private static class Level {
     String field;
-    JsonNode node;
-    JsonNode scopeNode;
-    UrlRewriteFilterGroupDescriptor scopeConfig;
-    private Level( String field, JsonNode node, JsonNode scopeNode, UrlRewriteFilterGroupDescriptor scopeConfig ) {
-      this.field = field;
-      this.node = node;
-      this.scopeNode = scopeNode;
-      this.scopeConfig = scopeConfig;
+    int index;
+    boolean array;
+    int children;
+  }
+
+  // A JSON path along with its segments so that it can be matched against the current path without a tree.
+  private static class CompiledPath {
+
+    private final JsonPath.Expression expression;
+    private final JsonPath.Segment[] segments;
+
+    private CompiledPath( JsonPath.Expression expression ) {
+      this.expression = expression;
+      this.segments = expression.getSegments();
+    }
+
+    // Returns the depth of the shallowest of the first count levels that the path matches, or -1 if there is none.
+    private int matchDepth( Level[] levels, int count ) {
+      for( int last = 0; last < count; last++ ) {
+        if( matches( 0, levels, 0, last ) ) {
+          return last;
+        }
+      }
+      return -1;
+    }
+
+    // Returns true if the segments starting at segment match exactly the levels from level to last.
+    private boolean matches( int segment, Level[] levels, int level, int last ) {
+      if( segment == segments.length ) {
+        return level > last;
+      }
+      JsonPath.Segment current = segments[ segment ];
+      if( current.getType() == JsonPath.Segment.Type.GLOB ) {
+        return matches( segment + 1, levels, level, last ) ||
+            ( level <= last && matches( segment, levels, level + 1, last ) );
+      }
+      if( level > last ) {
+        return false;
+      }
+      switch( current.getType() ) {
+        case ROOT:
+          return level == 0 && matches( segment + 1, levels, level + 1, last );
+        case FIELD:
+          return current.getField().equals( levels[ level ].field ) && matches( segment + 1, levels, level + 1, last );
+        case INDEX:
+          return current.getIndex() == levels[ level ].index && matches( segment + 1, levels, level + 1, last );
+        case WILD:
+          return level > 0 && matches( segment + 1, levels, level + 1, last );
+        default:
+          return false;
+      }
+    }
+
+  }
+
+  // Collects the output of the generator and hands it out to the reader, reusing the same array throughout.
+  private static class OutputBuffer extends Writer {
+
+    private char[] chars = new char[ 4096 ];
+    private int start = 0;
+    private int end = 0;
+
+    private int available() {
+      return end - start;
+    }
+
+    private int read( char[] destBuffer, int destOffset, int destCount ) {
+      int count = Math.min( destCount, end - start );
+      System.arraycopy( chars, start, destBuffer, destOffset, count );
+      start += count;
+      if( start == end ) {
+        start = 0;
+        end = 0;
+      }
+      return count;
     }
-    public boolean isArray() {
-      return node != null && node.isArray();
+
+    @Override
+    public void write( char[] source, int offset, int count ) {
+      if( end + count > chars.length ) {
+        int length = end - start;
+        if( length + count > chars.length ) {
+          char[] grown = new char[ Math.max( chars.length * 2, length + count ) ];
+          System.arraycopy( chars, start, grown, 0, length );
+          chars = grown;
+        } else {
+          System.arraycopy( chars, start, chars, 0, length );
+        }
+        start = 0;
+        end = length;
+      }
+      System.arraycopy( source, offset, chars, end, count );
+      end += count;
+    }
+
+    @Override
+    public void flush() {
     }
+
+    @Override
+    public void close() {
+    }
+
   }
 
-  private static class JsonPathCompiler implements UrlRewriteFilterPathDescriptor.Compiler<JsonPath.Expression> {
+  private static class JsonPathCompiler implements UrlRewriteFilterPathDescriptor.Compiler<CompiledPath> {
     @Override
-    public JsonPath.Expression compile( String expression, JsonPath.Expression compiled ) {
-      return JsonPath.compile( expression );
+    public CompiledPath compile( String expression, CompiledPath compiled ) {
+      if( compiled != null ) {
+        return compiled;
+      } else {
+        return new CompiledPath( JsonPath.compile( expression ) );
+      }
     }
   }
 
@@ -635,10 +492,4 @@ class JsonFilterReader extends Reader {
     }
   }
 
-//  private void dump() throws IOException {
-//    mapper.writeTree( factory.createGenerator( System.out ), stack.get( 0 ).node );
-//    System.out.println();
-//  }
-
 }
-
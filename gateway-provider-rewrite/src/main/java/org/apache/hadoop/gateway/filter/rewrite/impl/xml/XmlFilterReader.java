@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.gateway.filter.rewrite.impl.xml;
 
+import org.apache.commons.io.output.StringBuilderWriter;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterApplyDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterBufferDescriptor;
@@ -27,6 +28,7 @@ import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescript
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterScopeDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteResources;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteBuffers;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.i18n.resources.ResourcesFactory;
 import org.apache.hadoop.gateway.util.XmlUtils;
@@ -60,12 +62,25 @@ import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
 import java.io.Writer;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
+/**
+ * Rewrites an XML document as it is parsed.
+ * <p/>
+ * When every path outside of the buffer descriptors is a simple location path (see {@link StreamPath})
+ * the paths are matched against the stack of open elements and no DOM is built except for the
+ * elements selected by a buffer descriptor. Otherwise the open elements are mirrored in a DOM so that
+ * the paths can be evaluated as XPath expressions.
+ */
 public abstract class XmlFilterReader extends Reader {
 
   private static final UrlRewriteResources RES = ResourcesFactory.get( UrlRewriteResources.class );
@@ -76,33 +91,58 @@ public abstract class XmlFilterReader extends Reader {
   private static final UrlRewriteFilterPathDescriptor.Compiler<XPathExpression> XPATH_COMPILER = new XmlPathCompiler();
   private static final UrlRewriteFilterPathDescriptor.Compiler<Pattern> REGEX_COMPILER = new RegexCompiler();
 
+  private static final XMLInputFactory FACTORY = createFactory();
+
   private Reader reader;
   private UrlRewriteFilterContentDescriptor config;
   private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
-  private XMLInputFactory factory;
+  private StringBuilderWriter writer;
+  private StringBuilder buffer;
   private XMLEventReader parser;
   private Document document;
   private Stack<Level> stack;
   private boolean isEmptyElement;
+  private boolean streaming;
 
   protected XmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException, XMLStreamException {
     this.reader = reader;
     this.config = config;
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
+    buffer = UrlRewriteBuffers.acquire();
+    writer = new StringBuilderWriter( buffer );
     offset = 0;
     document = null;
     stack = new Stack<Level>();
     isEmptyElement = false;
-    factory = XMLInputFactory.newFactory();
+    streaming = isStreamable( config );
+    parser = FACTORY.createXMLEventReader( reader );
+  }
+
+  // The factory is thread safe once configured so it is shared by every reader.
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newFactory();
     //KNOX-620 factory.setProperty( XMLConstants.ACCESS_EXTERNAL_DTD, "false" );
     //KNOX-620 factory.setProperty( XMLConstants.ACCESS_EXTERNAL_SCHEMA, "false" );
     factory.setProperty( "javax.xml.stream.isReplacingEntityReferences", Boolean.FALSE );
     factory.setProperty("http://java.sun.com/xml/stream/"
                 + "properties/report-cdata-event", Boolean.TRUE);
-    parser = factory.createXMLEventReader( reader );
+    return factory;
+  }
+
+  // The paths of buffer descriptors themselves are matched while streaming but their contents are always
+  // evaluated against the buffered DOM.
+  private static boolean isStreamable( UrlRewriteFilterGroupDescriptor config ) {
+    if( config != null ) {
+      for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
+        if( StreamPath.compile( selector.path() ) == null ) {
+          return false;
+        }
+        if( selector instanceof UrlRewriteFilterScopeDescriptor &&
+            !isStreamable( (UrlRewriteFilterScopeDescriptor)selector ) ) {
+          return false;
+        }
+      }
+    }
+    return true;
   }
 
   protected abstract String filterAttribute( QName elementName, QName attributeName, String attributeValue, String ruleName );
@@ -187,8 +227,12 @@ public abstract class XmlFilterReader extends Reader {
     //System.out.println( "SD=" + event );
     String s;
 
-    document = XmlUtils.createDocument( false );
-    pushLevel( null, event, document, document, config );
+    if( streaming ) {
+      pushLevel( null, event, null, null, config );
+    } else {
+      document = XmlUtils.createDocument( false );
+      pushLevel( null, event, document, document, config );
+    }
 
     writer.write( "<?xml" );
 
@@ -219,47 +263,61 @@ public abstract class XmlFilterReader extends Reader {
     document = null;
   }
 
-  private void processStartElement( StartElement event ) throws XPathExpressionException {
+  private void processStartElement( StartElement event ) throws XPathExpressionException, ParserConfigurationException {
     //System.out.println( "SE=" + event );
-
-    // Create a new "empty" element and add it to the document.
-    Element element = bufferElement( event );
     Level parent = stack.peek();
-    parent.node.appendChild( element );
 
     // If already buffering just continue to do so.
     // Note: Don't currently support nested buffer or scope descriptors.
     if( currentlyBuffering() ) {
+      Element element = bufferElement( event );
+      parent.node.appendChild( element );
       pushLevel( parent, event, element, parent.scopeNode, parent.scopeConfig );
       bufferAttributes( event, element );
     // Else not currently buffering
     } else {
+      // Create a new "empty" element and add it to the document unless the paths are matched against the stack.
+      Element element = null;
+      if( !streaming ) {
+        element = bufferElement( event );
+        parent.node.appendChild( element );
+      }
+      Level level = pushLevel( parent, event, element, parent.scopeNode, parent.scopeConfig );
       // See if there is a matching path descriptor in the current scope.
-      UrlRewriteFilterPathDescriptor descriptor = pickFirstMatchingPath( parent );
-      if( descriptor != null ) {
-        // If this is a buffer descriptor then switch to buffering and buffer the attributes.
-        if( descriptor instanceof UrlRewriteFilterBufferDescriptor ) {
-          pushLevel( parent, event, element, element, (UrlRewriteFilterBufferDescriptor)descriptor );
-          bufferAttributes( event, element );
-        // Otherwise if this is a scope descriptor then change the scope and stream the attributes.
-        } else if( descriptor instanceof UrlRewriteFilterScopeDescriptor ) {
-          pushLevel( parent, event, element, element, (UrlRewriteFilterScopeDescriptor)descriptor );
-          streamElement( event, element );
-        // Else found an unexpected matching path.
-        } else {
-          // This is likely because there is an <apply> targeted at the text of an element.
-          // That "convenience" config will be taken care of in the streamElement() processing.
-          pushLevel( parent, event, element, parent.scopeNode, parent.scopeConfig );
-          streamElement( event, element );
+      UrlRewriteFilterPathDescriptor descriptor = pickFirstMatchingPath( level );
+      // If this is a buffer descriptor then switch to buffering and buffer the attributes.
+      if( descriptor instanceof UrlRewriteFilterBufferDescriptor ) {
+        if( element == null ) {
+          element = startBufferedDocument();
+          level.node = element;
         }
-      // If there is no matching path descriptor then continue streaming.
+        level.setScope( element, (UrlRewriteFilterBufferDescriptor)descriptor, stack.size() - 1 );
+        bufferAttributes( event, element );
+      // Otherwise if this is a scope descriptor then change the scope and stream the attributes.
+      } else if( descriptor instanceof UrlRewriteFilterScopeDescriptor ) {
+        level.setScope( element, (UrlRewriteFilterScopeDescriptor)descriptor, stack.size() - 1 );
+        streamElement( event, element );
+      // Else either nothing matched or there is an <apply> targeted at the text of an element.
+      // That "convenience" config will be taken care of in the streamElement() processing.
       } else {
-        pushLevel( parent, event, element, parent.scopeNode, parent.scopeConfig );
         streamElement( event, element );
       }
     }
   }
 
+  // Builds a document holding just the open elements so that a buffered element has the same ancestors
+  // as it would have had in a fully mirrored document.
+  private Element startBufferedDocument() throws ParserConfigurationException {
+    document = XmlUtils.createDocument( false );
+    Node parent = document;
+    for( int i = 1, n = stack.size(); i < n; i++ ) {
+      Element element = bufferElement( stack.get( i ).event.asStartElement() );
+      parent.appendChild( element );
+      parent = element;
+    }
+    return (Element)parent;
+  }
+
   private void processEndElement( EndElement event ) throws XPathExpressionException, IOException {
     //System.out.println( "EE=" + event );
     boolean buffering = currentlyBuffering();
@@ -267,6 +325,9 @@ public abstract class XmlFilterReader extends Reader {
     if( buffering ) {
       if( child.node == child.scopeNode ) {
         processBufferedElement( child );
+        if( streaming ) {
+          document = null;
+        }
       }
     } else {
       if( ! isEmptyElement ) {
@@ -280,7 +341,9 @@ public abstract class XmlFilterReader extends Reader {
         writer.write( n.getLocalPart() );
         writer.write( ">" );
       }
-      child.node.getParentNode().removeChild( child.node );
+      if( child.node != null ) {
+        child.node.getParentNode().removeChild( child.node );
+      }
     }
   }
 
@@ -392,6 +455,16 @@ public abstract class XmlFilterReader extends Reader {
     writeBufferedElement( level.node, writer );
   }
 
+  private QName extractQName( Level level ) {
+    if( level.node != null ) {
+      return extractQName( level.node );
+    } else if( level.event.isStartElement() ) {
+      return level.event.asStartElement().getName();
+    } else {
+      return new QName( "#document" );
+    }
+  }
+
   private QName extractQName( Node node ) {
     QName qname;
     String localName = node.getLocalName();
@@ -459,11 +532,14 @@ public abstract class XmlFilterReader extends Reader {
   }
 
   private void streamAttribute( Element element, Attribute attribute ) throws XPathExpressionException {
-    Attr node;
+    Attr node = null;
     QName name = attribute.getName();
     String prefix = name.getPrefix();
     String uri = name.getNamespaceURI();
-    if( uri == null || uri.isEmpty() ) {
+    Level level = stack.peek();
+    if( element == null ) {
+      level.attribute = name;
+    } else if( uri == null || uri.isEmpty() ) {
       node = document.createAttribute( name.getLocalPart() );
       element.setAttributeNode( node );
     } else {
@@ -475,16 +551,13 @@ public abstract class XmlFilterReader extends Reader {
     }
 
     String value = attribute.getValue();
-    Level level = stack.peek();
     if( ( level.scopeConfig ) == null || ( level.scopeConfig.getSelectors().isEmpty() ) ) {
       value = filterAttribute( null, attribute.getName(), value, null );
-      node.setValue( value );
     } else {
       UrlRewriteFilterPathDescriptor path = pickFirstMatchingPath( level );
       if( path instanceof UrlRewriteFilterApplyDescriptor ) {
         String rule = ((UrlRewriteFilterApplyDescriptor)path).rule();
         value = filterAttribute( null, attribute.getName(), value, rule );
-        node.setValue( value );
       }
     }
 
@@ -502,14 +575,20 @@ public abstract class XmlFilterReader extends Reader {
     writer.write( "=\"" );
     writer.write( value );
     writer.write( "\"" );
-    element.removeAttributeNode( node );
+    if( node == null ) {
+      level.attribute = null;
+    } else {
+      element.removeAttributeNode( node );
+    }
   }
 
   private void processCharacters( Characters event ) throws XPathExpressionException {
     //System.out.println( "T[" + event.isCData() + "," + event.isWhiteSpace() + "," + event.isIgnorableWhiteSpace() + "]=" + event );
     Level level = stack.peek();
     Node node = stack.peek().node;
-    if( event.isCData() ) {
+    if( node == null ) {
+      level.text = true;
+    } else if( event.isCData() ) {
       node.appendChild( document.createCDATASection( event.getData() ) );
     } else {
       node.appendChild( document.createTextNode( event.getData() ) );
@@ -518,12 +597,12 @@ public abstract class XmlFilterReader extends Reader {
       String value = event.getData();
       if( !event.isWhiteSpace() ) {
         if( level.scopeConfig == null || level.scopeConfig.getSelectors().isEmpty() ) {
-          value = filterText( extractQName( node ), value, null );
+          value = filterText( extractQName( level ), value, null );
         } else {
           UrlRewriteFilterPathDescriptor path = pickFirstMatchingPath( level );
           if( path instanceof UrlRewriteFilterApplyDescriptor ) {
             String rule = ((UrlRewriteFilterApplyDescriptor)path).rule();
-            value = filterText( extractQName( node ), value, rule );
+            value = filterText( extractQName( level ), value, rule );
           }
         }
       }
@@ -558,12 +637,21 @@ public abstract class XmlFilterReader extends Reader {
     reader.close();
     writer.close();
     stack.clear();
+    UrlRewriteBuffers.release( buffer );
+    buffer = null;
   }
 
   protected UrlRewriteFilterPathDescriptor pickFirstMatchingPath( Level level ) {
     UrlRewriteFilterPathDescriptor match = null;
     if( level.scopeConfig != null ) {
       for( UrlRewriteFilterPathDescriptor selector : level.scopeConfig.getSelectors() ) {
+        if( streaming ) {
+          if( StreamPath.compile( selector.path() ).matches( stack, level.scopeIndex ) ) {
+            match = selector;
+            break;
+          }
+          continue;
+        }
         try {
           XPathExpression path = (XPathExpression)selector.compiledPath( XPATH_COMPILER );
           Object node = path.evaluate( level.scopeNode, XPathConstants.NODE );
@@ -591,32 +679,224 @@ public abstract class XmlFilterReader extends Reader {
 
   private static class Level {
 //    private Level parent;
-//    private XMLEvent event;
+    private XMLEvent event;
     private Node node;
     private UrlRewriteFilterGroupDescriptor scopeConfig;
     private Node scopeNode;
+    private int scopeIndex;
     private boolean buffered;
+    // Only maintained while streaming, these stand in for the text and attribute nodes of a mirrored DOM.
+    private boolean text;
+    private QName attribute;
 
     private Level( Level parent, XMLEvent event, Node node, Node scopeNode, UrlRewriteFilterGroupDescriptor scopeConfig ) {
 //      this.parent = parent;
-//      this.event = event;
+      this.event = event;
       this.node = node;
       this.scopeConfig = scopeConfig;
       this.scopeNode = scopeNode;
+      this.scopeIndex = ( parent != null ) ? parent.scopeIndex : 0;
       this.buffered = ( ( parent != null ) && parent.buffered ) ||
                       ( ( scopeConfig != null ) && ( scopeConfig instanceof UrlRewriteFilterBufferDescriptor ) );
     }
+
+    private void setScope( Node scopeNode, UrlRewriteFilterGroupDescriptor scopeConfig, int scopeIndex ) {
+      this.scopeNode = scopeNode;
+      this.scopeConfig = scopeConfig;
+      this.scopeIndex = scopeIndex;
+      this.buffered = buffered || ( scopeConfig instanceof UrlRewriteFilterBufferDescriptor );
+    }
+  }
+
+  /**
+   * A location path made up of only element names, "*", ".", "text()", "@name" and "@*" steps
+   * separated by either "/" or "//". Names must not have a prefix so they only match elements and
+   * attributes without a namespace, the same as the XPath expressions compiled without a namespace context.
+   * <p/>
+   * The path is matched against the stack of open elements, their text and the attribute being streamed,
+   * which are exactly the nodes a mirrored DOM would hold at that point.
+   */
+  static final class StreamPath {
+
+    private static final ConcurrentMap<String,StreamPath> CACHE = new ConcurrentHashMap<String,StreamPath>();
+    private static final StreamPath UNSUPPORTED = new StreamPath( false, new Step[ 0 ] );
+
+    private enum Type { ELEMENT, ANY_ELEMENT, SELF, TEXT, ATTRIBUTE, ANY_ATTRIBUTE }
+
+    private static final class Step {
+      private final Type type;
+      private final String name;
+      private final boolean descendant;
+      private Step( Type type, String name, boolean descendant ) {
+        this.type = type;
+        this.name = name;
+        this.descendant = descendant;
+      }
+    }
+
+    private final boolean absolute;
+    private final Step[] steps;
+
+    private StreamPath( boolean absolute, Step[] steps ) {
+      this.absolute = absolute;
+      this.steps = steps;
+    }
+
+    /**
+     * @return The compiled path or null if the expression uses anything other than the supported steps.
+     */
+    static StreamPath compile( String expression ) {
+      if( expression == null ) {
+        return null;
+      }
+      StreamPath path = CACHE.get( expression );
+      if( path == null ) {
+        path = parse( expression );
+        CACHE.putIfAbsent( expression, path == null ? UNSUPPORTED : path );
+      }
+      return path == UNSUPPORTED ? null : path;
+    }
+
+    private static StreamPath parse( String expression ) {
+      if( expression.isEmpty() ) {
+        return null;
+      }
+      boolean absolute = expression.charAt( 0 ) == '/';
+      String[] parts = ( absolute ? expression.substring( 1 ) : expression ).split( "/", -1 );
+      if( absolute && parts.length == 1 && parts[ 0 ].isEmpty() ) {
+        return new StreamPath( true, new Step[ 0 ] );
+      }
+      List<Step> steps = new ArrayList<Step>( parts.length );
+      boolean descendant = false;
+      for( int i = 0; i < parts.length; i++ ) {
+        String part = parts[ i ];
+        if( part.isEmpty() ) {
+          // An empty part comes from "//", which can't be doubled up or end the path.
+          if( descendant || i == parts.length - 1 || ( i == 0 && !absolute ) ) {
+            return null;
+          }
+          descendant = true;
+          continue;
+        }
+        Step step;
+        if( ".".equals( part ) ) {
+          step = new Step( Type.SELF, null, descendant );
+        } else if( "*".equals( part ) ) {
+          step = new Step( Type.ANY_ELEMENT, null, descendant );
+        } else if( "text()".equals( part ) ) {
+          step = new Step( Type.TEXT, null, descendant );
+        } else if( "@*".equals( part ) ) {
+          step = new Step( Type.ANY_ATTRIBUTE, null, descendant );
+        } else if( part.charAt( 0 ) == '@' && isName( part.substring( 1 ) ) ) {
+          step = new Step( Type.ATTRIBUTE, part.substring( 1 ), descendant );
+        } else if( isName( part ) ) {
+          step = new Step( Type.ELEMENT, part, descendant );
+        } else {
+          return null;
+        }
+        // Text and attribute nodes have no children.
+        if( !steps.isEmpty() ) {
+          Type previous = steps.get( steps.size() - 1 ).type;
+          if( previous == Type.TEXT || previous == Type.ATTRIBUTE || previous == Type.ANY_ATTRIBUTE ) {
+            return null;
+          }
+        }
+        steps.add( step );
+        descendant = false;
+      }
+      return new StreamPath( absolute, steps.toArray( new Step[ steps.size() ] ) );
+    }
+
+    private static boolean isName( String name ) {
+      if( name.isEmpty() || !( Character.isLetter( name.charAt( 0 ) ) || name.charAt( 0 ) == '_' ) ) {
+        return false;
+      }
+      for( int i = 1; i < name.length(); i++ ) {
+        char c = name.charAt( i );
+        if( !( Character.isLetterOrDigit( c ) || c == '_' || c == '-' || c == '.' ) ) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // The first level on the stack is the document and each following level is a child of the one before it.
+    private boolean matches( List<Level> stack, int context ) {
+      return matches( 0, absolute ? 0 : context, stack );
+    }
+
+    private boolean matches( int index, int context, List<Level> stack ) {
+      if( index == steps.length ) {
+        return true;
+      }
+      Step step = steps[ index ];
+      int last = stack.size() - 1;
+      for( int node = context, end = step.descendant ? last : context; node <= end; node++ ) {
+        switch( step.type ) {
+          case SELF:
+            if( matches( index + 1, node, stack ) ) {
+              return true;
+            }
+            break;
+          case ELEMENT:
+          case ANY_ELEMENT:
+            if( node < last && isMatch( step, stack.get( node + 1 ).event.asStartElement().getName() ) &&
+                matches( index + 1, node + 1, stack ) ) {
+              return true;
+            }
+            break;
+          case TEXT:
+            if( stack.get( node ).text ) {
+              return true;
+            }
+            break;
+          case ATTRIBUTE:
+          case ANY_ATTRIBUTE:
+            QName attribute = stack.get( node ).attribute;
+            if( attribute != null && isMatch( step, attribute ) ) {
+              return true;
+            }
+            break;
+        }
+      }
+      return false;
+    }
+
+    private static boolean isMatch( Step step, QName name ) {
+      return step.name == null ||
+          ( step.name.equals( name.getLocalPart() ) && ( name.getNamespaceURI() == null || name.getNamespaceURI().isEmpty() ) );
+    }
+
   }
 
+  // Neither XPath nor the expressions it compiles are thread safe so each thread compiles a path once and
+  // reuses it.  The compiled value shared on the descriptor is therefore ignored.
   private static class XmlPathCompiler implements UrlRewriteFilterPathDescriptor.Compiler<XPathExpression> {
-    private static XPath XPATH = XPathFactory.newInstance().newXPath();
+    private static final ThreadLocal<XPath> XPATH = new ThreadLocal<XPath>() {
+      @Override
+      protected XPath initialValue() {
+        return XPathFactory.newInstance().newXPath();
+      }
+    };
+    private static final ThreadLocal<Map<String,XPathExpression>> EXPRESSIONS = new ThreadLocal<Map<String,XPathExpression>>() {
+      @Override
+      protected Map<String,XPathExpression> initialValue() {
+        return new HashMap<>();
+      }
+    };
     @Override
     public XPathExpression compile( String expression, XPathExpression compiled ) {
-      try {
-        return XPATH.compile( expression );
-      } catch( XPathExpressionException e ) {
-        throw new IllegalArgumentException( e );
+      Map<String,XPathExpression> expressions = EXPRESSIONS.get();
+      XPathExpression path = expressions.get( expression );
+      if( path == null ) {
+        try {
+          path = XPATH.get().compile( expression );
+        } catch( XPathExpressionException e ) {
+          throw new IllegalArgumentException( e );
+        }
+        expressions.put( expression, path );
       }
+      return path;
     }
   }
 
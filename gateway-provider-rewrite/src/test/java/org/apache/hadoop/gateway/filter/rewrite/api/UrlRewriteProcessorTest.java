@@ -19,6 +19,7 @@ package org.apache.hadoop.gateway.filter.rewrite.api;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -31,16 +32,21 @@ import java.io.Reader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.hadoop.gateway.config.GatewayConfig;
 import org.apache.hadoop.gateway.util.urltemplate.Expander;
 import org.apache.hadoop.gateway.util.urltemplate.Matcher;
 import org.apache.hadoop.gateway.util.urltemplate.Parser;
+import org.apache.hadoop.gateway.util.urltemplate.Resolver;
 import org.apache.hadoop.gateway.util.urltemplate.Template;
 import org.easymock.EasyMock;
 import org.junit.Test;
@@ -372,6 +378,59 @@ public class UrlRewriteProcessorTest {
   }
 
 
+  @Test
+  public void testCachedRewriteFollowsResolvedValues() throws Exception {
+    GatewayConfig gatewayConfig = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( gatewayConfig.getUrlRewriteCacheMaxEntries() ).andReturn( 100 ).anyTimes();
+    EasyMock.expect( gatewayConfig.getGlobalRulesServices() ).andReturn( new ArrayList<String>() ).anyTimes();
+    UrlRewriteEnvironment environment = EasyMock.createNiceMock( UrlRewriteEnvironment.class );
+    EasyMock.expect( environment.getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE ) ).andReturn( gatewayConfig ).anyTimes();
+    EasyMock.replay( gatewayConfig, environment );
+
+    UrlRewriteProcessor processor = new UrlRewriteProcessor();
+    UrlRewriteRulesDescriptor config = UrlRewriteRulesDescriptorFactory.load( "xml", new StringReader(
+        "<rules>" +
+        "<rule dir='OUT' name='test-rule' pattern='*://*:*/webhdfs/{path=**}'>" +
+        "<rewrite template='{$frontend[url]}/webhdfs/{path=**}'/>" +
+        "</rule>" +
+        "</rules>" ) );
+    processor.initialize( environment, config );
+
+    final Map<String, String> values = new HashMap<>();
+    Resolver resolver = new Resolver() {
+      @Override
+      public List<String> resolve( String name ) {
+        String value = values.get( name );
+        return value == null ? null : Arrays.asList( value );
+      }
+    };
+    values.put( "gateway.url", "https://gateway-host:8443/gateway/sandbox" );
+
+    Template input = Parser.parseLiteral( "http://namenode-host:50070/webhdfs/v1/tmp" );
+    for( int i = 0; i < 3; i++ ) {
+      Template output = processor.rewrite( resolver, Parser.parseLiteral( input.toString() ), UrlRewriter.Direction.OUT, null );
+      assertThat( output.toString(), is( "https://gateway-host:8443/gateway/sandbox/webhdfs/v1/tmp" ) );
+    }
+    assertThat( processor.cache.getMisses( "test-rule" ).getCount(), is( 1L ) );
+    assertThat( processor.cache.getHits( "test-rule" ).getCount(), is( 2L ) );
+
+    // A different value of something the rule read must not return the cached result.
+    values.put( "gateway.url", "https://other-host:8443/gateway/sandbox" );
+    Template output = processor.rewrite( resolver, input, UrlRewriter.Direction.OUT, null );
+    assertThat( output.toString(), is( "https://other-host:8443/gateway/sandbox/webhdfs/v1/tmp" ) );
+    assertThat( processor.cache.getMisses( "test-rule" ).getCount(), is( 2L ) );
+
+    // URLs that don't match any rule are cached as well and returned unchanged.
+    Template unmatched = Parser.parseLiteral( "http://namenode-host:50070/other" );
+    assertThat( processor.rewrite( resolver, unmatched, UrlRewriter.Direction.OUT, null ), sameInstance( unmatched ) );
+    unmatched = Parser.parseLiteral( "http://namenode-host:50070/other" );
+    assertThat( processor.rewrite( resolver, unmatched, UrlRewriter.Direction.OUT, null ), sameInstance( unmatched ) );
+    assertThat( processor.cache.size(), is( 2 ) );
+
+    processor.destroy();
+    assertThat( processor.cache.size(), is( 0 ) );
+  }
+
   /**
    * Turn a string containing URL parameters, e.g.
    * 
@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class GzipStreamsTest {
+
+  @Test
+  public void testReadableByJdk() throws IOException {
+    byte[] content = createContent( 200000 );
+    for( int level = Deflater.DEFAULT_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++ ) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      OutputStream output = GzipStreams.newOutputStream( bytes, level, 8 * 1024 );
+      output.write( content );
+      output.close();
+      InputStream input = new GZIPInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+      assertThat( IOUtils.toByteArray( input ), is( content ) );
+    }
+  }
+
+  @Test
+  public void testReadsJdkOutput() throws IOException {
+    byte[] content = createContent( 200000 );
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    GZIPOutputStream output = new GZIPOutputStream( bytes );
+    output.write( content );
+    output.close();
+    InputStream input = GzipStreams.newInputStream( new ByteArrayInputStream( bytes.toByteArray() ), 8 * 1024 );
+    assertThat( IOUtils.toByteArray( input ), is( content ) );
+    input.close();
+  }
+
+  @Test
+  public void testReadsConcatenatedMembersAndOptionalHeaders() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    GZIPOutputStream output = new GZIPOutputStream( bytes );
+    output.write( "first-".getBytes( "UTF-8" ) );
+    output.close();
+    // A member with the FEXTRA, FNAME, FCOMMENT and FHCRC flags set, as written by other tools.
+    ByteArrayOutputStream member = new ByteArrayOutputStream();
+    member.write( new byte[]{ 0x1f, (byte)0x8b, 8, 2 | 4 | 8 | 16, 0, 0, 0, 0, 0, 3 } );
+    member.write( new byte[]{ 2, 0, 'x', 'y' } );
+    member.write( "name.txt\0".getBytes( "UTF-8" ) );
+    member.write( "comment\0".getBytes( "UTF-8" ) );
+    CRC32 crc = new java.util.zip.CRC32();
+    crc.update( member.toByteArray() );
+    member.write( (int)crc.getValue() & 0xff );
+    member.write( (int)( crc.getValue() >> 8 ) & 0xff );
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    GZIPOutputStream second = new GZIPOutputStream( body );
+    second.write( "second".getBytes( "UTF-8" ) );
+    second.close();
+    byte[] secondBytes = body.toByteArray();
+    // Replace the JDK's plain header with the one above.
+    member.write( secondBytes, 10, secondBytes.length - 10 );
+    bytes.write( member.toByteArray() );
+
+    InputStream input = GzipStreams.newInputStream( new ByteArrayInputStream( bytes.toByteArray() ), 16 );
+    assertThat( new String( IOUtils.toByteArray( input ), "UTF-8" ), is( "first-second" ) );
+    input.close();
+  }
+
+  @Test
+  public void testRejectsContentThatIsNotGzip() throws IOException {
+    try {
+      GzipStreams.newInputStream( new ByteArrayInputStream( "plain text".getBytes( "UTF-8" ) ), 8 * 1024 );
+      fail( "Expected ZipException" );
+    } catch( ZipException e ) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testEmptyInputIsEmptyStream() throws IOException {
+    InputStream input = GzipStreams.newInputStream( new ByteArrayInputStream( new byte[ 0 ] ), 8 * 1024 );
+    assertThat( GzipStreams.isEmpty( input ), is( true ) );
+    assertThat( input.read(), is( -1 ) );
+    input.close();
+
+    // Truncated input is still an error.
+    try {
+      GzipStreams.newInputStream( new ByteArrayInputStream( new byte[]{ 0x1f } ), 8 * 1024 );
+      fail( "Expected EOFException" );
+    } catch( EOFException e ) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testCodecsAreReused() throws IOException {
+    byte[] content = createContent( 1000 );
+    int deflaters = 0;
+    int inflaters = 0;
+    for( int i = 0; i < 10; i++ ) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      OutputStream output = GzipStreams.newOutputStream( bytes, i % 10, 8 * 1024 );
+      output.write( content );
+      output.close();
+      output.close();
+      InputStream input = GzipStreams.newInputStream( new ByteArrayInputStream( bytes.toByteArray() ), 8 * 1024 );
+      assertThat( IOUtils.toByteArray( input ), is( content ) );
+      input.close();
+      input.close();
+      if( i == 0 ) {
+        deflaters = GzipStreams.getPooledDeflaterCount();
+        inflaters = GzipStreams.getPooledInflaterCount();
+      }
+    }
+    // Each stream returns its codec exactly once and the next stream takes it back out.
+    assertThat( deflaters > 0, is( true ) );
+    assertThat( inflaters > 0, is( true ) );
+    assertThat( GzipStreams.getPooledDeflaterCount(), is( deflaters ) );
+    assertThat( GzipStreams.getPooledInflaterCount(), is( inflaters ) );
+  }
+
+  @Test
+  public void testReleaseAfterFailedWrite() throws IOException {
+    OutputStream failing = new OutputStream() {
+      private int written = 0;
+      @Override
+      public void write( int b ) throws IOException {
+        if( ++written > 100 ) {
+          throw new IOException( "Connection reset" );
+        }
+      }
+      @Override
+      public void close() {
+        fail( "The underlying stream must not be closed." );
+      }
+    };
+    // Take a deflater so the count only changes by the one released below.
+    OutputStream output = GzipStreams.newOutputStream( failing, Deflater.DEFAULT_COMPRESSION, 512 );
+    int deflaters = GzipStreams.getPooledDeflaterCount();
+    try {
+      output.write( createContent( 200000 ) );
+      fail( "Expected the write to fail." );
+    } catch( IOException e ) {
+      // Expected.
+    }
+    GzipStreams.release( output );
+    GzipStreams.release( output );
+    output.close();
+    assertThat( GzipStreams.getPooledDeflaterCount(), is( deflaters + 1 ) );
+  }
+
+  // Repetitive enough to compress but not so much that every level produces the same output.
+  private static byte[] createContent( int size ) {
+    Random random = new Random( 42 );
+    byte[] content = new byte[ size ];
+    for( int i = 0; i < size; i++ ) {
+      content[ i ] = (byte)( 'a' + random.nextInt( 8 ) );
+    }
+    return content;
+  }
+
+}
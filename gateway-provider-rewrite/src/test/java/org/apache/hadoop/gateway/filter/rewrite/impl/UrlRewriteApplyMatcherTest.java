@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterApplyDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UrlRewriteApplyMatcherTest {
+
+  private static final UrlRewriteFilterPathDescriptor.Compiler<Pattern> REGEX_COMPILER = new UrlRewriteFilterReader.RegexCompiler();
+
+  private static final String[] PATHS = {
+      "/api/v1",
+      "api/v1",
+      "\\{proxy_root\\}",
+      "(https?://[^/':,]+:[\\d]+)?/cluster/app",
+      "\\/solr\\/",
+      "href=\"[^\"]*\"",
+      "v[0-9]+" };
+
+  // Rewrites the way the rules of the stock UI service definitions do, including producing values that
+  // contain the literals of later expressions.
+  private static final UrlRewriteFilterReader REWRITER = new UrlRewriteFilterReader() {
+    @Override
+    public String filterValueString( String name, String value, String rule ) {
+      return "[" + rule + ":" + value.replace( "api", "API" ) + "]";
+    }
+  };
+
+  @Test
+  public void testRequiredLiteral() {
+    assertThat( literal( "/webhdfs/v1" ), is( "/webhdfs/v1" ) );
+    assertThat( literal( "\\{proxy_root\\}" ), is( "{proxy_root}" ) );
+    assertThat( literal( "(https?://[^/':,]+:[\\d]+)?/cluster/app" ), is( "/cluster/app" ) );
+    assertThat( literal( "https?://host" ), is( "://host" ) );
+    assertThat( literal( "ab+cd" ), is( "ab" ) );
+    assertThat( literal( "abc{2}def" ), is( "def" ) );
+    assertThat( literal( "x\\d*yz\\.js" ), is( "yz.js" ) );
+    assertThat( literal( "[abc]+/static/[^x]" ), is( "/static/" ) );
+    assertThat( literal( "(?:foo|bar)/baz" ), is( "/baz" ) );
+    assertThat( literal( "foo|bar" ), nullValue() );
+    assertThat( literal( "(?i)foo" ), nullValue() );
+    assertThat( literal( "\\p{Alpha}+" ), nullValue() );
+    assertThat( literal( ".*" ), nullValue() );
+    assertThat( UrlRewriteApplyMatcher.requiredLiteral( Pattern.compile( "foo", Pattern.CASE_INSENSITIVE ) ), nullValue() );
+  }
+
+  @Test
+  public void testFilterMatchesSequentialRegexes() {
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    for( int i = 0; i < PATHS.length; i++ ) {
+      config.addApply( PATHS[ i ], "rule" + i );
+    }
+    UrlRewriteApplyMatcher matcher = UrlRewriteApplyMatcher.get( config, REGEX_COMPILER );
+
+    String[] fragments = { "/api/v1/clusters", "api/v1", "{proxy_root}", "http://host:8088/cluster/app/1", "/solr/",
+        "href=\"/x\"", "v12", "var x = 1;", " ", "'", "/cluster/ap", "{proxy_", "a" };
+    Random random = new Random( 42 );
+    for( int i = 0; i < 2000; i++ ) {
+      StringBuilder text = new StringBuilder();
+      for( int j = random.nextInt( 8 ); j >= 0; j-- ) {
+        text.append( fragments[ random.nextInt( fragments.length ) ] );
+      }
+      String input = text.toString();
+      assertThat( input, matcher.filter( input, REWRITER ), is( sequential( config, input ) ) );
+    }
+  }
+
+  @Test
+  public void testFilterReturnsUnmatchedTextUnchanged() {
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    config.addApply( "/webhdfs/v1", "rule" );
+    String input = "function load_page() { return '/webhdfs/v2'; }";
+    assertThat( UrlRewriteApplyMatcher.get( config, REGEX_COMPILER ).filter( input, REWRITER ), sameInstance( input ) );
+  }
+
+  @Test
+  public void testRuleFor() {
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    config.addApply( "/static/.*", "static" );
+    config.addApply( ".*\\.js", "scripts" );
+    config.addApply( "/.*", "all" );
+    UrlRewriteApplyMatcher matcher = UrlRewriteApplyMatcher.get( config, REGEX_COMPILER );
+    assertThat( matcher.ruleFor( "/static/app.js" ), is( "static" ) );
+    assertThat( matcher.ruleFor( "app.js" ), is( "scripts" ) );
+    assertThat( matcher.ruleFor( "/index.html" ), is( "all" ) );
+    assertThat( matcher.ruleFor( "index.html" ), nullValue() );
+  }
+
+  @Test
+  public void testMatcherRebuiltWhenAppliesChange() {
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    config.addApply( "/webhdfs/v1", "rule" );
+    UrlRewriteApplyMatcher matcher = UrlRewriteApplyMatcher.get( config, REGEX_COMPILER );
+    assertThat( UrlRewriteApplyMatcher.get( config, REGEX_COMPILER ), sameInstance( matcher ) );
+    config.addApply( "/oozie", "other" );
+    assertThat( UrlRewriteApplyMatcher.get( config, REGEX_COMPILER ).filter( "'/oozie'", REWRITER ), is( "'[other:/oozie]'" ) );
+  }
+
+  private static String literal( String regex ) {
+    return UrlRewriteApplyMatcher.requiredLiteral( Pattern.compile( regex ) );
+  }
+
+  // The way the expressions were applied before they were compiled into a single scan.
+  private static String sequential( UrlRewriteFilterContentDescriptor config, String input ) {
+    String text = input;
+    for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
+      UrlRewriteFilterApplyDescriptor apply = (UrlRewriteFilterApplyDescriptor)selector;
+      Matcher matcher = Pattern.compile( apply.path() ).matcher( text );
+      StringBuffer buffer = new StringBuffer();
+      while( matcher.find() ) {
+        matcher.appendReplacement( buffer, Matcher.quoteReplacement( REWRITER.filterValueString( null, matcher.group(), apply.rule() ) ) );
+      }
+      matcher.appendTail( buffer );
+      text = buffer.toString();
+    }
+    return text;
+  }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UrlRewriteBuffersTest {
+
+  @Test
+  public void testBuffersAreReused() {
+    StringBuilder first = UrlRewriteBuffers.acquire();
+    StringBuilder nested = UrlRewriteBuffers.acquire();
+    assertThat( nested == first, is( false ) );
+    first.append( "content" );
+    UrlRewriteBuffers.release( nested );
+    UrlRewriteBuffers.release( first );
+
+    StringBuilder reused = UrlRewriteBuffers.acquire();
+    assertThat( reused, sameInstance( first ) );
+    assertThat( reused.length(), is( 0 ) );
+    UrlRewriteBuffers.release( reused );
+
+    StringBuilder large = UrlRewriteBuffers.acquire();
+    large.ensureCapacity( UrlRewriteBuffers.MAX_RETAINED_CAPACITY + 1 );
+    UrlRewriteBuffers.release( large );
+    StringBuilder next = UrlRewriteBuffers.acquire();
+    assertThat( next == large, is( false ) );
+    assertThat( next, notNullValue() );
+    UrlRewriteBuffers.release( next );
+    UrlRewriteBuffers.release( null );
+    assertThat( UrlRewriteBuffers.acquire().length(), is( 0 ) );
+  }
+
+}
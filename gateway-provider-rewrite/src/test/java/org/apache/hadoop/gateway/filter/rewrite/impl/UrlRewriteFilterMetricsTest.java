@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UrlRewriteFilterMetricsTest {
+
+  @Test
+  public void testMeasuresFilteredStreams() throws IOException {
+    MetricRegistry registry = new MetricRegistry();
+    UrlRewriteFilterMetrics metrics = new UrlRewriteFilterMetrics( registry, "sandbox" );
+
+    for( int i = 0; i < 2; i++ ) {
+      UrlRewriteFilterMetrics.Measurement measurement = metrics.measure( "json", "WEBHDFS" );
+      InputStream input = measurement.input( new ByteArrayInputStream( new byte[ 100 ] ) );
+      // Stands in for a filter that drops half of its input.
+      IOUtils.skip( input, 50 );
+      InputStream output = measurement.output( new ByteArrayInputStream( IOUtils.toByteArray( input ) ) );
+      IOUtils.toByteArray( output );
+      output.close();
+    }
+
+    Counter in = registry.getCounters().get( "rewrite.filter.sandbox.WEBHDFS.json.bytes-in" );
+    Counter out = registry.getCounters().get( "rewrite.filter.sandbox.WEBHDFS.json.bytes-out" );
+    Timer time = registry.getTimers().get( "rewrite.filter.sandbox.WEBHDFS.json.time" );
+    assertThat( in.getCount(), is( 200L ) );
+    assertThat( out.getCount(), is( 100L ) );
+    // Recorded once per stream even though it was both exhausted and closed.
+    assertThat( time.getCount(), is( 2L ) );
+
+    metrics.destroy();
+    assertThat( registry.getMetrics().isEmpty(), is( true ) );
+  }
+
+}
@@ -18,6 +18,7 @@
 package org.apache.hadoop.gateway.filter.rewrite.impl;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.gateway.config.GatewayConfig;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteProcessor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteServletContextListener;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteServletFilter;
@@ -30,13 +31,17 @@ import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.List;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -140,6 +145,125 @@ public class UrlRewriteResponseTest {
     testStreamResponseGzip ( content, rewriteResponse, true );
   }
 
+  @Test
+  public void testStreamResponsePassThrough() throws IOException {
+    UrlRewriteProcessor rewriter = EasyMock.createNiceMock( UrlRewriteProcessor.class );
+    EasyMock.expect( rewriter.getConfig() ).andReturn( null ).anyTimes();
+
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    EasyMock.expect( context.getAttribute( UrlRewriteServletContextListener.PROCESSOR_ATTRIBUTE_NAME ) ).andReturn( rewriter ).anyTimes();
+
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect( config.getServletContext() ).andReturn( context ).anyTimes();
+
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.expect( response.getContentType() ).andReturn( "application/octet-stream" ).anyTimes();
+
+    EasyMock.replay( rewriter, context, config, request, response );
+
+    UrlRewriteResponse rewriteResponse = new UrlRewriteResponse( config, request, response );
+
+    // Gzip content that isn't rewritten must be streamed without being re-encoded.
+    ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream( gzipBytes );
+    gzip.write( "content to test pass through streaming".getBytes( "UTF-8" ) );
+    gzip.close();
+    byte[] content = gzipBytes.toByteArray();
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    rewriteResponse.streamResponse( new ByteArrayInputStream( content ), output );
+    assertThat( Arrays.equals( output.toByteArray(), content ), is( true ) );
+  }
+
+  @Test
+  public void testStreamResponseUndecodableEncodingPassThrough() throws IOException {
+    UrlRewriteProcessor rewriter = EasyMock.createNiceMock( UrlRewriteProcessor.class );
+    EasyMock.expect( rewriter.getConfig() ).andReturn( null ).anyTimes();
+
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    EasyMock.expect( context.getAttribute( UrlRewriteServletContextListener.PROCESSOR_ATTRIBUTE_NAME ) ).andReturn( rewriter ).anyTimes();
+
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect( config.getServletContext() ).andReturn( context ).anyTimes();
+
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.expect( response.getContentType() ).andReturn( "application/json" ).anyTimes();
+    EasyMock.expect( response.getHeader( "Content-Encoding" ) ).andReturn( "br" ).anyTimes();
+
+    EasyMock.replay( rewriter, context, config, request, response );
+
+    UrlRewriteResponse rewriteResponse = new UrlRewriteResponse( config, request, response );
+
+    // Not valid JSON, so this would fail if the filter was applied.
+    byte[] content = new byte[]{ 0x0b, 0x02, (byte)0x80, '{', '"' };
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    rewriteResponse.streamResponse( new ByteArrayInputStream( content ), output );
+    assertThat( Arrays.equals( output.toByteArray(), content ), is( true ) );
+  }
+
+  @Test
+  public void testStreamResponseDeclaredGzipWithCompressionLevel() throws IOException {
+    UrlRewriteProcessor rewriter = EasyMock.createNiceMock( UrlRewriteProcessor.class );
+    EasyMock.expect( rewriter.getConfig() ).andReturn( null ).anyTimes();
+
+    GatewayConfig gatewayConfig = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( gatewayConfig.getUrlRewriteGzipCompressionLevel() ).andReturn( Deflater.BEST_SPEED ).anyTimes();
+
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    EasyMock.expect( context.getAttribute( UrlRewriteServletContextListener.PROCESSOR_ATTRIBUTE_NAME ) ).andReturn( rewriter ).anyTimes();
+    EasyMock.expect( context.getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE ) ).andReturn( gatewayConfig ).anyTimes();
+
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect( config.getServletContext() ).andReturn( context ).anyTimes();
+
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.expect( response.getContentType() ).andReturn( "application/json" ).anyTimes();
+    EasyMock.expect( response.getHeader( "Content-Encoding" ) ).andReturn( "gzip" ).anyTimes();
+
+    EasyMock.replay( rewriter, gatewayConfig, context, config, request, response );
+
+    UrlRewriteResponse rewriteResponse = new UrlRewriteResponse( config, request, response );
+
+    String content = "{\"name\":\"value\"}";
+    ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream( gzipBytes );
+    gzip.write( content.getBytes( "UTF-8" ) );
+    gzip.close();
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    rewriteResponse.streamResponse( new ByteArrayInputStream( gzipBytes.toByteArray() ), output );
+    InputStream input = new GZIPInputStream( new ByteArrayInputStream( output.toByteArray() ) );
+    assertThat( IOUtils.toString( input, "UTF-8" ), is( content ) );
+  }
+
+  @Test
+  public void testStreamResponseDeclaredGzipWithEmptyBody() throws IOException {
+    UrlRewriteProcessor rewriter = EasyMock.createNiceMock( UrlRewriteProcessor.class );
+    EasyMock.expect( rewriter.getConfig() ).andReturn( null ).anyTimes();
+
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    EasyMock.expect( context.getAttribute( UrlRewriteServletContextListener.PROCESSOR_ATTRIBUTE_NAME ) ).andReturn( rewriter ).anyTimes();
+
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect( config.getServletContext() ).andReturn( context ).anyTimes();
+
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.expect( response.getContentType() ).andReturn( "application/json" ).anyTimes();
+    EasyMock.expect( response.getHeader( "Content-Encoding" ) ).andReturn( "gzip" ).anyTimes();
+
+    EasyMock.replay( rewriter, context, config, request, response );
+
+    UrlRewriteResponse rewriteResponse = new UrlRewriteResponse( config, request, response );
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    rewriteResponse.streamResponse( new ByteArrayInputStream( new byte[ 0 ] ), output );
+    assertThat( output.size(), is( 0 ) );
+  }
+
   private void testStreamResponseGzip( String content, UrlRewriteResponse rewriteResponse , boolean isGzip ) throws IOException {
     File targetDir = new File( System.getProperty( "user.dir" ), "target" );
     File inputFile = new File( targetDir, "input.test" );
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.gateway.filter.rewrite.impl.javascript;
 
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
@@ -115,4 +116,34 @@ public class JavaScriptFilterReaderTest {
         "}).error(network_error_handler(url));\n";
     assertThat( outputJs, is ( expectedOutputJs ) );
   }
+
+  @Test
+  public void testMatchesAcrossReadBoundaries() throws IOException {
+    Map<String, Map<String, String>> rules = new HashMap<>();
+    Map<String, String> map = new HashMap<>();
+    map.put( "/webhdfs/v1", "https://knoxhost:8443/webhdfs/v1" );
+    rules.put( "test-rule", map );
+    StringBuilder input = new StringBuilder();
+    StringBuilder expected = new StringBuilder();
+    for( int i = 0; i < 2000; i++ ) {
+      input.append( "var url" ).append( i ).append( " = '/webhdfs/v1';\r\n" );
+      expected.append( "var url" ).append( i ).append( " = 'https://knoxhost:8443/webhdfs/v1';\r\n" );
+    }
+    // A single line that is much longer than the read buffer and doesn't end with a line terminator.
+    for( int i = 0; i < 2000; i++ ) {
+      input.append( "f('/webhdfs/v1');" );
+      expected.append( "f('https://knoxhost:8443/webhdfs/v1');" );
+    }
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    config.addApply( "/webhdfs/v1", "test-rule" );
+    Reader trickle = new FilterReader( new StringReader( input.toString() ) ) {
+      @Override
+      public int read( char[] buffer, int offset, int count ) throws IOException {
+        return super.read( buffer, offset, Math.min( count, 7 ) );
+      }
+    };
+    JavaScriptFilterReader filterReader = new MatchRuleJsFilterReader( trickle, rules, config );
+    String outputJs = new String( IOUtils.toCharArray( filterReader ) );
+    assertThat( outputJs, is( expected.toString() ) );
+  }
 }
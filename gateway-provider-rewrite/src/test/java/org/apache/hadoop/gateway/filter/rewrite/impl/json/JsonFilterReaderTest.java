@@ -31,6 +31,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
@@ -356,6 +357,66 @@ public class JsonFilterReaderTest {
     assertThat( output, is( "{\"test-name\":\"\\b\"}" ) );
   }
 
+  @Test
+  public void testStreamedApplyInArrays() throws Exception {
+    String input = "{\"nodes\":{\"node\":[{\"id\":\"one\",\"host\":\"host-1\"},{\"id\":\"two\",\"host\":\"host-2\"}]},"
+        + "\"list\":[[\"a\",\"b\"],[\"c\"]],\"other\":\"x\"}";
+
+    UrlRewriteRulesDescriptor rulesConfig = UrlRewriteRulesDescriptorFactory.create();
+    UrlRewriteFilterDescriptor filterConfig = rulesConfig.addFilter( "filter-1" );
+    UrlRewriteFilterContentDescriptor contentConfig = filterConfig.addContent( "text/json" );
+    contentConfig.addApply( "$.nodes.node[*].host", "host-rule" );
+    contentConfig.addApply( "$.list[1][0]", "index-rule" );
+    contentConfig.addApply( "$..id", "id-rule" );
+
+    JsonFilterReader filter = new NoopRuleJsonFilterReader( new StringReader( input ), contentConfig );
+    String output = IOUtils.toString( filter );
+
+    JsonAssert.with( output ).assertThat( "$.nodes.node[0].host", is( "host-rule:host-1" ) );
+    JsonAssert.with( output ).assertThat( "$.nodes.node[1].host", is( "host-rule:host-2" ) );
+    JsonAssert.with( output ).assertThat( "$.nodes.node[0].id", is( "id-rule:one" ) );
+    JsonAssert.with( output ).assertThat( "$.nodes.node[1].id", is( "id-rule:two" ) );
+    JsonAssert.with( output ).assertThat( "$.list[0][0]", is( "null:a" ) );
+    JsonAssert.with( output ).assertThat( "$.list[0][1]", is( "null:b" ) );
+    JsonAssert.with( output ).assertThat( "$.list[1][0]", is( "index-rule:c" ) );
+    JsonAssert.with( output ).assertThat( "$.other", is( "null:x" ) );
+  }
+
+  @Test
+  public void testLargeDocumentStreamed() throws Exception {
+    StringBuilder input = new StringBuilder( "{\"FileStatuses\":{\"FileStatus\":[" );
+    for( int i = 0; i < 20000; i++ ) {
+      if( i > 0 ) {
+        input.append( ',' );
+      }
+      input.append( "{\"pathSuffix\":\"file-" ).append( i ).append( "\",\"length\":" ).append( i ).append( ",\"isDir\":false,\"owner\":null}" );
+    }
+    input.append( "]}}" );
+
+    JsonFilterReader filter = new NoopJsonFilterReader( new StringReader( input.toString() ), null );
+    StringBuilder output = new StringBuilder();
+    char[] chars = new char[ 7 ];
+    for( int count = filter.read( chars ); count >= 0; count = filter.read( chars ) ) {
+      output.append( chars, 0, count );
+    }
+    filter.close();
+
+    assertThat( output.toString(), is( input.toString() ) );
+  }
+
+  private static class NoopRuleJsonFilterReader extends JsonFilterReader {
+
+    private NoopRuleJsonFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException {
+      super( reader, config );
+    }
+
+    @Override
+    protected String filterValueString( String name, String value, String rule ) {
+      return rule + ":" + value;
+    }
+
+  }
+
 //  private void dump( ObjectMapper mapper, JsonGenerator generator, JsonNode node ) throws IOException {
 //    mapper.writeTree( generator, node );
 //    System.out.println();
@@ -981,6 +981,52 @@ public class XmlFilterReaderTest {
     assertThat( the( outputXml ), hasXPath( "/tag/text()", equalTo( "${oozieTemplateMarkup}" ) ) );
   }
 
+  @Test
+  public void testStreamedPathsMatchXPath() throws Exception {
+    String input = "<?xml version=\"1.0\" standalone=\"no\"?>" +
+        "<root xmlns:x=\"urn:x\">\n" +
+        "  <a href=\"a-href\" x:href=\"a-x-href\"><b>b-text</b><c src=\"c-src\"/></a>\n" +
+        "  <x:a href=\"x-href\"><b>x-b-text</b></x:a>\n" +
+        "  <d><b><e>e-text</e></b><![CDATA[d-cdata]]></d>\n" +
+        "</root>";
+    String[][] configs = {
+        { "/root/a/@href" },
+        { "//@href", "//b/text()" },
+        { "/root/*/b/text()" },
+        { "root/a/b" },
+        { "//text()" },
+        { "/root/d//e/text()", "/root/text()" },
+        { "//@*" },
+        { "/root/./a/c/@src", "//d/b" } };
+    for( String[] paths : configs ) {
+      UrlRewriteFilterContentDescriptor streamed = UrlRewriteRulesDescriptorFactory.create().addFilter( "filter-1" ).addContent( "text/xml" );
+      UrlRewriteFilterContentDescriptor mirrored = UrlRewriteRulesDescriptorFactory.create().addFilter( "filter-1" ).addContent( "text/xml" );
+      for( int i = 0; i < paths.length; i++ ) {
+        streamed.addApply( paths[ i ], "rule-" + i );
+        // Parentheses are valid XPath but not a streamable path, so this config is evaluated against a DOM.
+        mirrored.addApply( "(" + paths[ i ] + ")", "rule-" + i );
+      }
+      String expected = IOUtils.toString( new TestXmlFilterReader( new StringReader( input ), mirrored ) );
+      String actual = IOUtils.toString( new TestXmlFilterReader( new StringReader( input ), streamed ) );
+      assertThat( paths[ 0 ], actual, is( expected ) );
+    }
+  }
+
+  @Test
+  public void testStreamedBufferWithAbsolutePaths() throws Exception {
+    String input = "<root><list><item><name>n1</name><value>v1</value></item><item><name>n2</name><value>v2</value></item></list></root>";
+    UrlRewriteRulesDescriptor rulesConfig = UrlRewriteRulesDescriptorFactory.create();
+    UrlRewriteFilterContentDescriptor contentConfig = rulesConfig.addFilter( "filter-1" ).addContent( "text/xml" );
+    UrlRewriteFilterBufferDescriptor bufferConfig = contentConfig.addBuffer( "/root/list/item" );
+    UrlRewriteFilterDetectDescriptor detectConfig = bufferConfig.addDetect( "name", "n2" );
+    detectConfig.addApply( "/root/list/item/value", "test-rule" );
+
+    String output = IOUtils.toString( new TestXmlFilterReader( new StringReader( input ), contentConfig ) );
+
+    assertThat( the( output ), hasXPath( "/root/list/item[1]/value/text()", equalTo( "v1" ) ) );
+    assertThat( the( output ), hasXPath( "/root/list/item[2]/value/text()", equalTo( "text:test-rule{v2}" ) ) );
+  }
+
 
   private class TestXmlFilterReader extends XmlFilterReader {
 
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.gateway.deploy.impl;
 
+import org.apache.hadoop.gateway.shirorealm.KnoxLdapContextFactory;
 import org.apache.hadoop.gateway.topology.Provider;
 
 import java.util.LinkedHashMap;
@@ -24,7 +25,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 public class ShiroConfig {
-  
+
+  private static final String CREDENTIAL_CACHE_PARAM = ".credentialCacheTimeToLive";
+
   private Map<String, Map<String, String>> sections = new LinkedHashMap<String, Map<String, String>>();
  
   public ShiroConfig(Provider provider, String clusterName) {
@@ -42,6 +45,15 @@ public class ShiroConfig {
           String baseName = name.substring(0, name.lastIndexOf("."));
           addNameValueToSection(baseName + ".clusterName", clusterName, sectionName);
           addNameValueToSection(name, "S" + value.substring(1), sectionName);
+        } else if (name.endsWith(CREDENTIAL_CACHE_PARAM)) {
+          // The credential cache is registered under the topology name so it can be invalidated by the admin API.
+          String baseName = name.substring(0, name.length() - CREDENTIAL_CACHE_PARAM.length());
+          addNameValueToSection(baseName + ".clusterName", clusterName, sectionName);
+          addNameValueToSection(name, value, sectionName);
+        } else if (value.equals(KnoxLdapContextFactory.class.getName())) {
+          // The context factory registers its metrics under the topology name so they don't collide between topologies.
+          addNameValueToSection(name, value, sectionName);
+          addNameValueToSection(name + ".clusterName", clusterName, sectionName);
         } else {
           addNameValueToSection(name, value, sectionName);
         }
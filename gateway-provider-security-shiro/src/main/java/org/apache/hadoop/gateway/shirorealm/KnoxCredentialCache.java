@@ -0,0 +1,238 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.hadoop.gateway.shirorealm;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.apache.hadoop.gateway.security.AuthenticationCacheRegistry;
+import org.apache.hadoop.gateway.services.metrics.TopologyMetrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Short lived cache of successfully verified credentials and of the groups resolved for a user,
+ * so clients that don't keep the session cookie aren't bound and looked up again on every request.
+ * Passwords are never kept, entries are keyed on a PBKDF2 hash of the password salted with the
+ * username and a random per-cache salt.  Both maps are bounded and evict the least recently used
+ * entry once maxEntries is reached.
+ */
+class KnoxCredentialCache implements AuthenticationCacheRegistry.AuthenticationCache {
+
+  private static final String KEY_ALGORITHM = "PBKDF2WithHmacSHA256";
+  private static final int KEY_LENGTH = 256;
+  private static final int SALT_LENGTH = 16;
+
+  private final long timeToLive;
+  private final int hashIterations;
+  private final byte[] salt = new byte[ SALT_LENGTH ];
+
+  private final Counter hits = new Counter();
+  private final Counter misses = new Counter();
+  private final Counter evictions = new Counter();
+
+  // Guarded by this.
+  private final Map<String, CachedValue<String>> users;
+  private final Map<String, CachedValue<Groups>> groups;
+
+  private TopologyMetrics metrics;
+
+  KnoxCredentialCache( long timeToLive, int maxEntries, int hashIterations ) {
+    this.timeToLive = timeToLive;
+    this.hashIterations = Math.max( 1, hashIterations );
+    new SecureRandom().nextBytes( salt );
+    users = new BoundedMap<>( maxEntries );
+    groups = new BoundedMap<>( maxEntries );
+  }
+
+  /**
+   * Returns the cache key of the credentials or null if they can't be cached.
+   */
+  String key( String username, char[] password ) {
+    if( username == null || password == null || password.length == 0 ) {
+      return null;
+    }
+    byte[] user = username.getBytes( StandardCharsets.UTF_8 );
+    byte[] userSalt = new byte[ salt.length + user.length ];
+    System.arraycopy( salt, 0, userSalt, 0, salt.length );
+    System.arraycopy( user, 0, userSalt, salt.length, user.length );
+    PBEKeySpec spec = new PBEKeySpec( password, userSalt, hashIterations, KEY_LENGTH );
+    try {
+      byte[] hash = SecretKeyFactory.getInstance( KEY_ALGORITHM ).generateSecret( spec ).getEncoded();
+      return Base64.getEncoder().encodeToString( hash );
+    } catch( GeneralSecurityException e ) {
+      return null;
+    } finally {
+      spec.clearPassword();
+    }
+  }
+
+  synchronized boolean isVerified( String key, String username ) {
+    String cached = get( users, key );
+    if( cached != null && cached.equals( username ) ) {
+      hits.inc();
+      return true;
+    }
+    misses.inc();
+    return false;
+  }
+
+  synchronized void putVerified( String key, String username ) {
+    users.put( key, new CachedValue<>( username, System.currentTimeMillis() + timeToLive ) );
+  }
+
+  synchronized Groups getGroups( String username ) {
+    return get( groups, username );
+  }
+
+  synchronized void putGroups( String username, Set<String> roleNames, Set<String> groupNames ) {
+    groups.put( username, new CachedValue<>( new Groups( roleNames, groupNames ), System.currentTimeMillis() + timeToLive ) );
+  }
+
+  synchronized int size() {
+    return users.size();
+  }
+
+  long getHits() {
+    return hits.getCount();
+  }
+
+  long getMisses() {
+    return misses.getCount();
+  }
+
+  long getEvictions() {
+    return evictions.getCount();
+  }
+
+  @Override
+  public synchronized void invalidate() {
+    users.clear();
+    groups.clear();
+  }
+
+  @Override
+  public synchronized void invalidate( String username ) {
+    Iterator<CachedValue<String>> entries = users.values().iterator();
+    while( entries.hasNext() ) {
+      if( entries.next().value.equals( username ) ) {
+        entries.remove();
+      }
+    }
+    groups.remove( username );
+  }
+
+  synchronized void registerMetrics( MetricRegistry metricRegistry, String prefix ) {
+    metrics = new TopologyMetrics( metricRegistry );
+    metrics.register( MetricRegistry.name( prefix, "hits" ), hits );
+    metrics.register( MetricRegistry.name( prefix, "misses" ), misses );
+    metrics.register( MetricRegistry.name( prefix, "evictions" ), evictions );
+    metrics.register( MetricRegistry.name( prefix, "size" ), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return size();
+      }
+    } );
+  }
+
+  synchronized void unregisterMetrics() {
+    if( metrics != null ) {
+      metrics.unregister();
+      metrics = null;
+    }
+  }
+
+  private <T> T get( Map<String, CachedValue<T>> map, String key ) {
+    CachedValue<T> entry = map.get( key );
+    if( entry == null ) {
+      return null;
+    }
+    if( entry.expires <= System.currentTimeMillis() ) {
+      map.remove( key );
+      return null;
+    }
+    return entry.value;
+  }
+
+  static class Groups {
+
+    private final Set<String> roleNames;
+    private final Set<String> groupNames;
+
+    private Groups( Set<String> roleNames, Set<String> groupNames ) {
+      this.roleNames = Collections.unmodifiableSet( new HashSet<>( roleNames ) );
+      this.groupNames = Collections.unmodifiableSet( new HashSet<>( groupNames ) );
+    }
+
+    Set<String> getRoleNames() {
+      return roleNames;
+    }
+
+    Set<String> getGroupNames() {
+      return groupNames;
+    }
+
+  }
+
+  private static class CachedValue<T> {
+
+    private final T value;
+    private final long expires;
+
+    private CachedValue( T value, long expires ) {
+      this.value = value;
+      this.expires = expires;
+    }
+
+  }
+
+  private class BoundedMap<T> extends LinkedHashMap<String, CachedValue<T>> {
+
+    private final int maxEntries;
+
+    private BoundedMap( int maxEntries ) {
+      super( 16, 0.75f, true );
+      this.maxEntries = maxEntries;
+    }
+
+    @Override
+    protected boolean removeEldestEntry( Map.Entry<String, CachedValue<T>> eldest ) {
+      if( size() > maxEntries ) {
+        evictions.inc();
+        return true;
+      }
+      return false;
+    }
+
+  }
+
+}
@@ -19,9 +19,14 @@
 package org.apache.hadoop.gateway.shirorealm;
 
 import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.naming.CommunicationException;
 import javax.naming.Context;
 import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
 import javax.naming.ldap.LdapContext;
 
 import org.apache.hadoop.gateway.GatewayMessages;
@@ -31,25 +36,55 @@ import org.apache.hadoop.gateway.config.impl.GatewayConfigImpl;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.services.GatewayServices;
 import org.apache.hadoop.gateway.services.security.AliasService;
+import org.apache.hadoop.gateway.services.metrics.MetricsContext;
+import org.apache.hadoop.gateway.services.metrics.MetricsService;
+import org.apache.hadoop.gateway.services.metrics.TopologyMetrics;
 import org.apache.hadoop.gateway.services.security.AliasServiceException;
 import org.apache.hadoop.gateway.util.KnoxCLI;
 import org.apache.shiro.realm.ldap.JndiLdapContextFactory;
+import org.apache.shiro.util.Destroyable;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 
 /**
  * An extension of {@link JndiLdapContextFactory} that allows a different authentication mechanism
  * for system-level authentications (as used by authorization lookups, for example)
  * compared to regular authentication.
+ * <p>
+ * System contexts are kept in a pool once poolMaxSize is set, and the url may list several
+ * LDAP servers, separated by spaces or commas, that are used in turn.  A server that can't be
+ * reached is skipped for urlRetryInterval milliseconds.  Bind and search latency and pool usage
+ * are registered with the metrics service under ldap.&lt;clusterName&gt;.
  * 
  * <p>
  * See {@link IsisLdapRealm} for typical configuration within <tt>shiro.ini</tt>.
  */
-public class KnoxLdapContextFactory extends JndiLdapContextFactory {
+public class KnoxLdapContextFactory extends JndiLdapContextFactory implements Destroyable {
 
     private static GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
+
+    public static final String METRICS_PREFIX = "ldap";
   
     private String systemAuthenticationMechanism = "simple";
     private String clusterName = "";
 
+    private int poolMinSize = 0;
+    private int poolMaxSize = 0;
+    private long poolIdleTimeout = 5 * 60 * 1000L;
+    private long poolValidateAfterInactivity = 5 * 1000L;
+    private long urlRetryInterval = 30 * 1000L;
+
+    private final AtomicInteger nextUrl = new AtomicInteger();
+    private final ConcurrentMap<String,Long> failedUrls = new ConcurrentHashMap<>();
+
+    private KnoxLdapContextPool systemContextPool;
+    private boolean metricsInitialized;
+    private TopologyMetrics metrics;
+    private Timer bindTimer;
+    private Timer searchTimer;
+
     public KnoxLdapContextFactory() {
       setAuthenticationMechanism("simple");
     }
@@ -60,7 +95,115 @@ public class KnoxLdapContextFactory extends JndiLdapContextFactory {
         if(getSystemUsername() != null && getSystemUsername().equals(env.get(Context.SECURITY_PRINCIPAL))) {
             env.put(Context.SECURITY_AUTHENTICATION, getSystemAuthenticationMechanism());
         }
+        initMetrics();
+        String url = (String)env.get(Context.PROVIDER_URL);
+        String[] urls = url == null ? new String[0] : url.trim().split("[\\s,]+");
+        if (urls.length <= 1) {
+          return bind(env);
+        }
+        int start = (nextUrl.getAndIncrement() & Integer.MAX_VALUE) % urls.length;
+        long now = System.currentTimeMillis();
+        NamingException failure = null;
+        // The first pass skips servers that failed recently, the second tries them anyway rather than give up.
+        for (int pass = 0; pass < 2; pass++) {
+          for (int i = 0; i < urls.length; i++) {
+            String candidate = urls[(start + i) % urls.length];
+            Long failedAt = failedUrls.get(candidate);
+            boolean recentlyFailed = failedAt != null && now - failedAt < urlRetryInterval;
+            if (recentlyFailed != (pass == 1)) {
+              continue;
+            }
+            env.put(Context.PROVIDER_URL, candidate);
+            try {
+              LdapContext ctx = bind(env);
+              failedUrls.remove(candidate);
+              return ctx;
+            } catch (CommunicationException | ServiceUnavailableException e) {
+              LOG.ldapUrlUnavailable(candidate, e);
+              failedUrls.put(candidate, System.currentTimeMillis());
+              failure = e;
+            }
+          }
+        }
+        throw failure;
+    }
+
+    @SuppressWarnings({ "rawtypes" })
+    private LdapContext bind(Hashtable env) throws NamingException {
+      Timer.Context timing = bindTimer == null ? null : bindTimer.time();
+      try {
         return super.createLdapContext(env);
+      } finally {
+        if (timing != null) {
+          timing.stop();
+        }
+      }
+    }
+
+    @Override
+    public LdapContext getSystemLdapContext() throws NamingException {
+      return getSystemContextPool().borrow();
+    }
+
+    private synchronized KnoxLdapContextPool getSystemContextPool() {
+      if (systemContextPool == null) {
+        initMetrics();
+        systemContextPool = new KnoxLdapContextPool(
+            new KnoxLdapContextPool.ContextSource() {
+              @Override
+              public LdapContext create() throws NamingException {
+                return KnoxLdapContextFactory.super.getSystemLdapContext();
+              }
+            },
+            poolMinSize, poolMaxSize, poolIdleTimeout, poolValidateAfterInactivity, searchTimer);
+      }
+      return systemContextPool;
+    }
+
+    private synchronized void initMetrics() {
+      if (metricsInitialized) {
+        return;
+      }
+      metricsInitialized = true;
+      GatewayServices services = GatewayServer.getGatewayServices();
+      MetricsService metricsService = services == null ? null : services.<MetricsService>getService(GatewayServices.METRICS_SERVICE);
+      if (metricsService == null || metricsService.getContext() == null) {
+        return;
+      }
+      MetricRegistry metricRegistry = (MetricRegistry)metricsService.getContext().getProperty(MetricsContext.METRICS_REGISTRY);
+      if (metricRegistry == null) {
+        return;
+      }
+      metrics = new TopologyMetrics(metricRegistry);
+      String prefix = MetricRegistry.name(METRICS_PREFIX, clusterName);
+      bindTimer = new Timer();
+      searchTimer = new Timer();
+      metrics.register(MetricRegistry.name(prefix, "bind"), bindTimer);
+      metrics.register(MetricRegistry.name(prefix, "search"), searchTimer);
+      metrics.register(MetricRegistry.name(prefix, "pool", "active"), new Gauge<Integer>() {
+        @Override
+        public Integer getValue() {
+          KnoxLdapContextPool pool = systemContextPool;
+          return pool == null ? 0 : pool.getActive();
+        }
+      });
+      metrics.register(MetricRegistry.name(prefix, "pool", "idle"), new Gauge<Integer>() {
+        @Override
+        public Integer getValue() {
+          KnoxLdapContextPool pool = systemContextPool;
+          return pool == null ? 0 : pool.getIdle();
+        }
+      });
+    }
+
+    @Override
+    public synchronized void destroy() {
+      if (systemContextPool != null) {
+        systemContextPool.close();
+      }
+      if (metrics != null) {
+        metrics.unregister();
+      }
     }
 
     public String getSystemAuthenticationMechanism() {
@@ -124,5 +267,57 @@ public class KnoxLdapContextFactory extends JndiLdapContextFactory {
         this.clusterName = clusterName.trim();
       }
     }
+
+    public int getPoolMinSize() {
+      return poolMinSize;
+    }
+
+    public void setPoolMinSize(int poolMinSize) {
+      this.poolMinSize = poolMinSize;
+    }
+
+    public int getPoolMaxSize() {
+      return poolMaxSize;
+    }
+
+    /**
+     * Maximum number of idle and in use system contexts kept, 0 closes every context after use.
+     */
+    public void setPoolMaxSize(int poolMaxSize) {
+      this.poolMaxSize = poolMaxSize;
+    }
+
+    public long getPoolIdleTimeout() {
+      return poolIdleTimeout;
+    }
+
+    /**
+     * Time in milliseconds after which idle contexts beyond poolMinSize are closed, -1 to keep them.
+     */
+    public void setPoolIdleTimeout(long poolIdleTimeout) {
+      this.poolIdleTimeout = poolIdleTimeout;
+    }
+
+    public long getPoolValidateAfterInactivity() {
+      return poolValidateAfterInactivity;
+    }
+
+    /**
+     * Time in milliseconds a context can be idle before it is checked with a root DSE lookup when borrowed.
+     */
+    public void setPoolValidateAfterInactivity(long poolValidateAfterInactivity) {
+      this.poolValidateAfterInactivity = poolValidateAfterInactivity;
+    }
+
+    public long getUrlRetryInterval() {
+      return urlRetryInterval;
+    }
+
+    /**
+     * Time in milliseconds an LDAP server that could not be reached is skipped for.
+     */
+    public void setUrlRetryInterval(long urlRetryInterval) {
+      this.urlRetryInterval = urlRetryInterval;
+    }
     
 }
\ No newline at end of file
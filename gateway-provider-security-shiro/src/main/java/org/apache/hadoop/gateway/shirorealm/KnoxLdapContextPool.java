@@ -0,0 +1,292 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.hadoop.gateway.shirorealm;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.naming.NamingException;
+import javax.naming.ldap.LdapContext;
+
+import org.apache.shiro.realm.ldap.LdapUtils;
+
+import com.codahale.metrics.Timer;
+
+/**
+ * Pool of system bound LDAP contexts.
+ * Borrowed contexts are handed out behind a proxy whose close() returns the context to the pool
+ * so callers keep closing them exactly as they would an unpooled one.  Request controls and
+ * environment changes made while a context was borrowed are undone before it is reused.
+ * When all maxSize contexts are in use an extra, unpooled, context is created instead of waiting
+ * as a caller may already hold one, e.g. while evaluating dynamic groups.
+ */
+class KnoxLdapContextPool {
+
+  interface ContextSource {
+    LdapContext create() throws NamingException;
+  }
+
+  private static final String[] VALIDATION_ATTRIBUTES = new String[]{ "objectClass" };
+
+  private final ContextSource source;
+  private final int minSize;
+  private final int maxSize;
+  private final long idleTimeout;
+  private final long validateAfterInactivity;
+  private final Timer searchTimer;
+
+  // Most recently used first, guarded by this.
+  private final Deque<PooledContext> idle = new ArrayDeque<>();
+  private int size;
+  private int active;
+  private boolean closed;
+
+  KnoxLdapContextPool( ContextSource source, int minSize, int maxSize, long idleTimeout,
+      long validateAfterInactivity, Timer searchTimer ) {
+    this.source = source;
+    this.minSize = Math.max( 0, minSize );
+    this.maxSize = Math.max( 0, maxSize );
+    this.idleTimeout = idleTimeout;
+    this.validateAfterInactivity = validateAfterInactivity;
+    this.searchTimer = searchTimer;
+  }
+
+  LdapContext borrow() throws NamingException {
+    PooledContext pooled;
+    while( ( pooled = takeIdle() ) != null ) {
+      if( isValid( pooled ) ) {
+        return pooled.proxy();
+      }
+      discard( pooled );
+    }
+    boolean reserved = reserve();
+    LdapContext context;
+    try {
+      context = source.create();
+    } catch( NamingException e ) {
+      if( reserved ) {
+        unreserve();
+      }
+      throw e;
+    }
+    return new PooledContext( context, reserved ).proxy();
+  }
+
+  synchronized int getActive() {
+    return active;
+  }
+
+  synchronized int getIdle() {
+    return idle.size();
+  }
+
+  void close() {
+    List<PooledContext> closing;
+    synchronized( this ) {
+      closed = true;
+      closing = new ArrayList<>( idle );
+      size -= idle.size();
+      idle.clear();
+    }
+    for( PooledContext pooled : closing ) {
+      LdapUtils.closeContext( pooled.context );
+    }
+  }
+
+  private PooledContext takeIdle() {
+    List<PooledContext> evicted = new ArrayList<>();
+    PooledContext pooled;
+    synchronized( this ) {
+      long now = System.currentTimeMillis();
+      Iterator<PooledContext> oldest = idle.descendingIterator();
+      while( oldest.hasNext() && size > minSize ) {
+        PooledContext candidate = oldest.next();
+        if( idleTimeout < 0 || now - candidate.lastUsed < idleTimeout ) {
+          break;
+        }
+        oldest.remove();
+        size--;
+        evicted.add( candidate );
+      }
+      pooled = idle.pollFirst();
+      if( pooled != null ) {
+        active++;
+      }
+    }
+    for( PooledContext candidate : evicted ) {
+      LdapUtils.closeContext( candidate.context );
+    }
+    return pooled;
+  }
+
+  private synchronized boolean reserve() {
+    if( closed || size >= maxSize ) {
+      return false;
+    }
+    size++;
+    active++;
+    return true;
+  }
+
+  private synchronized void unreserve() {
+    size--;
+    active--;
+  }
+
+  private boolean isValid( PooledContext pooled ) {
+    if( System.currentTimeMillis() - pooled.lastUsed < validateAfterInactivity ) {
+      return true;
+    }
+    try {
+      pooled.context.getAttributes( "", VALIDATION_ATTRIBUTES );
+      return true;
+    } catch( NamingException e ) {
+      return false;
+    }
+  }
+
+  private void discard( PooledContext pooled ) {
+    synchronized( this ) {
+      size--;
+      active--;
+    }
+    LdapUtils.closeContext( pooled.context );
+  }
+
+  private void release( PooledContext pooled ) {
+    if( !pooled.pooled ) {
+      LdapUtils.closeContext( pooled.context );
+      return;
+    }
+    boolean reusable = pooled.reset();
+    synchronized( this ) {
+      if( reusable && !closed ) {
+        pooled.lastUsed = System.currentTimeMillis();
+        active--;
+        idle.addFirst( pooled );
+        return;
+      }
+      size--;
+      active--;
+    }
+    LdapUtils.closeContext( pooled.context );
+  }
+
+  private class PooledContext {
+
+    private final LdapContext context;
+    private final boolean pooled;
+    private final Hashtable<?,?> environment;
+    private final Map<String,Object> changedEnvironment = new HashMap<>();
+    private boolean controlsChanged;
+    private long lastUsed;
+
+    private PooledContext( LdapContext context, boolean pooled ) throws NamingException {
+      this.context = context;
+      this.pooled = pooled;
+      this.environment = pooled ? new Hashtable<Object,Object>( context.getEnvironment() ) : null;
+    }
+
+    private LdapContext proxy() {
+      return (LdapContext)Proxy.newProxyInstance(
+          LdapContext.class.getClassLoader(), new Class<?>[]{ LdapContext.class }, new Lease( this ) );
+    }
+
+    // Puts the context back the way it was created, returns false if that failed.
+    private boolean reset() {
+      try {
+        if( controlsChanged ) {
+          context.setRequestControls( null );
+          controlsChanged = false;
+        }
+        for( Map.Entry<String,Object> entry : changedEnvironment.entrySet() ) {
+          if( entry.getValue() == null ) {
+            context.removeFromEnvironment( entry.getKey() );
+          } else {
+            context.addToEnvironment( entry.getKey(), entry.getValue() );
+          }
+        }
+        changedEnvironment.clear();
+        return true;
+      } catch( NamingException e ) {
+        return false;
+      }
+    }
+
+  }
+
+  // One borrowing of a context, so a caller that holds on to a context after closing it
+  // can't use it once it has been handed to someone else.
+  private class Lease implements InvocationHandler {
+
+    private final PooledContext pooled;
+    private boolean released;
+
+    private Lease( PooledContext pooled ) {
+      this.pooled = pooled;
+    }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+      String name = method.getName();
+      if( "close".equals( name ) ) {
+        if( !released ) {
+          released = true;
+          release( pooled );
+        }
+        return null;
+      }
+      if( released ) {
+        throw new IllegalStateException( "LDAP context already returned to the pool." );
+      }
+      if( pooled.pooled ) {
+        if( "addToEnvironment".equals( name ) || "removeFromEnvironment".equals( name ) ) {
+          String key = (String)args[ 0 ];
+          if( !pooled.changedEnvironment.containsKey( key ) ) {
+            pooled.changedEnvironment.put( key, pooled.environment.get( key ) );
+          }
+        } else if( "setRequestControls".equals( name ) ) {
+          pooled.controlsChanged = true;
+        }
+      }
+      Timer.Context timing = ( searchTimer != null && "search".equals( name ) ) ? searchTimer.time() : null;
+      try {
+        return method.invoke( pooled.context, args );
+      } catch( InvocationTargetException e ) {
+        throw e.getCause();
+      } finally {
+        if( timing != null ) {
+          timing.stop();
+        }
+      }
+    }
+
+  }
+
+}
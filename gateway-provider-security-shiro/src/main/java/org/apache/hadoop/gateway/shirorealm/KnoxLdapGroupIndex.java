@@ -0,0 +1,90 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.hadoop.gateway.shirorealm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.naming.ldap.LdapName;
+
+/**
+ * Snapshot of the groups found under the group search base, keyed by member DN,
+ * so a user's static groups can be resolved without going back to the directory.
+ * Dynamic groups can't be expanded up front so their memberUrl values are kept
+ * to be evaluated per user.
+ */
+class KnoxLdapGroupIndex {
+
+  private final Map<LdapName, Set<String>> groupsByMember = new HashMap<>();
+  private final Map<String, List<String>> memberUrlsByGroup = new HashMap<>();
+  private final Set<String> groups = new HashSet<>();
+  private final long created;
+
+  KnoxLdapGroupIndex( long created ) {
+    this.created = created;
+  }
+
+  void addMember( String groupName, LdapName memberDn ) {
+    Set<String> memberGroups = groupsByMember.get( memberDn );
+    if( memberGroups == null ) {
+      memberGroups = new HashSet<>();
+      groupsByMember.put( memberDn, memberGroups );
+    }
+    memberGroups.add( groupName );
+    groups.add( groupName );
+  }
+
+  void addMemberUrl( String groupName, String memberUrl ) {
+    List<String> memberUrls = memberUrlsByGroup.get( groupName );
+    if( memberUrls == null ) {
+      memberUrls = new ArrayList<>();
+      memberUrlsByGroup.put( groupName, memberUrls );
+    }
+    memberUrls.add( memberUrl );
+    groups.add( groupName );
+  }
+
+  Set<String> getGroups( LdapName memberDn ) {
+    Set<String> memberGroups = groupsByMember.get( memberDn );
+    return memberGroups == null ? Collections.<String>emptySet() : memberGroups;
+  }
+
+  Map<String, List<String>> getMemberUrlsByGroup() {
+    return memberUrlsByGroup;
+  }
+
+  int getGroupCount() {
+    return groups.size();
+  }
+
+  int getMemberCount() {
+    return groupsByMember.size();
+  }
+
+  boolean isExpired( long now, long timeToLive ) {
+    return now - created >= timeToLive;
+  }
+
+}
@@ -30,11 +30,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.naming.AuthenticationException;
 import javax.naming.Context;
+import javax.naming.InvalidNameException;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 import javax.naming.PartialResultException;
@@ -47,8 +52,10 @@ import javax.naming.ldap.LdapContext;
 import javax.naming.ldap.LdapName;
 import javax.naming.ldap.PagedResultsControl;
 import javax.naming.ldap.PagedResultsResponseControl;
+import javax.naming.ldap.Rdn;
 
 import org.apache.hadoop.gateway.GatewayMessages;
+import org.apache.hadoop.gateway.GatewayServer;
 import org.apache.hadoop.gateway.audit.api.Action;
 import org.apache.hadoop.gateway.audit.api.ActionOutcome;
 import org.apache.hadoop.gateway.audit.api.AuditService;
@@ -57,11 +64,16 @@ import org.apache.hadoop.gateway.audit.api.Auditor;
 import org.apache.hadoop.gateway.audit.api.ResourceType;
 import org.apache.hadoop.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.security.AuthenticationCacheRegistry;
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.metrics.MetricsContext;
+import org.apache.hadoop.gateway.services.metrics.MetricsService;
 import org.apache.hadoop.gateway.shirorealm.impl.i18n.KnoxShiroMessages;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.SimpleAuthenticationInfo;
+import org.apache.shiro.authc.UsernamePasswordToken;
 import org.apache.shiro.authc.credential.HashedCredentialsMatcher;
 import org.apache.shiro.authz.AuthorizationInfo;
 import org.apache.shiro.authz.SimpleAuthorizationInfo;
@@ -74,8 +86,11 @@ import org.apache.shiro.realm.ldap.LdapContextFactory;
 import org.apache.shiro.realm.ldap.LdapUtils;
 import org.apache.shiro.subject.MutablePrincipalCollection;
 import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.util.Destroyable;
 import org.apache.shiro.util.StringUtils;
 
+import com.codahale.metrics.MetricRegistry;
+
 /**
  * Implementation of {@link org.apache.shiro.realm.ldap.JndiLdapRealm} that also
  * returns each user's groups.
@@ -121,10 +136,25 @@ import org.apache.shiro.util.StringUtils;
  *    admin_role = *
  * 
  * securityManager.realms = $ldapRealm
+ *
+ * # optional, how groups are resolved: scan (default) reads every group and checks membership in the gateway,
+ * # filter asks the directory for the groups with a matching member attribute and memberOf reads the groups
+ * # from the user entry.  Dynamic groups (memberUrl) are always scanned.
+ * ldapRealm.groupSearchStrategy = filter
+ *
+ * # optional, keep an in-memory index of all groups and their members, rebuilt in the background
+ * # once it is older than this many milliseconds, instead of searching for every authorization
+ * ldapRealm.groupIndexTimeToLive = 300000
+ *
+ * # optional, remember verified credentials and the user's groups for this many milliseconds so clients that
+ * # don't send the session cookie back are not bound and looked up on every request.  Cached entries of a
+ * # topology can be dropped with DELETE /gateway/admin/api/v1/topologies/{topology}/authcache[/{user}]
+ * ldapRealm.credentialCacheTimeToLive = 60000
+ * ldapRealm.credentialCacheMaxEntries = 10000
  * 
  * </pre>
  */
-public class KnoxLdapRealm extends JndiLdapRealm {
+public class KnoxLdapRealm extends JndiLdapRealm implements Destroyable {
 
     private static GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
     KnoxShiroMessages ShiroLog = MessagesFactory.get( KnoxShiroMessages.class );
@@ -148,8 +178,26 @@ public class KnoxLdapRealm extends JndiLdapRealm {
 
     private static final String POSIX_GROUP = "posixGroup";
 
+    private static final String MEMBER_OF = "memberOf";
+
+    static final String GROUP_SEARCH_SCAN = "scan";
+    static final String GROUP_SEARCH_FILTER = "filter";
+    static final String GROUP_SEARCH_MEMBER_OF = "memberof";
+
+    private static final ExecutorService GROUP_INDEX_REFRESHER = Executors.newSingleThreadExecutor(
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "knox-ldap-group-index");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+
     private static final String HASHING_ALGORITHM = "SHA-256";
 
+    private static final String CREDENTIAL_CACHE_METRICS_PREFIX = "authcache";
+
     static {
           SUBTREE_SCOPE.setSearchScope(SearchControls.SUBTREE_SCOPE);
           ONELEVEL_SCOPE.setSearchScope(SearchControls.ONELEVEL_SCOPE);
@@ -186,6 +234,19 @@ public class KnoxLdapRealm extends JndiLdapRealm {
     private String userSearchAttributeName;
     private String userObjectClass = "person";
 
+    private String groupSearchStrategy = GROUP_SEARCH_SCAN;
+
+    private long groupIndexTimeToLive = 0;
+    private volatile KnoxLdapGroupIndex groupIndex;
+    private final AtomicBoolean groupIndexRefreshing = new AtomicBoolean();
+    private final Object groupIndexLock = new Object();
+
+    private String clusterName = "";
+    private long credentialCacheTimeToLive = 0;
+    private int credentialCacheMaxEntries = 10000;
+    private int credentialCacheHashIterations = 1000;
+    private volatile KnoxCredentialCache credentialCache;
+
     private HashService hashService = new DefaultHashService();
 
     public KnoxLdapRealm() {
@@ -193,11 +254,44 @@ public class KnoxLdapRealm extends JndiLdapRealm {
       setCredentialsMatcher(credentialsMatcher);
     }
 
+  // Closes the pooled system contexts of the context factory when the topology goes away.
+  @Override
+  public void destroy() throws Exception {
+    synchronized (this) {
+      if (credentialCache != null) {
+        AuthenticationCacheRegistry.unregister(clusterName, credentialCache);
+        credentialCache.unregisterMetrics();
+        credentialCache = null;
+      }
+    }
+    LdapContextFactory contextFactory = getContextFactory();
+    if (contextFactory instanceof Destroyable) {
+      ((Destroyable)contextFactory).destroy();
+    }
+  }
+
   @Override
   //KNOX-534 overriding this method to be able to audit authentication exceptions
   protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws org.apache.shiro.authc.AuthenticationException {
+    KnoxCredentialCache cache = getCredentialCache();
+    String cacheKey = null;
+    if (cache != null && token instanceof UsernamePasswordToken) {
+      UsernamePasswordToken upToken = (UsernamePasswordToken)token;
+      cacheKey = cache.key(upToken.getUsername(), upToken.getPassword());
+      if (cacheKey != null && cache.isVerified(cacheKey, upToken.getUsername())) {
+        try {
+          return createAuthenticationInfo(token, upToken.getUsername(), null, null);
+        } catch (NamingException e) {
+          // Not thrown as no LDAP context is involved, fall back to binding.
+        }
+      }
+    }
     try {
-      return super.doGetAuthenticationInfo(token);
+      AuthenticationInfo info = super.doGetAuthenticationInfo(token);
+      if (cacheKey != null && info != null) {
+        cache.putVerified(cacheKey, ((UsernamePasswordToken)token).getUsername());
+      }
+      return info;
     } catch ( org.apache.shiro.authc.AuthenticationException e ) {
       auditor.audit( Action.AUTHENTICATION , token.getPrincipal().toString(), ResourceType.PRINCIPAL, ActionOutcome.FAILURE, e.getMessage() );
       ShiroLog.failedLoginInfo(token);
@@ -238,6 +332,16 @@ public class KnoxLdapRealm extends JndiLdapRealm {
         final LdapContextFactory ldapContextFactory) throws NamingException {
         final String username = (String) getAvailablePrincipal(principals);
 
+        KnoxCredentialCache cache = getCredentialCache();
+        if (cache != null) {
+          KnoxCredentialCache.Groups groups = cache.getGroups(username);
+          if (groups != null) {
+            Set<String> roleNames = new HashSet<>(groups.getRoleNames());
+            saveRoles(principals, roleNames, new HashSet<>(groups.getGroupNames()));
+            return roleNames;
+          }
+        }
+
         LdapContext systemLdapCtx = null;
         try {
             systemLdapCtx = ldapContextFactory.getSystemLdapContext();
@@ -255,7 +359,7 @@ public class KnoxLdapRealm extends JndiLdapRealm {
       final Set<String> roleNames = new HashSet<>();
       final Set<String> groupNames = new HashSet<>();
 
-      String userDn;
+      final String userDn;
       if (userSearchAttributeName == null || userSearchAttributeName.isEmpty()) {
         // memberAttributeValuePrefix and memberAttributeValueSuffix were computed from memberAttributeValueTemplate
         userDn = memberAttributeValuePrefix + userName + memberAttributeValueSuffix;
@@ -263,71 +367,289 @@ public class KnoxLdapRealm extends JndiLdapRealm {
         userDn = getUserDn(userName);
       }
 
-      // Activate paged results
-      int pageSize = 100;
-      int numResults = 0;
-      byte[] cookie = null;
-      try {
-        ldapCtx.addToEnvironment(Context.REFERRAL, "ignore");
+      ldapCtx.addToEnvironment(Context.REFERRAL, "ignore");
+
+      // Dynamic groups can only be evaluated one memberUrl at a time so they always need the full group list.
+      boolean dynamicGroups = memberAttribute.equalsIgnoreCase(MEMBER_URL);
+      if (groupIndexTimeToLive > 0) {
+        addRolesFromIndex(userDn, getGroupIndex(ldapCtx), roleNames, groupNames, ldapContextFactory);
+      } else if (GROUP_SEARCH_FILTER.equals(groupSearchStrategy) && !dynamicGroups) {
+        // Let the directory do the membership test and only send back the names of matching groups.
+        String memberValue = groupObjectClass.equalsIgnoreCase(POSIX_GROUP) ? userName : userDn;
+        searchGroups(ldapCtx,
+            "(&(objectClass=" + groupObjectClass + ")(" + memberAttribute + "={0}))",
+            new Object[]{ memberValue },
+            groupSearchControls(getGroupIdAttribute()),
+            new GroupVisitor() {
+              @Override
+              public void visit(SearchResult group) throws NamingException {
+                Attribute attribute = group.getAttributes().get(getGroupIdAttribute());
+                if (attribute != null) {
+                  addGroup(attribute.get().toString(), roleNames, groupNames);
+                }
+              }
+            });
+      } else if (GROUP_SEARCH_MEMBER_OF.equals(groupSearchStrategy) && !dynamicGroups) {
+        addRolesFromMemberOf(userDn, ldapCtx, roleNames, groupNames);
+      } else {
+        searchGroups(ldapCtx,
+            "objectClass=" + groupObjectClass,
+            null,
+            SUBTREE_SCOPE,
+            new GroupVisitor() {
+              @Override
+              public void visit(SearchResult group) throws NamingException {
+                addRoleIfMember(userDn, group, roleNames, groupNames, ldapContextFactory);
+              }
+            });
+      }
+
+      KnoxCredentialCache cache = getCredentialCache();
+      if (cache != null) {
+        cache.putGroups(userName, roleNames, groupNames);
+      }
+      saveRoles(principals, roleNames, groupNames);
+      LOG.lookedUpUserRoles(roleNames, userName);
 
-        ldapCtx.setRequestControls(new Control[]{new PagedResultsControl(pageSize, Control.NONCRITICAL)});
+      return roleNames;
+    }
 
-        do {
-          // ldapsearch -h localhost -p 33389 -D uid=guest,ou=people,dc=hadoop,dc=apache,dc=org -w  guest-password
-          //       -b dc=hadoop,dc=apache,dc=org -s sub '(objectclass=*)'
+    // save role names and group names in session so that they can be easily looked up outside of this object
+    private void saveRoles(PrincipalCollection principals, Set<String> roleNames, Set<String> groupNames) {
+      SecurityUtils.getSubject().getSession().setAttribute(SUBJECT_USER_ROLES, roleNames);
+      SecurityUtils.getSubject().getSession().setAttribute(SUBJECT_USER_GROUPS, groupNames);
+      if (!groupNames.isEmpty() && (principals instanceof MutablePrincipalCollection)) {
+        ((MutablePrincipalCollection)principals).addAll(groupNames, getName());
+      }
+    }
 
-          NamingEnumeration<SearchResult> searchResultEnum = null;
-          try {
-            searchResultEnum = ldapCtx.search(
-                getGroupSearchBase(),
-                "objectClass=" + groupObjectClass,
-                SUBTREE_SCOPE);
-
-            while (searchResultEnum != null && searchResultEnum.hasMore()) { // searchResults contains all the groups in search scope
-              numResults++;
-              final SearchResult group = searchResultEnum.next();
-              addRoleIfMember(userDn, group, roleNames, groupNames, ldapContextFactory);
-            }
-          } catch (PartialResultException e) {
-            LOG.ignoringPartialResultException();
-          } finally {
-            if (searchResultEnum != null) {
-              searchResultEnum.close();
+    // Created on first use so the cache is registered under the cluster name whatever the order of the properties.
+    KnoxCredentialCache getCredentialCache() {
+      KnoxCredentialCache cache = credentialCache;
+      if (cache != null || credentialCacheTimeToLive <= 0) {
+        return cache;
+      }
+      synchronized (this) {
+        if (credentialCache == null) {
+          cache = new KnoxCredentialCache(
+              credentialCacheTimeToLive, credentialCacheMaxEntries, credentialCacheHashIterations);
+          AuthenticationCacheRegistry.register(clusterName, cache);
+          GatewayServices services = GatewayServer.getGatewayServices();
+          MetricsService metricsService = services == null ? null : services.<MetricsService>getService(GatewayServices.METRICS_SERVICE);
+          if (metricsService != null && metricsService.getContext() != null) {
+            MetricRegistry metricRegistry = (MetricRegistry)metricsService.getContext().getProperty(MetricsContext.METRICS_REGISTRY);
+            if (metricRegistry != null) {
+              cache.registerMetrics(metricRegistry, MetricRegistry.name(CREDENTIAL_CACHE_METRICS_PREFIX, clusterName));
             }
           }
+          credentialCache = cache;
+        }
+        return credentialCache;
+      }
+    }
 
-          // Examine the paged results control response
-          Control[] controls = ldapCtx.getResponseControls();
-          if (controls != null) {
-            for (Control control : controls) {
-              if (control instanceof PagedResultsResponseControl) {
-                PagedResultsResponseControl prrc = (PagedResultsResponseControl) control;
-                cookie = prrc.getCookie();
-              }
+  private interface GroupVisitor {
+    void visit(SearchResult group) throws NamingException;
+  }
+
+  private static SearchControls groupSearchControls(String... attributes) {
+    SearchControls searchControls = new SearchControls();
+    searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+    searchControls.setReturningAttributes(attributes);
+    return searchControls;
+  }
+
+  private void searchGroups(final LdapContext ldapCtx, final String filter, final Object[] filterArgs,
+      final SearchControls searchControls, final GroupVisitor visitor) throws NamingException {
+    // Activate paged results
+    int pageSize = 100;
+    int numResults = 0;
+    byte[] cookie = null;
+    try {
+      ldapCtx.setRequestControls(new Control[]{new PagedResultsControl(pageSize, Control.NONCRITICAL)});
+
+      do {
+        // ldapsearch -h localhost -p 33389 -D uid=guest,ou=people,dc=hadoop,dc=apache,dc=org -w  guest-password
+        //       -b dc=hadoop,dc=apache,dc=org -s sub '(objectclass=*)'
+
+        NamingEnumeration<SearchResult> searchResultEnum = null;
+        try {
+          if (filterArgs == null) {
+            searchResultEnum = ldapCtx.search(getGroupSearchBase(), filter, searchControls);
+          } else {
+            searchResultEnum = ldapCtx.search(getGroupSearchBase(), filter, filterArgs, searchControls);
+          }
+
+          while (searchResultEnum != null && searchResultEnum.hasMore()) { // searchResults contains all the groups in search scope
+            numResults++;
+            visitor.visit(searchResultEnum.next());
+          }
+        } catch (PartialResultException e) {
+          LOG.ignoringPartialResultException();
+        } finally {
+          if (searchResultEnum != null) {
+            searchResultEnum.close();
+          }
+        }
+
+        // Examine the paged results control response
+        cookie = null;
+        Control[] controls = ldapCtx.getResponseControls();
+        if (controls != null) {
+          for (Control control : controls) {
+            if (control instanceof PagedResultsResponseControl) {
+              PagedResultsResponseControl prrc = (PagedResultsResponseControl) control;
+              cookie = prrc.getCookie();
             }
           }
+        }
 
-          // Re-activate paged results
-          ldapCtx.setRequestControls(new Control[]{new PagedResultsControl(pageSize, cookie, Control.CRITICAL)});
-        } while (cookie != null);
-      } catch (SizeLimitExceededException e) {
-        LOG.sizeLimitExceededOnlyRetrieved(numResults);
+        // Re-activate paged results
+        ldapCtx.setRequestControls(new Control[]{new PagedResultsControl(pageSize, cookie, Control.CRITICAL)});
+      } while (cookie != null);
+    } catch (SizeLimitExceededException e) {
+      LOG.sizeLimitExceededOnlyRetrieved(numResults);
 //        System.out.println("Only retrieved first " + numResults + " groups due to SizeLimitExceededException.");
-      } catch(IOException e) {
-        LOG.unableToSetupPagedResults();
+    } catch(IOException e) {
+      LOG.unableToSetupPagedResults();
 //        System.out.println("Unabled to setup paged results");
+    }
+  }
+
+  private void addGroup(String groupName, Set<String> roleNames, Set<String> groupNames) {
+    groupNames.add(groupName);
+    String roleName = roleNameFor(groupName);
+    if (roleName != null) {
+      roleNames.add(roleName);
+    } else {
+      roleNames.add(groupName);
+    }
+  }
+
+  private void addRolesFromMemberOf(final String userDn, final LdapContext ldapCtx,
+      final Set<String> roleNames, final Set<String> groupNames) throws NamingException {
+    LdapName groupSearchBaseDn = new LdapName(getGroupSearchBase());
+    Attribute memberOf = ldapCtx.getAttributes(userDn, new String[]{ MEMBER_OF }).get(MEMBER_OF);
+    if (memberOf == null) {
+      return;
+    }
+    NamingEnumeration<?> e = memberOf.getAll();
+    try {
+      while (e.hasMore()) {
+        LdapName groupDn = new LdapName(e.next().toString());
+        if (!groupDn.startsWith(groupSearchBaseDn)) {
+          continue;
+        }
+        Rdn groupRdn = groupDn.getRdn(groupDn.size() - 1);
+        if (groupRdn.getType().equalsIgnoreCase(getGroupIdAttribute())) {
+          addGroup(groupRdn.getValue().toString(), roleNames, groupNames);
+        } else {
+          // The group is not named by its RDN so the name has to come from the group entry itself.
+          Attribute attribute = ldapCtx.getAttributes(groupDn, new String[]{ getGroupIdAttribute() }).get(getGroupIdAttribute());
+          if (attribute != null) {
+            addGroup(attribute.get().toString(), roleNames, groupNames);
+          }
+        }
       }
+    } finally {
+      e.close();
+    }
+  }
 
-      // save role names and group names in session so that they can be easily looked up outside of this object
-      SecurityUtils.getSubject().getSession().setAttribute(SUBJECT_USER_ROLES, roleNames);
-      SecurityUtils.getSubject().getSession().setAttribute(SUBJECT_USER_GROUPS, groupNames);
-      if (!groupNames.isEmpty() && (principals instanceof MutablePrincipalCollection)) {
-        ((MutablePrincipalCollection)principals).addAll(groupNames, getName());
+  private void addRolesFromIndex(final String userDn, final KnoxLdapGroupIndex index,
+      final Set<String> roleNames, final Set<String> groupNames,
+      final LdapContextFactory ldapContextFactory) throws NamingException {
+    LdapName userLdapDn = new LdapName(userDn);
+    for (String groupName : index.getGroups(userLdapDn)) {
+      addGroup(groupName, roleNames, groupNames);
+    }
+    for (Map.Entry<String, List<String>> entry : index.getMemberUrlsByGroup().entrySet()) {
+      for (String memberUrl : entry.getValue()) {
+        if (isUserMemberOfDynamicGroup(userLdapDn, memberUrl, ldapContextFactory)) {
+          addGroup(entry.getKey(), roleNames, groupNames);
+          break;
+        }
       }
-      LOG.lookedUpUserRoles(roleNames, userName);
+    }
+  }
 
-      return roleNames;
+  // Serves the current index and, once it is older than the time to live, rebuilds it in the background
+  // so only the very first lookup ever waits for the directory.
+  private KnoxLdapGroupIndex getGroupIndex(final LdapContext ldapCtx) throws NamingException {
+    KnoxLdapGroupIndex index = groupIndex;
+    if (index == null) {
+      synchronized (groupIndexLock) {
+        index = groupIndex;
+        if (index == null) {
+          index = buildGroupIndex(ldapCtx);
+          groupIndex = index;
+        }
+      }
+    } else if (index.isExpired(System.currentTimeMillis(), groupIndexTimeToLive)
+        && groupIndexRefreshing.compareAndSet(false, true)) {
+      GROUP_INDEX_REFRESHER.execute(new Runnable() {
+        @Override
+        public void run() {
+          LdapContext systemLdapCtx = null;
+          try {
+            systemLdapCtx = getContextFactory().getSystemLdapContext();
+            systemLdapCtx.addToEnvironment(Context.REFERRAL, "ignore");
+            groupIndex = buildGroupIndex(systemLdapCtx);
+          } catch (NamingException e) {
+            LOG.failedToRefreshLdapGroupIndex(e);
+          } finally {
+            LdapUtils.closeContext(systemLdapCtx);
+            groupIndexRefreshing.set(false);
+          }
+        }
+      });
     }
+    return index;
+  }
+
+  KnoxLdapGroupIndex buildGroupIndex(final LdapContext ldapCtx) throws NamingException {
+    long start = System.currentTimeMillis();
+    final KnoxLdapGroupIndex index = new KnoxLdapGroupIndex(start);
+    final boolean dynamicGroups = memberAttribute.equalsIgnoreCase(MEMBER_URL);
+    final boolean posixGroups = groupObjectClass.equalsIgnoreCase(POSIX_GROUP);
+    searchGroups(ldapCtx,
+        "objectClass=" + groupObjectClass,
+        null,
+        groupSearchControls(getGroupIdAttribute(), memberAttribute),
+        new GroupVisitor() {
+          @Override
+          public void visit(SearchResult group) throws NamingException {
+            Attribute groupId = group.getAttributes().get(getGroupIdAttribute());
+            Attribute members = group.getAttributes().get(memberAttribute);
+            if (groupId == null || members == null) {
+              return;
+            }
+            String groupName = groupId.get().toString();
+            NamingEnumeration<?> e = members.getAll();
+            try {
+              while (e.hasMore()) {
+                String attrValue = e.next().toString();
+                if (dynamicGroups) {
+                  index.addMemberUrl(groupName, attrValue);
+                } else {
+                  if (posixGroups) {
+                    attrValue = memberAttributeValuePrefix + attrValue + memberAttributeValueSuffix;
+                  }
+                  try {
+                    index.addMember(groupName, new LdapName(attrValue));
+                  } catch (InvalidNameException ine) {
+                    // A value that isn't a DN can never match a user DN.
+                  }
+                }
+              }
+            } finally {
+              e.close();
+            }
+          }
+        });
+    LOG.builtLdapGroupIndex(index.getGroupCount(), index.getMemberCount(), System.currentTimeMillis() - start);
+    return index;
+  }
 
   private void addRoleIfMember(final String userDn, final SearchResult group,
       final Set<String> roleNames, final Set<String> groupNames,
@@ -355,26 +677,14 @@ public class KnoxLdapRealm extends JndiLdapRealm {
                 attrValue, // memberUrl value
                 ldapContextFactory);
             if (dynamicGroupMember) {
-              groupNames.add(groupName);
-              String roleName = roleNameFor(groupName);
-              if (roleName != null) {
-                roleNames.add(roleName);
-              } else {
-                roleNames.add(groupName);
-              }
+              addGroup(groupName, roleNames, groupNames);
             }
           } else {
             if (groupObjectClass.equalsIgnoreCase(POSIX_GROUP)){
               attrValue = memberAttributeValuePrefix + attrValue + memberAttributeValueSuffix;
             }
             if (userLdapDn.equals(new LdapName(attrValue))) {
-              groupNames.add(groupName);
-              String roleName = roleNameFor(groupName);
-              if (roleName != null) {
-                roleNames.add(roleName);
-              } else {
-                roleNames.add(groupName);
-              }
+              addGroup(groupName, roleNames, groupNames);
               break;
             }
           }
@@ -506,6 +816,66 @@ public class KnoxLdapRealm extends JndiLdapRealm {
       this.userSearchAttributeName = userSearchAttributeName;
     }
 
+    public String getGroupSearchStrategy() {
+      return groupSearchStrategy;
+    }
+
+    public void setGroupSearchStrategy(String groupSearchStrategy) {
+      if (groupSearchStrategy == null || groupSearchStrategy.trim().isEmpty()) {
+        this.groupSearchStrategy = GROUP_SEARCH_SCAN;
+        return;
+      }
+      String strategy = groupSearchStrategy.trim().toLowerCase();
+      if (!GROUP_SEARCH_SCAN.equals(strategy) && !GROUP_SEARCH_FILTER.equals(strategy)
+          && !GROUP_SEARCH_MEMBER_OF.equals(strategy)) {
+        throw new IllegalArgumentException("Unknown group search strategy: " + groupSearchStrategy);
+      }
+      this.groupSearchStrategy = strategy;
+    }
+
+    public long getGroupIndexTimeToLive() {
+      return groupIndexTimeToLive;
+    }
+
+    public void setGroupIndexTimeToLive(long groupIndexTimeToLive) {
+      this.groupIndexTimeToLive = groupIndexTimeToLive;
+      this.groupIndex = null;
+    }
+
+    public String getClusterName() {
+      return clusterName;
+    }
+
+    public void setClusterName(String clusterName) {
+      if (clusterName != null) {
+        this.clusterName = clusterName.trim();
+      }
+    }
+
+    public long getCredentialCacheTimeToLive() {
+      return credentialCacheTimeToLive;
+    }
+
+    public void setCredentialCacheTimeToLive(long credentialCacheTimeToLive) {
+      this.credentialCacheTimeToLive = credentialCacheTimeToLive;
+    }
+
+    public int getCredentialCacheMaxEntries() {
+      return credentialCacheMaxEntries;
+    }
+
+    public void setCredentialCacheMaxEntries(int credentialCacheMaxEntries) {
+      this.credentialCacheMaxEntries = credentialCacheMaxEntries;
+    }
+
+    public int getCredentialCacheHashIterations() {
+      return credentialCacheHashIterations;
+    }
+
+    public void setCredentialCacheHashIterations(int credentialCacheHashIterations) {
+      this.credentialCacheHashIterations = credentialCacheHashIterations;
+    }
+
     public String getUserObjectClass() {
       return userObjectClass;
     }
@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.deploy.impl;
+
+import org.apache.hadoop.gateway.shirorealm.KnoxLdapContextFactory;
+import org.apache.hadoop.gateway.topology.Provider;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ShiroConfigTest {
+
+  @Test
+  public void testContextFactoryGetsClusterName() {
+    Provider provider = new Provider();
+    provider.getParams().put( "main.ldapRealm", "org.apache.hadoop.gateway.shirorealm.KnoxLdapRealm" );
+    provider.getParams().put( "main.ldapContextFactory", KnoxLdapContextFactory.class.getName() );
+    provider.getParams().put( "main.ldapRealm.contextFactory", "$ldapContextFactory" );
+    provider.getParams().put( "main.ldapRealm.contextFactory.systemPassword", "guest-password" );
+    String config = new ShiroConfig( provider, "sandbox" ).toString();
+    assertThat( config, containsString(
+        "ldapContextFactory=" + KnoxLdapContextFactory.class.getName() + "\nldapContextFactory.clusterName=sandbox\n" ) );
+  }
+
+  @Test
+  public void testOtherContextFactoriesAreLeftAlone() {
+    Provider provider = new Provider();
+    provider.getParams().put( "main.ldapContextFactory", "org.apache.shiro.realm.ldap.JndiLdapContextFactory" );
+    String config = new ShiroConfig( provider, "sandbox" ).toString();
+    assertThat( config, not( containsString( "clusterName" ) ) );
+  }
+
+}
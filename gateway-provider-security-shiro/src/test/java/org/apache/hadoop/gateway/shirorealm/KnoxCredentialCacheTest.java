@@ -0,0 +1,106 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.hadoop.gateway.shirorealm;
+
+import org.apache.hadoop.gateway.security.AuthenticationCacheRegistry;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class KnoxCredentialCacheTest {
+
+  @Test
+  public void testVerifiedCredentialsAreCached() {
+    KnoxCredentialCache cache = new KnoxCredentialCache( 60000, 10, 10 );
+    String key = cache.key( "guest", "guest-password".toCharArray() );
+    assertNotNull( key );
+    assertFalse( cache.isVerified( key, "guest" ) );
+    cache.putVerified( key, "guest" );
+    assertTrue( cache.isVerified( cache.key( "guest", "guest-password".toCharArray() ), "guest" ) );
+    assertEquals( 1, cache.getHits() );
+    assertEquals( 1, cache.getMisses() );
+  }
+
+  @Test
+  public void testKeyDependsOnUserAndPassword() {
+    KnoxCredentialCache cache = new KnoxCredentialCache( 60000, 10, 10 );
+    String key = cache.key( "guest", "guest-password".toCharArray() );
+    assertFalse( key.contains( "guest-password" ) );
+    assertNotEquals( key, cache.key( "guest", "other-password".toCharArray() ) );
+    assertNotEquals( key, cache.key( "admin", "guest-password".toCharArray() ) );
+    assertNotEquals( key, new KnoxCredentialCache( 60000, 10, 10 ).key( "guest", "guest-password".toCharArray() ) );
+    assertNull( cache.key( "guest", new char[ 0 ] ) );
+    assertNull( cache.key( null, "guest-password".toCharArray() ) );
+  }
+
+  @Test
+  public void testEntriesExpire() {
+    KnoxCredentialCache cache = new KnoxCredentialCache( -1, 10, 10 );
+    String key = cache.key( "guest", "guest-password".toCharArray() );
+    cache.putVerified( key, "guest" );
+    cache.putGroups( "guest", new HashSet<>( Arrays.asList( "analyst" ) ), new HashSet<>( Arrays.asList( "analyst" ) ) );
+    assertFalse( cache.isVerified( key, "guest" ) );
+    assertNull( cache.getGroups( "guest" ) );
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntriesEvicted() {
+    KnoxCredentialCache cache = new KnoxCredentialCache( 60000, 2, 10 );
+    String first = cache.key( "first", "password".toCharArray() );
+    String second = cache.key( "second", "password".toCharArray() );
+    String third = cache.key( "third", "password".toCharArray() );
+    cache.putVerified( first, "first" );
+    cache.putVerified( second, "second" );
+    assertTrue( cache.isVerified( first, "first" ) );
+    cache.putVerified( third, "third" );
+    assertEquals( 2, cache.size() );
+    assertEquals( 1, cache.getEvictions() );
+    assertTrue( cache.isVerified( first, "first" ) );
+    assertFalse( cache.isVerified( second, "second" ) );
+  }
+
+  @Test
+  public void testInvalidateUser() {
+    KnoxCredentialCache cache = new KnoxCredentialCache( 60000, 10, 10 );
+    String guest = cache.key( "guest", "guest-password".toCharArray() );
+    String admin = cache.key( "admin", "admin-password".toCharArray() );
+    cache.putVerified( guest, "guest" );
+    cache.putVerified( admin, "admin" );
+    cache.putGroups( "guest", new HashSet<>( Arrays.asList( "analyst" ) ), new HashSet<>( Arrays.asList( "analyst" ) ) );
+
+    AuthenticationCacheRegistry.register( "sandbox", cache );
+    try {
+      assertTrue( AuthenticationCacheRegistry.invalidate( "sandbox", "guest" ) );
+      assertFalse( cache.isVerified( guest, "guest" ) );
+      assertNull( cache.getGroups( "guest" ) );
+      assertTrue( cache.isVerified( admin, "admin" ) );
+
+      assertTrue( AuthenticationCacheRegistry.invalidate( "sandbox", null ) );
+      assertEquals( 0, cache.size() );
+    } finally {
+      AuthenticationCacheRegistry.unregister( "sandbox", cache );
+    }
+    assertFalse( AuthenticationCacheRegistry.invalidate( "sandbox", null ) );
+  }
+
+}
@@ -0,0 +1,184 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.hadoop.gateway.shirorealm;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KnoxLdapContextPoolTest {
+
+  private static class MockSource implements KnoxLdapContextPool.ContextSource {
+
+    private final List<LdapContext> created = new ArrayList<>();
+
+    @Override
+    public LdapContext create() throws NamingException {
+      LdapContext context = EasyMock.createNiceMock( LdapContext.class );
+      EasyMock.expect( context.getEnvironment() ).andReturn( new Hashtable<Object,Object>() ).anyTimes();
+      EasyMock.replay( context );
+      created.add( context );
+      return context;
+    }
+
+  }
+
+  @Test
+  public void testContextReusedAfterClose() throws Exception {
+    MockSource source = new MockSource();
+    KnoxLdapContextPool pool = new KnoxLdapContextPool( source, 0, 2, 60000, 60000, null );
+
+    LdapContext context = pool.borrow();
+    assertEquals( 1, pool.getActive() );
+    context.close();
+    assertEquals( 0, pool.getActive() );
+    assertEquals( 1, pool.getIdle() );
+
+    context = pool.borrow();
+    assertEquals( 1, source.created.size() );
+    assertEquals( 1, pool.getActive() );
+    assertEquals( 0, pool.getIdle() );
+    context.close();
+  }
+
+  @Test
+  public void testClosedContextCannotBeUsed() throws Exception {
+    MockSource source = new MockSource();
+    KnoxLdapContextPool pool = new KnoxLdapContextPool( source, 0, 1, 60000, 60000, null );
+
+    LdapContext context = pool.borrow();
+    context.close();
+    // Closing twice must not return the context twice.
+    context.close();
+    assertEquals( 1, pool.getIdle() );
+    try {
+      context.getEnvironment();
+      fail( "Expected IllegalStateException" );
+    } catch( IllegalStateException e ) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testContextsBeyondMaxSizeAreClosed() throws Exception {
+    MockSource source = new MockSource();
+    KnoxLdapContextPool pool = new KnoxLdapContextPool( source, 0, 1, 60000, 60000, null );
+
+    LdapContext first = pool.borrow();
+    LdapContext second = pool.borrow();
+    assertEquals( 2, source.created.size() );
+    assertEquals( 1, pool.getActive() );
+
+    LdapContext overflow = source.created.get( 1 );
+    EasyMock.reset( overflow );
+    overflow.close();
+    EasyMock.expectLastCall().once();
+    EasyMock.replay( overflow );
+
+    second.close();
+    EasyMock.verify( overflow );
+    assertEquals( 0, pool.getIdle() );
+
+    first.close();
+    assertEquals( 1, pool.getIdle() );
+  }
+
+  @Test
+  public void testChangesUndoneBeforeReuse() throws Exception {
+    MockSource source = new MockSource();
+    KnoxLdapContextPool pool = new KnoxLdapContextPool( source, 0, 1, 60000, 60000, null );
+
+    LdapContext context = pool.borrow();
+    LdapContext pooled = source.created.get( 0 );
+    EasyMock.reset( pooled );
+    EasyMock.expect( pooled.addToEnvironment( Context.REFERRAL, "ignore" ) ).andReturn( null );
+    pooled.setRequestControls( EasyMock.<Control[]>anyObject() );
+    EasyMock.expectLastCall();
+    pooled.setRequestControls( null );
+    EasyMock.expectLastCall();
+    EasyMock.expect( pooled.removeFromEnvironment( Context.REFERRAL ) ).andReturn( "ignore" );
+    EasyMock.replay( pooled );
+
+    context.addToEnvironment( Context.REFERRAL, "ignore" );
+    context.setRequestControls( new Control[ 0 ] );
+    context.close();
+
+    EasyMock.verify( pooled );
+    assertEquals( 1, pool.getIdle() );
+  }
+
+  @Test
+  public void testIdleContextsEvicted() throws Exception {
+    MockSource source = new MockSource();
+    KnoxLdapContextPool pool = new KnoxLdapContextPool( source, 0, 1, 0, 60000, null );
+
+    pool.borrow().close();
+    assertEquals( 1, pool.getIdle() );
+
+    pool.borrow().close();
+    assertEquals( 2, source.created.size() );
+    assertEquals( 1, pool.getIdle() );
+  }
+
+  @Test
+  public void testInvalidContextReplaced() throws Exception {
+    MockSource source = new MockSource();
+    KnoxLdapContextPool pool = new KnoxLdapContextPool( source, 0, 1, 60000, 0, null );
+
+    pool.borrow().close();
+    LdapContext stale = source.created.get( 0 );
+    EasyMock.reset( stale );
+    EasyMock.expect( stale.getAttributes( EasyMock.eq( "" ), EasyMock.<String[]>anyObject() ) )
+        .andThrow( new NamingException( "connection closed" ) );
+    stale.close();
+    EasyMock.expectLastCall().once();
+    EasyMock.replay( stale );
+
+    LdapContext context = pool.borrow();
+    EasyMock.verify( stale );
+    assertEquals( 2, source.created.size() );
+    assertEquals( 1, pool.getActive() );
+    context.close();
+  }
+
+  @Test
+  public void testCloseClosesIdleContexts() throws Exception {
+    MockSource source = new MockSource();
+    KnoxLdapContextPool pool = new KnoxLdapContextPool( source, 0, 2, 60000, 60000, null );
+
+    LdapContext first = pool.borrow();
+    pool.borrow().close();
+    pool.close();
+    assertEquals( 0, pool.getIdle() );
+
+    first.close();
+    assertEquals( 0, pool.getIdle() );
+    assertEquals( 0, pool.getActive() );
+  }
+
+}
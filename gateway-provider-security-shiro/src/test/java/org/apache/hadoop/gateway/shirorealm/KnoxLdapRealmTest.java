@@ -19,7 +19,29 @@
 
 package org.apache.hadoop.gateway.shirorealm;
 
+import org.apache.shiro.realm.ldap.LdapContextFactory;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.Test;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.LdapName;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.Assert.*;
 
 public class KnoxLdapRealmTest {
@@ -101,4 +123,260 @@ public class KnoxLdapRealmTest {
     assertEquals(realm.getGroupSearchBase(), "dc=knox,dc=example,dc=com");
   }
   
+  @Test
+  public void setGetGroupSearchStrategy() {
+    KnoxLdapRealm realm = new KnoxLdapRealm();
+    assertEquals(realm.getGroupSearchStrategy(), "scan");
+    realm.setGroupSearchStrategy(" memberOf ");
+    assertEquals(realm.getGroupSearchStrategy(), "memberof");
+    realm.setGroupSearchStrategy("filter");
+    assertEquals(realm.getGroupSearchStrategy(), "filter");
+    realm.setGroupSearchStrategy(null);
+    assertEquals(realm.getGroupSearchStrategy(), "scan");
+    try {
+      realm.setGroupSearchStrategy("guess");
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void setGetGroupIndexTimeToLive() {
+    KnoxLdapRealm realm = new KnoxLdapRealm();
+    assertEquals(realm.getGroupIndexTimeToLive(), 0L);
+    realm.setGroupIndexTimeToLive(60000L);
+    assertEquals(realm.getGroupIndexTimeToLive(), 60000L);
+  }
+
+  @Test
+  public void setGetCredentialCache() {
+    KnoxLdapRealm realm = new KnoxLdapRealm();
+    assertEquals(realm.getCredentialCacheTimeToLive(), 0L);
+    assertNull(realm.getCredentialCache());
+    realm.setClusterName("sandbox");
+    realm.setCredentialCacheTimeToLive(60000L);
+    realm.setCredentialCacheMaxEntries(100);
+    realm.setCredentialCacheHashIterations(10);
+    assertEquals(realm.getClusterName(), "sandbox");
+    assertEquals(realm.getCredentialCacheTimeToLive(), 60000L);
+    assertEquals(realm.getCredentialCacheMaxEntries(), 100);
+    assertEquals(realm.getCredentialCacheHashIterations(), 10);
+    assertNotNull(realm.getCredentialCache());
+    assertSame(realm.getCredentialCache(), realm.getCredentialCache());
+  }
+
+  @Test
+  public void buildGroupIndex() throws Exception {
+    KnoxLdapRealm realm = new KnoxLdapRealm();
+    realm.setSearchBase("dc=hadoop,dc=apache,dc=org");
+    realm.setGroupObjectClass("groupOfNames");
+    realm.setMemberAttribute("member");
+
+    BasicAttributes analyst = new BasicAttributes(true);
+    analyst.put("cn", "analyst");
+    analyst.put("member", "uid=sam,ou=people,dc=hadoop,dc=apache,dc=org");
+    analyst.get("member").add("uid=tom,ou=people,dc=hadoop,dc=apache,dc=org");
+    BasicAttributes scientist = new BasicAttributes(true);
+    scientist.put("cn", "scientist");
+    scientist.put("member", "uid=sam,ou=people,dc=hadoop,dc=apache,dc=org");
+    BasicAttributes unnamed = new BasicAttributes(true);
+    unnamed.put("member", "uid=sam,ou=people,dc=hadoop,dc=apache,dc=org");
+
+    LdapContext ldapCtx = EasyMock.createNiceMock(LdapContext.class);
+    EasyMock.expect(ldapCtx.search(
+        EasyMock.eq("dc=hadoop,dc=apache,dc=org"),
+        EasyMock.eq("objectClass=groupOfNames"),
+        EasyMock.anyObject(SearchControls.class))).andReturn(results(
+            new SearchResult("cn=analyst", null, analyst),
+            new SearchResult("cn=scientist", null, scientist),
+            new SearchResult("cn=unnamed", null, unnamed))).once();
+    EasyMock.replay(ldapCtx);
+
+    KnoxLdapGroupIndex index = realm.buildGroupIndex(ldapCtx);
+    assertEquals(index.getGroupCount(), 2);
+    assertEquals(index.getMemberCount(), 2);
+    assertEquals(index.getGroups(new LdapName("UID=sam, ou=people,dc=hadoop,dc=apache,dc=org")),
+        new HashSet<>(Arrays.asList("analyst", "scientist")));
+    assertEquals(index.getGroups(new LdapName("uid=tom,ou=people,dc=hadoop,dc=apache,dc=org")),
+        new HashSet<>(Arrays.asList("analyst")));
+    assertTrue(index.getGroups(new LdapName("uid=guest,ou=people,dc=hadoop,dc=apache,dc=org")).isEmpty());
+    EasyMock.verify(ldapCtx);
+  }
+
+  @Test
+  public void rolesForFilterStrategy() throws Exception {
+    KnoxLdapRealm realm = authorizingRealm();
+    realm.setGroupSearchStrategy("filter");
+
+    BasicAttributes analyst = new BasicAttributes(true);
+    analyst.put("cn", "analyst");
+
+    // The user name is passed as a filter argument, which the directory escapes, rather than as part of the filter.
+    LdapContext ldapCtx = EasyMock.createNiceMock(LdapContext.class);
+    EasyMock.expect(ldapCtx.search(
+        EasyMock.eq("dc=hadoop,dc=apache,dc=org"),
+        EasyMock.eq("(&(objectClass=groupOfNames)(member={0}))"),
+        EasyMock.aryEq(new Object[]{ "uid=sam*)(uid=*,ou=people,dc=hadoop,dc=apache,dc=org" }),
+        EasyMock.anyObject(SearchControls.class))).andReturn(results(
+            new SearchResult("cn=analyst", null, analyst))).once();
+    EasyMock.replay(ldapCtx);
+
+    assertEquals(rolesFor(realm, "sam*)(uid=*", contextFactory(ldapCtx)), Collections.singleton("analyst"));
+    EasyMock.verify(ldapCtx);
+  }
+
+  @Test
+  public void rolesForFilterStrategyWithPosixGroups() throws Exception {
+    KnoxLdapRealm realm = authorizingRealm();
+    realm.setGroupSearchStrategy("filter");
+    realm.setGroupObjectClass("posixGroup");
+    realm.setMemberAttribute("memberUid");
+
+    BasicAttributes analyst = new BasicAttributes(true);
+    analyst.put("cn", "analyst");
+
+    // posixGroup members are listed by user name rather than by DN.
+    LdapContext ldapCtx = EasyMock.createNiceMock(LdapContext.class);
+    EasyMock.expect(ldapCtx.search(
+        EasyMock.eq("dc=hadoop,dc=apache,dc=org"),
+        EasyMock.eq("(&(objectClass=posixGroup)(memberUid={0}))"),
+        EasyMock.aryEq(new Object[]{ "sam" }),
+        EasyMock.anyObject(SearchControls.class))).andReturn(results(
+            new SearchResult("cn=analyst", null, analyst))).once();
+    EasyMock.replay(ldapCtx);
+
+    assertEquals(rolesFor(realm, "sam", contextFactory(ldapCtx)), Collections.singleton("analyst"));
+    EasyMock.verify(ldapCtx);
+  }
+
+  @Test
+  public void rolesForMemberOfStrategy() throws Exception {
+    KnoxLdapRealm realm = authorizingRealm();
+    realm.setGroupSearchStrategy("memberOf");
+
+    BasicAttributes user = new BasicAttributes(true);
+    user.put("memberOf", "cn=analyst,ou=groups,dc=hadoop,dc=apache,dc=org");
+    user.get("memberOf").add("ou=scientists,ou=groups,dc=hadoop,dc=apache,dc=org");
+    user.get("memberOf").add("cn=admin,ou=groups,dc=example,dc=com");
+    BasicAttributes scientists = new BasicAttributes(true);
+    scientists.put("cn", "scientist");
+
+    LdapContext ldapCtx = EasyMock.createNiceMock(LdapContext.class);
+    EasyMock.expect(ldapCtx.getAttributes(
+        EasyMock.eq("uid=sam,ou=people,dc=hadoop,dc=apache,dc=org"),
+        EasyMock.aryEq(new String[]{ "memberOf" }))).andReturn(user).once();
+    // A group that isn't named by its RDN is looked up for its name.
+    EasyMock.expect(ldapCtx.getAttributes(
+        EasyMock.eq(new LdapName("ou=scientists,ou=groups,dc=hadoop,dc=apache,dc=org")),
+        EasyMock.aryEq(new String[]{ "cn" }))).andReturn(scientists).once();
+    EasyMock.replay(ldapCtx);
+
+    // Groups outside the group search base are ignored.
+    assertEquals(rolesFor(realm, "sam", contextFactory(ldapCtx)),
+        new HashSet<>(Arrays.asList("analyst", "scientist")));
+    EasyMock.verify(ldapCtx);
+  }
+
+  @Test( timeout = 30000 )
+  public void rolesForRefreshedGroupIndex() throws Exception {
+    KnoxLdapRealm realm = authorizingRealm();
+    realm.setGroupIndexTimeToLive(1L);
+
+    final BasicAttributes analyst = new BasicAttributes(true);
+    analyst.put("cn", "analyst");
+    analyst.put("member", "uid=sam,ou=people,dc=hadoop,dc=apache,dc=org");
+    final BasicAttributes scientist = new BasicAttributes(true);
+    scientist.put("cn", "scientist");
+    scientist.put("member", "uid=sam,ou=people,dc=hadoop,dc=apache,dc=org");
+
+    final AtomicInteger searches = new AtomicInteger();
+    LdapContext ldapCtx = EasyMock.createNiceMock(LdapContext.class);
+    EasyMock.expect(ldapCtx.search(
+        EasyMock.eq("dc=hadoop,dc=apache,dc=org"),
+        EasyMock.eq("objectClass=groupOfNames"),
+        EasyMock.anyObject(SearchControls.class))).andAnswer(new IAnswer<NamingEnumeration<SearchResult>>() {
+          @Override
+          public NamingEnumeration<SearchResult> answer() {
+            // The directory changes after the index was first built.
+            if (searches.getAndIncrement() == 0) {
+              return results(new SearchResult("cn=analyst", null, analyst));
+            }
+            return results(new SearchResult("cn=scientist", null, scientist));
+          }
+        }).anyTimes();
+    EasyMock.replay(ldapCtx);
+    LdapContextFactory contextFactory = contextFactory(ldapCtx);
+    realm.setContextFactory(contextFactory);
+
+    assertEquals(rolesFor(realm, "sam", contextFactory), Collections.singleton("analyst"));
+    assertEquals(searches.get(), 1);
+
+    // Once expired the index keeps being served while it is rebuilt in the background.
+    Thread.sleep(10L);
+    Set<String> roles = rolesFor(realm, "sam", contextFactory);
+    while (!roles.contains("scientist")) {
+      assertEquals(roles, Collections.singleton("analyst"));
+      Thread.sleep(10L);
+      roles = rolesFor(realm, "sam", contextFactory);
+    }
+    assertEquals(roles, Collections.singleton("scientist"));
+  }
+
+  private static KnoxLdapRealm authorizingRealm() {
+    KnoxLdapRealm realm = new KnoxLdapRealm();
+    realm.setSearchBase("dc=hadoop,dc=apache,dc=org");
+    realm.setMemberAttributeValueTemplate("uid={0},ou=people,dc=hadoop,dc=apache,dc=org");
+    realm.setAuthorizationEnabled(true);
+    return realm;
+  }
+
+  private static LdapContextFactory contextFactory(LdapContext ldapCtx) throws NamingException {
+    LdapContextFactory contextFactory = EasyMock.createNiceMock(LdapContextFactory.class);
+    EasyMock.expect(contextFactory.getSystemLdapContext()).andReturn(ldapCtx).anyTimes();
+    EasyMock.replay(contextFactory);
+    return contextFactory;
+  }
+
+  // The looked up roles and groups are saved in the session of the current subject.
+  private static Set<String> rolesFor(KnoxLdapRealm realm, String username, LdapContextFactory contextFactory)
+      throws NamingException {
+    Session session = EasyMock.createNiceMock(Session.class);
+    Subject subject = EasyMock.createNiceMock(Subject.class);
+    EasyMock.expect(subject.getSession()).andReturn(session).anyTimes();
+    EasyMock.replay(session, subject);
+    ThreadContext.bind(subject);
+    try {
+      return new HashSet<>(realm.queryForAuthorizationInfo(
+          new SimplePrincipalCollection(username, realm.getName()), contextFactory).getRoles());
+    } finally {
+      ThreadContext.unbindSubject();
+    }
+  }
+
+  private static NamingEnumeration<SearchResult> results(SearchResult... results) {
+    final Iterator<SearchResult> iterator = Arrays.asList(results).iterator();
+    return new NamingEnumeration<SearchResult>() {
+      @Override
+      public SearchResult next() {
+        return iterator.next();
+      }
+      @Override
+      public boolean hasMore() {
+        return iterator.hasNext();
+      }
+      @Override
+      public void close() {
+      }
+      @Override
+      public boolean hasMoreElements() {
+        return iterator.hasNext();
+      }
+      @Override
+      public SearchResult nextElement() {
+        return iterator.next();
+      }
+    };
+  }
+
 }
@@ -32,6 +32,7 @@ import org.apache.hadoop.gateway.filter.AbstractGatewayFilter;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.i18n.resources.ResourcesFactory;
 import org.apache.hadoop.gateway.topology.Topology;
+import org.apache.hadoop.gateway.util.urltemplate.CompiledMatcher;
 import org.apache.hadoop.gateway.util.urltemplate.Matcher;
 import org.apache.hadoop.gateway.util.urltemplate.Parser;
 import org.apache.hadoop.gateway.util.urltemplate.Template;
@@ -77,6 +78,8 @@ public class GatewayFilter implements Filter {
 
   private Set<Holder> holders;
   private Matcher<Chain> chains;
+  // Rebuilt as filters are added at deployment time.  Null if some path requires the full matcher.
+  private volatile CompiledMatcher<Chain> routes;
   private FilterConfig config;
 
   public GatewayFilter() {
@@ -109,46 +112,59 @@ public class GatewayFilter implements Filter {
     String requestPath = ( servlet == null ? "" : servlet ) + ( path == null ? "" : path );
     String requestPathWithQuery = requestPath + ( query == null ? "" : "?" + query );
 
-    Template pathWithQueryTemplate;
-    try {
-      pathWithQueryTemplate = Parser.parseLiteral( requestPathWithQuery );
-    } catch( URISyntaxException e ) {
-      throw new ServletException( e );
-    }
     String contextWithPathAndQuery = httpRequest.getContextPath() + requestPathWithQuery;
     LOG.receivedRequest( httpRequest.getMethod(), requestPath );
 
-    servletRequest.setAttribute(
-        AbstractGatewayFilter.SOURCE_REQUEST_URL_ATTRIBUTE_NAME, pathWithQueryTemplate );
     servletRequest.setAttribute(
         AbstractGatewayFilter.SOURCE_REQUEST_CONTEXT_URL_ATTRIBUTE_NAME, contextWithPathAndQuery );
 
-    Matcher<Chain>.Match match = chains.match( pathWithQueryTemplate );
+    Chain match = null;
+    CompiledMatcher<Chain> routes = this.routes;
+    if( routes != null && isRoutable( requestPath, query ) ) {
+      match = routes.match( requestPath );
+      if( match != null ) {
+        // The source URL template is only parsed if a filter in the chain asks for it.
+        servletRequest = new SourceUrlRequest( httpRequest, requestPathWithQuery );
+      }
+    }
 
-    // if there was no match then look for a default service for the topology
-    if (match == null) {
-      Topology topology = (Topology) servletRequest.getServletContext().getAttribute("org.apache.hadoop.gateway.topology");
-      if (topology != null) {
-        String defaultServicePath = topology.getDefaultServicePath();
-        if (defaultServicePath != null) {
-          try {
-            String newPathWithQuery = defaultServicePath + "/" + pathWithQueryTemplate;
-            match = chains.match(Parser.parseLiteral(newPathWithQuery));
-            String origUrl = ((HttpServletRequest) servletRequest).getRequestURL().toString();
-            String url = origUrl;
-            if (path.equals("/")) {
-              url += defaultServicePath;
-            }
-            else {
-              int index = origUrl.indexOf(path);
-              url = origUrl.substring(0, index) + "/" + defaultServicePath + path;
+    // Otherwise fall back to the full matcher which also handles the default service for the topology.
+    if( match == null ) {
+      Template pathWithQueryTemplate;
+      try {
+        pathWithQueryTemplate = Parser.parseLiteral( requestPathWithQuery );
+      } catch( URISyntaxException e ) {
+        throw new ServletException( e );
+      }
+      servletRequest.setAttribute(
+          AbstractGatewayFilter.SOURCE_REQUEST_URL_ATTRIBUTE_NAME, pathWithQueryTemplate );
+      match = matchTemplate( pathWithQueryTemplate );
+
+      // if there was no match then look for a default service for the topology
+      if (match == null) {
+        Topology topology = (Topology) servletRequest.getServletContext().getAttribute("org.apache.hadoop.gateway.topology");
+        if (topology != null) {
+          String defaultServicePath = topology.getDefaultServicePath();
+          if (defaultServicePath != null) {
+            try {
+              String newPathWithQuery = defaultServicePath + "/" + pathWithQueryTemplate;
+              match = matchTemplate(Parser.parseLiteral(newPathWithQuery));
+              String origUrl = ((HttpServletRequest) servletRequest).getRequestURL().toString();
+              String url = origUrl;
+              if (path.equals("/")) {
+                url += defaultServicePath;
+              }
+              else {
+                int index = origUrl.indexOf(path);
+                url = origUrl.substring(0, index) + "/" + defaultServicePath + path;
+              }
+              String contextPath = defaultServicePath;
+              servletRequest = new ForwardedRequest((HttpServletRequest) servletRequest,
+                  contextPath,
+                  url);
+            } catch (URISyntaxException e) {
+              throw new ServletException( e );
             }
-            String contextPath = defaultServicePath;
-            servletRequest = new ForwardedRequest((HttpServletRequest) servletRequest, 
-                contextPath, 
-                url);
-          } catch (URISyntaxException e) {
-            throw new ServletException( e );
           }
         }
       }
@@ -157,7 +173,7 @@ public class GatewayFilter implements Filter {
     assignCorrelationRequestId();
     // Populate Audit/correlation parameters
     AuditContext auditContext = auditService.getContext();
-    auditContext.setTargetServiceName( match == null ? null : match.getValue().getResourceRole() );
+    auditContext.setTargetServiceName( match == null ? null : match.getResourceRole() );
     auditContext.setRemoteIp( getRemoteAddress(servletRequest) );
     auditContext.setRemoteHostname( servletRequest.getRemoteHost() );
     auditor.audit(
@@ -165,7 +181,7 @@ public class GatewayFilter implements Filter {
         ActionOutcome.UNAVAILABLE, RES.requestMethod(((HttpServletRequest)servletRequest).getMethod()));
     
     if( match != null ) {
-      Chain chain = match.getValue();
+      Chain chain = match;
       servletRequest.setAttribute( AbstractGatewayFilter.TARGET_SERVICE_ROLE, chain.getResourceRole() );
       try {
         chain.doFilter( servletRequest, servletResponse );
@@ -199,6 +215,27 @@ public class GatewayFilter implements Filter {
     //]
   }
 
+  private Chain matchTemplate( Template template ) {
+    Matcher<Chain>.Match match = chains.match( template );
+    return match == null ? null : match.getValue();
+  }
+
+  // The compiled routes only see the path so anything that would make the parser
+  // produce a scheme, authority or fragment must go through the full matcher.
+  private static boolean isRoutable( String path, String query ) {
+    if( path.startsWith( "//" ) || path.indexOf( '?' ) >= 0 || path.indexOf( '#' ) >= 0 ) {
+      return false;
+    }
+    int colon = path.indexOf( ':' );
+    if( colon >= 0 ) {
+      int slash = path.indexOf( '/' );
+      if( slash < 0 || slash > colon ) {
+        return false;
+      }
+    }
+    return query == null || query.indexOf( '#' ) < 0;
+  }
+
   private String getRemoteAddress(ServletRequest servletRequest) {
     GatewayConfig gatewayConfig =
         (GatewayConfig) servletRequest.getServletContext().
@@ -226,8 +263,9 @@ public class GatewayFilter implements Filter {
       chain = new Chain();
       chain.setResourceRole( holder.getResourceRole() );
       chains.add( holder.template, chain );
+      routes = chains.compile();
     }
-    chain.chain.add( holder );
+    chain.addHolder( holder );
   }
 
   public void addFilter( String path, String name, Filter filter, Map<String,String> params, String resourceRole ) throws URISyntaxException {
@@ -260,30 +298,26 @@ public class GatewayFilter implements Filter {
   private class Chain implements FilterChain {
 
     private List<Holder> chain;
+    private FilterChain head;
     private String resourceRole; 
 
     private Chain() {
       this.chain = new ArrayList<Holder>();
+      this.head = EMPTY_CHAIN;
     }
 
-    private Chain( List<Holder> chain ) {
-      this.chain = chain;
-    }
-
-    public void doFilter( ServletRequest servletRequest, ServletResponse servletResponse ) throws IOException, ServletException {
-      if( chain != null && !chain.isEmpty() ) {
-        final Filter filter = chain.get( 0 );
-        final FilterChain chain = subChain();
-        filter.doFilter( servletRequest, servletResponse, chain );
+    private void addHolder( Holder holder ) {
+      chain.add( holder );
+      // Pre-build one immutable link per filter so that no chain objects are created per request.
+      FilterChain next = EMPTY_CHAIN;
+      for( int i = chain.size() - 1; i >= 0; i-- ) {
+        next = new Link( chain.get( i ), next );
       }
+      head = next;
     }
 
-    private FilterChain subChain() {
-      if( chain != null && chain.size() > 1 ) {
-        return new Chain( chain.subList( 1, chain.size() ) );
-      } else {
-        return EMPTY_CHAIN;
-      }
+    public void doFilter( ServletRequest servletRequest, ServletResponse servletResponse ) throws IOException, ServletException {
+      head.doFilter( servletRequest, servletResponse );
     }
 
     private String getResourceRole() {
@@ -296,6 +330,22 @@ public class GatewayFilter implements Filter {
 
   }
 
+  private static class Link implements FilterChain {
+
+    private final Filter filter;
+    private final FilterChain next;
+
+    private Link( Filter filter, FilterChain next ) {
+      this.filter = filter;
+      this.next = next;
+    }
+
+    public void doFilter( ServletRequest servletRequest, ServletResponse servletResponse ) throws IOException, ServletException {
+      filter.doFilter( servletRequest, servletResponse, next );
+    }
+
+  }
+
   private class Holder implements Filter, FilterConfig {
 //    private String path;
     private Template template;
@@ -418,6 +468,39 @@ public class GatewayFilter implements Filter {
 
   }
 
+  /**
+   * A request wrapper that only parses the source request URL template
+   * when it is first requested.
+   */
+  static class SourceUrlRequest extends HttpServletRequestWrapper {
+
+    private String pathWithQuery;
+    private Template sourceUrl;
+
+    SourceUrlRequest( HttpServletRequest request, String pathWithQuery ) {
+      super( request );
+      this.pathWithQuery = pathWithQuery;
+    }
+
+    @Override
+    public Object getAttribute( String name ) {
+      Object value = super.getAttribute( name );
+      if( value == null && AbstractGatewayFilter.SOURCE_REQUEST_URL_ATTRIBUTE_NAME.equals( name ) ) {
+        if( sourceUrl == null ) {
+          try {
+            sourceUrl = Parser.parseLiteral( pathWithQuery );
+          } catch( URISyntaxException e ) {
+            throw new IllegalStateException( e );
+          }
+          super.setAttribute( name, sourceUrl );
+        }
+        value = sourceUrl;
+      }
+      return value;
+    }
+
+  }
+
   /**
    * A request wrapper class that wraps a request and adds the context path if
    * needed.
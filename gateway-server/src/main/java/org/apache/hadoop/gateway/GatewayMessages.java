@@ -420,6 +420,15 @@ public interface GatewayMessages {
   @Message( level = MessageLevel.WARN, text = "Only retrieved first {0} groups due to SizeLimitExceededException." )
   void sizeLimitExceededOnlyRetrieved(int numResults);
 
+  @Message( level = MessageLevel.INFO, text = "Indexed {1} members of {0} LDAP groups in {2}ms" )
+  void builtLdapGroupIndex( int groups, int members, long millis );
+
+  @Message( level = MessageLevel.ERROR, text = "Failed to refresh LDAP group index, continuing with the previous one: {0}" )
+  void failedToRefreshLdapGroupIndex( @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
+  @Message( level = MessageLevel.WARN, text = "LDAP server {0} is unavailable, trying the next one: {1}" )
+  void ldapUrlUnavailable( String url, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
   @Message( level = MessageLevel.DEBUG, text = "Failed to parse path into Template: {0} : {1}" )
   void failedToParsePath( String path, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
 
@@ -550,4 +559,18 @@ public interface GatewayMessages {
   @Message( level = MessageLevel.DEBUG, text = "Removed descriptor {0} reference to provider configuration {1}." )
   void removedProviderConfigurationReference(String descriptorName, String providerConfigurationName);
 
+  @Message( level = MessageLevel.WARN, text = "Failed to maintain the backend connection pool: {0}" )
+  void failedToMaintainConnectionPool( @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
+  @Message( level = MessageLevel.WARN, text = "Unknown audit overflow policy {0}, using {1}." )
+  void unknownAuditOverflowPolicy( String policy, String defaultPolicy );
+
+  @Message( level = MessageLevel.INFO, text = "Dispatching audit events asynchronously with a queue of {0} events and a {1} overflow policy." )
+  void asyncAuditEnabled( int capacity, String policy );
+
+  @Message( level = MessageLevel.WARN, text = "Interrupted while writing the queued audit events." )
+  void interruptedWhileStoppingAuditDispatcher();
+
+  @Message( level = MessageLevel.WARN, text = "Failed to look up the groups of {0}: {1}" )
+  void failedToLookUpGroups( String user, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
 }
@@ -39,6 +39,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
 
 /**
  * The configuration for the Gateway.
@@ -128,11 +129,30 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   private static final String HTTP_CLIENT_MAX_CONNECTION = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.maxConnections";
   private static final String HTTP_CLIENT_CONNECTION_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionTimeout";
   private static final String HTTP_CLIENT_SOCKET_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.socketTimeout";
+  public static final String HTTP_CLIENT_CONNECTION_POOL_SHARED = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionPool.shared";
+  public static final String HTTP_CLIENT_MAX_CONNECTION_TOTAL = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.maxConnectionsTotal";
+  public static final String HTTP_CLIENT_MAX_CONNECTION_PER_ROUTE = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.maxConnectionsPerRoute";
+  public static final String HTTP_CLIENT_CONNECTION_IDLE_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionIdleTimeout";
+  public static final String HTTP_CLIENT_CONNECTION_TTL = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionTimeToLive";
+  public static final String HTTP_CLIENT_VALIDATE_AFTER_INACTIVITY = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.validateAfterInactivity";
   private static final String THREAD_POOL_MAX = GATEWAY_CONFIG_FILE_PREFIX + ".threadpool.max";
   public static final String HTTP_SERVER_REQUEST_BUFFER = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.requestBuffer";
   public static final String HTTP_SERVER_REQUEST_HEADER_BUFFER = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.requestHeaderBuffer";
   public static final String HTTP_SERVER_RESPONSE_BUFFER = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.responseBuffer";
+  public static final String HTTP_SERVER_RESPONSE_STREAM_BUFFER = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.responseStreamBuffer";
+  public static final String TOKEN_VERIFICATION_CACHE_MAX_ENTRIES = GATEWAY_CONFIG_FILE_PREFIX + ".token.verificationCache.maxEntries";
+  public static final String TOKEN_VERIFICATION_CACHE_TTL = GATEWAY_CONFIG_FILE_PREFIX + ".token.verificationCache.timeToLive";
+  public static final String AUDIT_ASYNC_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".audit.async.enabled";
+  public static final String AUDIT_ASYNC_QUEUE_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".audit.async.queueSize";
+  public static final String AUDIT_ASYNC_BATCH_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".audit.async.batchSize";
+  public static final String AUDIT_ASYNC_OVERFLOW_POLICY = GATEWAY_CONFIG_FILE_PREFIX + ".audit.async.overflowPolicy";
+  public static final String URL_REWRITE_CACHE_MAX_ENTRIES = GATEWAY_CONFIG_FILE_PREFIX + ".rewrite.cache.maxEntries";
+  public static final String URL_REWRITE_GZIP_COMPRESSION_LEVEL = GATEWAY_CONFIG_FILE_PREFIX + ".rewrite.gzip.compressionLevel";
   public static final String HTTP_SERVER_RESPONSE_HEADER_BUFFER = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.responseHeaderBuffer";
+  public static final String HTTP_SERVER_REQUEST_SPILL_LIMIT = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.requestSpillLimit";
+  public static final String GROUP_MAPPING_CACHE_TTL = GATEWAY_CONFIG_FILE_PREFIX + ".groupMapping.cache.timeToLive";
+  public static final String GROUP_MAPPING_CACHE_NEGATIVE_TTL = GATEWAY_CONFIG_FILE_PREFIX + ".groupMapping.cache.negativeTimeToLive";
+  public static final String GROUP_MAPPING_CACHE_MAX_ENTRIES = GATEWAY_CONFIG_FILE_PREFIX + ".groupMapping.cache.maxEntries";
   public static final String DEPLOYMENTS_BACKUP_VERSION_LIMIT = GATEWAY_CONFIG_FILE_PREFIX + ".deployment.backup.versionLimit";
   public static final String DEPLOYMENTS_BACKUP_AGE_LIMIT = GATEWAY_CONFIG_FILE_PREFIX + ".deployment.backup.ageLimit";
   public static final String METRICS_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".metrics.enabled";
@@ -923,4 +943,112 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   public boolean isGatewayServerHeaderEnabled() {
     return Boolean.parseBoolean(getVar(SERVER_HEADER_ENABLED, "true"));
   }
+
+  @Override
+  public boolean isHttpClientConnectionPoolShared() {
+    return Boolean.parseBoolean(get(HTTP_CLIENT_CONNECTION_POOL_SHARED, "true"));
+  }
+
+  @Override
+  public int getHttpClientMaxConnectionsTotal() {
+    return getInt( HTTP_CLIENT_MAX_CONNECTION_TOTAL, 1024 );
+  }
+
+  @Override
+  public int getHttpClientMaxConnectionsPerRoute() {
+    return getInt( HTTP_CLIENT_MAX_CONNECTION_PER_ROUTE, getHttpClientMaxConnections() );
+  }
+
+  @Override
+  public long getHttpClientConnectionIdleTimeout() {
+    return getNetworkTimeout( HTTP_CLIENT_CONNECTION_IDLE_TIMEOUT, 60000L );
+  }
+
+  @Override
+  public long getHttpClientConnectionTimeToLive() {
+    return getNetworkTimeout( HTTP_CLIENT_CONNECTION_TTL, -1L );
+  }
+
+  @Override
+  public int getHttpClientConnectionValidateAfterInactivity() {
+    return (int)getNetworkTimeout( HTTP_CLIENT_VALIDATE_AFTER_INACTIVITY, 2000L );
+  }
+
+  @Override
+  public int getHttpServerResponseStreamBuffer() {
+    return getInt( HTTP_SERVER_RESPONSE_STREAM_BUFFER, 64 * 1024 );
+  }
+
+  @Override
+  public int getTokenVerificationCacheMaxEntries() {
+    return getInt( TOKEN_VERIFICATION_CACHE_MAX_ENTRIES, 10000 );
+  }
+
+  @Override
+  public long getTokenVerificationCacheTimeToLive() {
+    return getNetworkTimeout( TOKEN_VERIFICATION_CACHE_TTL, 300000L );
+  }
+
+  @Override
+  public boolean isAsyncAuditEnabled() {
+    return getBoolean( AUDIT_ASYNC_ENABLED, false );
+  }
+
+  @Override
+  public int getAsyncAuditQueueSize() {
+    return getInt( AUDIT_ASYNC_QUEUE_SIZE, 8192 );
+  }
+
+  @Override
+  public int getAsyncAuditBatchSize() {
+    return getInt( AUDIT_ASYNC_BATCH_SIZE, 256 );
+  }
+
+  @Override
+  public String getAsyncAuditOverflowPolicy() {
+    return get( AUDIT_ASYNC_OVERFLOW_POLICY, "block" );
+  }
+
+  @Override
+  public int getUrlRewriteCacheMaxEntries() {
+    return getInt( URL_REWRITE_CACHE_MAX_ENTRIES, 0 );
+  }
+
+  @Override
+  public int getUrlRewriteGzipCompressionLevel() {
+    return getInt( URL_REWRITE_GZIP_COMPRESSION_LEVEL, Deflater.DEFAULT_COMPRESSION );
+  }
+
+  @Override
+  public long getHttpServerRequestSpillLimit() {
+    return getLong( HTTP_SERVER_REQUEST_SPILL_LIMIT, 0L );
+  }
+
+  @Override
+  public long getGroupMappingCacheTimeToLive() {
+    return getNetworkTimeout( GROUP_MAPPING_CACHE_TTL, 300000L );
+  }
+
+  @Override
+  public long getGroupMappingCacheNegativeTimeToLive() {
+    return getNetworkTimeout( GROUP_MAPPING_CACHE_NEGATIVE_TTL, 30000L );
+  }
+
+  @Override
+  public int getGroupMappingCacheMaxEntries() {
+    return getInt( GROUP_MAPPING_CACHE_MAX_ENTRIES, 10000 );
+  }
+
+  private long getNetworkTimeout( String name, long defaultValue ) {
+    long t = defaultValue;
+    String s = get( name, null );
+    if ( s != null ) {
+      try {
+        t = parseNetworkTimeout( s );
+      } catch ( Exception e ) {
+        // Ignore it and use the default.
+      }
+    }
+    return t;
+  }
 }
@@ -372,11 +372,11 @@ public abstract class DeploymentFactory {
     String topoName = context.getTopology().getName();
     if( applications == null ) {
       String servletName = topoName + SERVLET_NAME_SUFFIX;
-      wad.createServlet().servletName( servletName ).servletClass( GatewayServlet.class.getName() );
+      wad.createServlet().servletName( servletName ).servletClass( GatewayServlet.class.getName() ).asyncSupported( true );
       wad.createServletMapping().servletName( servletName ).urlPattern( "/*" );
     } else {
       String filterName = topoName + FILTER_NAME_SUFFIX;
-      wad.createFilter().filterName( filterName ).filterClass( GatewayServlet.class.getName() );
+      wad.createFilter().filterName( filterName ).filterClass( GatewayServlet.class.getName() ).asyncSupported( true );
       wad.createFilterMapping().filterName( filterName ).urlPattern( "/*" );
     }
     if (gatewayServices != null) {
@@ -23,15 +23,18 @@ import org.apache.hadoop.gateway.deploy.DeploymentContext;
 import org.apache.hadoop.gateway.descriptor.FilterParamDescriptor;
 import org.apache.hadoop.gateway.descriptor.ResourceDescriptor;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.services.audit.impl.DefaultAuditDispatchService;
 import org.apache.hadoop.gateway.services.registry.impl.DefaultServiceDefinitionRegistry;
 import org.apache.hadoop.gateway.services.metrics.impl.DefaultMetricsService;
 import org.apache.hadoop.gateway.services.topology.impl.DefaultTopologyService;
 import org.apache.hadoop.gateway.services.hostmap.impl.DefaultHostMapperService;
+import org.apache.hadoop.gateway.services.httpclient.impl.DefaultConnectionPoolService;
 import org.apache.hadoop.gateway.services.registry.impl.DefaultServiceRegistryService;
 import org.apache.hadoop.gateway.services.security.KeystoreServiceException;
 import org.apache.hadoop.gateway.services.security.SSLService;
 import org.apache.hadoop.gateway.services.security.impl.DefaultAliasService;
 import org.apache.hadoop.gateway.services.security.impl.DefaultCryptoService;
+import org.apache.hadoop.gateway.services.security.impl.DefaultGroupMappingService;
 import org.apache.hadoop.gateway.services.security.impl.DefaultKeystoreService;
 import org.apache.hadoop.gateway.services.security.impl.DefaultMasterService;
 import org.apache.hadoop.gateway.services.security.impl.JettySSLService;
@@ -116,6 +119,23 @@ public class DefaultGatewayServices implements GatewayServices {
     DefaultMetricsService metricsService = new DefaultMetricsService();
     metricsService.init( config, options );
     services.put( METRICS_SERVICE, metricsService );
+    ts.setMetricsService( metricsService );
+    ks.setMetricsService( metricsService );
+
+    DefaultConnectionPoolService connectionPoolService = new DefaultConnectionPoolService();
+    connectionPoolService.setMetricsService( metricsService );
+    connectionPoolService.init( config, options );
+    services.put( CONNECTION_POOL_SERVICE, connectionPoolService );
+
+    DefaultAuditDispatchService auditDispatchService = new DefaultAuditDispatchService();
+    auditDispatchService.setMetricsService( metricsService );
+    auditDispatchService.init( config, options );
+    services.put( AUDIT_DISPATCH_SERVICE, auditDispatchService );
+
+    DefaultGroupMappingService groupMappingService = new DefaultGroupMappingService();
+    groupMappingService.setMetricsService( metricsService );
+    groupMappingService.init( config, options );
+    services.put( GROUP_MAPPING_SERVICE, groupMappingService );
   }
   
   public void start() throws ServiceLifecycleException {
@@ -137,6 +157,18 @@ public class DefaultGatewayServices implements GatewayServices {
 
     DefaultMetricsService metricsService = (DefaultMetricsService) services.get(METRICS_SERVICE);
     metricsService.start();
+
+    DefaultConnectionPoolService connectionPoolService = (DefaultConnectionPoolService) services.get(CONNECTION_POOL_SERVICE);
+    connectionPoolService.start();
+
+    DefaultTokenAuthorityService ts = (DefaultTokenAuthorityService) services.get(TOKEN_SERVICE);
+    ts.start();
+
+    DefaultAuditDispatchService auditDispatchService = (DefaultAuditDispatchService) services.get(AUDIT_DISPATCH_SERVICE);
+    auditDispatchService.start();
+
+    DefaultGroupMappingService groupMappingService = (DefaultGroupMappingService) services.get(GROUP_MAPPING_SERVICE);
+    groupMappingService.start();
   }
 
   public void stop() throws ServiceLifecycleException {
@@ -159,6 +191,17 @@ public class DefaultGatewayServices implements GatewayServices {
     DefaultMetricsService metricsService = (DefaultMetricsService) services.get(METRICS_SERVICE);
     metricsService.stop();
 
+    DefaultConnectionPoolService connectionPoolService = (DefaultConnectionPoolService) services.get(CONNECTION_POOL_SERVICE);
+    connectionPoolService.stop();
+
+    DefaultTokenAuthorityService ts = (DefaultTokenAuthorityService) services.get(TOKEN_SERVICE);
+    ts.stop();
+
+    DefaultAuditDispatchService auditDispatchService = (DefaultAuditDispatchService) services.get(AUDIT_DISPATCH_SERVICE);
+    auditDispatchService.stop();
+
+    DefaultGroupMappingService groupMappingService = (DefaultGroupMappingService) services.get(GROUP_MAPPING_SERVICE);
+    groupMappingService.stop();
   }
   
   /* (non-Javadoc)
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.audit.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.hadoop.gateway.GatewayMessages;
+import org.apache.hadoop.gateway.audit.api.AuditService;
+import org.apache.hadoop.gateway.audit.api.AuditServiceFactory;
+import org.apache.hadoop.gateway.audit.log4j.audit.AsyncAuditDispatcher;
+import org.apache.hadoop.gateway.audit.log4j.audit.Log4jAuditService;
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.services.Service;
+import org.apache.hadoop.gateway.services.ServiceLifecycleException;
+import org.apache.hadoop.gateway.services.metrics.MetricsContext;
+import org.apache.hadoop.gateway.services.metrics.MetricsService;
+
+import java.util.Map;
+
+/**
+ * Moves the writing of audit events off the request threads when gateway.audit.async.enabled is set.
+ * The events of every auditor obtained from the {@link AuditServiceFactory} are queued and written in
+ * batches by a single thread from the time the service is started until it is stopped.
+ */
+public class DefaultAuditDispatchService implements Service {
+
+  private static GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
+
+  public static final String METRICS_PREFIX = "audit.dispatcher";
+
+  private AsyncAuditDispatcher dispatcher;
+
+  private AsyncAuditDispatcher.OverflowPolicy overflowPolicy;
+
+  private Log4jAuditService auditService;
+
+  private MetricsService metricsService;
+
+  private MetricRegistry metricRegistry;
+
+  private boolean metricsEnabled;
+
+  public void setMetricsService( MetricsService metricsService ) {
+    this.metricsService = metricsService;
+  }
+
+  @Override
+  public void init( GatewayConfig config, Map<String, String> options ) throws ServiceLifecycleException {
+    AuditService service = AuditServiceFactory.getAuditService();
+    if( config.isAsyncAuditEnabled() && service instanceof Log4jAuditService ) {
+      auditService = (Log4jAuditService)service;
+      overflowPolicy = getOverflowPolicy( config );
+      dispatcher = new AsyncAuditDispatcher(
+          config.getAsyncAuditQueueSize(), config.getAsyncAuditBatchSize(), overflowPolicy );
+      metricsEnabled = config.isMetricsEnabled();
+    }
+  }
+
+  @Override
+  public void start() throws ServiceLifecycleException {
+    if( dispatcher == null ) {
+      return;
+    }
+    if( metricsEnabled && metricsService != null ) {
+      metricRegistry = (MetricRegistry)metricsService.getContext().getProperty( MetricsContext.METRICS_REGISTRY );
+      registerGauges();
+    }
+    dispatcher.start();
+    auditService.setDispatcher( dispatcher );
+    LOG.asyncAuditEnabled( dispatcher.getCapacity(), overflowPolicy.name() );
+  }
+
+  @Override
+  public void stop() throws ServiceLifecycleException {
+    if( dispatcher == null ) {
+      return;
+    }
+    auditService.setDispatcher( null );
+    try {
+      dispatcher.stop();
+    } catch( InterruptedException e ) {
+      LOG.interruptedWhileStoppingAuditDispatcher();
+      Thread.currentThread().interrupt();
+    }
+    if( metricRegistry != null ) {
+      metricRegistry.removeMatching( new MetricFilter() {
+        @Override
+        public boolean matches( String name, Metric metric ) {
+          return name.startsWith( METRICS_PREFIX );
+        }
+      } );
+    }
+  }
+
+  AsyncAuditDispatcher getDispatcher() {
+    return dispatcher;
+  }
+
+  private static AsyncAuditDispatcher.OverflowPolicy getOverflowPolicy( GatewayConfig config ) {
+    String policy = config.getAsyncAuditOverflowPolicy();
+    if( policy != null ) {
+      try {
+        return AsyncAuditDispatcher.OverflowPolicy.parse( policy );
+      } catch( IllegalArgumentException e ) {
+        LOG.unknownAuditOverflowPolicy( policy, AsyncAuditDispatcher.OverflowPolicy.BLOCK.name() );
+      }
+    }
+    return AsyncAuditDispatcher.OverflowPolicy.BLOCK;
+  }
+
+  private void registerGauges() {
+    metricRegistry.register( MetricRegistry.name( METRICS_PREFIX, "queue-depth" ), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return dispatcher.getQueueDepth();
+      }
+    } );
+    metricRegistry.register( MetricRegistry.name( METRICS_PREFIX, "queue-capacity" ), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return dispatcher.getCapacity();
+      }
+    } );
+    metricRegistry.register( MetricRegistry.name( METRICS_PREFIX, "dropped" ), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return dispatcher.getDroppedCount();
+      }
+    } );
+    metricRegistry.register( MetricRegistry.name( METRICS_PREFIX, "dispatched" ), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return dispatcher.getDispatchedCount();
+      }
+    } );
+  }
+
+}
@@ -0,0 +1,237 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.httpclient.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.httpclient.InstrumentedHttpClientConnectionManager;
+import org.apache.hadoop.gateway.GatewayMessages;
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.services.ServiceLifecycleException;
+import org.apache.hadoop.gateway.services.httpclient.ConnectionPoolService;
+import org.apache.hadoop.gateway.services.metrics.MetricsContext;
+import org.apache.hadoop.gateway.services.metrics.MetricsService;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public class DefaultConnectionPoolService implements ConnectionPoolService {
+
+  private static GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
+
+  public static final String METRICS_PREFIX = "http-client.connection-pool";
+
+  private static final long MAINTENANCE_INTERVAL = 5000L;
+
+  private PoolingHttpClientConnectionManager connectionManager;
+
+  private ScheduledExecutorService maintenance;
+
+  private MetricsService metricsService;
+
+  private MetricRegistry metricRegistry;
+
+  private Set<HttpRoute> instrumentedRoutes = Collections.newSetFromMap( new ConcurrentHashMap<HttpRoute, Boolean>() );
+
+  private long idleTimeout;
+
+  public void setMetricsService( MetricsService metricsService ) {
+    this.metricsService = metricsService;
+  }
+
+  @Override
+  public void init( GatewayConfig config, Map<String, String> options ) throws ServiceLifecycleException {
+    if( config.isMetricsEnabled() && metricsService != null ) {
+      metricRegistry = (MetricRegistry)metricsService.getContext().getProperty( MetricsContext.METRICS_REGISTRY );
+      // The HttpClient builders of the dispatches are given this pool in place of their own instrumented one.
+      connectionManager = new InstrumentedConnectionManager(
+          metricRegistry, config.getHttpClientConnectionTimeToLive(), TimeUnit.MILLISECONDS );
+    } else {
+      connectionManager = new PoolingHttpClientConnectionManager(
+          config.getHttpClientConnectionTimeToLive(), TimeUnit.MILLISECONDS );
+    }
+    int maxTotal = config.getHttpClientMaxConnectionsTotal();
+    if( maxTotal > 0 ) {
+      connectionManager.setMaxTotal( maxTotal );
+    }
+    int maxPerRoute = config.getHttpClientMaxConnectionsPerRoute();
+    if( maxPerRoute > 0 ) {
+      connectionManager.setDefaultMaxPerRoute( maxPerRoute );
+    }
+    connectionManager.setValidateAfterInactivity( config.getHttpClientConnectionValidateAfterInactivity() );
+    idleTimeout = config.getHttpClientConnectionIdleTimeout();
+  }
+
+  @Override
+  public void start() throws ServiceLifecycleException {
+    if( metricRegistry != null ) {
+      registerTotalGauges();
+    }
+    maintenance = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+      @Override
+      public Thread newThread( Runnable runnable ) {
+        Thread thread = new Thread( runnable, "gateway-connection-pool-maintenance" );
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+    maintenance.scheduleWithFixedDelay( new Runnable() {
+      @Override
+      public void run() {
+        maintain();
+      }
+    }, MAINTENANCE_INTERVAL, MAINTENANCE_INTERVAL, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public void stop() throws ServiceLifecycleException {
+    if( maintenance != null ) {
+      maintenance.shutdownNow();
+    }
+    if( metricRegistry != null ) {
+      metricRegistry.removeMatching( new MetricFilter() {
+        @Override
+        public boolean matches( String name, Metric metric ) {
+          return name.startsWith( METRICS_PREFIX );
+        }
+      } );
+    }
+    connectionManager.shutdown();
+  }
+
+  @Override
+  public HttpClientConnectionManager getConnectionManager() {
+    return connectionManager;
+  }
+
+  @Override
+  public Set<HttpRoute> getRoutes() {
+    return connectionManager.getRoutes();
+  }
+
+  @Override
+  public PoolStats getTotalStats() {
+    return connectionManager.getTotalStats();
+  }
+
+  @Override
+  public PoolStats getStats( HttpRoute route ) {
+    return connectionManager.getStats( route );
+  }
+
+  void maintain() {
+    try {
+      connectionManager.closeExpiredConnections();
+      if( idleTimeout > 0 ) {
+        connectionManager.closeIdleConnections( idleTimeout, TimeUnit.MILLISECONDS );
+      }
+    } catch( Exception e ) {
+      LOG.failedToMaintainConnectionPool( e );
+    }
+  }
+
+  private void registerTotalGauges() {
+    metricRegistry.register( MetricRegistry.name( METRICS_PREFIX, "leased" ), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return connectionManager.getTotalStats().getLeased();
+      }
+    } );
+    metricRegistry.register( MetricRegistry.name( METRICS_PREFIX, "available" ), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return connectionManager.getTotalStats().getAvailable();
+      }
+    } );
+    metricRegistry.register( MetricRegistry.name( METRICS_PREFIX, "pending" ), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return connectionManager.getTotalStats().getPending();
+      }
+    } );
+  }
+
+  private void instrumentRoute( HttpRoute route ) {
+    if( instrumentedRoutes.add( route ) ) {
+      registerRouteGauges( route );
+    }
+  }
+
+  private void registerRouteGauges( final HttpRoute route ) {
+    String name = MetricRegistry.name( METRICS_PREFIX, "route", route.getTargetHost().toURI() );
+    metricRegistry.register( MetricRegistry.name( name, "leased" ), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return connectionManager.getStats( route ).getLeased();
+      }
+    } );
+    metricRegistry.register( MetricRegistry.name( name, "available" ), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return connectionManager.getStats( route ).getAvailable();
+      }
+    } );
+    metricRegistry.register( MetricRegistry.name( name, "pending" ), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return connectionManager.getStats( route ).getPending();
+      }
+    } );
+  }
+
+  private static Registry<ConnectionSocketFactory> getSocketFactoryRegistry() {
+    return RegistryBuilder.<ConnectionSocketFactory>create()
+        .register( "http", PlainConnectionSocketFactory.getSocketFactory() )
+        .register( "https", SSLConnectionSocketFactory.getSocketFactory() )
+        .build();
+  }
+
+  private class InstrumentedConnectionManager extends InstrumentedHttpClientConnectionManager {
+
+    InstrumentedConnectionManager( MetricRegistry registry, long timeToLive, TimeUnit unit ) {
+      super( registry, getSocketFactoryRegistry(), timeToLive, unit );
+    }
+
+    @Override
+    public ConnectionRequest requestConnection( HttpRoute route, Object state ) {
+      instrumentRoute( route );
+      return super.requestConnection( route, state );
+    }
+
+  }
+
+}
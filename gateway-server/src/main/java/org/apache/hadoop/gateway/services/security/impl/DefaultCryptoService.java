@@ -24,8 +24,9 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.SignatureException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.hadoop.gateway.GatewayMessages;
 import org.apache.hadoop.gateway.config.GatewayConfig;
@@ -43,8 +44,8 @@ public class DefaultCryptoService implements CryptoService {
 
   private AliasService as = null;
   private KeystoreService ks = null;
-  private HashMap<String,ConfigurableEncryptor> encryptorCache =
-		  new HashMap<String,ConfigurableEncryptor>();
+  private ConcurrentMap<String,ConfigurableEncryptor> encryptorCache =
+		  new ConcurrentHashMap<String,ConfigurableEncryptor>();
   private GatewayConfig config = null;
 
   public void setKeystoreService(KeystoreService ks) {
@@ -189,18 +190,21 @@ public class DefaultCryptoService implements CryptoService {
     return null;
   }
 
-  // The assumption here is that lock contention will be less of a performance issue than the cost of object creation.
-  // We have seen via profiling that AESEncryptor instantiation is very expensive.
+  // We have seen via profiling that AESEncryptor instantiation is very expensive so encryptors are cached per cluster.
+  // Encryptors are thread safe so only the creation of a missing encryptor needs to be serialized.
   private final ConfigurableEncryptor getEncryptor( final String clusterName, final char[] password ) {
-    synchronized( encryptorCache ) {
-    	ConfigurableEncryptor encryptor = encryptorCache.get( clusterName );
-      if( encryptor == null ) {
-        encryptor = new ConfigurableEncryptor( String.valueOf( password ) );
-        encryptor.init(config);
-        encryptorCache.put( clusterName, encryptor );
+    ConfigurableEncryptor encryptor = encryptorCache.get( clusterName );
+    if( encryptor == null ) {
+      synchronized( encryptorCache ) {
+        encryptor = encryptorCache.get( clusterName );
+        if( encryptor == null ) {
+          encryptor = new ConfigurableEncryptor( String.valueOf( password ) );
+          encryptor.init(config);
+          encryptorCache.put( clusterName, encryptor );
+        }
       }
-      return encryptor;
     }
+    return encryptor;
   }
 
 }
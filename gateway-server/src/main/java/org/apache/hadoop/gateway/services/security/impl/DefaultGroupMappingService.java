@@ -0,0 +1,317 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.security.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.hadoop.gateway.GatewayMessages;
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.services.ServiceLifecycleException;
+import org.apache.hadoop.gateway.services.metrics.MetricsContext;
+import org.apache.hadoop.gateway.services.metrics.MetricsService;
+import org.apache.hadoop.gateway.services.security.GroupMappingService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class DefaultGroupMappingService implements GroupMappingService {
+
+  private static GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
+
+  public static final String METRICS_PREFIX = "group-mapping";
+
+  private static final int REFRESH_THREADS = 2;
+
+  // Guarded by this.
+  private final Map<String, Registration> mappings = new HashMap<>();
+
+  private ExecutorService refresher;
+
+  private MetricsService metricsService;
+
+  private MetricRegistry metricRegistry;
+
+  private boolean metricsEnabled;
+
+  private long timeToLive;
+
+  private long negativeTimeToLive;
+
+  private int maxEntries;
+
+  public void setMetricsService( MetricsService metricsService ) {
+    this.metricsService = metricsService;
+  }
+
+  @Override
+  public void init( GatewayConfig config, Map<String, String> options ) throws ServiceLifecycleException {
+    timeToLive = config.getGroupMappingCacheTimeToLive();
+    negativeTimeToLive = config.getGroupMappingCacheNegativeTimeToLive();
+    maxEntries = config.getGroupMappingCacheMaxEntries();
+    metricsEnabled = config.isMetricsEnabled();
+  }
+
+  @Override
+  public void start() throws ServiceLifecycleException {
+    if( metricsEnabled && metricsService != null ) {
+      metricRegistry = (MetricRegistry)metricsService.getContext().getProperty( MetricsContext.METRICS_REGISTRY );
+    }
+    refresher = Executors.newFixedThreadPool( REFRESH_THREADS, new ThreadFactory() {
+      @Override
+      public Thread newThread( Runnable runnable ) {
+        Thread thread = new Thread( runnable, "gateway-group-mapping-refresh" );
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+  }
+
+  @Override
+  public void stop() throws ServiceLifecycleException {
+    if( refresher != null ) {
+      refresher.shutdownNow();
+    }
+    if( metricRegistry != null ) {
+      metricRegistry.removeMatching( new MetricFilter() {
+        @Override
+        public boolean matches( String name, Metric metric ) {
+          return name.startsWith( METRICS_PREFIX );
+        }
+      } );
+    }
+    synchronized( this ) {
+      mappings.clear();
+    }
+  }
+
+  @Override
+  public synchronized GroupMapping getGroupMapping( String id, String name, GroupLookup lookup ) {
+    Registration registration = mappings.get( id );
+    if( registration == null ) {
+      Timer timer;
+      Counter failures;
+      if( metricRegistry != null ) {
+        // Mappings of the same kind share their metrics.
+        timer = metricRegistry.timer( MetricRegistry.name( METRICS_PREFIX, name, "lookup" ) );
+        failures = metricRegistry.counter( MetricRegistry.name( METRICS_PREFIX, name, "failures" ) );
+      } else {
+        timer = new Timer();
+        failures = new Counter();
+      }
+      registration = new Registration( name, new CachedGroupMapping(
+          lookup, refresher, timeToLive, negativeTimeToLive, maxEntries, timer, failures ) );
+      mappings.put( id, registration );
+    }
+    registration.references++;
+    return registration.mapping;
+  }
+
+  @Override
+  public synchronized void releaseGroupMapping( GroupMapping mapping ) {
+    Iterator<Registration> registrations = mappings.values().iterator();
+    while( registrations.hasNext() ) {
+      Registration registration = registrations.next();
+      if( registration.mapping == mapping ) {
+        if( --registration.references <= 0 ) {
+          registrations.remove();
+          removeMetrics( registration.name );
+        }
+        return;
+      }
+    }
+  }
+
+  synchronized int getMappingCount() {
+    return mappings.size();
+  }
+
+  // The metrics are shared by the mappings of the same kind so they are only removed with the last one.
+  private void removeMetrics( String name ) {
+    if( metricRegistry == null ) {
+      return;
+    }
+    for( Registration registration : mappings.values() ) {
+      if( registration.name.equals( name ) ) {
+        return;
+      }
+    }
+    metricRegistry.remove( MetricRegistry.name( METRICS_PREFIX, name, "lookup" ) );
+    metricRegistry.remove( MetricRegistry.name( METRICS_PREFIX, name, "failures" ) );
+  }
+
+  private static class Registration {
+
+    private final String name;
+    private final CachedGroupMapping mapping;
+    private int references;
+
+    private Registration( String name, CachedGroupMapping mapping ) {
+      this.name = name;
+      this.mapping = mapping;
+    }
+
+  }
+
+  static class CachedGroupMapping implements GroupMapping {
+
+    private final GroupLookup lookup;
+    private final Executor refresher;
+    private final long timeToLive;
+    private final long negativeTimeToLive;
+    private final Timer timer;
+    private final Counter failures;
+
+    // Least recently used first, guarded by this.
+    private final Map<String, UserEntry> entries;
+
+    CachedGroupMapping( GroupLookup lookup, Executor refresher, long timeToLive, long negativeTimeToLive,
+        final int maxEntries, Timer timer, Counter failures ) {
+      this.lookup = lookup;
+      this.refresher = refresher;
+      this.timeToLive = timeToLive;
+      this.negativeTimeToLive = negativeTimeToLive;
+      this.timer = timer;
+      this.failures = failures;
+      this.entries = new LinkedHashMap<String, UserEntry>( 16, 0.75f, true ) {
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, UserEntry> eldest ) {
+          return size() > maxEntries;
+        }
+      };
+    }
+
+    @Override
+    public List<String> getGroups( final String user ) {
+      final UserEntry entry = getEntry( user );
+      Groups groups = entry.groups;
+      if( groups == null ) {
+        // The first lookup of a user is the only one done on the request thread.
+        // Concurrent requests for the same user wait for the same lookup.
+        entry.initial.run();
+        try {
+          groups = entry.initial.get();
+        } catch( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+          return Collections.emptyList();
+        } catch( ExecutionException e ) {
+          return Collections.emptyList();
+        }
+      } else if( groups.expires <= System.currentTimeMillis() && refresher != null
+          && entry.refreshing.compareAndSet( false, true ) ) {
+        try {
+          refresher.execute( new Runnable() {
+            @Override
+            public void run() {
+              try {
+                entry.groups = load( user, entry.groups );
+              } finally {
+                entry.refreshing.set( false );
+              }
+            }
+          } );
+        } catch( RejectedExecutionException e ) {
+          entry.refreshing.set( false );
+        }
+      }
+      return groups.groups;
+    }
+
+    synchronized int size() {
+      return entries.size();
+    }
+
+    private synchronized UserEntry getEntry( final String user ) {
+      UserEntry entry = entries.get( user );
+      if( entry == null ) {
+        entry = new UserEntry( user );
+        entries.put( user, entry );
+      }
+      return entry;
+    }
+
+    // Keeps returning the previous groups, if any, when the lookup fails and tries again a little later.
+    private Groups load( String user, Groups previous ) {
+      Timer.Context timing = timer.time();
+      try {
+        List<String> groups = lookup.getGroups( user );
+        if( groups == null || groups.isEmpty() ) {
+          return new Groups( Collections.<String>emptyList(), System.currentTimeMillis() + negativeTimeToLive );
+        }
+        return new Groups( Collections.unmodifiableList( new ArrayList<>( groups ) ),
+            System.currentTimeMillis() + timeToLive );
+      } catch( Exception e ) {
+        failures.inc();
+        LOG.failedToLookUpGroups( user, e );
+        return new Groups( previous == null ? Collections.<String>emptyList() : previous.groups,
+            System.currentTimeMillis() + negativeTimeToLive );
+      } finally {
+        timing.stop();
+      }
+    }
+
+    private class UserEntry {
+
+      private final FutureTask<Groups> initial;
+      private final AtomicBoolean refreshing = new AtomicBoolean();
+      private volatile Groups groups;
+
+      private UserEntry( final String user ) {
+        initial = new FutureTask<>( new Callable<Groups>() {
+          @Override
+          public Groups call() {
+            groups = load( user, null );
+            return groups;
+          }
+        } );
+      }
+
+    }
+
+  }
+
+  private static class Groups {
+
+    private final List<String> groups;
+    private final long expires;
+
+    private Groups( List<String> groups, long expires ) {
+      this.groups = groups;
+      this.expires = expires;
+    }
+
+  }
+
+}
@@ -17,6 +17,9 @@
  */
 package org.apache.hadoop.gateway.services.security.impl;
 
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
 import org.apache.hadoop.gateway.GatewayMessages;
 import org.apache.hadoop.gateway.GatewayResources;
 import org.apache.hadoop.gateway.config.GatewayConfig;
@@ -24,6 +27,8 @@ import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.i18n.resources.ResourcesFactory;
 import org.apache.hadoop.gateway.services.Service;
 import org.apache.hadoop.gateway.services.ServiceLifecycleException;
+import org.apache.hadoop.gateway.services.metrics.MetricsContext;
+import org.apache.hadoop.gateway.services.metrics.MetricsService;
 import org.apache.hadoop.gateway.services.security.KeystoreService;
 import org.apache.hadoop.gateway.services.security.KeystoreServiceException;
 import org.apache.hadoop.gateway.services.security.impl.X509CertificateUtil;
@@ -46,6 +51,8 @@ import java.util.Map;
 
 public class DefaultKeystoreService extends BaseKeystoreService implements KeystoreService, Service {
 
+  public static final String METRICS_PREFIX = "keystore.cache";
+
   private static final String dnTemplate = "CN={0},OU=Test,O=Hadoop,L=Test,ST=Test,C=US";
   private static final String CREDENTIALS_SUFFIX = "-credentials.jceks";
   public static final String GATEWAY_KEYSTORE = "gateway.jks";
@@ -57,10 +64,18 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
 
   private String signingKeystoreName = null;
   private String signingKeyAlias = null;
+  private MetricsService metricsService = null;
+  private MetricRegistry metricRegistry = null;
+  private boolean metricsEnabled = false;
+
+  public void setMetricsService(MetricsService metricsService) {
+    this.metricsService = metricsService;
+  }
 
   @Override
   public void init(GatewayConfig config, Map<String, String> options)
       throws ServiceLifecycleException {
+    metricsEnabled = config.isMetricsEnabled();
     this.keyStoreDir = config.getGatewaySecurityDir() + File.separator + "keystores" + File.separator;
     File ksd = new File(this.keyStoreDir);
     if (!ksd.exists()) {
@@ -98,10 +113,24 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
 
   @Override
   public void start() throws ServiceLifecycleException {
+    if (metricsEnabled && metricsService != null) {
+      metricRegistry = (MetricRegistry) metricsService.getContext().getProperty(MetricsContext.METRICS_REGISTRY);
+      metricRegistry.register(MetricRegistry.name(METRICS_PREFIX, "reloads"), getKeystoreReloads());
+      metricRegistry.register(MetricRegistry.name(METRICS_PREFIX, "load-time"), getKeystoreLoadTime());
+    }
   }
 
   @Override
   public void stop() throws ServiceLifecycleException {
+    if (metricRegistry != null) {
+      metricRegistry.removeMatching(new MetricFilter() {
+        @Override
+        public boolean matches(String name, Metric metric) {
+          return name.startsWith(METRICS_PREFIX);
+        }
+      });
+      metricRegistry = null;
+    }
   }
 
   @Override
@@ -113,7 +142,7 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
   @Override
   public KeyStore getKeystoreForGateway() throws KeystoreServiceException {
     final File  keyStoreFile = new File( keyStoreDir + GATEWAY_KEYSTORE  );
-    return getKeystore(keyStoreFile, "JKS");
+    return getCachedKeystore(keyStoreFile, "JKS");
   }
 
   @Override
@@ -130,7 +159,7 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
         throw new KeystoreServiceException("Configured signing keystore does not exist.");
       }
     }
-    return getKeystore(keyStoreFile, "JKS");
+    return getCachedKeystore(keyStoreFile, "JKS");
   }
 
   @Override
@@ -160,7 +189,7 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
         cert = X509CertificateUtil.generateCertificate(dn, KPair, 365, "SHA1withRSA");
       }
 
-      KeyStore privateKS = getKeystoreForGateway();
+      KeyStore privateKS = getKeystore(new File( keyStoreDir + GATEWAY_KEYSTORE  ), "JKS");
       privateKS.setKeyEntry(alias, KPair.getPrivate(),  
           passphrase,  
           new java.security.cert.Certificate[]{cert});  
@@ -268,14 +297,14 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
   public KeyStore getCredentialStoreForCluster(String clusterName) 
       throws KeystoreServiceException {
     final File  keyStoreFile = new File( keyStoreDir + clusterName + CREDENTIALS_SUFFIX  );
-    return getKeystore(keyStoreFile, "JCEKS");
+    return getCachedKeystore(keyStoreFile, "JCEKS");
   }
 
   public void addCredentialForCluster(String clusterName, String alias, String value) 
       throws KeystoreServiceException {
-    KeyStore ks = getCredentialStoreForCluster(clusterName);
-    addCredential(alias, value, ks);
     final File  keyStoreFile = new File( keyStoreDir + clusterName + CREDENTIALS_SUFFIX  );
+    KeyStore ks = getKeystore(keyStoreFile, "JCEKS");
+    addCredential(alias, value, ks);
     try {
       writeKeystoreToFile(ks, keyStoreFile);
     } catch (KeyStoreException e) {
@@ -293,23 +322,15 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
   public char[] getCredentialForCluster(String clusterName, String alias) 
       throws KeystoreServiceException {
     char[] credential = null;
-    KeyStore ks = getCredentialStoreForCluster(clusterName);
-    if (ks != null) {
-      try {
-        char[] masterSecret = masterService.getMasterSecret();
-        Key credentialKey = ks.getKey( alias, masterSecret );
-        if (credentialKey != null) {
-          byte[] credentialBytes = credentialKey.getEncoded();
-          String credentialString = new String( credentialBytes );
-          credential = credentialString.toCharArray();
-        }
-      } catch (UnrecoverableKeyException e) {
-        LOG.failedToGetCredentialForCluster( clusterName, e );
-      } catch (KeyStoreException e) {
-        LOG.failedToGetCredentialForCluster( clusterName, e );
-      } catch (NoSuchAlgorithmException e) {
-        LOG.failedToGetCredentialForCluster( clusterName, e );
-      }
+    final File  keyStoreFile = new File( keyStoreDir + clusterName + CREDENTIALS_SUFFIX  );
+    try {
+      credential = getCachedCredential(keyStoreFile, "JCEKS", alias);
+    } catch (UnrecoverableKeyException e) {
+      LOG.failedToGetCredentialForCluster( clusterName, e );
+    } catch (KeyStoreException e) {
+      LOG.failedToGetCredentialForCluster( clusterName, e );
+    } catch (NoSuchAlgorithmException e) {
+      LOG.failedToGetCredentialForCluster( clusterName, e );
     }
     return credential;
   }
@@ -317,9 +338,9 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
 
   @Override
   public void removeCredentialForCluster(String clusterName, String alias) throws KeystoreServiceException {
-    KeyStore ks = getCredentialStoreForCluster(clusterName);
-    removeCredential(alias, ks);
     final File  keyStoreFile = new File( keyStoreDir + clusterName + CREDENTIALS_SUFFIX  );
+    KeyStore ks = getKeystore(keyStoreFile, "JCEKS");
+    removeCredential(alias, ks);
     try {
       writeKeystoreToFile(ks, keyStoreFile);
     } catch (KeyStoreException e) {
@@ -30,9 +30,15 @@ import java.util.HashSet;
 
 import javax.security.auth.Subject;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
 import org.apache.hadoop.gateway.config.GatewayConfig;
 import org.apache.hadoop.gateway.services.Service;
 import org.apache.hadoop.gateway.services.ServiceLifecycleException;
+import org.apache.hadoop.gateway.services.metrics.MetricsContext;
+import org.apache.hadoop.gateway.services.metrics.MetricsService;
 import org.apache.hadoop.gateway.services.security.AliasService;
 import org.apache.hadoop.gateway.services.security.AliasServiceException;
 import org.apache.hadoop.gateway.services.security.KeystoreService;
@@ -49,10 +55,16 @@ import com.nimbusds.jose.crypto.RSASSAVerifier;
 
 public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
 
+  public static final String METRICS_PREFIX = "token.verification-cache";
+
   private static final String SIGNING_KEY_PASSPHRASE = "signing.key.passphrase";
   private static final Set<String> SUPPORTED_SIG_ALGS = new HashSet<>();
   private AliasService as = null;
   private KeystoreService ks = null;
+  private MetricsService metricsService = null;
+  private MetricRegistry metricRegistry = null;
+  private boolean metricsEnabled = false;
+  VerifiedTokenCache verifiedTokens = new VerifiedTokenCache(0, 0);
   String signingKeyAlias = null;
 
   static {
@@ -74,6 +86,10 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
     this.as = as;
   }
 
+  public void setMetricsService(MetricsService metricsService) {
+    this.metricsService = metricsService;
+  }
+
   /* (non-Javadoc)
    * @see org.apache.hadoop.gateway.provider.federation.jwt.JWTokenAuthority#issueToken(javax.security.auth.Subject, java.lang.String)
    */
@@ -191,10 +207,18 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
       else {
         key = publicKey;
       }
+      // Clients resend the same token with every request so skip the signature
+      // verification for tokens that were already verified with this key.
+      if (verifiedTokens.isVerified(token, key)) {
+        return true;
+      }
       JWSVerifier verifier = new RSASSAVerifier((RSAPublicKey) key);
       // TODO: interrogate the token for issuer claim in order to determine the public key to use for verification
       // consider jwk for specifying the key too
       rc = token.verify(verifier);
+      if (rc) {
+        verifiedTokens.verified(token, key);
+      }
     } catch (KeyStoreException e) {
       throw new TokenServiceException("Cannot verify token.", e);
     } catch (KeystoreServiceException e) {
@@ -210,6 +234,9 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
       throw new ServiceLifecycleException("Alias or Keystore service is not set");
     }
     signingKeyAlias = config.getSigningKeyAlias();
+    verifiedTokens = new VerifiedTokenCache(config.getTokenVerificationCacheMaxEntries(),
+        config.getTokenVerificationCacheTimeToLive());
+    metricsEnabled = config.isMetricsEnabled();
 
     @SuppressWarnings("unused")
     RSAPrivateKey key;
@@ -232,9 +259,30 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
 
   @Override
   public void start() throws ServiceLifecycleException {
+    if (metricsEnabled && metricsService != null && verifiedTokens.isEnabled()) {
+      metricRegistry = (MetricRegistry) metricsService.getContext().getProperty(MetricsContext.METRICS_REGISTRY);
+      metricRegistry.register(MetricRegistry.name(METRICS_PREFIX, "hits"), verifiedTokens.getHits());
+      metricRegistry.register(MetricRegistry.name(METRICS_PREFIX, "misses"), verifiedTokens.getMisses());
+      metricRegistry.register(MetricRegistry.name(METRICS_PREFIX, "size"), new Gauge<Integer>() {
+        @Override
+        public Integer getValue() {
+          return verifiedTokens.size();
+        }
+      });
+    }
   }
 
   @Override
   public void stop() throws ServiceLifecycleException {
+    if (metricRegistry != null) {
+      metricRegistry.removeMatching(new MetricFilter() {
+        @Override
+        public boolean matches(String name, Metric metric) {
+          return name.startsWith(METRICS_PREFIX);
+        }
+      });
+      metricRegistry = null;
+    }
+    verifiedTokens.clear();
   }
 }
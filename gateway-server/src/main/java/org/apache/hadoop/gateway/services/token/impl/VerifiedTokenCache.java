@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.token.impl;
+
+import com.codahale.metrics.Counter;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.hadoop.gateway.services.security.token.impl.JWT;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of tokens whose signature has already been verified with a given key.
+ * Tokens are keyed by a digest of their serialized form and are only remembered until
+ * the earlier of their expiration time and the configured maximum time to live.
+ * Only the signature verification is cached, all claim checks are still up to the caller.
+ */
+class VerifiedTokenCache {
+
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+
+  private final int maxEntries;
+  private final long maxTimeToLive;
+  private final Map<String,Entry> entries;
+  private final Counter hits = new Counter();
+  private final Counter misses = new Counter();
+
+  VerifiedTokenCache( final int maxEntries, long maxTimeToLive ) {
+    this.maxEntries = maxEntries;
+    this.maxTimeToLive = maxTimeToLive;
+    this.entries = new LinkedHashMap<String,Entry>( 16, 0.75f, true ) {
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String,Entry> eldest ) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  boolean isEnabled() {
+    return maxEntries > 0 && maxTimeToLive > 0;
+  }
+
+  /**
+   * @param token The token to check.
+   * @param key The key, or an identifier for it, that the signature would be verified with.
+   * @return true if the token's signature was previously verified with an equal key and the entry has not expired.
+   */
+  boolean isVerified( JWT token, Object key ) {
+    if( !isEnabled() ) {
+      return false;
+    }
+    String digest = digest( token );
+    Entry entry;
+    synchronized( entries ) {
+      entry = entries.get( digest );
+      if( entry != null && entry.expires <= System.currentTimeMillis() ) {
+        entries.remove( digest );
+        entry = null;
+      }
+    }
+    if( entry != null && entry.key.equals( key ) ) {
+      hits.inc();
+      return true;
+    }
+    misses.inc();
+    return false;
+  }
+
+  void verified( JWT token, Object key ) {
+    if( !isEnabled() ) {
+      return;
+    }
+    long expires = System.currentTimeMillis() + maxTimeToLive;
+    Date tokenExpires = token.getExpiresDate();
+    if( tokenExpires != null ) {
+      expires = Math.min( expires, tokenExpires.getTime() );
+    }
+    if( expires > System.currentTimeMillis() ) {
+      String digest = digest( token );
+      synchronized( entries ) {
+        entries.put( digest, new Entry( key, expires ) );
+      }
+    }
+  }
+
+  void clear() {
+    synchronized( entries ) {
+      entries.clear();
+    }
+  }
+
+  int size() {
+    synchronized( entries ) {
+      return entries.size();
+    }
+  }
+
+  Counter getHits() {
+    return hits;
+  }
+
+  Counter getMisses() {
+    return misses;
+  }
+
+  private static String digest( JWT token ) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance( DIGEST_ALGORITHM );
+      return Base64.encodeBase64String( digest.digest( token.toString().getBytes( StandardCharsets.UTF_8 ) ) );
+    } catch( NoSuchAlgorithmException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  private static class Entry {
+
+    private final Object key;
+    private final long expires;
+
+    private Entry( Object key, long expires ) {
+      this.key = key;
+      this.expires = expires;
+    }
+
+  }
+
+}
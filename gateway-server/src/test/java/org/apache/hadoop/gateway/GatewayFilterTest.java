@@ -217,4 +217,62 @@ public class GatewayFilterTest {
     assertThat( (String)filter.url, is("http://host:8443/gateway/sandbox/test-role/test-path/test-resource"));
 
   }
+
+  public static class TestSourceUrlFilter extends AbstractGatewayFilter {
+
+    public int calls;
+    public Object sourceUrl;
+
+    @Override
+    protected void doFilter( HttpServletRequest request, HttpServletResponse response, FilterChain chain ) throws IOException, ServletException {
+      calls++;
+      sourceUrl = request.getAttribute( AbstractGatewayFilter.SOURCE_REQUEST_URL_ATTRIBUTE_NAME );
+      chain.doFilter( request, response );
+    }
+
+  }
+
+  @Test
+  public void testCompiledRoutesChainAndSourceUrl() throws Exception {
+
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.replay( config );
+
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    GatewayConfig gatewayConfig = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( request.getPathInfo() ).andReturn( "/test-path/test-resource" ).anyTimes();
+    EasyMock.expect( request.getQueryString() ).andReturn( "op=OPEN" ).anyTimes();
+    EasyMock.expect( request.getServletContext() ).andReturn( context ).anyTimes();
+    EasyMock.expect( context.getAttribute(
+        GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE)).andReturn(gatewayConfig).anyTimes();
+    EasyMock.expect(gatewayConfig.getHeaderNameForRemoteAddress()).andReturn(
+        "Custom-Forwarded-For").anyTimes();
+    EasyMock.replay( request );
+    EasyMock.replay( context );
+    EasyMock.replay( gatewayConfig );
+
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.replay( response );
+
+    TestSourceUrlFilter first = new TestSourceUrlFilter();
+    TestSourceUrlFilter second = new TestSourceUrlFilter();
+    TestSourceUrlFilter other = new TestSourceUrlFilter();
+
+    GatewayFilter gateway = new GatewayFilter();
+    gateway.addFilter( "/test-path/**?**", "first-filter", first, null, "test-role" );
+    gateway.addFilter( "/test-path/**?**", "second-filter", second, null, "test-role" );
+    gateway.addFilter( "/other-path/**?**", "other-filter", other, null, "other-role" );
+    gateway.init( config );
+    gateway.doFilter( request, response );
+    gateway.doFilter( request, response );
+    gateway.destroy();
+
+    assertThat( first.calls, is( 2 ) );
+    assertThat( second.calls, is( 2 ) );
+    assertThat( other.calls, is( 0 ) );
+    assertThat( first.sourceUrl.toString(), is( "/test-path/test-resource?op=OPEN" ) );
+    assertThat( second.sourceUrl.toString(), is( "/test-path/test-resource?op=OPEN" ) );
+
+  }
 }
@@ -217,4 +217,13 @@ public class GatewayConfigImplTest {
     assertThat( serverHeaderEnabled, is(false));
   }
 
+  @Test( timeout = TestUtils.SHORT_TIMEOUT )
+  public void testUrlRewriteCacheMaxEntries() {
+    GatewayConfigImpl config = new GatewayConfigImpl();
+    assertThat( config.getUrlRewriteCacheMaxEntries(), is(0));
+
+    config.set( GatewayConfigImpl.URL_REWRITE_CACHE_MAX_ENTRIES, "1000" );
+    assertThat( config.getUrlRewriteCacheMaxEntries(), is(1000));
+  }
+
 }
@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.audit.impl;
+
+import org.apache.hadoop.gateway.audit.api.AuditServiceFactory;
+import org.apache.hadoop.gateway.audit.api.Auditor;
+import org.apache.hadoop.gateway.audit.log4j.audit.AuditConstants;
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.test.category.FastTests;
+import org.apache.hadoop.test.category.UnitTests;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.easymock.EasyMock;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.HashMap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+@Category( { UnitTests.class, FastTests.class } )
+public class DefaultAuditDispatchServiceTest {
+
+  private static GatewayConfig createConfig( boolean enabled, String overflowPolicy ) {
+    GatewayConfig config = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( config.isAsyncAuditEnabled() ).andReturn( enabled ).anyTimes();
+    EasyMock.expect( config.getAsyncAuditQueueSize() ).andReturn( 100 ).anyTimes();
+    EasyMock.expect( config.getAsyncAuditBatchSize() ).andReturn( 10 ).anyTimes();
+    EasyMock.expect( config.getAsyncAuditOverflowPolicy() ).andReturn( overflowPolicy ).anyTimes();
+    EasyMock.replay( config );
+    return config;
+  }
+
+  @Test
+  public void testDisabledByDefault() throws Exception {
+    DefaultAuditDispatchService service = new DefaultAuditDispatchService();
+    service.init( createConfig( false, null ), new HashMap<String, String>() );
+    service.start();
+    assertThat( service.getDispatcher(), nullValue() );
+    service.stop();
+  }
+
+  @Test
+  public void testAuditorsUseDispatcherWhileStarted() throws Exception {
+    Logger.getLogger( "audit.async.test" ).setLevel( Level.INFO );
+    Auditor auditor = AuditServiceFactory.getAuditService().getAuditor(
+        "audit.async.test", AuditConstants.KNOX_COMPONENT_NAME, AuditConstants.KNOX_SERVICE_NAME );
+
+    DefaultAuditDispatchService service = new DefaultAuditDispatchService();
+    service.init( createConfig( true, "unknown" ), new HashMap<String, String>() );
+    service.start();
+    for( int i = 0; i < 50; i++ ) {
+      auditor.audit( "action", "resource", "resource type", "outcome" );
+    }
+    service.stop();
+    assertThat( service.getDispatcher().getDispatchedCount(), is( 50L ) );
+
+    // After stopping the events are no longer queued.
+    auditor.audit( "action", "resource", "resource type", "outcome" );
+    assertThat( service.getDispatcher().getDispatchedCount(), is( 50L ) );
+  }
+
+}
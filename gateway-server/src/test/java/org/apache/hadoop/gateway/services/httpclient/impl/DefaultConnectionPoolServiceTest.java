@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.httpclient.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.hadoop.gateway.config.impl.GatewayConfigImpl;
+import org.apache.hadoop.gateway.services.metrics.impl.DefaultMetricsService;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class DefaultConnectionPoolServiceTest {
+
+  @Test
+  public void lifecycle() throws Exception {
+    GatewayConfigImpl config = new GatewayConfigImpl();
+    config.set( GatewayConfigImpl.HTTP_CLIENT_MAX_CONNECTION_TOTAL, "100" );
+    config.set( GatewayConfigImpl.HTTP_CLIENT_MAX_CONNECTION_PER_ROUTE, "7" );
+    config.set( GatewayConfigImpl.HTTP_CLIENT_VALIDATE_AFTER_INACTIVITY, "500" );
+
+    DefaultConnectionPoolService service = new DefaultConnectionPoolService();
+    service.init( config, null );
+    service.start();
+
+    PoolingHttpClientConnectionManager manager = (PoolingHttpClientConnectionManager)service.getConnectionManager();
+    Assert.assertEquals( 100, manager.getMaxTotal() );
+    Assert.assertEquals( 7, manager.getDefaultMaxPerRoute() );
+    Assert.assertEquals( 500, manager.getValidateAfterInactivity() );
+    Assert.assertTrue( service.getRoutes().isEmpty() );
+
+    HttpRoute route = new HttpRoute( new HttpHost( "localhost", 50070 ) );
+    Assert.assertEquals( 7, service.getStats( route ).getMax() );
+    Assert.assertEquals( 0, service.getTotalStats().getLeased() );
+
+    service.stop();
+  }
+
+  @Test
+  public void defaultsPerRouteToMaxConnections() throws Exception {
+    GatewayConfigImpl config = new GatewayConfigImpl();
+    DefaultConnectionPoolService service = new DefaultConnectionPoolService();
+    service.init( config, null );
+    PoolingHttpClientConnectionManager manager = (PoolingHttpClientConnectionManager)service.getConnectionManager();
+    Assert.assertEquals( config.getHttpClientMaxConnections(), manager.getDefaultMaxPerRoute() );
+    Assert.assertEquals( config.getHttpClientMaxConnectionsTotal(), manager.getMaxTotal() );
+    service.stop();
+  }
+
+  @Test
+  public void registersPoolMetrics() throws Exception {
+    GatewayConfigImpl config = new GatewayConfigImpl();
+    config.set( GatewayConfigImpl.METRICS_ENABLED, "true" );
+    config.set( GatewayConfigImpl.JMX_METRICS_REPORTING_ENABLED, "false" );
+    DefaultMetricsService metricsService = new DefaultMetricsService();
+    metricsService.init( config, null );
+
+    DefaultConnectionPoolService service = new DefaultConnectionPoolService();
+    service.setMetricsService( metricsService );
+    service.init( config, null );
+    service.start();
+
+    MetricRegistry registry = DefaultMetricsService.getMetricRegistry();
+    String name = MetricRegistry.name( DefaultConnectionPoolService.METRICS_PREFIX, "leased" );
+    Assert.assertEquals( 0, registry.getGauges().get( name ).getValue() );
+
+    service.stop();
+    Assert.assertFalse( registry.getGauges().containsKey( name ) );
+  }
+
+  @Test
+  public void instrumentsSharedConnectionManager() throws Exception {
+    GatewayConfigImpl config = new GatewayConfigImpl();
+    config.set( GatewayConfigImpl.METRICS_ENABLED, "true" );
+    config.set( GatewayConfigImpl.JMX_METRICS_REPORTING_ENABLED, "false" );
+    DefaultMetricsService metricsService = new DefaultMetricsService();
+    metricsService.init( config, null );
+
+    DefaultConnectionPoolService service = new DefaultConnectionPoolService();
+    service.setMetricsService( metricsService );
+    service.init( config, null );
+    service.start();
+
+    MetricRegistry registry = DefaultMetricsService.getMetricRegistry();
+    String leased = MetricRegistry.name( HttpClientConnectionManager.class, "leased-connections" );
+    Assert.assertTrue( registry.getGauges().containsKey( leased ) );
+
+    HttpRoute route = new HttpRoute( new HttpHost( "localhost", 50070 ) );
+    String routeLeased = MetricRegistry.name(
+        DefaultConnectionPoolService.METRICS_PREFIX, "route", "http://localhost:50070", "leased" );
+    Assert.assertFalse( registry.getGauges().containsKey( routeLeased ) );
+
+    HttpClientConnectionManager manager = service.getConnectionManager();
+    HttpClientConnection connection = manager.requestConnection( route, null ).get( 1, TimeUnit.SECONDS );
+    Assert.assertEquals( 1, registry.getGauges().get( routeLeased ).getValue() );
+    Assert.assertEquals( 1, registry.getGauges().get( leased ).getValue() );
+    manager.releaseConnection( connection, null, 0, TimeUnit.MILLISECONDS );
+
+    service.stop();
+    Assert.assertFalse( registry.getGauges().containsKey( leased ) );
+    Assert.assertFalse( registry.getGauges().containsKey( routeLeased ) );
+  }
+
+}
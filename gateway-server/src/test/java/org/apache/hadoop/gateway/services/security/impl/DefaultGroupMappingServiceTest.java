@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.security.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+import org.apache.hadoop.gateway.config.impl.GatewayConfigImpl;
+import org.apache.hadoop.gateway.services.security.GroupMappingService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+public class DefaultGroupMappingServiceTest {
+
+  private static class QueuedExecutor implements Executor {
+    private final List<Runnable> tasks = new ArrayList<>();
+    @Override
+    public void execute( Runnable task ) {
+      tasks.add( task );
+    }
+    void runAll() {
+      List<Runnable> run = new ArrayList<>( tasks );
+      tasks.clear();
+      for( Runnable task : run ) {
+        task.run();
+      }
+    }
+  }
+
+  private static class MapLookup implements GroupMappingService.GroupLookup {
+    private final Map<String, List<String>> groups = new HashMap<>();
+    private int lookups;
+    private boolean failing;
+    @Override
+    public List<String> getGroups( String user ) throws IOException {
+      lookups++;
+      if( failing ) {
+        throw new IOException( "directory unavailable" );
+      }
+      List<String> userGroups = groups.get( user );
+      return userGroups == null ? Collections.<String>emptyList() : userGroups;
+    }
+  }
+
+  private static DefaultGroupMappingService.CachedGroupMapping mapping(
+      MapLookup lookup, Executor executor, long timeToLive, long negativeTimeToLive, int maxEntries ) {
+    return new DefaultGroupMappingService.CachedGroupMapping(
+        lookup, executor, timeToLive, negativeTimeToLive, maxEntries, new Timer(), new Counter() );
+  }
+
+  @Test
+  public void groupsAreCached() {
+    MapLookup lookup = new MapLookup();
+    lookup.groups.put( "guest", Arrays.asList( "users" ) );
+    QueuedExecutor executor = new QueuedExecutor();
+    DefaultGroupMappingService.CachedGroupMapping mapping = mapping( lookup, executor, 60000L, 60000L, 10 );
+
+    Assert.assertEquals( Arrays.asList( "users" ), mapping.getGroups( "guest" ) );
+    Assert.assertEquals( Arrays.asList( "users" ), mapping.getGroups( "guest" ) );
+    Assert.assertEquals( 1, lookup.lookups );
+    Assert.assertTrue( executor.tasks.isEmpty() );
+  }
+
+  @Test
+  public void staleGroupsReturnedWhileRefreshing() {
+    MapLookup lookup = new MapLookup();
+    lookup.groups.put( "guest", Arrays.asList( "users" ) );
+    QueuedExecutor executor = new QueuedExecutor();
+    DefaultGroupMappingService.CachedGroupMapping mapping = mapping( lookup, executor, 0L, 0L, 10 );
+
+    mapping.getGroups( "guest" );
+    lookup.groups.put( "guest", Arrays.asList( "users", "admins" ) );
+    Assert.assertEquals( Arrays.asList( "users" ), mapping.getGroups( "guest" ) );
+    // Only one refresh is queued at a time.
+    Assert.assertEquals( Arrays.asList( "users" ), mapping.getGroups( "guest" ) );
+    Assert.assertEquals( 1, executor.tasks.size() );
+    Assert.assertEquals( 1, lookup.lookups );
+
+    executor.runAll();
+    Assert.assertEquals( Arrays.asList( "users", "admins" ), mapping.getGroups( "guest" ) );
+  }
+
+  @Test
+  public void unknownUsersAndFailuresUseNegativeTimeToLive() {
+    MapLookup lookup = new MapLookup();
+    lookup.groups.put( "guest", Arrays.asList( "users" ) );
+    QueuedExecutor executor = new QueuedExecutor();
+    DefaultGroupMappingService.CachedGroupMapping mapping = mapping( lookup, executor, 0L, 60000L, 10 );
+
+    Assert.assertTrue( mapping.getGroups( "nobody" ).isEmpty() );
+    Assert.assertTrue( mapping.getGroups( "nobody" ).isEmpty() );
+    Assert.assertTrue( executor.tasks.isEmpty() );
+
+    mapping.getGroups( "guest" );
+    lookup.failing = true;
+    mapping.getGroups( "guest" );
+    executor.runAll();
+    // The previous groups are kept when the refresh fails and retried after the negative time to live.
+    Assert.assertEquals( Arrays.asList( "users" ), mapping.getGroups( "guest" ) );
+    Assert.assertTrue( executor.tasks.isEmpty() );
+  }
+
+  @Test
+  public void sizeIsBounded() {
+    MapLookup lookup = new MapLookup();
+    DefaultGroupMappingService.CachedGroupMapping mapping = mapping( lookup, new QueuedExecutor(), 60000L, 60000L, 2 );
+    mapping.getGroups( "first" );
+    mapping.getGroups( "second" );
+    mapping.getGroups( "first" );
+    mapping.getGroups( "third" );
+    Assert.assertEquals( 2, mapping.size() );
+    mapping.getGroups( "first" );
+    Assert.assertEquals( 3, lookup.lookups );
+    mapping.getGroups( "second" );
+    Assert.assertEquals( 4, lookup.lookups );
+  }
+
+  @Test
+  public void mappingsSharedById() throws Exception {
+    DefaultGroupMappingService service = new DefaultGroupMappingService();
+    service.init( new GatewayConfigImpl(), null );
+    service.start();
+    MapLookup lookup = new MapLookup();
+    GroupMappingService.GroupMapping mapping = service.getGroupMapping( "id", "MapLookup", lookup );
+    Assert.assertSame( mapping, service.getGroupMapping( "id", "MapLookup", new MapLookup() ) );
+    Assert.assertNotSame( mapping, service.getGroupMapping( "other", "MapLookup", new MapLookup() ) );
+    service.stop();
+  }
+
+  @Test
+  public void mappingsDroppedOnceReleased() throws Exception {
+    DefaultGroupMappingService service = new DefaultGroupMappingService();
+    service.init( new GatewayConfigImpl(), null );
+    service.start();
+    GroupMappingService.GroupMapping mapping = service.getGroupMapping( "id", "MapLookup", new MapLookup() );
+    service.getGroupMapping( "id", "MapLookup", new MapLookup() );
+    Assert.assertEquals( 1, service.getMappingCount() );
+
+    service.releaseGroupMapping( mapping );
+    Assert.assertEquals( 1, service.getMappingCount() );
+    Assert.assertSame( mapping, service.getGroupMapping( "id", "MapLookup", new MapLookup() ) );
+    service.releaseGroupMapping( mapping );
+    service.releaseGroupMapping( mapping );
+    Assert.assertEquals( 0, service.getMappingCount() );
+
+    // A mapping registered after the last one was released starts with an empty cache.
+    Assert.assertNotSame( mapping, service.getGroupMapping( "id", "MapLookup", new MapLookup() ) );
+    service.stop();
+  }
+
+}
@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.security.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.services.security.MasterService;
+import org.apache.hadoop.test.TestUtils;
+import org.apache.hadoop.test.category.FastTests;
+import org.apache.hadoop.test.category.UnitTests;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.File;
+import java.util.HashMap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@Category( { UnitTests.class, FastTests.class } )
+public class DefaultKeystoreServiceTest {
+
+  private File securityDir;
+
+  @Before
+  public void setUp() throws Exception {
+    securityDir = TestUtils.createTempDir( getClass().getSimpleName() + "-" );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteQuietly( securityDir );
+  }
+
+  private DefaultKeystoreService createService() throws Exception {
+    GatewayConfig config = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( config.getGatewaySecurityDir() ).andReturn( securityDir.getAbsolutePath() ).anyTimes();
+    MasterService master = EasyMock.createNiceMock( MasterService.class );
+    EasyMock.expect( master.getMasterSecret() ).andReturn( "horton".toCharArray() ).anyTimes();
+    EasyMock.replay( config, master );
+    DefaultKeystoreService service = new DefaultKeystoreService();
+    service.setMasterService( master );
+    service.init( config, new HashMap<String, String>() );
+    return service;
+  }
+
+  @Test
+  public void testCredentialStoreIsCachedUntilChanged() throws Exception {
+    DefaultKeystoreService service = createService();
+    service.createCredentialStoreForCluster( "sandbox" );
+    service.addCredentialForCluster( "sandbox", "alias1", "value1" );
+
+    assertThat( new String( service.getCredentialForCluster( "sandbox", "alias1" ) ), is( "value1" ) );
+    long reloads = service.getKeystoreReloads().getCount();
+    assertThat( service.getCredentialStoreForCluster( "sandbox" ),
+        sameInstance( service.getCredentialStoreForCluster( "sandbox" ) ) );
+    assertThat( new String( service.getCredentialForCluster( "sandbox", "alias1" ) ), is( "value1" ) );
+    assertThat( service.getCredentialForCluster( "sandbox", "missing" ), nullValue() );
+    assertThat( service.getKeystoreReloads().getCount(), is( reloads ) );
+
+    // Callers get their own copy of the decoded value.
+    service.getCredentialForCluster( "sandbox", "alias1" )[ 0 ] = 'x';
+    assertThat( new String( service.getCredentialForCluster( "sandbox", "alias1" ) ), is( "value1" ) );
+
+    // A write through the service replaces the cached store.
+    service.addCredentialForCluster( "sandbox", "alias2", "value2" );
+    assertThat( new String( service.getCredentialForCluster( "sandbox", "alias2" ) ), is( "value2" ) );
+    service.removeCredentialForCluster( "sandbox", "alias1" );
+    assertThat( service.getCredentialForCluster( "sandbox", "alias1" ), nullValue() );
+    assertThat( service.getKeystoreReloads().getCount(), is( reloads + 2 ) );
+    assertThat( service.getKeystoreLoadTime().getCount(), is( reloads + 2 ) );
+  }
+
+  @Test
+  public void testCredentialStoreReloadedWhenFileChanges() throws Exception {
+    DefaultKeystoreService service = createService();
+    service.createCredentialStoreForCluster( "sandbox" );
+    service.addCredentialForCluster( "sandbox", "alias1", "value1" );
+    assertThat( new String( service.getCredentialForCluster( "sandbox", "alias1" ) ), is( "value1" ) );
+    long reloads = service.getKeystoreReloads().getCount();
+
+    // Simulate the CLI updating the store from another process.
+    DefaultKeystoreService cli = createService();
+    cli.addCredentialForCluster( "sandbox", "alias1", "changed-value1" );
+
+    assertThat( new String( service.getCredentialForCluster( "sandbox", "alias1" ) ), is( "changed-value1" ) );
+    assertThat( service.getKeystoreReloads().getCount(), is( reloads + 1 ) );
+  }
+
+  @Test
+  public void testMissingCredentialStoreReloadedWhenCreated() throws Exception {
+    DefaultKeystoreService service = createService();
+    assertThat( service.getCredentialForCluster( "sandbox", "alias1" ), nullValue() );
+
+    DefaultKeystoreService cli = createService();
+    cli.createCredentialStoreForCluster( "sandbox" );
+    cli.addCredentialForCluster( "sandbox", "alias1", "value1" );
+
+    assertThat( new String( service.getCredentialForCluster( "sandbox", "alias1" ) ), is( "value1" ) );
+    assertThat( service.getCredentialStoreForCluster( "sandbox" ), not( nullValue() ) );
+  }
+
+}
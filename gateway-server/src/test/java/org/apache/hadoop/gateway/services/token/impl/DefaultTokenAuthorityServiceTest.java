@@ -18,7 +18,9 @@
 package org.apache.hadoop.gateway.services.token.impl;
 
 import java.io.File;
+import java.security.KeyPairGenerator;
 import java.security.Principal;
+import java.security.interfaces.RSAPublicKey;
 import java.util.HashMap;
 
 import org.apache.hadoop.gateway.config.GatewayConfig;
@@ -29,6 +31,7 @@ import org.apache.hadoop.gateway.services.security.impl.DefaultKeystoreService;
 import org.apache.hadoop.gateway.services.security.token.JWTokenAuthority;
 import org.apache.hadoop.gateway.services.security.token.TokenServiceException;
 import org.apache.hadoop.gateway.services.security.token.impl.JWT;
+import org.apache.hadoop.gateway.services.security.token.impl.JWTToken;
 import org.easymock.EasyMock;
 import org.junit.Test;
 
@@ -250,4 +253,68 @@ public class DefaultTokenAuthorityServiceTest extends org.junit.Assert {
     }
   }
 
+
+  @Test
+  public void testVerifiedTokenCache() throws Exception {
+
+    Principal principal = EasyMock.createNiceMock(Principal.class);
+    EasyMock.expect(principal.getName()).andReturn("john.doe@example.com");
+
+    GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+    String basedir = System.getProperty("basedir");
+    if (basedir == null) {
+      basedir = new File(".").getCanonicalPath();
+    }
+
+    EasyMock.expect(config.getGatewaySecurityDir()).andReturn(basedir + "/target/test-classes");
+    EasyMock.expect(config.getSigningKeystoreName()).andReturn("server-keystore.jks");
+    EasyMock.expect(config.getSigningKeyAlias()).andReturn("server").anyTimes();
+    EasyMock.expect(config.getTokenVerificationCacheMaxEntries()).andReturn(10).anyTimes();
+    EasyMock.expect(config.getTokenVerificationCacheTimeToLive()).andReturn(60000L).anyTimes();
+
+    MasterService ms = EasyMock.createNiceMock(MasterService.class);
+    EasyMock.expect(ms.getMasterSecret()).andReturn("horton".toCharArray());
+
+    AliasService as = EasyMock.createNiceMock(AliasService.class);
+    EasyMock.expect(as.getGatewayIdentityPassphrase()).andReturn("horton".toCharArray());
+
+    EasyMock.replay(principal, config, ms, as);
+
+    KeystoreService ks = new DefaultKeystoreService();
+    ((DefaultKeystoreService)ks).setMasterService(ms);
+
+    ((DefaultKeystoreService)ks).init(config, new HashMap<String, String>());
+
+    DefaultTokenAuthorityService ta = new DefaultTokenAuthorityService();
+    ta.setAliasService(as);
+    ta.setKeystoreService(ks);
+
+    ta.init(config, new HashMap<String, String>());
+
+    JWT token = ta.issueToken(principal, "RS256", System.currentTimeMillis() + 60000L);
+    JWT received = new JWTToken(token.toString());
+
+    assertTrue(ta.verifyToken(received));
+    assertEquals(0, ta.verifiedTokens.getHits().getCount());
+    assertEquals(1, ta.verifiedTokens.size());
+
+    received = new JWTToken(token.toString());
+    assertTrue(ta.verifyToken(received));
+    assertEquals(1, ta.verifiedTokens.getHits().getCount());
+
+    // A cached token must not be accepted for a different key.
+    KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+    kpg.initialize(1024);
+    RSAPublicKey otherKey = (RSAPublicKey) kpg.genKeyPair().getPublic();
+    assertFalse(ta.verifyToken(received, otherKey));
+
+    // A token with a tampered signature must not hit the cache.
+    String serialized = token.toString();
+    String tampered = serialized.substring(0, serialized.length() - 4) + "AAAA";
+    assertFalse(ta.verifyToken(new JWTToken(tampered)));
+    assertEquals(1, ta.verifiedTokens.size());
+
+    ta.stop();
+    assertEquals(0, ta.verifiedTokens.size());
+  }
 }
@@ -22,6 +22,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.hadoop.gateway.i18n.GatewaySpiMessages;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.security.AuthenticationCacheRegistry;
 import org.apache.hadoop.gateway.service.admin.beans.BeanConverter;
 import org.apache.hadoop.gateway.service.admin.beans.Topology;
 import org.apache.hadoop.gateway.services.GatewayServices;
@@ -70,6 +71,8 @@ public class TopologiesResource {
 
   private static final String TOPOLOGIES_API_PATH    = "topologies";
   private static final String SINGLE_TOPOLOGY_API_PATH = TOPOLOGIES_API_PATH + "/{id}";
+  private static final String AUTHENTICATION_CACHE_API_PATH = SINGLE_TOPOLOGY_API_PATH + "/authcache";
+  private static final String USER_AUTHENTICATION_CACHE_API_PATH = AUTHENTICATION_CACHE_API_PATH + "/{user}";
   private static final String PROVIDERCONFIG_API_PATH = "providerconfig";
   private static final String SINGLE_PROVIDERCONFIG_API_PATH = PROVIDERCONFIG_API_PATH + "/{name}";
   private static final String DESCRIPTORS_API_PATH    = "descriptors";
@@ -170,6 +173,22 @@ public class TopologiesResource {
     return ok().entity("{ \"deleted\" : " + deleted + " }").build();
   }
 
+  @DELETE
+  @Produces(APPLICATION_JSON)
+  @Path(AUTHENTICATION_CACHE_API_PATH)
+  public Response invalidateAuthenticationCache(@PathParam("id") String id) {
+    boolean invalidated = AuthenticationCacheRegistry.invalidate(id, null);
+    return ok().entity("{ \"invalidated\" : " + invalidated + " }").build();
+  }
+
+  @DELETE
+  @Produces(APPLICATION_JSON)
+  @Path(USER_AUTHENTICATION_CACHE_API_PATH)
+  public Response invalidateAuthenticationCache(@PathParam("id") String id, @PathParam("user") String user) {
+    boolean invalidated = AuthenticationCacheRegistry.invalidate(id, user);
+    return ok().entity("{ \"invalidated\" : " + invalidated + " }").build();
+  }
+
   @GET
   @Produces({APPLICATION_JSON})
   @Path(PROVIDERCONFIG_API_PATH)
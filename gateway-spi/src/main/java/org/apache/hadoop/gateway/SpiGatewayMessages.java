@@ -38,6 +38,15 @@ public interface SpiGatewayMessages {
   @Message( level = MessageLevel.WARN, text = "Connection exception dispatching request: {0} {1}" )
   void dispatchServiceConnectionException( URI uri, @StackTrace(level=MessageLevel.WARN) Exception e );
 
+  @Message( level = MessageLevel.DEBUG, text = "Dispatch request asynchronously: {0} {1}" )
+  void dispatchRequestAsync( String method, URI uri );
+
+  @Message( level = MessageLevel.WARN, text = "Asynchronous dispatch timed out: {0}" )
+  void asyncDispatchTimeout( URI uri );
+
+  @Message( level = MessageLevel.WARN, text = "Failed to write asynchronous dispatch response for {0}: {1}" )
+  void failedToWriteAsyncDispatchResponse( URI uri, @StackTrace(level=MessageLevel.DEBUG) Exception e );
+
   @Message( level = MessageLevel.DEBUG, text = "Dispatch response status: {0}" )
   void dispatchResponseStatusCode(int statusCode);
 
@@ -299,4 +299,120 @@ public interface GatewayConfig {
    * @return
    */
   boolean isGatewayServerHeaderEnabled();
+
+  /**
+   * Is the backend connection pool shared by all dispatches of the gateway
+   * @since 0.14
+   */
+  boolean isHttpClientConnectionPoolShared();
+
+  /**
+   * Maximum number of pooled backend connections across all routes
+   * @since 0.14
+   */
+  int getHttpClientMaxConnectionsTotal();
+
+  /**
+   * Maximum number of pooled backend connections per backend host
+   * @since 0.14
+   */
+  int getHttpClientMaxConnectionsPerRoute();
+
+  /**
+   * Time in milliseconds after which idle pooled connections are evicted, -1 to never evict
+   * @since 0.14
+   */
+  long getHttpClientConnectionIdleTimeout();
+
+  /**
+   * Maximum lifetime in milliseconds of a pooled connection, -1 for no limit
+   * @since 0.14
+   */
+  long getHttpClientConnectionTimeToLive();
+
+  /**
+   * Inactivity period in milliseconds after which a pooled connection is checked for staleness before reuse
+   * @since 0.14
+   */
+  int getHttpClientConnectionValidateAfterInactivity();
+
+  /**
+   * Size in bytes of the buffer used to copy response bodies that are passed through without rewriting
+   * @since 0.14
+   */
+  int getHttpServerResponseStreamBuffer();
+
+  /**
+   * Maximum number of tokens with verified signatures to remember, 0 to disable the cache
+   * @since 0.14
+   */
+  int getTokenVerificationCacheMaxEntries();
+
+  /**
+   * Maximum time in milliseconds a verified token signature is remembered, tokens that expire earlier are remembered until they expire
+   * @since 0.14
+   */
+  long getTokenVerificationCacheTimeToLive();
+
+  /**
+   * Whether audit events are queued and written by a dedicated thread instead of the request thread
+   * @since 0.14
+   */
+  boolean isAsyncAuditEnabled();
+
+  /**
+   * Maximum number of audit events waiting to be written when asynchronous auditing is enabled
+   * @since 0.14
+   */
+  int getAsyncAuditQueueSize();
+
+  /**
+   * Maximum number of audit events written together when asynchronous auditing is enabled
+   * @since 0.14
+   */
+  int getAsyncAuditBatchSize();
+
+  /**
+   * What to do with an audit event when the queue is full, one of block, drop or caller-runs
+   * @since 0.14
+   */
+  String getAsyncAuditOverflowPolicy();
+
+  /**
+   * Maximum number of URL rewrite results each topology remembers, 0 (the default) to disable the cache
+   * @since 0.14
+   */
+  int getUrlRewriteCacheMaxEntries();
+
+  /**
+   * Compression level, 0-9 or -1 for the zlib default, used when a gzip encoded response body is rewritten
+   * @since 0.14
+   */
+  int getUrlRewriteGzipCompressionLevel();
+
+  /**
+   * Maximum number of request body bytes written to a temporary file, once the in-memory replay buffer
+   * is full, so the body can still be replayed on SPNEGO negotiation or failover, 0 to disable spilling.
+   * The files are created in the replay directory below the gateway data directory.
+   * @since 0.14
+   */
+  long getHttpServerRequestSpillLimit();
+
+  /**
+   * Milliseconds after which the cached groups of a user are reloaded in the background
+   * @since 0.14
+   */
+  long getGroupMappingCacheTimeToLive();
+
+  /**
+   * Milliseconds after which a user without groups, or whose groups could not be looked up, is looked up again
+   * @since 0.14
+   */
+  long getGroupMappingCacheNegativeTimeToLive();
+
+  /**
+   * Maximum number of users whose groups each group mapping remembers
+   * @since 0.14
+   */
+  int getGroupMappingCacheMaxEntries();
 }
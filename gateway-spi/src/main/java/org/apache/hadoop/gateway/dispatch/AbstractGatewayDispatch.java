@@ -17,11 +17,13 @@
  */
 package org.apache.hadoop.gateway.dispatch;
 
+import org.apache.hadoop.gateway.config.GatewayConfig;
 import org.apache.hadoop.gateway.filter.GatewayResponse;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpUriRequest;
 
+import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -35,7 +37,9 @@ import java.util.Set;
 
 public abstract class AbstractGatewayDispatch implements Dispatch {
 
-  private static final int STREAM_COPY_BUFFER_SIZE = 4096;
+  // Bodies copied here are not rewritten so a large buffer keeps the number of
+  // read/write round trips per response low.
+  private static final int STREAM_COPY_BUFFER_SIZE = 64 * 1024;
   private static final Set<String> REQUEST_EXCLUDE_HEADERS = new HashSet<>();
   
   static {
@@ -62,13 +66,25 @@ public abstract class AbstractGatewayDispatch implements Dispatch {
         ((GatewayResponse)response).streamResponse( stream );
       } else {
         OutputStream output = response.getOutputStream();
-        IOUtils.copyBytes( stream, output, STREAM_COPY_BUFFER_SIZE );
+        IOUtils.copyBytes( stream, output, getResponseStreamBufferSize( request ) );
         //KNOX-685: output.flush();
         output.close();
       }
 //    }
   }
 
+  protected static int getResponseStreamBufferSize( HttpServletRequest request ) {
+    int size = 0;
+    ServletContext context = request.getServletContext();
+    if( context != null ) {
+      GatewayConfig config = (GatewayConfig)context.getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE );
+      if( config != null ) {
+        size = config.getHttpServerResponseStreamBuffer();
+      }
+    }
+    return size > 0 ? size : STREAM_COPY_BUFFER_SIZE;
+  }
+
   @Override
   public HttpClient getHttpClient() {
     return client;
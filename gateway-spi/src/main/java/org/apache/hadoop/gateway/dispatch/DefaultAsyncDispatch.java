@@ -0,0 +1,414 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import org.apache.hadoop.gateway.audit.api.Action;
+import org.apache.hadoop.gateway.audit.api.ActionOutcome;
+import org.apache.hadoop.gateway.audit.api.AuditContext;
+import org.apache.hadoop.gateway.audit.api.AuditService;
+import org.apache.hadoop.gateway.audit.api.AuditServiceFactory;
+import org.apache.hadoop.gateway.audit.api.CorrelationContext;
+import org.apache.hadoop.gateway.audit.api.CorrelationService;
+import org.apache.hadoop.gateway.audit.api.CorrelationServiceFactory;
+import org.apache.hadoop.gateway.audit.api.ResourceType;
+import org.apache.hadoop.gateway.config.Configure;
+import org.apache.hadoop.gateway.config.Default;
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SharedInputBuffer;
+import org.apache.http.nio.entity.ContentInputStream;
+import org.apache.http.protocol.HttpContext;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A dispatch that does not hold a container thread while waiting for the backend.
+ * <p>
+ * Requests without a body are sent using the non-blocking client and the servlet request is
+ * put into asynchronous mode.  Once the response head arrives the response is written on a
+ * container thread, reading the body from a bounded buffer that is filled by the client's I/O
+ * reactor.  The reactor suspends reading from the backend whenever that buffer is full so memory
+ * use per request is bounded by the response buffer size.
+ * <p>
+ * If the backend fails while the body is streamed the response is aborted so the client sees it
+ * is incomplete, the same as when a blocking dispatch fails to read the body.
+ * <p>
+ * Requests with a body, requests that do not support asynchronous processing and dispatches
+ * without an asynchronous client fall back to the blocking behavior of {@link DefaultDispatch}.
+ */
+public class DefaultAsyncDispatch extends DefaultDispatch implements AsyncDispatch {
+
+  private static final int DEFAULT_RESPONSE_BUFFER_SIZE = 64 * 1024;
+
+  private static AuditService auditService = AuditServiceFactory.getAuditService();
+  private static CorrelationService correlationService = CorrelationServiceFactory.getCorrelationService();
+
+  private HttpAsyncClient asyncClient;
+
+  private long asyncTimeout = 0;
+
+  private int responseBufferSize = DEFAULT_RESPONSE_BUFFER_SIZE;
+
+  @Override
+  public HttpAsyncClient getAsyncHttpClient() {
+    return asyncClient;
+  }
+
+  @Override
+  public void setAsyncHttpClient( HttpAsyncClient asyncHttpClient ) {
+    this.asyncClient = asyncHttpClient;
+  }
+
+  protected long getAsyncTimeout() {
+    return asyncTimeout;
+  }
+
+  /**
+   * @param timeout The time in milliseconds an asynchronous dispatch may take. Zero or less means no timeout.
+   */
+  @Configure
+  protected void setAsyncTimeout( @Default("0") long timeout ) {
+    asyncTimeout = timeout;
+  }
+
+  protected int getAsyncResponseBufferSize() {
+    return responseBufferSize;
+  }
+
+  @Configure
+  protected void setAsyncResponseBufferSize( @Default("65536") int size ) {
+    responseBufferSize = size > 0 ? size : DEFAULT_RESPONSE_BUFFER_SIZE;
+  }
+
+  @Override
+  protected void executeRequest(
+      HttpUriRequest outboundRequest,
+      HttpServletRequest inboundRequest,
+      HttpServletResponse outboundResponse )
+      throws IOException {
+    if( !isAsyncDispatch( outboundRequest, inboundRequest ) ) {
+      super.executeRequest( outboundRequest, inboundRequest, outboundResponse );
+      return;
+    }
+    LOG.dispatchRequestAsync( outboundRequest.getMethod(), outboundRequest.getURI() );
+    auditor.audit( Action.DISPATCH, outboundRequest.getURI().toString(), ResourceType.URI, ActionOutcome.UNAVAILABLE, RES.requestMethod( outboundRequest.getMethod() ) );
+    if( !"true".equals( System.getProperty( GatewayConfig.HADOOP_KERBEROS_SECURED ) ) ) {
+      // Hadoop cluster not Kerberos enabled
+      addCredentialsToRequest( outboundRequest );
+    }
+    AsyncContext asyncContext = inboundRequest.startAsync( inboundRequest, outboundResponse );
+    asyncContext.setTimeout( asyncTimeout > 0 ? asyncTimeout : 0 );
+    AsyncExchange exchange = new AsyncExchange( asyncContext, outboundRequest, inboundRequest, outboundResponse );
+    asyncContext.addListener( exchange );
+    try {
+      exchange.future = asyncClient.execute( HttpAsyncMethods.create( outboundRequest ), exchange.consumer, exchange );
+    } catch( RuntimeException e ) {
+      // The client refused the request, for example because its I/O reactor has stopped, so no callback
+      // will ever complete the request.
+      auditor.audit( Action.DISPATCH, outboundRequest.getURI().toString(), ResourceType.URI, ActionOutcome.FAILURE );
+      LOG.dispatchServiceConnectionException( outboundRequest.getURI(), e );
+      exchange.abort( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e );
+    }
+  }
+
+  /**
+   * Determines if the request can be dispatched without blocking.
+   * Request bodies are read with blocking I/O by the rewrite and identity assertion filters
+   * so requests that carry one are always dispatched synchronously.
+   */
+  protected boolean isAsyncDispatch( HttpUriRequest outboundRequest, HttpServletRequest inboundRequest ) {
+    return asyncClient != null
+        && inboundRequest.isAsyncSupported()
+        && !inboundRequest.isAsyncStarted()
+        && !( outboundRequest instanceof HttpEntityEnclosingRequest );
+  }
+
+  private class AsyncExchange implements FutureCallback<HttpResponse>, AsyncListener, Runnable {
+
+    private final AsyncContext asyncContext;
+    private final HttpUriRequest outboundRequest;
+    private final HttpServletRequest inboundRequest;
+    private final HttpServletResponse outboundResponse;
+    private final AuditContext auditContext;
+    private final CorrelationContext correlationContext;
+    private final AtomicBoolean responding = new AtomicBoolean( false );
+    private final ResponseConsumer consumer = new ResponseConsumer();
+    private volatile Future<HttpResponse> future;
+    private volatile HttpResponse inboundResponse;
+    private volatile SharedInputBuffer buffer;
+    private volatile IOException failure;
+
+    private AsyncExchange( AsyncContext asyncContext, HttpUriRequest outboundRequest,
+                           HttpServletRequest inboundRequest, HttpServletResponse outboundResponse ) {
+      this.asyncContext = asyncContext;
+      this.outboundRequest = outboundRequest;
+      this.inboundRequest = inboundRequest;
+      this.outboundResponse = outboundResponse;
+      this.auditContext = auditService.getContext();
+      this.correlationContext = correlationService.getContext();
+    }
+
+    // Hands the response over to a container thread exactly once.
+    private void respond() {
+      if( responding.compareAndSet( false, true ) ) {
+        asyncContext.start( this );
+      }
+    }
+
+    @Override
+    public void run() {
+      attachContexts();
+      try {
+        int statusCode = logInboundResponseStatus( inboundResponse );
+        auditor.audit( Action.DISPATCH, outboundRequest.getURI().toString(), ResourceType.URI, ActionOutcome.SUCCESS, RES.responseStatus( statusCode ) );
+        writeOutboundResponse( outboundRequest, inboundRequest, outboundResponse, inboundResponse );
+      } catch( Exception e ) {
+        LOG.failedToWriteAsyncDispatchResponse( outboundRequest.getURI(), e );
+        abortResponse();
+      } finally {
+        asyncContext.complete();
+        detachContexts();
+      }
+    }
+
+    // Completing normally would end a committed response as if the body was complete.
+    private void abortResponse() {
+      try {
+        if( outboundResponse.isCommitted() ) {
+          // A status of -1 makes the container close the connection instead of ending the response.
+          outboundResponse.sendError( -1 );
+        } else {
+          outboundResponse.sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+        }
+      } catch( Exception e ) {
+        LOG.failedToWriteAsyncDispatchResponse( outboundRequest.getURI(), e );
+      }
+    }
+
+    @Override
+    public void completed( HttpResponse response ) {
+      // Responses without an entity are only handed over once fully received.
+      inboundResponse = response;
+      respond();
+    }
+
+    @Override
+    public void failed( Exception e ) {
+      attachContexts();
+      try {
+        // We do not want to expose back end host. port end points to clients, see JIRA KNOX-58
+        auditor.audit( Action.DISPATCH, outboundRequest.getURI().toString(), ResourceType.URI, ActionOutcome.FAILURE );
+        LOG.dispatchServiceConnectionException( outboundRequest.getURI(), e );
+        abort( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e );
+      } finally {
+        detachContexts();
+      }
+    }
+
+    @Override
+    public void cancelled() {
+      fail( null );
+    }
+
+    @Override
+    public void onTimeout( AsyncEvent event ) throws IOException {
+      LOG.asyncDispatchTimeout( outboundRequest.getURI() );
+      Future<HttpResponse> future = this.future;
+      if( future != null ) {
+        future.cancel( true );
+      }
+      abort( HttpServletResponse.SC_GATEWAY_TIMEOUT, null );
+    }
+
+    @Override
+    public void onError( AsyncEvent event ) throws IOException {
+      Future<HttpResponse> future = this.future;
+      if( future != null ) {
+        future.cancel( true );
+      }
+    }
+
+    @Override
+    public void onComplete( AsyncEvent event ) throws IOException {
+    }
+
+    @Override
+    public void onStartAsync( AsyncEvent event ) throws IOException {
+    }
+
+    // Records the failure and unblocks the writer, which then fails reading the rest of the body.
+    private void fail( Exception cause ) {
+      if( failure == null ) {
+        // We do not want to expose back end host. port end points to clients, see JIRA KNOX-58
+        failure = new IOException( RES.dispatchConnectionError(), cause );
+      }
+      SharedInputBuffer buffer = this.buffer;
+      if( buffer != null ) {
+        buffer.shutdown();
+      }
+    }
+
+    // If the response is already being written unblock the writer, which aborts the request,
+    // otherwise report the failure to the client directly.
+    private void abort( int status, Exception cause ) {
+      fail( cause );
+      if( responding.compareAndSet( false, true ) ) {
+        try {
+          if( !outboundResponse.isCommitted() ) {
+            outboundResponse.sendError( status );
+          }
+        } catch( IOException e ) {
+          LOG.failedToWriteAsyncDispatchResponse( outboundRequest.getURI(), e );
+        } finally {
+          asyncContext.complete();
+        }
+      }
+    }
+
+    private void attachContexts() {
+      auditService.attachContext( auditContext );
+      correlationService.attachContext( correlationContext );
+    }
+
+    private void detachContexts() {
+      auditService.detachContext();
+      correlationService.detachContext();
+    }
+
+    // Discarding the remainder of a partially read body would keep pulling it from the backend,
+    // so an early close aborts the exchange instead.  The buffer reports the end of the stream
+    // once it has been shut down so reads check for a failure to keep it from looking complete.
+    private class StreamedContent extends ContentInputStream {
+
+      private final SharedInputBuffer buffer;
+      private boolean eof = false;
+
+      private StreamedContent( SharedInputBuffer buffer ) {
+        super( buffer );
+        this.buffer = buffer;
+      }
+
+      @Override
+      public int read( byte[] b, int off, int len ) throws IOException {
+        checkFailure();
+        int n = super.read( b, off, len );
+        if( n < 0 ) {
+          checkFailure();
+        }
+        eof = n < 0;
+        return n;
+      }
+
+      @Override
+      public int read( byte[] b ) throws IOException {
+        return read( b, 0, b.length );
+      }
+
+      @Override
+      public int read() throws IOException {
+        checkFailure();
+        int b = super.read();
+        if( b < 0 ) {
+          checkFailure();
+        }
+        eof = b < 0;
+        return b;
+      }
+
+      private void checkFailure() throws IOException {
+        IOException failure = AsyncExchange.this.failure;
+        if( failure != null ) {
+          throw failure;
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        if( eof ) {
+          super.close();
+        } else {
+          buffer.shutdown();
+          Future<HttpResponse> future = AsyncExchange.this.future;
+          if( future != null ) {
+            future.cancel( true );
+          }
+        }
+      }
+
+    }
+
+    private class ResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+
+      @Override
+      protected void onResponseReceived( HttpResponse response ) {
+        inboundResponse = response;
+      }
+
+      @Override
+      protected void onEntityEnclosed( HttpEntity entity, ContentType contentType ) {
+        SharedInputBuffer buffer = new SharedInputBuffer( responseBufferSize, HeapByteBufferAllocator.INSTANCE );
+        BasicHttpEntity streamed = new BasicHttpEntity();
+        streamed.setContent( new StreamedContent( buffer ) );
+        streamed.setContentLength( entity.getContentLength() );
+        streamed.setContentType( entity.getContentType() );
+        streamed.setContentEncoding( entity.getContentEncoding() );
+        streamed.setChunked( entity.isChunked() );
+        inboundResponse.setEntity( streamed );
+        AsyncExchange.this.buffer = buffer;
+        // Start writing as soon as the head arrives, the body is streamed through the buffer.
+        respond();
+      }
+
+      @Override
+      protected void onContentReceived( ContentDecoder decoder, IOControl ioctrl ) throws IOException {
+        buffer.consumeContent( decoder, ioctrl );
+      }
+
+      @Override
+      protected HttpResponse buildResult( HttpContext context ) {
+        return inboundResponse;
+      }
+
+      @Override
+      protected void releaseResources() {
+      }
+
+    }
+
+  }
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.http.auth.AuthSchemeProvider;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.AuthSchemes;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.client.HttpAsyncClient;
+
+import javax.servlet.FilterConfig;
+
+/**
+ * Creates the non-blocking client used by an {@link AsyncDispatch}.
+ * The client is configured from the same gateway and filter settings as the
+ * blocking client created by {@link DefaultHttpClientFactory}.
+ */
+public class DefaultAsyncHttpClientFactory implements AsyncHttpClientFactory {
+
+  @Override
+  public HttpAsyncClient createAsyncHttpClient(FilterConfig filterConfig) {
+    HttpAsyncClientBuilder builder = HttpAsyncClients.custom();
+    if ( "true".equals(System.getProperty(GatewayConfig.HADOOP_KERBEROS_SECURED)) ) {
+      CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+      credentialsProvider.setCredentials(AuthScope.ANY, new DefaultHttpClientFactory.UseJaasCredentials());
+
+      Registry<AuthSchemeProvider> authSchemeRegistry = RegistryBuilder.<AuthSchemeProvider>create()
+          .register(AuthSchemes.SPNEGO, new KnoxSpnegoAuthSchemeFactory(true))
+          .build();
+
+      builder = builder.setDefaultAuthSchemeRegistry(authSchemeRegistry)
+          .setDefaultCookieStore(new HadoopAuthCookieStore())
+          .setDefaultCredentialsProvider(credentialsProvider);
+      // Share the authentication cookies of a backend with the clients of the other topologies and services.
+      builder.addInterceptorFirst(new HadoopAuthCookieStore.SharedStoreInterceptor());
+    } else {
+      builder = builder.setDefaultCookieStore(new DefaultHttpClientFactory.NoCookieStore());
+    }
+
+    builder.setKeepAliveStrategy( DefaultConnectionKeepAliveStrategy.INSTANCE );
+    builder.setConnectionReuseStrategy( DefaultConnectionReuseStrategy.INSTANCE );
+    builder.setRedirectStrategy( new DefaultHttpClientFactory.NeverRedirectStrategy() );
+
+    int maxConnections = DefaultHttpClientFactory.getMaxConnections( filterConfig );
+    builder.setMaxConnTotal( maxConnections );
+    builder.setMaxConnPerRoute( maxConnections );
+
+    int ioThreads = getIoThreads( filterConfig );
+    if( ioThreads > 0 ) {
+      builder.setDefaultIOReactorConfig( IOReactorConfig.custom().setIoThreadCount( ioThreads ).build() );
+    }
+
+    builder.setDefaultRequestConfig( DefaultHttpClientFactory.getRequestConfig( filterConfig ) );
+
+    CloseableHttpAsyncClient client = builder.build();
+    client.start();
+    return client;
+  }
+
+  private static int getIoThreads( FilterConfig filterConfig ) {
+    int ioThreads = -1;
+    String str = filterConfig.getInitParameter( "httpclient.ioThreads" );
+    if( str != null ) {
+      try {
+        ioThreads = Integer.parseInt( str );
+      } catch ( NumberFormatException e ) {
+        // Ignore it and use the default.
+      }
+    }
+    return ioThreads;
+  }
+
+}
@@ -46,6 +46,7 @@ import org.apache.http.entity.ContentType;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -61,6 +62,8 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
   protected static final String SET_COOKIE = "SET-COOKIE";
   protected static final String WWW_AUTHENTICATE = "WWW-AUTHENTICATE";
 
+  private static final String REPLAY_SPILL_DIR = "replay";
+
   protected static SpiGatewayMessages LOG = MessagesFactory.get(SpiGatewayMessages.class);
   protected static SpiGatewayResources RES = ResourcesFactory.get(SpiGatewayResources.class);
   protected static Auditor auditor = AuditServiceFactory.getAuditService().getAuditor(AuditConstants.DEFAULT_AUDITOR_NAME,
@@ -129,17 +132,7 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
       }
       inboundResponse = client.execute( outboundRequest );
 
-      int statusCode = inboundResponse.getStatusLine().getStatusCode();
-      if( statusCode != 201 ) {
-        LOG.dispatchResponseStatusCode( statusCode );
-      } else {
-        Header location = inboundResponse.getFirstHeader( "Location" );
-        if( location == null ) {
-          LOG.dispatchResponseStatusCode( statusCode );
-        } else {
-          LOG.dispatchResponseCreatedStatusCode( statusCode, location.getValue() );
-        }
-      }
+      int statusCode = logInboundResponseStatus( inboundResponse );
       auditor.audit( Action.DISPATCH, outboundRequest.getURI().toString(), ResourceType.URI, ActionOutcome.SUCCESS, RES.responseStatus( statusCode ) );
     } catch( Exception e ) {
       // We do not want to expose back end host. port end points to clients, see JIRA KNOX-58
@@ -150,6 +143,21 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
     return inboundResponse;
   }
 
+  protected int logInboundResponseStatus( HttpResponse inboundResponse ) {
+    int statusCode = inboundResponse.getStatusLine().getStatusCode();
+    if( statusCode != 201 ) {
+      LOG.dispatchResponseStatusCode( statusCode );
+    } else {
+      Header location = inboundResponse.getFirstHeader( "Location" );
+      if( location == null ) {
+        LOG.dispatchResponseStatusCode( statusCode );
+      } else {
+        LOG.dispatchResponseCreatedStatusCode( statusCode, location.getValue() );
+      }
+    }
+    return statusCode;
+  }
+
   protected void writeOutboundResponse(HttpUriRequest outboundRequest, HttpServletRequest inboundRequest, HttpServletResponse outboundResponse, HttpResponse inboundResponse) throws IOException {
     // Copy the client respond header to the server respond.
     outboundResponse.setStatus(inboundResponse.getStatusLine().getStatusCode());
@@ -248,24 +256,49 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
       }
       GatewayConfig config =
          (GatewayConfig)request.getServletContext().getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE );
-      if( config != null && config.isHadoopKerberosSecured() ) {
-        //Check if delegation token is supplied in the request
-        boolean delegationTokenPresent = false;
-        String queryString = request.getQueryString();
-        if (queryString != null) {
-          delegationTokenPresent = queryString.startsWith("delegation=") || queryString.contains("&delegation=");
-        }
+      // The replay buffer is filled lazily as the body is sent so an empty body never allocates any of it.
+      if( config != null && !entity.isRepeatable() && isReplayBufferRequired( request, config ) ) {
         if (replayBufferSize < 0) {
           replayBufferSize = config.getHttpServerRequestBuffer();
         }
-        if (!delegationTokenPresent && replayBufferSize > 0 ) {
-          entity = new PartiallyRepeatableHttpEntity(entity, replayBufferSize);
+        if (replayBufferSize > 0 ) {
+          entity = new PartiallyRepeatableHttpEntity(entity, replayBufferSize, config.getHttpServerRequestSpillLimit(),
+              getReplaySpillDirectory(config));
         }
       }
 
       return entity;
    }
 
+  // Request bodies may carry credentials so they are spilled below the gateway's own data directory.
+  private static File getReplaySpillDirectory(GatewayConfig config) {
+    String dataDir = config.getGatewayDataDir();
+    return dataDir == null ? null : new File(dataDir, REPLAY_SPILL_DIR);
+  }
+
+  /**
+   * Whether the request body has to be kept so it can be sent again.  By default this is only
+   * the case for a Kerberos secured cluster where SPNEGO negotiation may replay the request.
+   */
+  protected boolean isReplayBufferRequired(HttpServletRequest request, GatewayConfig config) {
+    if( !config.isHadoopKerberosSecured() ) {
+      return false;
+    }
+    //Check if delegation token is supplied in the request
+    boolean delegationTokenPresent = false;
+    String queryString = request.getQueryString();
+    if (queryString != null) {
+      delegationTokenPresent = queryString.startsWith("delegation=") || queryString.contains("&delegation=");
+    }
+    return !delegationTokenPresent;
+  }
+
+  protected void releaseRequestEntity(HttpEntity entity) {
+    if( entity instanceof PartiallyRepeatableHttpEntity ) {
+      ((PartiallyRepeatableHttpEntity)entity).release();
+    }
+  }
+
    @Override
    public void doGet(URI url, HttpServletRequest request, HttpServletResponse response)
          throws IOException, URISyntaxException {
@@ -292,7 +325,11 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
       HttpEntity entity = createRequestEntity(request);
       method.setEntity(entity);
       copyRequestHeaderFields(method, request);
-      executeRequest(method, request, response);
+      try {
+        executeRequest(method, request, response);
+      } finally {
+        releaseRequestEntity(entity);
+      }
    }
 
    @Override
@@ -302,7 +339,11 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
       HttpEntity entity = createRequestEntity(request);
       method.setEntity(entity);
       copyRequestHeaderFields(method, request);
-      executeRequest(method, request, response);
+      try {
+        executeRequest(method, request, response);
+      } finally {
+        releaseRequestEntity(entity);
+      }
    }
 
    @Override
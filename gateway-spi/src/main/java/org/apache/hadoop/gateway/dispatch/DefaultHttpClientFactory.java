@@ -19,6 +19,7 @@ package org.apache.hadoop.gateway.dispatch;
 
 import org.apache.hadoop.gateway.config.GatewayConfig;
 import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.httpclient.ConnectionPoolService;
 import org.apache.hadoop.gateway.services.metrics.MetricsService;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
@@ -79,6 +80,8 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
       builder = builder.setDefaultAuthSchemeRegistry(authSchemeRegistry)
           .setDefaultCookieStore(new HadoopAuthCookieStore())
           .setDefaultCredentialsProvider(credentialsProvider);
+      // Share the authentication cookies of a backend with the clients of the other topologies and services.
+      builder.addInterceptorFirst(new HadoopAuthCookieStore.SharedStoreInterceptor());
     } else {
       builder = builder.setDefaultCookieStore(new NoCookieStore());
     }
@@ -88,9 +91,16 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     builder.setRedirectStrategy( new NeverRedirectStrategy() );
     builder.setRetryHandler( new NeverRetryHandler() );
 
-    int maxConnections = getMaxConnections( filterConfig );
-    builder.setMaxConnTotal( maxConnections );
-    builder.setMaxConnPerRoute( maxConnections );
+    ConnectionPoolService connectionPoolService = getConnectionPoolService( filterConfig );
+    if ( connectionPoolService != null ) {
+      // The pool outlives this client, so closing the client must not shut it down.
+      builder.setConnectionManager( connectionPoolService.getConnectionManager() );
+      builder.setConnectionManagerShared( true );
+    } else {
+      int maxConnections = getMaxConnections( filterConfig );
+      builder.setMaxConnTotal( maxConnections );
+      builder.setMaxConnPerRoute( maxConnections );
+    }
 
     builder.setDefaultRequestConfig( getRequestConfig( filterConfig ) );
 
@@ -98,7 +108,21 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     return client;
   }
 
-  private static RequestConfig getRequestConfig( FilterConfig config ) {
+  private static ConnectionPoolService getConnectionPoolService( FilterConfig filterConfig ) {
+    GatewayConfig config =
+        (GatewayConfig)filterConfig.getServletContext().getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE );
+    if ( config == null || !config.isHttpClientConnectionPoolShared() ) {
+      return null;
+    }
+    GatewayServices services = (GatewayServices) filterConfig.getServletContext()
+        .getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
+    if ( services == null ) {
+      return null;
+    }
+    return services.getService(GatewayServices.CONNECTION_POOL_SERVICE);
+  }
+
+  static RequestConfig getRequestConfig( FilterConfig config ) {
     RequestConfig.Builder builder = RequestConfig.custom();
     int connectionTimeout = getConnectionTimeout( config );
     if ( connectionTimeout != -1 ) {
@@ -112,7 +136,7 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     return builder.build();
   }
 
-  private static class NoCookieStore implements CookieStore {
+  static class NoCookieStore implements CookieStore {
     @Override
     public void addCookie(Cookie cookie) {
       //no op
@@ -134,7 +158,7 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     }
   }
 
-  private static class NeverRedirectStrategy implements RedirectStrategy {
+  static class NeverRedirectStrategy implements RedirectStrategy {
     @Override
     public boolean isRedirected( HttpRequest request, HttpResponse response, HttpContext context )
         throws ProtocolException {
@@ -155,7 +179,7 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     }
   }
 
-  private static class UseJaasCredentials implements Credentials {
+  static class UseJaasCredentials implements Credentials {
 
     public String getPassword() {
       return null;
@@ -167,7 +191,7 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
 
   }
 
-  private int getMaxConnections( FilterConfig filterConfig ) {
+  static int getMaxConnections( FilterConfig filterConfig ) {
     int maxConnections = 32;
     GatewayConfig config =
         (GatewayConfig)filterConfig.getServletContext().getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE );
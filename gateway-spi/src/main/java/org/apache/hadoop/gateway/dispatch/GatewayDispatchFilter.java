@@ -22,6 +22,8 @@ import org.apache.hadoop.gateway.filter.AbstractGatewayFilter;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.client.HttpAsyncClient;
 
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -47,6 +49,8 @@ public class GatewayDispatchFilter extends AbstractGatewayFilter {
 
   private HttpClient httpClient;
 
+  private HttpAsyncClient asyncHttpClient;
+
   private static Map<String, Adapter> createMethodAdapters() {
     Map<String, Adapter> map = new HashMap<>();
     map.put("GET", new GetAdapter());
@@ -75,6 +79,17 @@ public class GatewayDispatchFilter extends AbstractGatewayFilter {
     }
     httpClient = httpClientFactory.createHttpClient(filterConfig);
     dispatch.setHttpClient(httpClient);
+    if (dispatch instanceof AsyncDispatch) {
+      AsyncHttpClientFactory asyncHttpClientFactory;
+      String asyncHttpClientFactoryClass = filterConfig.getInitParameter("asyncHttpClientFactory");
+      if (asyncHttpClientFactoryClass != null) {
+        asyncHttpClientFactory = newInstanceFromName(asyncHttpClientFactoryClass);
+      } else {
+        asyncHttpClientFactory = new DefaultAsyncHttpClientFactory();
+      }
+      asyncHttpClient = asyncHttpClientFactory.createAsyncHttpClient(filterConfig);
+      ((AsyncDispatch) dispatch).setAsyncHttpClient(asyncHttpClient);
+    }
     dispatch.init();
   }
 
@@ -88,6 +103,13 @@ public class GatewayDispatchFilter extends AbstractGatewayFilter {
     } catch ( IOException e ) {
       LOG.errorClosingHttpClient(e);
     }
+    try {
+      if (asyncHttpClient instanceof CloseableHttpAsyncClient) {
+        ((CloseableHttpAsyncClient) asyncHttpClient).close();
+      }
+    } catch ( IOException e ) {
+      LOG.errorClosingHttpClient(e);
+    }
   }
 
   public Dispatch getDispatch() {
@@ -17,15 +17,113 @@
  */
 package org.apache.hadoop.gateway.dispatch;
 
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.cookie.Cookie;
+import org.apache.http.cookie.SetCookie;
 import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.protocol.HttpContext;
 
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the authentication cookies handed out by secured services so they are
+ * sent instead of going through SPNEGO again.
+ * Cookies are dropped a little before the token they carry expires so a
+ * request doesn't race the expiry and get rejected half way through.
+ * <p>
+ * The {@link SharedStoreInterceptor} makes all clients of the gateway use the
+ * same store for a given backend so a cookie obtained by one topology or service
+ * is reused by the others.  Stores are kept per scheme, host and port because
+ * cookies don't take the port into account while services on the same host
+ * sign their cookies with different secrets.  The cookies authenticate the
+ * gateway's own principal, the end user is passed as doAs, so they can be shared
+ * between users.
+ */
 public class HadoopAuthCookieStore extends BasicCookieStore {
 
+  // How long before the token expires the cookie is no longer sent.
+  static final long EXPIRY_MARGIN = 30000L;
+
+  // hadoop.auth tokens look like u=guest&p=guest@REALM&t=kerberos&e=1500000000000&s=...
+  private static final Pattern TOKEN_EXPIRY = Pattern.compile( "(?:^|&|\")e=(\\d+)" );
+
+  private static final ConcurrentMap<HttpHost, HadoopAuthCookieStore> sharedStores =
+      new ConcurrentHashMap<HttpHost, HadoopAuthCookieStore>();
+
   @Override
   public void addCookie(Cookie cookie) {
     if (cookie.getName().equals("hadoop.auth") || cookie.getName().equals("hive.server2.auth")) {
+      if (cookie instanceof SetCookie) {
+        Date expiry = getRefreshDate(cookie);
+        if (expiry != null) {
+          ((SetCookie)cookie).setExpiryDate(expiry);
+        }
+      }
       super.addCookie(cookie);
     }
   }
+
+  // The earlier of the cookie's and the token's expiry, less the margin, or null if neither expires.
+  static Date getRefreshDate(Cookie cookie) {
+    long expiry = Long.MAX_VALUE;
+    if (cookie.getExpiryDate() != null) {
+      expiry = cookie.getExpiryDate().getTime();
+    }
+    String value = cookie.getValue();
+    if (value != null) {
+      Matcher matcher = TOKEN_EXPIRY.matcher(value);
+      if (matcher.find()) {
+        try {
+          expiry = Math.min(expiry, Long.parseLong(matcher.group(1)));
+        } catch (NumberFormatException e) {
+          // Not a token expiry, keep the cookie's.
+        }
+      }
+    }
+    return expiry == Long.MAX_VALUE ? null : new Date(expiry - EXPIRY_MARGIN);
+  }
+
+  static HadoopAuthCookieStore getSharedStore(HttpHost target) {
+    if (target.getPort() < 0) {
+      // So http://host and http://host:80 share a store.
+      target = new HttpHost(target.getHostName(), "https".equalsIgnoreCase(target.getSchemeName()) ? 443 : 80,
+          target.getSchemeName());
+    }
+    HadoopAuthCookieStore store = sharedStores.get(target);
+    if (store == null) {
+      HadoopAuthCookieStore created = new HadoopAuthCookieStore();
+      store = sharedStores.putIfAbsent(target, created);
+      if (store == null) {
+        store = created;
+      }
+    }
+    return store;
+  }
+
+  /**
+   * Points the request at the gateway wide cookie store of its target.
+   * Needs to run before the cookies are added to the request.
+   */
+  public static class SharedStoreInterceptor implements HttpRequestInterceptor {
+
+    @Override
+    public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+      HttpClientContext clientContext = HttpClientContext.adapt(context);
+      HttpHost target = clientContext.getTargetHost();
+      if (target != null) {
+        clientContext.setCookieStore(getSharedStore(target));
+      }
+    }
+
+  }
+
 }
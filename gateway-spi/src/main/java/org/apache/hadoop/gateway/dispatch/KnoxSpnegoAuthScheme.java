@@ -22,7 +22,15 @@ import org.ietf.jgss.GSSException;
 
 public class KnoxSpnegoAuthScheme extends SPNegoScheme {
 
-  private static long nano = Long.MIN_VALUE;
+  // Replay detection is done by each service so only tokens for the same server need to be serialized.
+  private static final int LOCK_STRIPES = 64;
+  private static final Stripe[] stripes = new Stripe[ LOCK_STRIPES ];
+
+  static {
+    for( int i = 0; i < LOCK_STRIPES; i++ ) {
+      stripes[ i ] = new Stripe();
+    }
+  }
 
   public KnoxSpnegoAuthScheme( boolean stripPort ) {
     super( stripPort );
@@ -35,20 +43,30 @@ public class KnoxSpnegoAuthScheme extends SPNegoScheme {
   @Override
   protected byte[] generateToken(final byte[] input, final String authServer) throws GSSException {
     // This is done to avoid issues with Keberos service ticket replay detection on the service side.
-    synchronized( KnoxSpnegoAuthScheme.class ) {
+    Stripe stripe = getStripe( authServer );
+    synchronized( stripe ) {
       long now;
       // This just insures that the system clock has advanced to a different nanosecond.
       // Kerberos uses microsecond resolution and 1ms=1000ns.
-      while( ( now = System.nanoTime() ) == nano ) {
+      while( ( now = System.nanoTime() ) == stripe.nano ) {
         try {
           Thread.sleep( 0 );
         } catch( InterruptedException e ) {
           // Ignore it.
         }
       }
-      nano = now;
+      stripe.nano = now;
       return super.generateToken( input, authServer );
     }
   }
 
+  static Stripe getStripe( String authServer ) {
+    int hash = authServer == null ? 0 : authServer.toLowerCase().hashCode();
+    return stripes[ ( hash & Integer.MAX_VALUE ) % LOCK_STRIPES ];
+  }
+
+  static class Stripe {
+    private long nano = Long.MIN_VALUE;
+  }
+
 }
@@ -21,31 +21,69 @@ import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.entity.HttpEntityWrapper;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PartiallyRepeatableHttpEntity extends HttpEntityWrapper {
 
   public static final int DEFAULT_BUFFER_SIZE = 4096;
 
-  private int replayWriteIndex;
-  private int replayWriteLimit;
-  private byte[] replayBuffer;
+  // The replay buffer is allocated in chunks of this size as bytes arrive so small bodies stay small.
+  static final int CHUNK_SIZE = 4096;
+  // Upper bound on the number of idle chunks kept for reuse by later requests.
+  static final int MAX_POOLED_CHUNKS = 256;
+
+  private static final Queue<byte[]> CHUNK_POOL = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger POOLED_CHUNKS = new AtomicInteger();
+
+  private final boolean replayRequired;
+  private final int memoryLimit;
+  private long spillLimit;
+  private final File spillDirectory;
+  private final List<byte[]> chunks;
+  private long replayLength;
+  private File spillFile;
+  private RandomAccessFile spill;
+  private boolean released;
   private ReplayStream finalStream;
   private InputStream wrappedStream;
 
-  public PartiallyRepeatableHttpEntity(final HttpEntity entity, int bufferSize) throws IOException {
+  /**
+   * @param entity The entity to make repeatable.
+   * @param bufferSize The maximum number of bytes retained in memory for replay.
+   * @param spillLimit The maximum number of additional bytes retained in a temporary file for replay, 0 to keep
+   *                   the replay buffer in memory only.
+   * @param spillDirectory The directory the temporary file is created in, null for the default temporary directory.
+   */
+  public PartiallyRepeatableHttpEntity(final HttpEntity entity, int bufferSize, long spillLimit, File spillDirectory)
+      throws IOException {
     super( entity );
     this.wrappedStream = null;
     this.finalStream = null;
-    this.replayWriteIndex = -1;
-    if( !entity.isRepeatable() ) {
-      this.replayBuffer = new byte[ bufferSize ];
-      this.replayWriteLimit = bufferSize-1;
-    } else {
-      this.replayBuffer = null;
-    }
+    this.replayRequired = !entity.isRepeatable();
+    this.memoryLimit = Math.max( bufferSize, 0 );
+    this.spillLimit = Math.max( spillLimit, 0 );
+    this.spillDirectory = spillDirectory;
+    this.chunks = new ArrayList<>();
+    this.replayLength = 0;
+  }
+
+  public PartiallyRepeatableHttpEntity(final HttpEntity entity, int bufferSize, long spillLimit) throws IOException {
+    this( entity, bufferSize, spillLimit, null );
+  }
+
+  public PartiallyRepeatableHttpEntity(final HttpEntity entity, int bufferSize) throws IOException {
+    this( entity, bufferSize, 0 );
   }
 
   public PartiallyRepeatableHttpEntity(final HttpEntity entity) throws IOException {
@@ -77,11 +115,13 @@ public class PartiallyRepeatableHttpEntity extends HttpEntityWrapper {
   @Override
   public InputStream getContent() throws IOException {
     // If the wrapped stream is repeatable return it directly.
-    if( replayBuffer == null ) {
+    if( !replayRequired ) {
       return wrappedEntity.getContent();
     // Else if the buffer has overflowed
     } else if( finalStream != null ) {
       throw new IOException( "Existing stream already past replay buffer capacity." );
+    } else if( released ) {
+      throw new IOException( "Replay buffer already released." );
     } else {
       if( wrappedStream == null ) {
          wrappedStream = wrappedEntity.getContent();
@@ -101,32 +141,137 @@ public class PartiallyRepeatableHttpEntity extends HttpEntityWrapper {
     throw new UnsupportedOperationException();
   }
 
-  private class ReplayStream extends InputStream {
+  /**
+   * Returns the memory chunks to the pool and removes any spill file.
+   * The entity can no longer be replayed once released.
+   */
+  public void release() {
+    released = true;
+    releaseReplayBuffer();
+  }
 
-    private int replayReadIndex = -1;
+  long getReplayLength() {
+    return replayLength;
+  }
 
-    @Override
-    public int read() throws IOException {
-      int b;
-      if( finalStream != null && finalStream != this ) {
-        throw new IOException( "Replay stream taken over by another consumer." );
+  int getReplayChunkCount() {
+    return chunks.size();
+  }
+
+  private void releaseReplayBuffer() {
+    for( byte[] chunk : chunks ) {
+      if( POOLED_CHUNKS.incrementAndGet() <= MAX_POOLED_CHUNKS ) {
+        CHUNK_POOL.offer( chunk );
+      } else {
+        POOLED_CHUNKS.decrementAndGet();
       }
-      // If we can read from the buffer do so.
-      if( replayReadIndex < replayWriteIndex ) {
-        b = replayBuffer[ ++replayReadIndex ];
+    }
+    chunks.clear();
+    if( spill != null ) {
+      IOUtils.closeQuietly( spill );
+      spill = null;
+    }
+    if( spillFile != null ) {
+      spillFile.delete();
+      spillFile = null;
+    }
+  }
+
+  private static byte[] acquireChunk() {
+    byte[] chunk = CHUNK_POOL.poll();
+    if( chunk == null ) {
+      chunk = new byte[ CHUNK_SIZE ];
+    } else {
+      POOLED_CHUNKS.decrementAndGet();
+    }
+    return chunk;
+  }
+
+  // Returns false, leaving the buffer untouched, if the bytes do not fit in the remaining replay capacity.
+  private boolean append( byte[] buffer, int offset, int count ) throws IOException {
+    if( released || replayLength + count > memoryLimit + spillLimit ) {
+      return false;
+    }
+    while( count > 0 && replayLength < memoryLimit ) {
+      int chunkOffset = (int)( replayLength % CHUNK_SIZE );
+      if( chunkOffset == 0 ) {
+        chunks.add( acquireChunk() );
+      }
+      int length = (int)Math.min( Math.min( count, CHUNK_SIZE - chunkOffset ), memoryLimit - replayLength );
+      System.arraycopy( buffer, offset, chunks.get( chunks.size()-1 ), chunkOffset, length );
+      replayLength += length;
+      offset += length;
+      count -= length;
+    }
+    if( count > 0 ) {
+      if( spill == null && !openSpill() ) {
+        return false;
+      }
+      spill.seek( replayLength - memoryLimit );
+      spill.write( buffer, offset, count );
+      replayLength += count;
+    }
+    return true;
+  }
+
+  // The file holds request bodies so it is only readable by the gateway and it is unlinked as soon as it
+  // is open, so nothing is left behind even if the entity is never released.
+  private boolean openSpill() {
+    try {
+      Path path;
+      if( spillDirectory == null ) {
+        path = Files.createTempFile( "knox-replay-", ".tmp" );
       } else {
-        b = wrappedStream.read();
-        // If the underlying stream is not closed.
-        if( b > -1 ) {
-          if( replayWriteIndex < replayWriteLimit ) {
-            replayBuffer[ ++replayWriteIndex ] = (byte)b;
-            replayReadIndex++;
-          } else {
-            finalStream = this;
-          }
-        }
+        path = Files.createTempFile( Files.createDirectories( spillDirectory.toPath() ), "knox-replay-", ".tmp" );
       }
-      return b;
+      spillFile = path.toFile();
+      spill = new RandomAccessFile( spillFile, "rw" );
+      if( spillFile.delete() ) {
+        spillFile = null;
+      } else {
+        // Open files cannot be deleted on some platforms.
+        spillFile.deleteOnExit();
+      }
+      return true;
+    } catch( IOException e ) {
+      // Without somewhere to spill to the body simply becomes non-repeatable past the memory buffer.
+      if( spillFile != null ) {
+        spillFile.delete();
+        spillFile = null;
+      }
+      spillLimit = 0;
+      return false;
+    }
+  }
+
+  private int replay( long position, byte[] buffer, int offset, int limit ) throws IOException {
+    int count;
+    if( position < memoryLimit ) {
+      int chunkOffset = (int)( position % CHUNK_SIZE );
+      count = (int)Math.min( Math.min( limit, CHUNK_SIZE - chunkOffset ), Math.min( replayLength, memoryLimit ) - position );
+      System.arraycopy( chunks.get( (int)( position / CHUNK_SIZE ) ), chunkOffset, buffer, offset, count );
+    } else {
+      spill.seek( position - memoryLimit );
+      count = spill.read( buffer, offset, (int)Math.min( limit, replayLength - position ) );
+    }
+    return count;
+  }
+
+  private void overflow( ReplayStream stream ) {
+    finalStream = stream;
+    // No other consumer can replay from here on so the buffer can go back right away.
+    releaseReplayBuffer();
+  }
+
+  private class ReplayStream extends InputStream {
+
+    private long replayReadIndex = 0;
+    private final byte[] single = new byte[ 1 ];
+
+    @Override
+    public int read() throws IOException {
+      int count = read( single, 0, 1 );
+      return count > 0 ? single[ 0 ] & 0xFF : -1;
     }
 
     public int read( byte buffer[], int offset, int limit ) throws IOException {
@@ -134,22 +279,21 @@ public class PartiallyRepeatableHttpEntity extends HttpEntityWrapper {
       if( finalStream != null && finalStream != this ) {
         throw new IOException( "Replay stream taken over by another consumer." );
       }
+      if( released && finalStream != this ) {
+        throw new IOException( "Replay buffer already released." );
+      }
       // If we can read from the buffer do so.
-      if( replayReadIndex < replayWriteIndex ) {
-        count = replayWriteIndex - replayReadIndex;
-        count = Math.min( limit, count );
-        System.arraycopy( replayBuffer, replayReadIndex+1, buffer, offset, count );
+      if( finalStream == null && replayReadIndex < replayLength ) {
+        count = replay( replayReadIndex, buffer, offset, limit );
         replayReadIndex += count;
       } else {
         count = wrappedStream.read( buffer, offset, limit );
         // If the underlying stream is not closed.
-        if( count > -1 ) {
-          if( replayWriteIndex+count < replayWriteLimit ) {
-            System.arraycopy( buffer, offset, replayBuffer, replayWriteIndex+1, count );
+        if( count > 0 && finalStream == null ) {
+          if( append( buffer, offset, count ) ) {
             replayReadIndex += count;
-            replayWriteIndex += count;
           } else {
-            finalStream = this;
+            overflow( this );
           }
         }
       }
@@ -88,4 +88,7 @@ public interface GatewaySpiMessages {
   @Message(level = MessageLevel.ERROR, text = "Invalid resource URI {0} : {1}")
   void invalidResourceURI(final String uri, final String reason, @StackTrace(level = MessageLevel.DEBUG) Exception e );
 
+  @Message( level = MessageLevel.DEBUG, text = "Loaded keystore {0} in {1} ms" )
+  void loadedKeystore( String fileName, long duration );
+
 }
@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.security;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of the authentication caches of the deployed topologies so
+ * cached credentials can be dropped, e.g. from the admin API, after a
+ * password change or account lock without waiting for them to expire.
+ */
+public class AuthenticationCacheRegistry {
+
+  public interface AuthenticationCache {
+
+    /**
+     * Drops all cached authentications.
+     */
+    void invalidate();
+
+    /**
+     * Drops the cached authentications of a single user.
+     */
+    void invalidate( String username );
+
+  }
+
+  private static final ConcurrentMap<String, Set<AuthenticationCache>> caches =
+      new ConcurrentHashMap<String, Set<AuthenticationCache>>();
+
+  public static void register( String topology, AuthenticationCache cache ) {
+    Set<AuthenticationCache> topologyCaches = caches.get( topology );
+    if( topologyCaches == null ) {
+      Set<AuthenticationCache> created =
+          Collections.synchronizedSet( Collections.newSetFromMap( new IdentityHashMap<AuthenticationCache, Boolean>() ) );
+      topologyCaches = caches.putIfAbsent( topology, created );
+      if( topologyCaches == null ) {
+        topologyCaches = created;
+      }
+    }
+    topologyCaches.add( cache );
+  }
+
+  public static void unregister( String topology, AuthenticationCache cache ) {
+    Set<AuthenticationCache> topologyCaches = caches.get( topology );
+    if( topologyCaches != null ) {
+      topologyCaches.remove( cache );
+    }
+  }
+
+  /**
+   * Invalidates the authentication caches of a topology.
+   *
+   * @param topology the name of the topology
+   * @param username the user to invalidate or null for all users
+   * @return true if the topology has at least one authentication cache
+   */
+  public static boolean invalidate( String topology, String username ) {
+    Set<AuthenticationCache> topologyCaches = caches.get( topology );
+    if( topologyCaches == null ) {
+      return false;
+    }
+    AuthenticationCache[] snapshot;
+    synchronized( topologyCaches ) {
+      snapshot = topologyCaches.toArray( new AuthenticationCache[ topologyCaches.size() ] );
+    }
+    for( AuthenticationCache cache : snapshot ) {
+      if( username == null ) {
+        cache.invalidate();
+      } else {
+        cache.invalidate( username );
+      }
+    }
+    return snapshot.length > 0;
+  }
+
+}
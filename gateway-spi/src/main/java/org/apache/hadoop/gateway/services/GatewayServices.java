@@ -38,6 +38,9 @@ public interface GatewayServices extends Service, ProviderDeploymentContributor
   public static final String TOPOLOGY_SERVICE = "TopologyService";
   public static final String SERVICE_DEFINITION_REGISTRY = "ServiceDefinitionRegistry";
   public static final String METRICS_SERVICE = "MetricsService";
+  public static final String CONNECTION_POOL_SERVICE = "ConnectionPoolService";
+  public static final String AUDIT_DISPATCH_SERVICE = "AuditDispatchService";
+  public static final String GROUP_MAPPING_SERVICE = "GroupMappingService";
 
   public abstract Collection<String> getServiceNames();
 
@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.httpclient;
+
+import org.apache.hadoop.gateway.services.Service;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.PoolStats;
+
+import java.util.Set;
+
+/**
+ * Provides the backend connection pool shared by the dispatches of all deployed topologies.
+ * Connections are pooled per route, so keep-alive connections to the same backend host are reused
+ * across services and topologies and the number of connections can be bounded for the whole gateway.
+ *
+ * @since 0.14
+ */
+public interface ConnectionPoolService extends Service {
+
+  /**
+   * Returns the shared connection manager.  Clients built using this connection manager must be marked
+   * as sharing it so that closing them does not shut down the pool.
+   *
+   * @return The shared connection manager.  Will never be null once the service is initialized.
+   */
+  HttpClientConnectionManager getConnectionManager();
+
+  /**
+   * @return The routes for which the pool currently holds connections.
+   */
+  Set<HttpRoute> getRoutes();
+
+  /**
+   * @return The leased, available, pending and maximum connection counts for the whole pool.
+   */
+  PoolStats getTotalStats();
+
+  /**
+   * @param route The route to return the statistics for.
+   * @return The leased, available, pending and maximum connection counts for the route.
+   */
+  PoolStats getStats( HttpRoute route );
+
+}
@@ -19,6 +19,12 @@ package org.apache.hadoop.gateway.services.metrics;
 
 public interface MetricsContext {
 
+  /**
+   * Name of the property holding the gateway's metric registry.
+   * @since 0.14
+   */
+  String METRICS_REGISTRY = "metrics-registry";
+
   MetricsService getMetricsService();
 
   void setProperty(String name, Object value);
@@ -25,4 +25,9 @@ public interface MetricsService extends Service {
 
   <T> T getInstrumented(Class<T> clazz);
 
+  /**
+   * @since 0.14
+   */
+  MetricsContext getContext();
+
 }
@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.metrics;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * The metrics a component of a deployed topology registers with the gateway's metric registry.
+ * A redeployed topology registers its metrics before the previous deployment is destroyed, so registering
+ * replaces any metric of the same name and unregistering only removes the metrics registered through
+ * this instance.
+ *
+ * @since 0.14
+ */
+public class TopologyMetrics {
+
+  private final MetricRegistry registry;
+  private final Set<Metric> metrics = Collections.newSetFromMap( new IdentityHashMap<Metric,Boolean>() );
+
+  public TopologyMetrics( MetricRegistry registry ) {
+    this.registry = registry;
+  }
+
+  /**
+   * @param name The name to register the metric under.
+   * @param metric The metric to register in place of any metric already registered under the name.
+   * @return The metric.
+   */
+  public synchronized <T extends Metric> T register( String name, T metric ) {
+    registry.remove( name );
+    registry.register( name, metric );
+    metrics.add( metric );
+    return metric;
+  }
+
+  /**
+   * Removes the metrics registered through this instance that are still registered.
+   */
+  public synchronized void unregister() {
+    registry.removeMatching( new MetricFilter() {
+      @Override
+      public boolean matches( String name, Metric metric ) {
+        return metrics.contains( metric );
+      }
+    } );
+    metrics.clear();
+  }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.security;
+
+import org.apache.hadoop.gateway.services.Service;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Caches the groups of users for the identity assertion providers of all deployed topologies.
+ * The groups of a user are only looked up on the request thread the first time they are needed.
+ * Once they are older than the configured time to live they are reloaded in the background and
+ * the previous groups are returned in the meantime.  Users without groups are cached for a
+ * shorter time and the number of users cached by each mapping is bounded.
+ *
+ * @since 0.14
+ */
+public interface GroupMappingService extends Service {
+
+  /**
+   * Looks up the groups of a user, e.g. through a Hadoop GroupMappingServiceProvider.
+   */
+  interface GroupLookup {
+
+    /**
+     * @param user The user to look up.
+     * @return The groups of the user, empty if the user is unknown.
+     * @throws IOException If the groups could not be looked up.
+     */
+    List<String> getGroups( String user ) throws IOException;
+
+  }
+
+  /**
+   * The cached groups of a single lookup.
+   */
+  interface GroupMapping {
+
+    /**
+     * @param user The user to return the groups for.
+     * @return The groups of the user, empty if the user is unknown or the lookup failed.
+     */
+    List<String> getGroups( String user );
+
+  }
+
+  /**
+   * Returns the mapping registered under the given id, registering a new mapping for the lookup if
+   * there is none.  Providers configured the same way should use the same id so they share a single
+   * lookup and cache.  Every call must be matched by a call to {@link #releaseGroupMapping}.
+   *
+   * @param id Identifies the lookup and its configuration.
+   * @param name Short name of the kind of lookup, used to name its metrics.
+   * @param lookup The lookup used by a new mapping.  It should not acquire resources until it is used.
+   * @return The mapping.  Will never be null.
+   */
+  GroupMapping getGroupMapping( String id, String name, GroupLookup lookup );
+
+  /**
+   * Releases a mapping returned by {@link #getGroupMapping}, e.g. when the provider that uses it is
+   * undeployed.  Once every provider that got the mapping has released it the mapping and its cache
+   * are dropped.
+   *
+   * @param mapping The mapping to release.
+   */
+  void releaseGroupMapping( GroupMapping mapping );
+
+}
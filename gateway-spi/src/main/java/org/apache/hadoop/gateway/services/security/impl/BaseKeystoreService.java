@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.gateway.services.security.impl;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.hadoop.gateway.i18n.GatewaySpiMessages;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
@@ -29,6 +31,10 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.security.Key;
 import java.security.KeyPair;
 import java.security.KeyStore;
@@ -38,6 +44,10 @@ import java.security.UnrecoverableKeyException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 public class BaseKeystoreService {
   private static GatewaySpiMessages LOG = MessagesFactory.get( GatewaySpiMessages.class );
@@ -45,6 +55,10 @@ public class BaseKeystoreService {
   protected MasterService masterService;
   protected String keyStoreDir;
 
+  private final ConcurrentMap<String, CachedKeystore> keystores = new ConcurrentHashMap<>();
+  private final Counter keystoreReloads = new Counter();
+  private final Timer keystoreLoadTime = new Timer();
+
   private static KeyStore loadKeyStore(final File keyStoreFile, final char[] masterPassword, String storeType)
       throws CertificateException, IOException, KeyStoreException,
       NoSuchAlgorithmException {     
@@ -166,6 +180,74 @@ public class BaseKeystoreService {
     return credStore;
   }
 
+  /**
+   * Returns a keystore that is loaded once and then served from memory until the underlying
+   * file changes on disk or is rewritten through {@link #writeKeystoreToFile(KeyStore, File)}.
+   * The returned instance is shared between callers and must not be modified,
+   * use {@link #getKeystore(File, String)} to get a private copy to update.
+   */
+  protected KeyStore getCachedKeystore(final File keyStoreFile, String storeType) throws KeystoreServiceException {
+    return getCachedKeystoreEntry( keyStoreFile, storeType ).keyStore;
+  }
+
+  /**
+   * Returns the decoded value of a credential from a cached keystore.
+   * Decoded values are remembered until the keystore is reloaded.
+   * @return A copy of the credential value or null if the alias does not exist.
+   */
+  protected char[] getCachedCredential(final File keyStoreFile, String storeType, String alias)
+      throws KeystoreServiceException, UnrecoverableKeyException, KeyStoreException, NoSuchAlgorithmException {
+    CachedKeystore cached = getCachedKeystoreEntry( keyStoreFile, storeType );
+    char[] credential = cached.credentials.get( alias );
+    if( credential == null ) {
+      Key key = cached.keyStore.getKey( alias, masterService.getMasterSecret() );
+      if( key == null ) {
+        return null;
+      }
+      credential = new String( key.getEncoded() ).toCharArray();
+      cached.credentials.put( alias, credential );
+    }
+    return credential.clone();
+  }
+
+  private CachedKeystore getCachedKeystoreEntry(final File keyStoreFile, String storeType) throws KeystoreServiceException {
+    String path = keyStoreFile.getAbsolutePath();
+    // The file state is read before the load so a concurrent write can only cause an extra reload.
+    FileState state = FileState.of( keyStoreFile );
+    CachedKeystore cached = keystores.get( path );
+    if( cached == null || !cached.isCurrent( storeType, state ) ) {
+      synchronized( keystores ) {
+        cached = keystores.get( path );
+        if( cached == null || !cached.isCurrent( storeType, state ) ) {
+          long start = System.nanoTime();
+          KeyStore keyStore = getKeystore( keyStoreFile, storeType );
+          long duration = System.nanoTime() - start;
+          keystoreLoadTime.update( duration, TimeUnit.NANOSECONDS );
+          keystoreReloads.inc();
+          LOG.loadedKeystore( keyStoreFile.getName(), TimeUnit.NANOSECONDS.toMillis( duration ) );
+          cached = new CachedKeystore( storeType, state, keyStore );
+          keystores.put( path, cached );
+        }
+      }
+    }
+    return cached;
+  }
+
+  /**
+   * Discards the cached copy of a keystore so that the next lookup reloads it from disk.
+   */
+  protected void invalidateCachedKeystore(final File keyStoreFile) {
+    keystores.remove( keyStoreFile.getAbsolutePath() );
+  }
+
+  public Counter getKeystoreReloads() {
+    return keystoreReloads;
+  }
+
+  public Timer getKeystoreLoadTime() {
+    return keystoreLoadTime;
+  }
+
   public BaseKeystoreService() {
     super();
   }
@@ -225,10 +307,74 @@ public class BaseKeystoreService {
      // TODO: backup the keystore on disk before attempting a write and restore on failure
      try( final FileOutputStream out = new FileOutputStream(file) ) {
          keyStore.store( out, masterService.getMasterSecret() );
+     } finally {
+       invalidateCachedKeystore( file );
      }
   }
 
   public void setMasterService(MasterService ms) {
     this.masterService = ms;
   }
+
+  private static class CachedKeystore {
+
+    private final String storeType;
+    private final FileState state;
+    private final KeyStore keyStore;
+    private final ConcurrentMap<String, char[]> credentials = new ConcurrentHashMap<>();
+
+    private CachedKeystore( String storeType, FileState state, KeyStore keyStore ) {
+      this.storeType = storeType;
+      this.state = state;
+      this.keyStore = keyStore;
+    }
+
+    private boolean isCurrent( String storeType, FileState state ) {
+      return this.storeType.equals( storeType ) && this.state.equals( state );
+    }
+
+  }
+
+  // The modification time, size and file key of a keystore file, or all nulls if it does not exist.
+  private static class FileState {
+
+    private final FileTime lastModified;
+    private final Long size;
+    private final Object fileKey;
+
+    private FileState( FileTime lastModified, Long size, Object fileKey ) {
+      this.lastModified = lastModified;
+      this.size = size;
+      this.fileKey = fileKey;
+    }
+
+    private static FileState of( File file ) throws KeystoreServiceException {
+      try {
+        BasicFileAttributes attributes = Files.readAttributes( file.toPath(), BasicFileAttributes.class );
+        return new FileState( attributes.lastModifiedTime(), attributes.size(), attributes.fileKey() );
+      } catch( NoSuchFileException e ) {
+        return new FileState( null, null, null );
+      } catch( IOException e ) {
+        throw new KeystoreServiceException( e );
+      }
+    }
+
+    @Override
+    public boolean equals( Object other ) {
+      if( !( other instanceof FileState ) ) {
+        return false;
+      }
+      FileState that = (FileState)other;
+      return Objects.equals( lastModified, that.lastModified ) &&
+          Objects.equals( size, that.size ) &&
+          Objects.equals( fileKey, that.fileKey );
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash( lastModified, size, fileKey );
+    }
+
+  }
+
 }
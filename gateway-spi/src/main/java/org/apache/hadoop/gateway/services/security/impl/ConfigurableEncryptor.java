@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.gateway.services.security.impl;
 
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -24,6 +26,10 @@ import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.InvalidParameterSpecException;
 import java.security.spec.KeySpec;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
@@ -38,14 +44,33 @@ import org.apache.hadoop.gateway.i18n.GatewaySpiMessages;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.services.security.EncryptionResult;
 
+/**
+ * Encrypts and decrypts with a key derived from a passphrase.
+ * Instances are thread safe. Each thread gets its own Cipher instances and the key derived
+ * for the encryptor's own salt, as well as the keys for the most recently used other salts
+ * seen by {@link #decrypt(byte[], byte[], byte[])}, are remembered so that the expensive key
+ * derivation does not happen for every decryption.
+ */
 public class ConfigurableEncryptor {
   private static final GatewaySpiMessages LOG = MessagesFactory.get( GatewaySpiMessages.class );
   
   private static final int ITERATION_COUNT = 65536;
   private static final int KEY_LENGTH = 128;
-  
-  private Cipher ecipher;
-  private Cipher dcipher;
+  // Salts come from the encrypted values so only the most recently used keys are remembered.
+  private static final int MAX_DERIVED_KEYS = 64;
+
+  private final ThreadLocal<Cipher> ecipher = new ThreadLocal<>();
+  private final ThreadLocal<Cipher> dcipher = new ThreadLocal<>();
+  private final Map<ByteBuffer,SecretKey> derivedKeys = Collections.synchronizedMap(
+      new LinkedHashMap<ByteBuffer,SecretKey>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer,SecretKey> eldest) {
+          return size() > MAX_DERIVED_KEYS;
+        }
+      });
+  private volatile SecretKey ownDerivedKey;
+  private String cipherTransformation;
+  private byte[] iv;
   private SecretKey secret;
   private byte[] salt = null;
   private char[] passPhrase = null;
@@ -65,13 +90,7 @@ public class ConfigurableEncryptor {
         
         SecretKey tmp = getKeyFromPassword(passPhrase);
         secret = new SecretKeySpec (tmp.getEncoded(), alg);
- 
-        ecipher = Cipher.getInstance(transformation);
-        ecipher.init(Cipher.ENCRYPT_MODE, secret);
-       
-        dcipher = Cipher.getInstance(transformation);
-        byte[] iv = ecipher.getParameters().getParameterSpec(IvParameterSpec.class).getIV();
-        dcipher.init(Cipher.DECRYPT_MODE, secret, new IvParameterSpec(iv));
+        initCiphers();
       } catch (NoSuchAlgorithmException e) {
         LOG.failedToEncryptPassphrase( e );
       } catch (NoSuchPaddingException e) {
@@ -88,13 +107,7 @@ public class ConfigurableEncryptor {
   ConfigurableEncryptor(SecretKey secret) {
     try {
       this.secret = new SecretKeySpec (secret.getEncoded(), alg);
-
-      ecipher = Cipher.getInstance(transformation);
-      ecipher.init(Cipher.ENCRYPT_MODE, secret);
-     
-      dcipher = Cipher.getInstance(transformation);
-      byte[] iv = ecipher.getParameters().getParameterSpec(IvParameterSpec.class).getIV();
-      dcipher.init(Cipher.DECRYPT_MODE, secret, new IvParameterSpec(iv));
+      initCiphers();
     } catch (NoSuchAlgorithmException e) {
       LOG.failedToEncryptPassphrase( e );
     } catch (NoSuchPaddingException e) {
@@ -108,6 +121,39 @@ public class ConfigurableEncryptor {
     }
   }
 
+  // Fixes the transformation and the IV used for encryption and checks that the ciphers can be created.
+  private void initCiphers() throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
+      InvalidParameterSpecException, InvalidAlgorithmParameterException {
+    cipherTransformation = transformation;
+    Cipher cipher = Cipher.getInstance(cipherTransformation);
+    cipher.init(Cipher.ENCRYPT_MODE, secret);
+    iv = cipher.getParameters().getParameterSpec(IvParameterSpec.class).getIV();
+    ecipher.set(cipher);
+
+    cipher = Cipher.getInstance(cipherTransformation);
+    cipher.init(Cipher.DECRYPT_MODE, secret, new IvParameterSpec(iv));
+    dcipher.set(cipher);
+  }
+
+  private Cipher getEncryptCipher() throws GeneralSecurityException {
+    Cipher cipher = ecipher.get();
+    if (cipher == null) {
+      cipher = Cipher.getInstance(cipherTransformation);
+      cipher.init(Cipher.ENCRYPT_MODE, secret, new IvParameterSpec(iv));
+      ecipher.set(cipher);
+    }
+    return cipher;
+  }
+
+  private Cipher getDecryptCipher() throws GeneralSecurityException {
+    Cipher cipher = dcipher.get();
+    if (cipher == null) {
+      cipher = Cipher.getInstance(cipherTransformation);
+      dcipher.set(cipher);
+    }
+    return cipher;
+  }
+
   public void init(GatewayConfig config) {
     if (config != null) {
 	    String alg = config.getAlgorithm();
@@ -134,6 +180,8 @@ public class ConfigurableEncryptor {
 	    if (keyLength != null) {
 		  this.keyLength = Integer.parseInt(keyLength);
 	    }
+	    derivedKeys.clear();
+	    ownDerivedKey = null;
     }
   }
 
@@ -157,6 +205,29 @@ public class ConfigurableEncryptor {
     return key;
   }
 
+  SecretKey getDerivedKey(byte[] salt) {
+    // The key for the own salt is kept apart so that other salts can never evict it.
+    boolean own = Arrays.equals(salt, this.salt);
+    ByteBuffer cacheKey = null;
+    SecretKey key;
+    if (own) {
+      key = ownDerivedKey;
+    } else {
+      cacheKey = ByteBuffer.wrap(salt.clone());
+      key = derivedKeys.get(cacheKey);
+    }
+    if (key == null) {
+      SecretKey tmp = getKeyFromPassword(new String(passPhrase), salt);
+      key = new SecretKeySpec(tmp.getEncoded(), alg);
+      if (own) {
+        ownDerivedKey = key;
+      } else {
+        derivedKeys.put(cacheKey, key);
+      }
+    }
+    return key;
+  }
+
   public EncryptionResult encrypt(String encrypt) throws Exception {
       byte[] bytes = encrypt.getBytes("UTF8");
       EncryptionResult atom = encrypt(bytes);
@@ -164,8 +235,14 @@ public class ConfigurableEncryptor {
   }
 
   public EncryptionResult encrypt(byte[] plain) throws Exception {
-    EncryptionResult atom = new EncryptionResult(salt, ecipher.getParameters().getParameterSpec(IvParameterSpec.class).getIV(), ecipher.doFinal(plain));
-    return atom;
+    Cipher cipher = getEncryptCipher();
+    try {
+      // The cipher is reset to its initial state, including the IV, by doFinal.
+      return new EncryptionResult(salt, iv.clone(), cipher.doFinal(plain));
+    } catch (Exception e) {
+      ecipher.remove();
+      throw e;
+    }
   }
 
   public String decrypt(String salt, String iv, String cipher) throws Exception {
@@ -174,15 +251,15 @@ public class ConfigurableEncryptor {
   }
 
   public byte[] decrypt(byte[] salt, byte[] iv, byte[] encrypt) throws Exception {
-    SecretKey tmp = getKeyFromPassword(new String(passPhrase), salt);
-    secret = new SecretKeySpec(tmp.getEncoded(), alg);
-    
-    dcipher.init(Cipher.DECRYPT_MODE, secret, new IvParameterSpec(iv));
-    return dcipher.doFinal(encrypt);
+    SecretKey key = getDerivedKey(salt);
+    Cipher cipher = getDecryptCipher();
+    cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+    return cipher.doFinal(encrypt);
   }
   
   public byte[] decrypt(byte[] encrypt) throws Exception {
-    dcipher.init(Cipher.DECRYPT_MODE, secret);
-    return dcipher.doFinal(encrypt);
+    Cipher cipher = getDecryptCipher();
+    cipher.init(Cipher.DECRYPT_MODE, secret);
+    return cipher.doFinal(encrypt);
   }
 }
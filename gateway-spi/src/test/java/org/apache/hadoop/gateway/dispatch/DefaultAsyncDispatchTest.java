@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import org.apache.hadoop.test.category.FastTests;
+import org.apache.hadoop.test.category.UnitTests;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@Category( { UnitTests.class, FastTests.class } )
+public class DefaultAsyncDispatchTest {
+
+  @Test
+  public void testRequestsWithBodyAreDispatchedSynchronously() throws Exception {
+    DefaultAsyncDispatch dispatch = new DefaultAsyncDispatch();
+    CloseableHttpAsyncClient client = HttpAsyncClients.createDefault();
+    dispatch.setAsyncHttpClient( client );
+
+    HttpServletRequest inboundRequest = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( inboundRequest.isAsyncSupported() ).andReturn( true ).anyTimes();
+    EasyMock.expect( inboundRequest.isAsyncStarted() ).andReturn( false ).anyTimes();
+    EasyMock.replay( inboundRequest );
+
+    URI uri = new URI( "http://localhost/test" );
+    assertTrue( dispatch.isAsyncDispatch( new HttpGet( uri ), inboundRequest ) );
+    assertFalse( dispatch.isAsyncDispatch( new HttpPut( uri ), inboundRequest ) );
+
+    dispatch.setAsyncHttpClient( null );
+    assertFalse( dispatch.isAsyncDispatch( new HttpGet( uri ), inboundRequest ) );
+    client.close();
+  }
+
+  @Test
+  public void testRequestsNotSupportingAsyncAreDispatchedSynchronously() throws Exception {
+    DefaultAsyncDispatch dispatch = new DefaultAsyncDispatch();
+    CloseableHttpAsyncClient client = HttpAsyncClients.createDefault();
+    dispatch.setAsyncHttpClient( client );
+
+    HttpServletRequest inboundRequest = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( inboundRequest.isAsyncSupported() ).andReturn( false ).anyTimes();
+    EasyMock.replay( inboundRequest );
+
+    assertFalse( dispatch.isAsyncDispatch( new HttpGet( new URI( "http://localhost/test" ) ), inboundRequest ) );
+    client.close();
+  }
+
+  // Make sure a connection failure completes the asynchronous request without exposing the backend.
+  @Test( timeout = 30000 )
+  public void testConnectionFailureCompletesRequest() throws Exception {
+    int port;
+    try( ServerSocket socket = new ServerSocket( 0 ) ) {
+      port = socket.getLocalPort();
+    }
+    URI uri = new URI( "http://localhost:" + port + "/test" );
+
+    final CountDownLatch completed = new CountDownLatch( 1 );
+    AsyncContext asyncContext = EasyMock.createNiceMock( AsyncContext.class );
+    asyncContext.addListener( EasyMock.anyObject( AsyncListener.class ) );
+    EasyMock.expectLastCall().anyTimes();
+    asyncContext.complete();
+    EasyMock.expectLastCall().andAnswer( new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        completed.countDown();
+        return null;
+      }
+    } ).once();
+
+    HttpServletResponse outboundResponse = EasyMock.createNiceMock( HttpServletResponse.class );
+    outboundResponse.sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+    EasyMock.expectLastCall().once();
+
+    HttpServletRequest inboundRequest = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( inboundRequest.isAsyncSupported() ).andReturn( true ).anyTimes();
+    EasyMock.expect( inboundRequest.startAsync( inboundRequest, outboundResponse ) ).andReturn( asyncContext ).once();
+    EasyMock.replay( asyncContext, inboundRequest, outboundResponse );
+
+    DefaultAsyncDispatch dispatch = new DefaultAsyncDispatch();
+    CloseableHttpAsyncClient client = HttpAsyncClients.createDefault();
+    client.start();
+    dispatch.setAsyncHttpClient( client );
+    dispatch.init();
+    try {
+      dispatch.executeRequest( new HttpGet( uri ), inboundRequest, outboundResponse );
+      assertTrue( completed.await( 20, TimeUnit.SECONDS ) );
+      EasyMock.verify( asyncContext, outboundResponse );
+    } finally {
+      client.close();
+    }
+  }
+
+  // Make sure a client that refuses the request still completes the asynchronous request.
+  @Test( timeout = 30000 )
+  public void testExecuteFailureCompletesRequest() throws Exception {
+    AsyncContext asyncContext = EasyMock.createNiceMock( AsyncContext.class );
+    asyncContext.addListener( EasyMock.anyObject( AsyncListener.class ) );
+    EasyMock.expectLastCall().anyTimes();
+    asyncContext.complete();
+    EasyMock.expectLastCall().once();
+
+    HttpServletResponse outboundResponse = EasyMock.createNiceMock( HttpServletResponse.class );
+    outboundResponse.sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+    EasyMock.expectLastCall().once();
+
+    HttpServletRequest inboundRequest = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( inboundRequest.isAsyncSupported() ).andReturn( true ).anyTimes();
+    EasyMock.expect( inboundRequest.startAsync( inboundRequest, outboundResponse ) ).andReturn( asyncContext ).once();
+    EasyMock.replay( asyncContext, inboundRequest, outboundResponse );
+
+    DefaultAsyncDispatch dispatch = new DefaultAsyncDispatch();
+    CloseableHttpAsyncClient client = HttpAsyncClients.createDefault();
+    client.start();
+    // A closed client's I/O reactor has stopped so it rejects any request.
+    client.close();
+    dispatch.setAsyncHttpClient( client );
+    dispatch.init();
+    dispatch.executeRequest( new HttpGet( new URI( "http://localhost/test" ) ), inboundRequest, outboundResponse );
+    EasyMock.verify( asyncContext, outboundResponse );
+  }
+
+  // Make sure a backend that dies while sending the body aborts the response instead of ending it normally.
+  @Test( timeout = 30000 )
+  public void testBackendFailureWhileStreamingBodyAbortsResponse() throws Exception {
+    final ServerSocket backend = new ServerSocket( 0 );
+    Thread server = new Thread() {
+      @Override
+      public void run() {
+        try( Socket socket = backend.accept() ) {
+          BufferedReader reader = new BufferedReader( new InputStreamReader( socket.getInputStream(), StandardCharsets.US_ASCII ) );
+          String line;
+          while( ( line = reader.readLine() ) != null && !line.isEmpty() ) {
+          }
+          OutputStream output = socket.getOutputStream();
+          output.write( "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 100000\r\n\r\n".getBytes( StandardCharsets.US_ASCII ) );
+          output.write( new byte[ 1000 ] );
+          output.flush();
+        } catch( IOException e ) {
+          // The test fails as the response is never aborted.
+        }
+      }
+    };
+    server.start();
+    URI uri = new URI( "http://localhost:" + backend.getLocalPort() + "/test" );
+
+    final CountDownLatch completed = new CountDownLatch( 1 );
+    AsyncContext asyncContext = EasyMock.createNiceMock( AsyncContext.class );
+    asyncContext.addListener( EasyMock.anyObject( AsyncListener.class ) );
+    EasyMock.expectLastCall().anyTimes();
+    asyncContext.start( EasyMock.anyObject( Runnable.class ) );
+    EasyMock.expectLastCall().andAnswer( new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        new Thread( (Runnable)EasyMock.getCurrentArguments()[ 0 ] ).start();
+        return null;
+      }
+    } ).once();
+    asyncContext.complete();
+    EasyMock.expectLastCall().andAnswer( new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        completed.countDown();
+        return null;
+      }
+    } ).once();
+
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    HttpServletResponse outboundResponse = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.expect( outboundResponse.getOutputStream() ).andReturn( new ServletOutputStream() {
+      @Override
+      public void write( int b ) {
+        body.write( b );
+      }
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+      @Override
+      public void setWriteListener( WriteListener listener ) {
+      }
+    } ).anyTimes();
+    EasyMock.expect( outboundResponse.isCommitted() ).andReturn( true ).anyTimes();
+    outboundResponse.sendError( -1 );
+    EasyMock.expectLastCall().once();
+
+    HttpServletRequest inboundRequest = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( inboundRequest.isAsyncSupported() ).andReturn( true ).anyTimes();
+    EasyMock.expect( inboundRequest.startAsync( inboundRequest, outboundResponse ) ).andReturn( asyncContext ).once();
+    EasyMock.replay( asyncContext, inboundRequest, outboundResponse );
+
+    DefaultAsyncDispatch dispatch = new DefaultAsyncDispatch();
+    CloseableHttpAsyncClient client = HttpAsyncClients.createDefault();
+    client.start();
+    dispatch.setAsyncHttpClient( client );
+    dispatch.init();
+    try {
+      dispatch.executeRequest( new HttpGet( uri ), inboundRequest, outboundResponse );
+      assertTrue( completed.await( 20, TimeUnit.SECONDS ) );
+      EasyMock.verify( asyncContext, outboundResponse );
+      assertTrue( body.size() < 100000 );
+    } finally {
+      client.close();
+      backend.close();
+    }
+  }
+
+}
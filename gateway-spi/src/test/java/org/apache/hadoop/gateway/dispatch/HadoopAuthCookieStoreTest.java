@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.apache.http.message.BasicHttpRequest;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class HadoopAuthCookieStoreTest {
+
+  @Test
+  public void testOnlyAuthCookiesAreStored() {
+    HadoopAuthCookieStore store = new HadoopAuthCookieStore();
+    store.addCookie( new BasicClientCookie( "JSESSIONID", "1234" ) );
+    assertThat( store.getCookies().size(), is( 0 ) );
+    store.addCookie( new BasicClientCookie( "hadoop.auth", "u=knox&p=knox/host@EXAMPLE.COM&t=kerberos&s=abc" ) );
+    assertThat( store.getCookies().size(), is( 1 ) );
+  }
+
+  @Test
+  public void testCookieExpiresBeforeToken() {
+    long tokenExpiry = System.currentTimeMillis() + 3600000L;
+    BasicClientCookie cookie = new BasicClientCookie( "hadoop.auth",
+        "\"u=knox&p=knox/host@EXAMPLE.COM&t=kerberos&e=" + tokenExpiry + "&s=abc\"" );
+    HadoopAuthCookieStore store = new HadoopAuthCookieStore();
+    store.addCookie( cookie );
+    assertThat( cookie.getExpiryDate().getTime(), is( tokenExpiry - HadoopAuthCookieStore.EXPIRY_MARGIN ) );
+
+    cookie.setExpiryDate( new Date( tokenExpiry - 60000L ) );
+    assertThat( HadoopAuthCookieStore.getRefreshDate( cookie ).getTime(),
+        is( tokenExpiry - 60000L - HadoopAuthCookieStore.EXPIRY_MARGIN ) );
+  }
+
+  @Test
+  public void testCookieWithoutExpiryIsKept() {
+    BasicClientCookie cookie = new BasicClientCookie( "hive.server2.auth", "cu=knox&rn=123&s=abc" );
+    assertThat( HadoopAuthCookieStore.getRefreshDate( cookie ), nullValue() );
+  }
+
+  @Test
+  public void testExpiringCookieIsNotStored() {
+    long tokenExpiry = System.currentTimeMillis() + HadoopAuthCookieStore.EXPIRY_MARGIN / 2;
+    HadoopAuthCookieStore store = new HadoopAuthCookieStore();
+    store.addCookie( new BasicClientCookie( "hadoop.auth", "u=knox&t=kerberos&e=" + tokenExpiry + "&s=abc" ) );
+    assertThat( store.getCookies().size(), is( 0 ) );
+  }
+
+  @Test
+  public void testSharedStorePerBackend() throws Exception {
+    HadoopAuthCookieStore store = HadoopAuthCookieStore.getSharedStore( new HttpHost( "host", 50070, "http" ) );
+    assertThat( HadoopAuthCookieStore.getSharedStore( new HttpHost( "HOST", 50070, "http" ) ), sameInstance( store ) );
+    assertThat( HadoopAuthCookieStore.getSharedStore( new HttpHost( "host", 8088, "http" ) ), not( sameInstance( store ) ) );
+    assertThat( HadoopAuthCookieStore.getSharedStore( new HttpHost( "host", -1, "http" ) ),
+        sameInstance( HadoopAuthCookieStore.getSharedStore( new HttpHost( "host", 80, "http" ) ) ) );
+
+    HttpClientContext context = HttpClientContext.create();
+    context.setAttribute( HttpClientContext.HTTP_TARGET_HOST, new HttpHost( "host", 50070, "http" ) );
+    new HadoopAuthCookieStore.SharedStoreInterceptor().process( new BasicHttpRequest( "GET", "/" ), context );
+    assertThat( context.getCookieStore(), sameInstance( (Object)store ) );
+  }
+
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.gateway.dispatch;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.http.entity.BasicHttpEntity;
 import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.entity.ContentType;
@@ -25,9 +26,11 @@ import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -832,6 +835,100 @@ public class PartiallyRepeatableHttpEntityTest {
     }
   }
 
+  @Test
+  public void testReplayBufferAllocatedAsBytesArrive() throws IOException {
+    String input = "0123456789";
+    BasicHttpEntity basic;
+    PartiallyRepeatableHttpEntity replay;
+
+    basic = new BasicHttpEntity();
+    basic.setContent( new ByteArrayInputStream( input.getBytes( UTF8 ) ) );
+    replay = new PartiallyRepeatableHttpEntity( basic, 1024 * 1024 );
+    assertThat( replay.getReplayChunkCount(), is( 0 ) );
+
+    InputStream stream = replay.getContent();
+    assertThat( replay.getReplayChunkCount(), is( 0 ) );
+    assertThat( byteRead( stream, -1 ), is( input ) );
+    assertThat( replay.getReplayChunkCount(), is( 1 ) );
+    assertThat( replay.getReplayLength(), is( 10L ) );
+
+    replay.release();
+    assertThat( replay.getReplayChunkCount(), is( 0 ) );
+  }
+
+  @Test
+  public void testEmptyBodyAllocatesNoReplayBuffer() throws IOException {
+    BasicHttpEntity basic;
+    PartiallyRepeatableHttpEntity replay;
+
+    basic = new BasicHttpEntity();
+    basic.setContent( new ByteArrayInputStream( new byte[ 0 ] ) );
+    replay = new PartiallyRepeatableHttpEntity( basic, 1024 * 1024 );
+    assertThat( blockRead( replay.getContent(), UTF8, -1, 3 ), nullValue() );
+    assertThat( blockRead( replay.getContent(), UTF8, -1, 3 ), nullValue() );
+    assertThat( replay.getReplayChunkCount(), is( 0 ) );
+    assertThat( replay.isRepeatable(), is( true ) );
+  }
+
+  @Test
+  public void testReplayBeyondMemoryBufferFromSpillFile() throws IOException {
+    StringBuilder input = new StringBuilder();
+    for( int i = 0; i < 3 * PartiallyRepeatableHttpEntity.CHUNK_SIZE; i++ ) {
+      input.append( (char)( 'a' + ( i % 26 ) ) );
+    }
+    BasicHttpEntity basic;
+    PartiallyRepeatableHttpEntity replay;
+
+    File spillDirectory = new File( Files.createTempDirectory( "knox-replay-test" ).toFile(), "replay" );
+    basic = new BasicHttpEntity();
+    basic.setContent( new ByteArrayInputStream( input.toString().getBytes( UTF8 ) ) );
+    replay = new PartiallyRepeatableHttpEntity(
+        basic, PartiallyRepeatableHttpEntity.CHUNK_SIZE + 5, input.length(), spillDirectory );
+
+    try {
+      assertThat( blockRead( replay.getContent(), UTF8, -1, 1000 ), is( input.toString() ) );
+      assertThat( replay.getReplayChunkCount(), is( 2 ) );
+      // The spill file is unlinked once it is open so it cannot be read by others or left behind.
+      assertThat( spillDirectory.isDirectory(), is( true ) );
+      assertThat( spillDirectory.list().length, is( 0 ) );
+
+      assertThat( replay.isRepeatable(), is( true ) );
+      assertThat( byteRead( replay.getContent(), -1 ), is( input.toString() ) );
+      assertThat( blockRead( replay.getContent(), UTF8, -1, 7 ), is( input.toString() ) );
+
+      replay.release();
+      try {
+        replay.getContent();
+        fail( "Expected IOException" );
+      } catch( IOException e ) {
+        // Expected.
+      }
+    } finally {
+      FileUtils.deleteQuietly( spillDirectory.getParentFile() );
+    }
+  }
+
+  @Test
+  public void testOverflowPastSpillLimit() throws IOException {
+    String input = "0123456789";
+    BasicHttpEntity basic;
+    PartiallyRepeatableHttpEntity replay;
+
+    basic = new BasicHttpEntity();
+    basic.setContent( new ByteArrayInputStream( input.getBytes( UTF8 ) ) );
+    replay = new PartiallyRepeatableHttpEntity( basic, 3, 4 );
+
+    assertThat( blockRead( replay.getContent(), UTF8, -1, 2 ), is( input ) );
+    assertThat( replay.isRepeatable(), is( false ) );
+    assertThat( replay.getReplayChunkCount(), is( 0 ) );
+    try {
+      replay.getContent();
+      fail( "Expected IOException" );
+    } catch( IOException e ) {
+      // Expected.
+    }
+  }
+
   private static String byteRead( InputStream stream, int total ) throws IOException {
     StringBuilder string = null;
     int c = 0;
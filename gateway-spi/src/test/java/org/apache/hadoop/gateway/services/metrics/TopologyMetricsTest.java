@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.hadoop.test.category.FastTests;
+import org.apache.hadoop.test.category.UnitTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@Category( { UnitTests.class, FastTests.class } )
+public class TopologyMetricsTest {
+
+  @Test
+  public void testRedeployedTopologyKeepsItsMetrics() {
+    MetricRegistry registry = new MetricRegistry();
+    TopologyMetrics deployed = new TopologyMetrics( registry );
+    deployed.register( "test.hits", new Counter() );
+    deployed.register( "test.misses", new Counter() );
+
+    TopologyMetrics redeployed = new TopologyMetrics( registry );
+    Counter hits = redeployed.register( "test.hits", new Counter() );
+    assertThat( registry.getCounters().get( "test.hits" ), sameInstance( hits ) );
+
+    deployed.unregister();
+    assertThat( registry.getCounters().get( "test.hits" ), sameInstance( hits ) );
+    assertThat( registry.getCounters().get( "test.misses" ), nullValue() );
+
+    redeployed.unregister();
+    assertThat( registry.getMetrics().isEmpty(), is( true ) );
+  }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.security.impl;
+
+import org.apache.hadoop.gateway.services.security.EncryptionResult;
+import org.apache.hadoop.test.category.FastTests;
+import org.apache.hadoop.test.category.UnitTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@Category( { UnitTests.class, FastTests.class } )
+public class ConfigurableEncryptorTest {
+
+  @Test
+  public void testDecryptWithOtherEncryptorsSalt() throws Exception {
+    ConfigurableEncryptor encryptor = new ConfigurableEncryptor( "password" );
+    ConfigurableEncryptor other = new ConfigurableEncryptor( "password" );
+    EncryptionResult result = other.encrypt( "value" );
+    for( int i = 0; i < 3; i++ ) {
+      byte[] clear = encryptor.decrypt( result.salt, result.iv, result.cipher );
+      assertThat( new String( clear, StandardCharsets.UTF_8 ), is( "value" ) );
+    }
+    result = encryptor.encrypt( "value" );
+    assertThat( new String( encryptor.decrypt( result.salt, result.iv, result.cipher ), StandardCharsets.UTF_8 ), is( "value" ) );
+  }
+
+  @Test
+  public void testForeignSaltsDoNotEvictOwnKey() throws Exception {
+    ConfigurableEncryptor encryptor = new ConfigurableEncryptor( "password" );
+    EncryptionResult result = encryptor.encrypt( "value" );
+    SecretKey ownKey = encryptor.getDerivedKey( result.salt );
+
+    Random random = new Random( 0 );
+    byte[] foreignSalt = null;
+    for( int i = 0; i < 100; i++ ) {
+      foreignSalt = new byte[ result.salt.length ];
+      random.nextBytes( foreignSalt );
+      encryptor.getDerivedKey( foreignSalt );
+    }
+
+    assertThat( encryptor.getDerivedKey( result.salt ), sameInstance( ownKey ) );
+    SecretKey foreignKey = encryptor.getDerivedKey( foreignSalt );
+    assertThat( encryptor.getDerivedKey( foreignSalt.clone() ), sameInstance( foreignKey ) );
+    assertThat( new String( encryptor.decrypt( result.salt, result.iv, result.cipher ), StandardCharsets.UTF_8 ), is( "value" ) );
+  }
+
+  @Test
+  public void testConcurrentEncryptAndDecrypt() throws Exception {
+    final ConfigurableEncryptor encryptor = new ConfigurableEncryptor( "password" );
+    ExecutorService executor = Executors.newFixedThreadPool( 8 );
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for( int t = 0; t < 8; t++ ) {
+        final String prefix = "thread-" + t + "-";
+        futures.add( executor.submit( new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            for( int i = 0; i < 200; i++ ) {
+              String value = prefix + i;
+              EncryptionResult result = encryptor.encrypt( value );
+              byte[] clear = encryptor.decrypt( result.salt, result.iv, result.cipher );
+              if( !value.equals( new String( clear, StandardCharsets.UTF_8 ) ) ) {
+                return false;
+              }
+            }
+            return true;
+          }
+        } ) );
+      }
+      for( Future<Boolean> future : futures ) {
+        assertThat( future.get(), is( true ) );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
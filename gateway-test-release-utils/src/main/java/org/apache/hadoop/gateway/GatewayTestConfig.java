@@ -614,4 +614,99 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
   public boolean isClientAuthWanted() {
     return false;
   }
+
+  @Override
+  public boolean isHttpClientConnectionPoolShared() {
+    return true;
+  }
+
+  @Override
+  public int getHttpClientMaxConnectionsTotal() {
+    return 64;
+  }
+
+  @Override
+  public int getHttpClientMaxConnectionsPerRoute() {
+    return 16;
+  }
+
+  @Override
+  public long getHttpClientConnectionIdleTimeout() {
+    return 60000L;
+  }
+
+  @Override
+  public long getHttpClientConnectionTimeToLive() {
+    return -1L;
+  }
+
+  @Override
+  public int getHttpClientConnectionValidateAfterInactivity() {
+    return 2000;
+  }
+
+  @Override
+  public int getHttpServerResponseStreamBuffer() {
+    return 64 * 1024;
+  }
+
+  @Override
+  public int getTokenVerificationCacheMaxEntries() {
+    return 10000;
+  }
+
+  @Override
+  public long getTokenVerificationCacheTimeToLive() {
+    return 300000L;
+  }
+
+  @Override
+  public boolean isAsyncAuditEnabled() {
+    return false;
+  }
+
+  @Override
+  public int getAsyncAuditQueueSize() {
+    return 8192;
+  }
+
+  @Override
+  public int getAsyncAuditBatchSize() {
+    return 256;
+  }
+
+  @Override
+  public String getAsyncAuditOverflowPolicy() {
+    return "block";
+  }
+
+  @Override
+  public int getUrlRewriteCacheMaxEntries() {
+    return 0;
+  }
+
+  @Override
+  public int getUrlRewriteGzipCompressionLevel() {
+    return -1;
+  }
+
+  @Override
+  public long getHttpServerRequestSpillLimit() {
+    return 0L;
+  }
+
+  @Override
+  public long getGroupMappingCacheTimeToLive() {
+    return 300000L;
+  }
+
+  @Override
+  public long getGroupMappingCacheNegativeTimeToLive() {
+    return 30000L;
+  }
+
+  @Override
+  public int getGroupMappingCacheMaxEntries() {
+    return 10000;
+  }
 }
@@ -0,0 +1,37 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.audit.log4j.appender;
+
+import java.util.List;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * An appender that can write several events at once more cheaply than one at a time.
+ * Batches are handed over by the asynchronous audit dispatcher, other callers still use doAppend.
+ */
+public interface BatchAppender {
+
+  /**
+   * Appends the events that pass the appender's threshold and filters, in order.
+   *
+   * @param events The events to append.  May not be null.
+   */
+  void doAppend( List<LoggingEvent> events );
+
+}
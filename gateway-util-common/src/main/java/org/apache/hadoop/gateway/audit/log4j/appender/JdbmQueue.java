@@ -24,6 +24,7 @@ import jdbm.htree.HTree;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.Properties;
 
 public class JdbmQueue<E> {
@@ -62,6 +63,31 @@ public class JdbmQueue<E> {
     }
   }
 
+  /**
+   * Enqueues all of the elements with a single commit.
+   */
+  public synchronized void enqueue( Collection<E> elements ) throws IOException {
+    if( elements.isEmpty() ) {
+      return;
+    }
+    boolean committed = false;
+    try {
+      Stat stat = getStat();
+      for( E e : elements ) {
+        stat.lastEnqueue++;
+        data.put( stat.lastEnqueue, e );
+      }
+      setStat( stat );
+      db.commit();
+      committed = true;
+      notify();
+    } finally {
+      if( !committed ) {
+        db.rollback();
+      }
+    }
+  }
+
   public synchronized E dequeue() throws InterruptedException, IOException {
     boolean committed = false;
     try {
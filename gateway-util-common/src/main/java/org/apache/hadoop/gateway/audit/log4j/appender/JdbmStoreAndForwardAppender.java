@@ -19,13 +19,16 @@ package org.apache.hadoop.gateway.audit.log4j.appender;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.Logger;
+import org.apache.log4j.spi.Filter;
 import org.apache.log4j.spi.LoggingEvent;
 
-public class JdbmStoreAndForwardAppender extends AppenderSkeleton {
+public class JdbmStoreAndForwardAppender extends AppenderSkeleton implements BatchAppender {
 
   private File file;
   private Thread forwarder;
@@ -76,6 +79,47 @@ public class JdbmStoreAndForwardAppender extends AppenderSkeleton {
     }
   }
 
+  /**
+   * Stores the whole batch with a single commit instead of committing each event.
+   */
+  @Override
+  public synchronized void doAppend( List<LoggingEvent> events ) {
+    if( closed ) {
+      return;
+    }
+    List<LoggingEvent> accepted = new ArrayList<LoggingEvent>( events.size() );
+    for( LoggingEvent event : events ) {
+      if( isAccepted( event ) ) {
+        if( fetchLocationInfo ) {
+          event.getLocationInformation();
+        }
+        accepted.add( event );
+      }
+    }
+    try {
+      queue.enqueue( accepted );
+    } catch ( IOException e ) {
+      throw new RuntimeException( e );
+    }
+  }
+
+  private boolean isAccepted( LoggingEvent event ) {
+    if( !isAsSevereAsThreshold( event.getLevel() ) ) {
+      return false;
+    }
+    for( Filter filter = getFirstFilter(); filter != null; filter = filter.getNext() ) {
+      switch( filter.decide( event ) ) {
+        case Filter.DENY:
+          return false;
+        case Filter.ACCEPT:
+          return true;
+        default:
+          break;
+      }
+    }
+    return true;
+  }
+
   @Override
   public void close() {
     try {
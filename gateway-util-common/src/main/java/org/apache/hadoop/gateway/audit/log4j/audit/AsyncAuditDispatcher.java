@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.audit.log4j.audit;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.hadoop.gateway.audit.log4j.appender.BatchAppender;
+import org.apache.hadoop.gateway.i18n.GatewayUtilCommonMessages;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.log4j.Appender;
+import org.apache.log4j.Category;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Takes audit records off the request threads and writes them to the auditors' log4j appenders
+ * in batches on a dedicated thread.  Records are held in a bounded ring buffer, what happens when
+ * it is full is decided by the {@link OverflowPolicy}.  Appenders that implement {@link BatchAppender}
+ * receive each batch in one call, all others receive the events one at a time.
+ * <p/>
+ * Once stopped, or before being started, records are written on the calling thread.
+ */
+public class AsyncAuditDispatcher {
+
+  private static final GatewayUtilCommonMessages LOG = MessagesFactory.get( GatewayUtilCommonMessages.class );
+
+  private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos( 100 );
+  private static final long FULL_WAIT = TimeUnit.MICROSECONDS.toNanos( 100 );
+
+  public enum OverflowPolicy {
+    /** Wait for the dispatcher to make room, audit events are never lost. */
+    BLOCK,
+    /** Discard the event and count it as dropped. */
+    DROP,
+    /** Write the event on the calling thread, it may be written out of order. */
+    CALLER_RUNS;
+
+    /**
+     * @param policy A policy name such as "block", "drop" or "caller-runs".
+     */
+    public static OverflowPolicy parse( String policy ) {
+      return valueOf( policy.trim().toUpperCase( Locale.ROOT ).replace( '-', '_' ) );
+    }
+  }
+
+  private final AuditRingBuffer<AuditRecord> buffer;
+  private final int batchSize;
+  private final OverflowPolicy overflowPolicy;
+  private final Object drainLock = new Object();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong dispatched = new AtomicLong();
+  private volatile boolean running;
+  private volatile boolean waiting;
+  private Thread drainer;
+
+  public AsyncAuditDispatcher( int capacity, int batchSize, OverflowPolicy overflowPolicy ) {
+    this.buffer = new AuditRingBuffer<AuditRecord>( Math.max( 1, capacity ) );
+    this.batchSize = Math.max( 1, batchSize );
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  public synchronized void start() {
+    if( drainer == null ) {
+      running = true;
+      drainer = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          drain();
+        }
+      }, "gateway-audit-dispatcher" );
+      drainer.setDaemon( true );
+      drainer.start();
+    }
+  }
+
+  /**
+   * Stops the dispatch thread after it has written all of the records already queued.
+   */
+  public synchronized void stop() throws InterruptedException {
+    running = false;
+    if( drainer != null ) {
+      LockSupport.unpark( drainer );
+      drainer.join();
+      drainer = null;
+    }
+    drainRemaining();
+  }
+
+  public int getCapacity() {
+    return buffer.capacity();
+  }
+
+  public int getQueueDepth() {
+    return buffer.size();
+  }
+
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  public long getDispatchedCount() {
+    return dispatched.get();
+  }
+
+  void publish( AuditRecord record ) {
+    if( !running ) {
+      dispatch( record );
+      return;
+    }
+    if( !buffer.offer( record ) ) {
+      switch( overflowPolicy ) {
+        case DROP:
+          dropped.incrementAndGet();
+          return;
+        case CALLER_RUNS:
+          dispatch( record );
+          return;
+        default:
+          while( !buffer.offer( record ) ) {
+            if( !running ) {
+              dispatch( record );
+              return;
+            }
+            wakeDrainer();
+            LockSupport.parkNanos( this, FULL_WAIT );
+          }
+      }
+    }
+    wakeDrainer();
+    if( !running ) {
+      // The dispatch thread may have finished before this record was queued.
+      drainRemaining();
+    }
+  }
+
+  private void wakeDrainer() {
+    if( waiting ) {
+      Thread thread = drainer;
+      if( thread != null ) {
+        LockSupport.unpark( thread );
+      }
+    }
+  }
+
+  private void drain() {
+    List<AuditRecord> batch = new ArrayList<AuditRecord>( batchSize );
+    while( running ) {
+      int count;
+      synchronized( drainLock ) {
+        count = buffer.drainTo( batch, batchSize );
+        if( count > 0 ) {
+          dispatch( batch );
+          batch.clear();
+        }
+      }
+      if( count == 0 ) {
+        waiting = true;
+        if( running && buffer.isEmpty() ) {
+          LockSupport.parkNanos( this, IDLE_WAIT );
+        } else {
+          // A record has been claimed but not published yet.
+          Thread.yield();
+        }
+        waiting = false;
+      }
+    }
+  }
+
+  private void drainRemaining() {
+    List<AuditRecord> batch = new ArrayList<AuditRecord>( batchSize );
+    synchronized( drainLock ) {
+      while( buffer.drainTo( batch, batchSize ) > 0 ) {
+        dispatch( batch );
+        batch.clear();
+      }
+    }
+  }
+
+  private void dispatch( AuditRecord record ) {
+    List<AuditRecord> batch = new ArrayList<AuditRecord>( 1 );
+    batch.add( record );
+    dispatch( batch );
+  }
+
+  private void dispatch( List<AuditRecord> batch ) {
+    // Keep each logger's events in the order they were recorded.
+    Map<Logger, List<LoggingEvent>> events = new LinkedHashMap<Logger, List<LoggingEvent>>();
+    for( AuditRecord record : batch ) {
+      List<LoggingEvent> loggerEvents = events.get( record.getLogger() );
+      if( loggerEvents == null ) {
+        loggerEvents = new ArrayList<LoggingEvent>();
+        events.put( record.getLogger(), loggerEvents );
+      }
+      // The caller's location is unknown on this thread and the auditor's location is of no interest.
+      loggerEvents.add( record.toLoggingEvent( LocationInfo.NA_LOCATION_INFO ) );
+    }
+    for( Map.Entry<Logger, List<LoggingEvent>> entry : events.entrySet() ) {
+      try {
+        callAppenders( entry.getKey(), entry.getValue() );
+      } catch( RuntimeException e ) {
+        LOG.failedToDispatchAuditEvents( entry.getValue().size(), e );
+      }
+    }
+    dispatched.addAndGet( batch.size() );
+  }
+
+  // The same appenders Category.callAppenders would use for each event.
+  private static void callAppenders( Logger logger, List<LoggingEvent> events ) {
+    for( Category category = logger; category != null; category = category.getParent() ) {
+      Enumeration<?> appenders = category.getAllAppenders();
+      while( appenders.hasMoreElements() ) {
+        Appender appender = (Appender)appenders.nextElement();
+        if( appender instanceof BatchAppender ) {
+          ( (BatchAppender)appender ).doAppend( events );
+        } else {
+          for( LoggingEvent event : events ) {
+            appender.doAppend( event );
+          }
+        }
+      }
+      if( !category.getAdditivity() ) {
+        break;
+      }
+    }
+  }
+
+}
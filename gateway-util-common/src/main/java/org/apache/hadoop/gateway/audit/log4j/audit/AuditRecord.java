@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.audit.log4j.audit;
+
+import java.util.Hashtable;
+
+import org.apache.hadoop.gateway.audit.api.AuditContext;
+import org.apache.hadoop.gateway.audit.api.CorrelationContext;
+import org.apache.hadoop.gateway.audit.log4j.correlation.Log4jCorrelationContext;
+import org.apache.hadoop.gateway.audit.log4j.correlation.Log4jCorrelationService;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * A single audit event captured at the time it was recorded.
+ * The event's MDC is built from the record instead of the calling thread's MDC so the record
+ * can be turned into a log4j event on any thread.
+ */
+final class AuditRecord {
+
+  private static final String FQCN = Log4jAuditor.class.getName();
+
+  private final Logger logger;
+  private final long timeStamp;
+  private final String threadName;
+  private final CorrelationContext correlationContext;
+  private final AuditContext auditContext;
+  private final String action;
+  private final String resourceName;
+  private final String resourceType;
+  private final String outcome;
+  private final String serviceName;
+  private final String componentName;
+  private final String message;
+
+  AuditRecord( Logger logger, CorrelationContext correlationContext, AuditContext auditContext, String action,
+               String resourceName, String resourceType, String outcome, String serviceName, String componentName,
+               String message ) {
+    this.logger = logger;
+    this.timeStamp = System.currentTimeMillis();
+    this.threadName = Thread.currentThread().getName();
+    this.correlationContext = correlationContext;
+    this.auditContext = auditContext;
+    this.action = action;
+    this.resourceName = resourceName;
+    this.resourceType = resourceType;
+    this.outcome = outcome;
+    this.serviceName = serviceName;
+    this.componentName = componentName;
+    this.message = message;
+  }
+
+  /**
+   * Creates a record whose contexts are copies of the given ones so that it is not affected
+   * by later changes the request processing makes to them.
+   */
+  static AuditRecord snapshot( Logger logger, CorrelationContext correlationContext, AuditContext auditContext,
+                               String action, String resourceName, String resourceType, String outcome,
+                               String serviceName, String componentName, String message ) {
+    return new AuditRecord( logger, copy( correlationContext ), copy( auditContext ), action, resourceName,
+        resourceType, outcome, serviceName, componentName, message );
+  }
+
+  Logger getLogger() {
+    return logger;
+  }
+
+  LoggingEvent toLoggingEvent( LocationInfo locationInfo ) {
+    Hashtable<String, Object> properties = new Hashtable<String, Object>();
+    put( properties, Log4jCorrelationService.MDC_CORRELATION_CONTEXT_KEY, correlationContext );
+    put( properties, Log4jAuditService.MDC_AUDIT_CONTEXT_KEY, auditContext );
+    put( properties, AuditConstants.MDC_ACTION_KEY, action );
+    put( properties, AuditConstants.MDC_RESOURCE_NAME_KEY, resourceName );
+    put( properties, AuditConstants.MDC_RESOURCE_TYPE_KEY, resourceType );
+    put( properties, AuditConstants.MDC_OUTCOME_KEY, outcome );
+    put( properties, AuditConstants.MDC_SERVICE_KEY, serviceName );
+    put( properties, AuditConstants.MDC_COMPONENT_KEY, componentName );
+    return new LoggingEvent( FQCN, logger, timeStamp, Level.INFO, message, threadName, null, null, locationInfo, properties );
+  }
+
+  // Hashtable does not allow null values, a missing MDC key reads the same as a null value.
+  private static void put( Hashtable<String, Object> properties, String key, Object value ) {
+    if( value != null ) {
+      properties.put( key, value );
+    }
+  }
+
+  private static CorrelationContext copy( CorrelationContext context ) {
+    if( context == null ) {
+      return null;
+    }
+    return new Log4jCorrelationContext( context.getRequestId(), context.getParentRequestId(), context.getRootRequestId() );
+  }
+
+  private static AuditContext copy( AuditContext context ) {
+    if( context == null ) {
+      return null;
+    }
+    AuditContext copy = new Log4jAuditContext();
+    copy.setUsername( context.getUsername() );
+    copy.setProxyUsername( context.getProxyUsername() );
+    copy.setSystemUsername( context.getSystemUsername() );
+    copy.setTargetServiceName( context.getTargetServiceName() );
+    copy.setRemoteIp( context.getRemoteIp() );
+    copy.setRemoteHostname( context.getRemoteHostname() );
+    return copy;
+  }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.audit.log4j.audit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free ring buffer that any number of threads may offer to and a single thread drains.
+ * Each slot carries a sequence number that tells producers whether the slot is free for the
+ * position they claimed and tells the consumer whether the element at its position has been published.
+ */
+class AuditRingBuffer<E> {
+
+  private final int mask;
+  private final AtomicReferenceArray<E> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+
+  AuditRingBuffer( int capacity ) {
+    int size = 1;
+    while( size < capacity ) {
+      size <<= 1;
+    }
+    mask = size - 1;
+    elements = new AtomicReferenceArray<E>( size );
+    sequences = new AtomicLongArray( size );
+    for( int i = 0; i < size; i++ ) {
+      sequences.set( i, i );
+    }
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * @return false if the buffer is full.
+   */
+  boolean offer( E element ) {
+    long position = head.get();
+    while( true ) {
+      int index = (int)position & mask;
+      long available = sequences.get( index ) - position;
+      if( available == 0 ) {
+        if( head.compareAndSet( position, position + 1 ) ) {
+          elements.lazySet( index, element );
+          sequences.set( index, position + 1 );
+          return true;
+        }
+        position = head.get();
+      } else if( available < 0 ) {
+        return false;
+      } else {
+        position = head.get();
+      }
+    }
+  }
+
+  /**
+   * Moves up to max published elements into the batch in the order they were claimed.
+   * Must only be called by one thread at a time.
+   * @return The number of elements added to the batch.
+   */
+  int drainTo( List<E> batch, int max ) {
+    long position = tail.get();
+    int count = 0;
+    while( count < max ) {
+      int index = (int)position & mask;
+      if( sequences.get( index ) != position + 1 ) {
+        break;
+      }
+      batch.add( elements.get( index ) );
+      elements.lazySet( index, null );
+      sequences.set( index, position + mask + 1 );
+      position++;
+      count++;
+    }
+    tail.lazySet( position );
+    return count;
+  }
+
+  /**
+   * @return The approximate number of elements waiting to be drained.
+   */
+  int size() {
+    long size = head.get() - tail.get();
+    return (int)Math.max( 0, Math.min( size, capacity() ) );
+  }
+
+  boolean isEmpty() {
+    return size() == 0;
+  }
+
+}
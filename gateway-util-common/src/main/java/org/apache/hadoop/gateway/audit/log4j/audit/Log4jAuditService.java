@@ -30,6 +30,7 @@ public class Log4jAuditService implements AuditService {
 
   public static final String MDC_AUDIT_CONTEXT_KEY = "audit_context";
   private Map<String, Auditor> auditors = new ConcurrentHashMap<String, Auditor>();
+  private AsyncAuditDispatcher dispatcher;
 
   @Override
   public AuditContext createContext() {
@@ -75,10 +76,26 @@ public class Log4jAuditService implements AuditService {
     String key = auditorName + componentName + serviceName;
     Auditor auditor = auditors.get( key );
     if( auditor == null ) {
-      auditor = new Log4jAuditor( auditorName, componentName, serviceName );
+      Log4jAuditor log4jAuditor = new Log4jAuditor( auditorName, componentName, serviceName );
+      log4jAuditor.setDispatcher( dispatcher );
+      auditor = log4jAuditor;
       auditors.put( key, auditor );
     }
     return auditor;
   }
 
+  /**
+   * Routes the events of all auditors, current and future, through the dispatcher.
+   *
+   * @param dispatcher The dispatcher to hand audit records to, or null to write them on the calling thread.
+   */
+  public synchronized void setDispatcher( AsyncAuditDispatcher dispatcher ) {
+    this.dispatcher = dispatcher;
+    for( Auditor auditor : auditors.values() ) {
+      if( auditor instanceof Log4jAuditor ) {
+        ( (Log4jAuditor)auditor ).setDispatcher( dispatcher );
+      }
+    }
+  }
+
 }
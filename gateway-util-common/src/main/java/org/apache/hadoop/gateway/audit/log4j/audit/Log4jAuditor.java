@@ -26,7 +26,6 @@ import org.apache.hadoop.gateway.audit.api.CorrelationContext;
 import org.apache.hadoop.gateway.audit.api.CorrelationService;
 import org.apache.hadoop.gateway.audit.log4j.correlation.Log4jCorrelationService;
 import org.apache.log4j.Logger;
-import org.apache.log4j.MDC;
 
 public class Log4jAuditor implements Auditor {
 
@@ -35,6 +34,7 @@ public class Log4jAuditor implements Auditor {
   private String serviceName;
   private AuditService auditService = new Log4jAuditService();
   private CorrelationService correlationService = new Log4jCorrelationService();
+  private volatile AsyncAuditDispatcher dispatcher;
 
   public Log4jAuditor( String loggerName, String componentName, String serviceName ) {
     logger = Logger.getLogger( loggerName );
@@ -45,51 +45,33 @@ public class Log4jAuditor implements Auditor {
 
   @Override
   public void audit( CorrelationContext correlationContext, AuditContext auditContext, String action, String resourceName, String resourceType, String outcome, String message ) {
-    CorrelationContext previousCorrelationContext = null;
-    AuditContext previousAuditContext = null;
-    try {
-      previousCorrelationContext = correlationService.getContext();
-      previousAuditContext = auditService.getContext();
-      auditService.attachContext( auditContext );
-      correlationService.attachContext( correlationContext );
-      auditLog( action, resourceName, resourceType, outcome, message );
-    } finally {
-      if ( previousAuditContext != null ) {
-        auditService.attachContext( previousAuditContext );
-      }
-      if ( previousCorrelationContext != null ) {
-        correlationService.attachContext( previousCorrelationContext );
-      }
-    }
+    auditLog( correlationContext, auditContext, action, resourceName, resourceType, outcome, message );
   }
 
   @Override
   public void audit( String action, String resourceName, String resourceType, String outcome, String message ) {
-    auditLog( action, resourceName, resourceType, outcome, message );
+    auditLog( correlationService.getContext(), auditService.getContext(), action, resourceName, resourceType, outcome, message );
   }
   
   @Override
   public void audit( String action, String resourceName, String resourceType, String outcome ) {
-    auditLog( action, resourceName, resourceType, outcome, null );
+    auditLog( correlationService.getContext(), auditService.getContext(), action, resourceName, resourceType, outcome, null );
   }
 
-  private void auditLog( String action, String resourceName, String resourceType, String outcome, String message ) {
+  void setDispatcher( AsyncAuditDispatcher dispatcher ) {
+    this.dispatcher = dispatcher;
+  }
+
+  // The event's MDC is taken from the record so the thread's MDC is left alone.
+  private void auditLog( CorrelationContext correlationContext, AuditContext auditContext, String action, String resourceName, String resourceType, String outcome, String message ) {
     if ( logger.isInfoEnabled() ) {
-      MDC.put( AuditConstants.MDC_ACTION_KEY, action );
-      MDC.put( AuditConstants.MDC_RESOURCE_NAME_KEY, resourceName );
-      MDC.put( AuditConstants.MDC_RESOURCE_TYPE_KEY, resourceType );
-      MDC.put( AuditConstants.MDC_OUTCOME_KEY, outcome );
-      MDC.put( AuditConstants.MDC_SERVICE_KEY, serviceName );
-      MDC.put( AuditConstants.MDC_COMPONENT_KEY, componentName );
-      
-      logger.info( message );
-      
-      MDC.remove( AuditConstants.MDC_ACTION_KEY );
-      MDC.remove( AuditConstants.MDC_RESOURCE_NAME_KEY );
-      MDC.remove( AuditConstants.MDC_RESOURCE_TYPE_KEY );
-      MDC.remove( AuditConstants.MDC_OUTCOME_KEY );
-      MDC.remove( AuditConstants.MDC_SERVICE_KEY );
-      MDC.remove( AuditConstants.MDC_COMPONENT_KEY );
+      AsyncAuditDispatcher dispatcher = this.dispatcher;
+      if ( dispatcher == null ) {
+        AuditRecord record = new AuditRecord( logger, correlationContext, auditContext, action, resourceName, resourceType, outcome, serviceName, componentName, message );
+        logger.callAppenders( record.toLoggingEvent( null ) );
+      } else {
+        dispatcher.publish( AuditRecord.snapshot( logger, correlationContext, auditContext, action, resourceName, resourceType, outcome, serviceName, componentName, message ) );
+      }
     }
   }
 
@@ -33,4 +33,7 @@ public interface GatewayUtilCommonMessages {
   @Message( level = MessageLevel.ERROR, text = "Failed to get map from Json string {0}: {1}" )
   void failedToGetMapFromJsonString( String json, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
 
+  @Message( level = MessageLevel.ERROR, text = "Failed to dispatch {0} audit events: {1}" )
+  void failedToDispatchAuditEvents( int count, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
 }
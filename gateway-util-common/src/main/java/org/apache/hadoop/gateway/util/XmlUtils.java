@@ -28,6 +28,7 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
@@ -39,21 +40,44 @@ import org.xml.sax.SAXException;
 
 public class XmlUtils {
 
+  // JAXP factories are expensive to look up and not thread safe so each thread keeps its own.
+  private static final ThreadLocal<DocumentBuilderFactory> DOCUMENT_BUILDER_FACTORY = new ThreadLocal<DocumentBuilderFactory>() {
+    @Override
+    protected DocumentBuilderFactory initialValue() {
+      DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+      try {
+        f.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
+      } catch( ParserConfigurationException e ) {
+        throw new IllegalStateException( e );
+      }
+      return f;
+    }
+  };
+
+  private static final ThreadLocal<TransformerFactory> TRANSFORMER_FACTORY = new ThreadLocal<TransformerFactory>() {
+    @Override
+    protected TransformerFactory initialValue() {
+      TransformerFactory f = TransformerFactory.newInstance();
+      try {
+        f.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
+      } catch( TransformerConfigurationException e ) {
+        throw new IllegalStateException( e );
+      }
+      return f;
+    }
+  };
+
   public static Document readXml( File file ) throws ParserConfigurationException, IOException, SAXException {
     return readXml( new FileInputStream( file ));
   }
 
   public static Document readXml( InputStream input ) throws ParserConfigurationException, IOException, SAXException {
-    DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
-    f.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
-    DocumentBuilder b = f.newDocumentBuilder();
+    DocumentBuilder b = DOCUMENT_BUILDER_FACTORY.get().newDocumentBuilder();
     return b.parse( input );
   }
   
   public static Document readXml( InputSource source ) throws ParserConfigurationException, IOException, SAXException {
-    DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
-    f.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
-    DocumentBuilder b = f.newDocumentBuilder();
+    DocumentBuilder b = DOCUMENT_BUILDER_FACTORY.get().newDocumentBuilder();
     return b.parse( source );
   }
 
@@ -70,8 +94,7 @@ public class XmlUtils {
   
   public static Transformer getTransformer( boolean standalone, boolean indent, int indentNumber,
                                             boolean omitXmlDeclaration) throws TransformerException {
-    TransformerFactory f = TransformerFactory.newInstance();
-    f.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
+    TransformerFactory f = TRANSFORMER_FACTORY.get();
     if ( indent ) {
       f.setAttribute( "indent-number", indentNumber );
     }
@@ -96,9 +119,7 @@ public class XmlUtils {
   }
   
   public static Document createDocument(boolean standalone) throws ParserConfigurationException {
-    DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
-    f.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
-    DocumentBuilder b = f.newDocumentBuilder();
+    DocumentBuilder b = DOCUMENT_BUILDER_FACTORY.get().newDocumentBuilder();
     Document d = b.newDocument();
     d.setXmlStandalone( standalone );
     return d;
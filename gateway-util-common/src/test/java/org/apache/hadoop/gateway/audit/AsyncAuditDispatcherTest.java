@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.audit;
+
+import org.apache.hadoop.gateway.audit.api.AuditContext;
+import org.apache.hadoop.gateway.audit.api.Auditor;
+import org.apache.hadoop.gateway.audit.api.CorrelationContext;
+import org.apache.hadoop.gateway.audit.log4j.audit.AsyncAuditDispatcher;
+import org.apache.hadoop.gateway.audit.log4j.audit.AuditConstants;
+import org.apache.hadoop.gateway.audit.log4j.audit.Log4jAuditContext;
+import org.apache.hadoop.gateway.audit.log4j.audit.Log4jAuditService;
+import org.apache.hadoop.gateway.audit.log4j.correlation.Log4jCorrelationContext;
+import org.apache.hadoop.gateway.audit.log4j.correlation.Log4jCorrelationService;
+import org.apache.hadoop.test.log.CollectAppender;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AsyncAuditDispatcherTest {
+
+  @Before
+  public void setup() {
+    cleanup();
+  }
+
+  @After
+  public void cleanup() {
+    CollectAppender.queue.clear();
+    LogManager.shutdown();
+    String absolutePath = "target/audit";
+    File db = new File( absolutePath + ".db" );
+    if( db.exists() ) {
+      assertThat( "Failed to delete audit store db file.", db.delete(), is( true ) );
+    }
+    File lg = new File( absolutePath + ".lg" );
+    if( lg.exists() ) {
+      assertThat( "Failed to delete audit store lg file.", lg.delete(), is( true ) );
+    }
+    PropertyConfigurator.configure( ClassLoader.getSystemResourceAsStream( "audit-log4j.properties" ) );
+  }
+
+  @Test
+  public void testEventsAreDispatchedWithContextsAsRecorded() throws Exception {
+    Log4jAuditService auditService = new Log4jAuditService();
+    AsyncAuditDispatcher dispatcher = new AsyncAuditDispatcher( 64, 8, AsyncAuditDispatcher.OverflowPolicy.BLOCK );
+    auditService.setDispatcher( dispatcher );
+    dispatcher.start();
+    Auditor auditor = auditService.getAuditor( "audit.forward", AuditConstants.KNOX_COMPONENT_NAME, AuditConstants.KNOX_SERVICE_NAME );
+
+    AuditContext ac = new Log4jAuditContext();
+    CorrelationContext cc = new Log4jCorrelationContext( "request", "parent", "root" );
+    int iterations = 1000;
+    for( int i = 0; i < iterations; i++ ) {
+      ac.setUsername( "user" + i );
+      auditor.audit( cc, ac, "action" + i, "resource" + i, "resource type", "outcome", "message" + i );
+    }
+    ac.setUsername( "changed" );
+    dispatcher.stop();
+
+    assertThat( CollectAppender.queue.size(), is( iterations ) );
+    assertThat( dispatcher.getDispatchedCount(), is( (long)iterations ) );
+    assertThat( dispatcher.getDroppedCount(), is( 0L ) );
+    assertThat( dispatcher.getQueueDepth(), is( 0 ) );
+    int counter = 0;
+    for( LoggingEvent event : CollectAppender.queue ) {
+      assertThat( (String)event.getMDC( AuditConstants.MDC_ACTION_KEY ), is( "action" + counter ) );
+      assertThat( (String)event.getMDC( AuditConstants.MDC_RESOURCE_NAME_KEY ), is( "resource" + counter ) );
+      assertThat( (String)event.getMDC( AuditConstants.MDC_SERVICE_KEY ), is( AuditConstants.KNOX_SERVICE_NAME ) );
+      assertThat( event.getRenderedMessage(), is( "message" + counter ) );
+      AuditContext eventAuditContext = (AuditContext)event.getMDC( Log4jAuditService.MDC_AUDIT_CONTEXT_KEY );
+      assertThat( eventAuditContext.getUsername(), is( "user" + counter ) );
+      CorrelationContext eventCorrelationContext = (CorrelationContext)event.getMDC( Log4jCorrelationService.MDC_CORRELATION_CONTEXT_KEY );
+      assertThat( eventCorrelationContext.getRequestId(), is( "request" ) );
+      assertThat( eventCorrelationContext.getRootRequestId(), is( "root" ) );
+      counter++;
+    }
+
+    // Once stopped events are written on the calling thread.
+    auditor.audit( cc, ac, "action", "resource", "resource type", "outcome", "message" );
+    assertThat( CollectAppender.queue.size(), is( iterations + 1 ) );
+  }
+
+  @Test
+  public void testDropWhenFull() throws Exception {
+    BlockingAppender blocking = new BlockingAppender();
+    Logger logger = Logger.getLogger( "audit.blocking" );
+    logger.setLevel( Level.INFO );
+    logger.addAppender( blocking );
+
+    Log4jAuditService auditService = new Log4jAuditService();
+    AsyncAuditDispatcher dispatcher = new AsyncAuditDispatcher( 4, 1, AsyncAuditDispatcher.OverflowPolicy.DROP );
+    auditService.setDispatcher( dispatcher );
+    dispatcher.start();
+    Auditor auditor = auditService.getAuditor( "audit.blocking", AuditConstants.KNOX_COMPONENT_NAME, AuditConstants.KNOX_SERVICE_NAME );
+
+    auditor.audit( "action", "resource", "resource type", "outcome" );
+    assertThat( blocking.entered.await( 10, TimeUnit.SECONDS ), is( true ) );
+    for( int i = 0; i < 10; i++ ) {
+      auditor.audit( "action", "resource", "resource type", "outcome" );
+    }
+    assertThat( dispatcher.getQueueDepth(), is( 4 ) );
+    assertThat( dispatcher.getDroppedCount(), is( 6L ) );
+
+    blocking.release.countDown();
+    dispatcher.stop();
+    assertThat( blocking.count, is( 5 ) );
+    assertThat( dispatcher.getDispatchedCount(), is( 5L ) );
+  }
+
+  @Test( timeout = 60000 )
+  public void testBatchesAreStoredAndForwarded() throws Exception {
+    Log4jAuditService auditService = new Log4jAuditService();
+    AsyncAuditDispatcher dispatcher = new AsyncAuditDispatcher( 1024, 100, AsyncAuditDispatcher.OverflowPolicy.BLOCK );
+    auditService.setDispatcher( dispatcher );
+    dispatcher.start();
+    Auditor auditor = auditService.getAuditor( "audit.store", AuditConstants.KNOX_COMPONENT_NAME, AuditConstants.KNOX_SERVICE_NAME );
+
+    int iterations = 1000;
+    for( int i = 0; i < iterations; i++ ) {
+      auditor.audit( "action" + i, "resource", "resource type", "outcome" );
+    }
+    dispatcher.stop();
+    while( CollectAppender.queue.size() < iterations ) {
+      Thread.sleep( 20 );
+    }
+    assertThat( CollectAppender.queue.size(), is( iterations ) );
+    assertThat( (String)CollectAppender.queue.peek().getMDC( AuditConstants.MDC_ACTION_KEY ), is( "action0" ) );
+  }
+
+  private static class BlockingAppender extends AppenderSkeleton {
+
+    private final CountDownLatch entered = new CountDownLatch( 1 );
+    private final CountDownLatch release = new CountDownLatch( 1 );
+    private int count;
+
+    @Override
+    protected void append( LoggingEvent event ) {
+      count++;
+      entered.countDown();
+      try {
+        release.await();
+      } catch( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean requiresLayout() {
+      return false;
+    }
+
+  }
+
+}
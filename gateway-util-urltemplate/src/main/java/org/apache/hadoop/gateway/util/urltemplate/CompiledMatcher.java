@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.util.urltemplate;
+
+import java.util.regex.Pattern;
+
+/**
+ * An immutable, precompiled form of a {@link Matcher} that matches raw paths directly
+ * without first parsing them into a {@link Template}.
+ * Instances are created by {@link Matcher#compile()} and pick the same value that
+ * {@link Matcher#match(Template)} would pick for the literal form of the path.
+ * Matching does not allocate unless a path segment pattern needs a regular expression.
+ * Instances are thread safe.
+ */
+public class CompiledMatcher<V> {
+
+  private final Node<V> root;
+
+  CompiledMatcher( Node<V> root ) {
+    this.root = root;
+  }
+
+  /**
+   * Matches a raw path, excluding any query string or fragment, against the compiled templates.
+   * @param path The path to match.
+   * @return The value of the best matching template or null if no template matches.
+   */
+  public V match( String path ) {
+    Node<V> node = match( root, path, 0 );
+    return node == null ? null : node.value;
+  }
+
+  // Explores the same candidates as Matcher.pickMatchingChildren in the same order
+  // so that the first best candidate found is the one Matcher.pickBestMatch would pick.
+  private Node<V> match( Node<V> node, String path, int start ) {
+    int length = path.length();
+    while( start < length && path.charAt( start ) == '/' ) {
+      start++;
+    }
+    if( start >= length ) {
+      return node.value == null ? null : node;
+    }
+    int end = path.indexOf( '/', start );
+    if( end < 0 ) {
+      end = length;
+    }
+    Node<V> best = null;
+    if( node.glob ) {
+      best = pickBest( best, match( node, path, end ) );
+    }
+    for( Node<V> child : node.children ) {
+      if( child.matches( path, start, end ) ) {
+        best = pickBest( best, match( child, path, end ) );
+      }
+    }
+    return best;
+  }
+
+  private static <V> Node<V> pickBest( Node<V> best, Node<V> candidate ) {
+    if( candidate == null ) {
+      return best;
+    }
+    if( best == null ||
+        candidate.depth > best.depth ||
+        ( candidate.depth == best.depth && candidate.type < best.type ) ) {
+      return candidate;
+    }
+    return best;
+  }
+
+  static class Node<V> {
+
+    private final int depth;
+    private final int type;
+    private final boolean glob;
+    private final String literal;
+    private final Pattern regex;
+    private final V value;
+    private Node<V>[] children;
+
+    Node( int depth, int type, String literal, Pattern regex, V value ) {
+      this.depth = depth;
+      this.type = type;
+      this.glob = ( type == Segment.GLOB );
+      this.literal = literal;
+      this.regex = regex;
+      this.value = value;
+    }
+
+    void setChildren( Node<V>[] children ) {
+      this.children = children;
+    }
+
+    private boolean matches( String path, int start, int end ) {
+      switch( type ) {
+        case( Segment.STATIC ):
+          return ( end - start == literal.length() ) && path.regionMatches( start, literal, 0, literal.length() );
+        case( Segment.REGEX ):
+          return regex.matcher( path.substring( start, end ) ).matches();
+        default:
+          return true;
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,430 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.util.urltemplate;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable, precompiled form of a {@link Template} for expansion.
+ * Instances are created by {@link Expander#compile(Template)} and produce the same output as
+ * {@link Expander#expandToString(Template, Params, Evaluator)} would for the same template.
+ * The static parts of the template are joined into literals and the parameter and function
+ * references are parsed once so that expanding does no parsing of the template itself.
+ * Instances are thread safe.
+ */
+public class CompiledTemplate {
+
+  private static final Params EMPTY_PARAMS = new EmptyParams();
+
+  private final Part[] head;
+  private final Part[] query;
+  private final Part[] fragment;
+  private final boolean extra;
+  private final int explicitQueryCount;
+  private final Set<String> boundNames;
+  private final int literalLength;
+
+  CompiledTemplate( Template template ) {
+    Set<String> names = new HashSet<>();
+    PartsBuilder parts = new PartsBuilder( names );
+    compileScheme( template, parts );
+    compileAuthority( template, parts );
+    compilePath( template, parts );
+    head = parts.build();
+    explicitQueryCount = compileExplicitQuery( template, parts );
+    query = parts.build();
+    if( template.hasFragment() ) {
+      parts.literal( "#" );
+      parts.singleValue( template.getFragment() );
+      fragment = parts.build();
+    } else {
+      fragment = null;
+    }
+    extra = template.getExtra() != null;
+    boundNames = Collections.unmodifiableSet( names );
+    literalLength = parts.literalLength;
+  }
+
+  /**
+   * @return The expanded template, see {@link Expander#expandToString(Template, Params, Evaluator)}.
+   */
+  public String expandToString( Params params, Evaluator evaluator ) {
+    if( params == null ) {
+      params = EMPTY_PARAMS;
+    }
+    StringBuilder builder = new StringBuilder( literalLength + 32 );
+    expand( head, params, evaluator, builder );
+    if( fragment != null ) {
+      StringBuilder fragmentBuilder = new StringBuilder();
+      expand( fragment, params, evaluator, fragmentBuilder );
+      expandQuery( params, evaluator, builder );
+      builder.append( fragmentBuilder );
+    } else {
+      expandQuery( params, evaluator, builder );
+    }
+    return builder.toString();
+  }
+
+  /**
+   * @return The expanded template parsed as a literal, see {@link Expander#expandToTemplate(Template, Params, Evaluator)}.
+   */
+  public Template expandToTemplate( Params params, Evaluator evaluator ) throws URISyntaxException {
+    return Parser.parseLiteral( expandToString( params, evaluator ) );
+  }
+
+  private void expandQuery( Params params, Evaluator evaluator, StringBuilder builder ) {
+    expand( query, params, evaluator, builder );
+    if( extra ) {
+      expandExtraQuery( params, builder );
+    }
+  }
+
+  private static void expand( Part[] parts, Params params, Evaluator evaluator, StringBuilder builder ) {
+    for( Part part : parts ) {
+      part.expand( params, evaluator, builder );
+    }
+  }
+
+  // Same as Expander.expandExtraQuery including the order in which the unbound names are visited.
+  private void expandExtraQuery( Params params, StringBuilder builder ) {
+    Set<String> names = new HashSet<>( params.getNames() );
+    names.removeAll( boundNames );
+    String[] array = new String[ names.size() ];
+    names.toArray( array );
+    int index = explicitQueryCount;
+    for( String name : array ) {
+      List<String> values = params.resolve( name );
+      if( values != null ) {
+        for( String value : values ) {
+          builder.append( ++index == 1 ? "?" : "&" );
+          appendQueryPart( name, builder );
+          if( value != null ) {
+            builder.append( "=" );
+            appendQueryPart( value, builder );
+          }
+        }
+      }
+    }
+  }
+
+  private static void compileScheme( Template template, PartsBuilder parts ) {
+    if( template.getScheme() != null ) {
+      parts.singleValue( template.getScheme() );
+      parts.literal( ":" );
+    }
+  }
+
+  private static void compileAuthority( Template template, PartsBuilder parts ) {
+    if( template.hasAuthority() ) {
+      if( !template.isAuthorityOnly() ) {
+        parts.literal( "//" );
+      }
+      Segment username = template.getUsername();
+      Segment password = template.getPassword();
+      Segment host = template.getHost();
+      Segment port = template.getPort();
+      parts.singleValue( username );
+      if( password != null ) {
+        parts.literal( ":" );
+        parts.singleValue( password );
+      }
+      if( username != null || password != null ) {
+        parts.literal( "@" );
+      }
+      parts.singleValue( host );
+      if( port != null ) {
+        parts.literal( ":" );
+        parts.singleValue( port );
+      }
+    }
+  }
+
+  private static void compilePath( Template template, PartsBuilder parts ) {
+    if( template.isAbsolute() ) {
+      parts.literal( "/" );
+    }
+    List<Path> path = template.getPath();
+    for( int i = 0, n = path.size(); i < n; i++ ) {
+      if( i > 0 ) {
+        parts.literal( "/" );
+      }
+      Path segment = path.get( i );
+      Function function = parts.bind( segment.getParamName() );
+      Segment.Value value = segment.getFirstValue();
+      switch( value.getType() ) {
+        case( Segment.STATIC ):
+          parts.literal( value.getOriginalPattern() );
+          break;
+        case( Segment.DEFAULT ):
+        case( Segment.STAR ):
+        case( Segment.GLOB ):
+        case( Segment.REGEX ):
+          parts.add( new PathValue( function, value ) );
+          break;
+      }
+    }
+    if( template.isDirectory() && !path.isEmpty() ) {
+      parts.literal( "/" );
+    }
+  }
+
+  // Returns the number of query segments since the extra query parameters are numbered after them.
+  private static int compileExplicitQuery( Template template, PartsBuilder parts ) {
+    int index = 0;
+    for( Query segment : template.getQuery().values() ) {
+      parts.literal( ++index == 1 ? "?" : "&" );
+      String queryName = segment.getQueryName();
+      Function function = parts.bind( segment.getParamName() );
+      for( Segment.Value value : segment.getValues() ) {
+        switch( value.getType() ) {
+          case( Segment.STATIC ):
+            parts.literal( queryName );
+            String pattern = value.getOriginalPattern();
+            if( pattern != null ) {
+              parts.literal( "=" );
+              parts.literal( pattern );
+            }
+            break;
+          case( Segment.DEFAULT ):
+          case( Segment.GLOB ):
+          case( Segment.STAR ):
+          case( Segment.REGEX ):
+            parts.add( new QueryValue( function, queryName, segment.getFirstValue().getType() ) );
+            break;
+          default:
+        }
+      }
+    }
+    return index;
+  }
+
+  private static void appendQueryPart( String part, StringBuilder builder ) {
+    try {
+      builder.append( URLEncoder.encode( part, "UTF-8" ) );
+    } catch ( UnsupportedEncodingException e ) {
+      builder.append( part );
+    }
+  }
+
+  private static boolean isMultiValued( int type ) {
+    return type == Segment.GLOB || type == Segment.DEFAULT;
+  }
+
+  private interface Part {
+    void expand( Params params, Evaluator evaluator, StringBuilder builder );
+  }
+
+  private static class Literal implements Part {
+
+    private final String text;
+
+    private Literal( String text ) {
+      this.text = text;
+    }
+
+    @Override
+    public void expand( Params params, Evaluator evaluator, StringBuilder builder ) {
+      builder.append( text );
+    }
+
+  }
+
+  // A scheme, authority or fragment segment with a parameter or function, see Expander.expandSingleValue.
+  private static class SingleValue implements Part {
+
+    private final Function function;
+    private final String paramName;
+    private final String pattern;
+
+    private SingleValue( Function function, String paramName, String pattern ) {
+      this.function = function;
+      this.paramName = paramName;
+      this.pattern = pattern;
+    }
+
+    @Override
+    public void expand( Params params, Evaluator evaluator, StringBuilder builder ) {
+      List<String> values = function.evaluate( params, evaluator );
+      if( values != null && !values.isEmpty() ) {
+        builder.append( values.get( 0 ) );
+      } else if( function.getFunctionName() != null ) {
+        builder.append( paramName );
+      } else {
+        builder.append( pattern );
+      }
+    }
+
+  }
+
+  // See Expander.expandPathValues.
+  private static class PathValue implements Part {
+
+    private final Function function;
+    private final boolean multiValued;
+    private final String pattern;
+
+    private PathValue( Function function, Segment.Value value ) {
+      this.function = function;
+      this.multiValued = isMultiValued( value.getType() );
+      this.pattern = value.getOriginalPattern();
+    }
+
+    @Override
+    public void expand( Params params, Evaluator evaluator, StringBuilder builder ) {
+      List<String> values = function.evaluate( params, evaluator );
+      if( values != null && !values.isEmpty() ) {
+        if( multiValued ) {
+          for( int i = 0, n = values.size(); i < n; i++ ) {
+            if( i > 0 ) {
+              builder.append( "/" );
+            }
+            builder.append( values.get( i ) );
+          }
+        } else {
+          builder.append( values.get( 0 ) );
+        }
+      } else {
+        builder.append( pattern );
+      }
+    }
+
+  }
+
+  // See Expander.expandQueryValues.
+  private static class QueryValue implements Part {
+
+    private final Function function;
+    private final String queryName;
+    private final boolean multiValued;
+
+    private QueryValue( Function function, String queryName, int type ) {
+      this.function = function;
+      this.queryName = queryName;
+      this.multiValued = isMultiValued( type );
+    }
+
+    @Override
+    public void expand( Params params, Evaluator evaluator, StringBuilder builder ) {
+      List<String> values = function.evaluate( params, evaluator );
+      if( values == null || values.size() == 0 ) {
+        builder.append( queryName );
+      } else {
+        int n = multiValued ? values.size() : 1;
+        for( int i = 0; i < n; i++ ) {
+          if( i > 0 ) {
+            builder.append( "&" );
+          }
+          appendQueryPart( queryName, builder );
+          String value = values.get( i );
+          if( value != null ) {
+            builder.append( "=" );
+            appendQueryPart( value, builder );
+          }
+        }
+      }
+    }
+
+  }
+
+  // Collects parts, merging adjacent literals, and the names of the parameters the template binds.
+  private static class PartsBuilder {
+
+    private final Set<String> names;
+    private final List<Part> parts = new ArrayList<>();
+    private final StringBuilder literal = new StringBuilder();
+    private int literalLength = 0;
+
+    private PartsBuilder( Set<String> names ) {
+      this.names = names;
+    }
+
+    private Function bind( String statement ) {
+      Function function = new Function( statement );
+      if( function.getParameterName() != null ) {
+        names.add( function.getParameterName() );
+      }
+      return function;
+    }
+
+    private void literal( String text ) {
+      literal.append( text );
+    }
+
+    private void singleValue( Segment segment ) {
+      if( segment != null ) {
+        String paramName = segment.getParamName();
+        Function function = bind( paramName );
+        Segment.Value value = segment.getFirstValue();
+        switch( value.getType() ) {
+          case Segment.DEFAULT:
+          case Segment.STAR:
+          case Segment.GLOB:
+          case Segment.REGEX:
+            add( new SingleValue( function, paramName, value.getOriginalPattern() ) );
+            break;
+          default:
+            literal( value.getOriginalPattern() );
+            break;
+        }
+      }
+    }
+
+    private void add( Part part ) {
+      flush();
+      parts.add( part );
+    }
+
+    private Part[] build() {
+      flush();
+      Part[] array = parts.toArray( new Part[ parts.size() ] );
+      parts.clear();
+      return array;
+    }
+
+    private void flush() {
+      if( literal.length() > 0 ) {
+        literalLength += literal.length();
+        parts.add( new Literal( literal.toString() ) );
+        literal.setLength( 0 );
+      }
+    }
+
+  }
+
+  private static class EmptyParams implements Params {
+
+    @Override
+    public Set<String> getNames() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public List<String> resolve( String name ) {
+      return Collections.emptyList();
+    }
+
+  }
+
+}
@@ -33,6 +33,14 @@ public class Expander {
 
   private static Params EMPTY_PARAMS = new EmptyParams();
 
+  /**
+   * Precompiles a template that is expanded repeatedly, for example by a rewrite rule.
+   * @return A compiled form of the template that expands to the same result as this class does.
+   */
+  public static CompiledTemplate compile( Template template ) {
+    return new CompiledTemplate( template );
+  }
+
   public static URI expand( Template template, Params params, Evaluator evaluator ) throws URISyntaxException {
     return Expander.expandToUri( template, params, evaluator );
   }
@@ -25,6 +25,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 /*
    Path
@@ -136,6 +137,58 @@ public class Matcher<V> {
     return winner;
   }
 
+  /**
+   * Creates an immutable {@link CompiledMatcher} for the templates added so far.
+   * Only templates made up of path segments with an optional glob query (e.g. /path/**?**)
+   * can be compiled since for those the query of the input never affects the match.
+   * @return The compiled matcher or null if any template requires matching against a full {@link Template}.
+   */
+  public CompiledMatcher<V> compile() {
+    CompiledMatcher.Node<V> node = compile( root );
+    return node == null ? null : new CompiledMatcher<V>( node );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private CompiledMatcher.Node<V> compile( PathNode pathNode ) {
+    int type = Segment.UNKNOWN;
+    String literal = null;
+    Pattern regex = null;
+    if( pathNode.segment != null ) {
+      if( !( pathNode.segment instanceof Path ) || pathNode.segment.getValues().size() != 1 ) {
+        return null;
+      }
+      Segment.Value segmentValue = pathNode.segment.getFirstValue();
+      type = segmentValue.getType();
+      literal = segmentValue.getOriginalPattern();
+      regex = segmentValue.getRegex();
+    }
+    V value = pathNode.value;
+    if( pathNode.hasQueries() ) {
+      for( QueryNode queryNode : pathNode.queries ) {
+        Query extra = queryNode.template.getExtra();
+        if( !queryNode.template.getQuery().isEmpty() ||
+            extra == null || !Segment.GLOB_PATTERN.equals( extra.getQueryName() ) ) {
+          return null;
+        }
+      }
+      // Every glob query matches so the first one is always picked over the path template.
+      value = pathNode.queries.iterator().next().value;
+    }
+    CompiledMatcher.Node<V> node = new CompiledMatcher.Node<V>( pathNode.depth, type, literal, regex, value );
+    List<CompiledMatcher.Node<V>> children = new ArrayList<CompiledMatcher.Node<V>>();
+    if( pathNode.children != null ) {
+      for( PathNode child : pathNode.children.values() ) {
+        CompiledMatcher.Node<V> compiledChild = compile( child );
+        if( compiledChild == null ) {
+          return null;
+        }
+        children.add( compiledChild );
+      }
+    }
+    node.setChildren( children.toArray( new CompiledMatcher.Node[ children.size() ] ) );
+    return node;
+  }
+
   private boolean matchScheme( Template input, Status status ) {
     pickMatchingChildren( input.getScheme(), status );
     return status.hasCandidates();
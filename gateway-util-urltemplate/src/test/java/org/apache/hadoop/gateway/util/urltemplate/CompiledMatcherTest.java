@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.util.urltemplate;
+
+import org.apache.hadoop.test.category.FastTests;
+import org.apache.hadoop.test.category.UnitTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.net.URISyntaxException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+@Category( { UnitTests.class, FastTests.class } )
+public class CompiledMatcherTest {
+
+  private static final String[] TEMPLATES = {
+      "/webhdfs/v1/?**",
+      "/webhdfs/v1/**?**",
+      "/webhdfs/data/v1/**?**",
+      "/hbase/?**",
+      "/hbase/**?**",
+      "/oozie",
+      "/oozie/**?**",
+      "/yarn/*/apps",
+      "/yarn/{**}/state",
+      "/yarn/**",
+      "/hive",
+      "/ui/**/*.js",
+      "/ui/{path=**}",
+      "/a/*/c",
+      "/a/b/*",
+      "/a/b/c" };
+
+  private static final String[] PATHS = {
+      "",
+      "/",
+      "/webhdfs",
+      "/webhdfs/v1",
+      "/webhdfs/v1/",
+      "/webhdfs/v1/tmp",
+      "/webhdfs/v1/tmp/a/b/c.txt",
+      "/webhdfs/data/v1/tmp",
+      "/webhdfs//v1///tmp",
+      "/hbase",
+      "/hbase/table/row",
+      "/oozie",
+      "/oozie/v1/jobs",
+      "/yarn/x/apps",
+      "/yarn/x/y/state",
+      "/yarn/x/y/z",
+      "/hive",
+      "/hive/x",
+      "/ui/js/app.js",
+      "/ui/js/app.css",
+      "/a/b/c",
+      "/a/x/c",
+      "/a/b/x",
+      "/unknown/path",
+      "webhdfs/v1/tmp" };
+
+  private Matcher<String> createMatcher( String... templates ) throws URISyntaxException {
+    Matcher<String> matcher = new Matcher<String>();
+    for( String template : templates ) {
+      matcher.add( Parser.parseTemplate( template ), template );
+    }
+    return matcher;
+  }
+
+  private void assertSameMatch( Matcher<String> matcher, CompiledMatcher<String> compiled, String path ) throws URISyntaxException {
+    Matcher<String>.Match match = matcher.match( Parser.parseLiteral( path ) );
+    String expected = ( match == null ) ? null : match.getValue();
+    assertThat( "Path " + path, compiled.match( path ), is( expected ) );
+    // The query never affects the match for compiled templates.
+    match = matcher.match( Parser.parseLiteral( path + "?op=LISTSTATUS&user.name=hdfs" ) );
+    expected = ( match == null ) ? null : match.getValue();
+    assertThat( "Path " + path, compiled.match( path ), is( expected ) );
+  }
+
+  @Test
+  public void testMatchesSameAsMatcher() throws URISyntaxException {
+    Matcher<String> matcher = createMatcher( TEMPLATES );
+    CompiledMatcher<String> compiled = matcher.compile();
+    assertThat( compiled, notNullValue() );
+    for( String path : PATHS ) {
+      assertSameMatch( matcher, compiled, path );
+    }
+  }
+
+  @Test
+  public void testMatchesSameAsMatcherForEachTemplate() throws URISyntaxException {
+    for( String template : TEMPLATES ) {
+      Matcher<String> matcher = createMatcher( template );
+      CompiledMatcher<String> compiled = matcher.compile();
+      assertThat( compiled, notNullValue() );
+      for( String path : PATHS ) {
+        assertSameMatch( matcher, compiled, path );
+      }
+    }
+  }
+
+  @Test
+  public void testQueryPrecedence() throws URISyntaxException {
+    CompiledMatcher<String> compiled = createMatcher( "/path", "/path?**", "/path?{**}" ).compile();
+    assertThat( compiled.match( "/path" ), is( "/path?**" ) );
+  }
+
+  @Test
+  public void testUnsupportedTemplates() throws URISyntaxException {
+    assertThat( createMatcher( "/webhdfs/v1/**?op=OPEN" ).compile(), nullValue() );
+    assertThat( createMatcher( "/webhdfs/v1/**?{op}" ).compile(), nullValue() );
+    assertThat( createMatcher( "/webhdfs/v1/**?*" ).compile(), nullValue() );
+    assertThat( createMatcher( "*://*:*/webhdfs/v1/**" ).compile(), nullValue() );
+    assertThat( createMatcher( "/webhdfs/v1/**#fragment" ).compile(), nullValue() );
+    assertThat( createMatcher( "/hbase/**?**", "/webhdfs/v1/**?op=OPEN" ).compile(), nullValue() );
+  }
+
+  @Test
+  public void testEmptyMatcher() {
+    CompiledMatcher<String> compiled = new Matcher<String>().compile();
+    assertThat( compiled, notNullValue() );
+    assertThat( compiled.match( "/any/path" ), nullValue() );
+    assertThat( compiled.match( "" ), nullValue() );
+  }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.util.urltemplate;
+
+import org.apache.hadoop.test.category.FastTests;
+import org.apache.hadoop.test.category.UnitTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+@Category( { UnitTests.class, FastTests.class } )
+public class CompiledTemplateTest {
+
+  private static final String[] TEMPLATES = {
+      "{scheme}://{host}:{port}/{path=**}?{**}",
+      "{scheme}://{username}:{password}@{host}:{port}/{path=**}?query={queryParam}#{fragment}",
+      "{host}:{port}",
+      "*://*:*/**/webhdfs/v1/{path=**}?{**}",
+      "{$serviUrl[WEBHDFS]}/v1/{path=**}?{host}&{port}&{**}",
+      "{gateway.url}/webhdfs/data/v1/{path=**}?{scheme}?host={$hostmap(host)}?{port}?{**}",
+      "$frontend[url]/yarn/{**}",
+      "/top/{mid}/bot/?name={name=*}&type={type}&static=value&{**}",
+      "/top/{mid=**}/bot/",
+      "{$inboundurl[host]}/{path=**}#{$fn(fragment)}",
+      "?{query}&{extra}",
+      "http://host:80/path?flag&name=value",
+      "{path=**}?user.name={$username}&doAs={$doas}&{**}",
+      "" };
+
+  @Test
+  public void testExpandsLikeExpander() throws Exception {
+    for( String text : TEMPLATES ) {
+      Template template = Parser.parseTemplate( text );
+      CompiledTemplate compiled = Expander.compile( template );
+      for( MockParams params : createParams() ) {
+        RecordingEvaluator expected = new RecordingEvaluator();
+        RecordingEvaluator actual = new RecordingEvaluator();
+        String expectedText = Expander.expandToString( template, params, expected );
+        assertThat( text, compiled.expandToString( params, actual ), equalTo( expectedText ) );
+        assertThat( text, actual.calls, equalTo( expected.calls ) );
+        assertThat( text, compiled.expandToTemplate( params, null ).toString(),
+            equalTo( Expander.expandToTemplate( template, params, null ).toString() ) );
+      }
+      assertThat( text, compiled.expandToString( null, null ), equalTo( Expander.expandToString( template, null, null ) ) );
+    }
+  }
+
+  private static List<MockParams> createParams() {
+    List<MockParams> list = new ArrayList<>();
+    list.add( new MockParams() );
+    MockParams params = new MockParams();
+    params.addValue( "scheme", "https" );
+    params.addValue( "username", "horton" );
+    params.addValue( "password", "hadoop" );
+    params.addValue( "host", "knox.example.com" );
+    params.addValue( "port", "8443" );
+    params.addValue( "path", "top" );
+    params.addValue( "path", "mid" );
+    params.addValue( "path", "file name.txt" );
+    params.addValue( "mid", "a" );
+    params.addValue( "mid", "b" );
+    params.addValue( "name", "x&y" );
+    params.addValue( "name", "z" );
+    params.addValue( "queryParam", "new-value" );
+    params.addValue( "fragment", "frag" );
+    params.addValue( "gateway.url", "https://gw:8443/gateway/sandbox" );
+    params.addValue( "op", "OPEN" );
+    params.addValue( "user.name", "guest" );
+    params.addValue( "extra", "1" );
+    params.addValue( "other", "2" );
+    params.addValue( "other", "3" );
+    list.add( params );
+    return list;
+  }
+
+  // Evaluates every function to a value derived from its name and arguments and records each call.
+  private static class RecordingEvaluator implements Evaluator {
+
+    private final List<String> calls = new ArrayList<>();
+
+    @Override
+    public List<String> evaluate( String function, List<String> parameters ) {
+      calls.add( function + parameters );
+      if( function.startsWith( "fn" ) ) {
+        return null;
+      }
+      return Arrays.asList( function + "-" + ( parameters == null ? "" : parameters.toString() ) );
+    }
+
+  }
+
+}